@@ -0,0 +1,14 @@
+package com.dropshipping.backend.cache;
+
+/**
+ * Names of the two-level entity caches.
+ */
+public final class CacheNames {
+
+    public static final String PRODUCTS = "products";
+    public static final String SUPPLIERS = "suppliers";
+    public static final String CUSTOMERS = "customers";
+
+    private CacheNames() {
+    }
+}
@@ -0,0 +1,66 @@
+package com.dropshipping.backend.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Multi-key reads through the two-level caches: ids found in L1 are served from memory, the L1 misses are
+ * read from L2 with one multi-get, and what is still missing is loaded with a single database query (and
+ * cached), instead of one round trip per id. Cache hits are detached copies, fit for referencing from new
+ * rows but not for modifying and saving.
+ */
+@Component
+@RequiredArgsConstructor
+public class CachedLookups {
+
+    private final TwoLevelCacheManager cacheManager;
+
+    @SuppressWarnings("unchecked")
+    public <T> Map<Long, T> getAll(String cacheName,
+                                   Collection<Long> ids,
+                                   Function<Collection<Long>, ? extends Collection<T>> loader,
+                                   Function<T, Long> idOf) {
+        Map<Long, T> found = new HashMap<>();
+        if (ids.isEmpty()) {
+            return found;
+        }
+        Map<Object, Object> cached = cacheManager.getTwoLevelCache(cacheName).getAll(ids);
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            Object hit = cached.get(id);
+            if (hit != null) {
+                found.put(id, (T) hit);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Cache target = cacheManager.getCache(cacheName);
+            for (T entity : loader.apply(missing)) {
+                Long id = idOf.apply(entity);
+                found.put(id, entity);
+                target.put(id, entity);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Single-id read through {@link #getAll}; empty when the id exists in neither the caches nor the database.
+     */
+    public <T> Optional<T> get(String cacheName,
+                               Long id,
+                               Function<Collection<Long>, ? extends Collection<T>> loader,
+                               Function<T, Long> idOf) {
+        return Optional.ofNullable(getAll(cacheName, List.of(id), loader, idOf).get(id));
+    }
+}
@@ -0,0 +1,82 @@
+package com.dropshipping.backend.cache;
+
+import com.dropshipping.backend.resilience.CircuitBreaker;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Time-boxes L2 (Redis) reads and puts behind a circuit breaker shared by all two-level caches, so a slow
+ * or unreachable Redis costs a lookup at most {@code remote-timeout} and nothing while the breaker is open;
+ * the lookup then falls through to the database.
+ */
+@Slf4j
+public class RemoteCacheGuard {
+
+    private final Duration timeout;
+    private final CircuitBreaker circuitBreaker;
+    private final ThreadPoolExecutor executor;
+
+    public RemoteCacheGuard(Duration timeout, int threads, int failureThreshold, Duration openDuration, MeterRegistry meterRegistry) {
+        this.timeout = timeout;
+        this.circuitBreaker = new CircuitBreaker("cache-redis", failureThreshold, openDuration);
+
+        AtomicInteger threadIds = new AtomicInteger();
+        int poolSize = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(poolSize * 16),
+                r -> {
+                    Thread t = new Thread(r, "cache-redis-" + threadIds.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("cache.two.level.breaker.open", circuitBreaker, cb -> cb.getState() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .register(meterRegistry);
+        circuitBreaker.onStateChange(state -> log.warn("Cache Redis circuit breaker is now {}", state));
+    }
+
+    /**
+     * Runs the Redis call within the time budget. Returns empty when the breaker is open or the call failed,
+     * timed out or was rejected.
+     */
+    public <T> Optional<T> call(Supplier<T> call) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return Optional.empty();
+        }
+        try {
+            T result = CompletableFuture.supplyAsync(call, executor).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            circuitBreaker.onSuccess();
+            return Optional.ofNullable(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            circuitBreaker.onFailure();
+            return Optional.empty();
+        } catch (ExecutionException | TimeoutException | RejectedExecutionException e) {
+            circuitBreaker.onFailure();
+            log.debug("Cache Redis call failed: {}", e.toString());
+            return Optional.empty();
+        }
+    }
+
+    public CircuitBreaker.State getBreakerState() {
+        return circuitBreaker.getState();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,257 @@
+package com.dropshipping.backend.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Cache with a bounded in-process L1 (Caffeine) in front of the shared Redis L2.
+ * <p>
+ * Reads try L1, then L2 (populating L1); multi-key reads fetch all L1 misses from L2 in one round trip. Puts write both tiers locally; evictions and clears also ask the
+ * other nodes to drop their L1 copy through the invalidation publisher. L2 reads and puts go through the
+ * {@link RemoteCacheGuard}, so a slow or unavailable Redis is treated as an L2 miss. L1 keys are normalized
+ * to strings so remote invalidation messages match regardless of the key's Java type.
+ * <p>
+ * L1 holds values in their serialized form and every read returns a fresh copy: cached entities are
+ * shared by all threads of the node, and a caller mutating what it got must not change what others see.
+ */
+@Slf4j
+public class TwoLevelCache implements Cache {
+
+    /**
+     * Reads several L2 entries in one round trip; returns the serialized values in key order, null for misses.
+     */
+    @FunctionalInterface
+    public interface RemoteMultiGet {
+        List<byte[]> get(List<Object> keys);
+    }
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, byte[]> local;
+    private final Cache remote;
+    private final RemoteMultiGet remoteMultiGet;
+    private final RemoteCacheGuard remoteGuard;
+    private final RedisSerializer<Object> serializer;
+    private final BiConsumer<String, String> invalidationPublisher;
+
+    private final LongAdder l1Hits = new LongAdder();
+    private final LongAdder l1Misses = new LongAdder();
+    private final LongAdder l2Hits = new LongAdder();
+    private final LongAdder l2Misses = new LongAdder();
+
+    public TwoLevelCache(String name,
+                         com.github.benmanes.caffeine.cache.Cache<String, byte[]> local,
+                         Cache remote,
+                         RemoteMultiGet remoteMultiGet,
+                         RemoteCacheGuard remoteGuard,
+                         RedisSerializer<Object> serializer,
+                         BiConsumer<String, String> invalidationPublisher,
+                         MeterRegistry meterRegistry) {
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.remoteMultiGet = remoteMultiGet;
+        this.remoteGuard = remoteGuard;
+        this.serializer = serializer;
+        this.invalidationPublisher = invalidationPublisher;
+
+        registerCounter(meterRegistry, "l1", "hit", l1Hits);
+        registerCounter(meterRegistry, "l1", "miss", l1Misses);
+        registerCounter(meterRegistry, "l2", "hit", l2Hits);
+        registerCounter(meterRegistry, "l2", "miss", l2Misses);
+        registerRatio(meterRegistry, "l1", l1Hits, l1Misses);
+        registerRatio(meterRegistry, "l2", l2Hits, l2Misses);
+        Gauge.builder("cache.two.level.l1.size", local, c -> c.estimatedSize()).tag("cache", name).register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return this;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper hit = getLocal(key);
+        if (hit != null) {
+            return hit;
+        }
+        ValueWrapper wrapper = remoteGuard.call(() -> remote.get(key)).orElse(null);
+        if (wrapper != null && wrapper.get() != null) {
+            l2Hits.increment();
+            // the value was just deserialized from Redis, so the caller's copy is not shared
+            putLocal(key, wrapper.get());
+            return wrapper;
+        }
+        l2Misses.increment();
+        return null;
+    }
+
+    /**
+     * Looks the keys up in L1, then all L1 misses in L2 with one multi-get, promoting L2 hits into L1.
+     * Returns the values found by key; keys missing from both tiers are absent.
+     */
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        Map<Object, Object> found = new LinkedHashMap<>();
+        List<Object> missing = new ArrayList<>();
+        for (Object key : keys) {
+            ValueWrapper hit = getLocal(key);
+            if (hit != null) {
+                found.put(key, hit.get());
+            } else {
+                missing.add(key);
+            }
+        }
+        if (missing.isEmpty()) {
+            return found;
+        }
+        List<byte[]> values = remoteGuard.call(() -> remoteMultiGet.get(missing)).orElse(null);
+        for (int i = 0; i < missing.size(); i++) {
+            byte[] value = values != null && i < values.size() ? values.get(i) : null;
+            if (value != null) {
+                l2Hits.increment();
+                local.put(localKey(missing.get(i)), value);
+                found.put(missing.get(i), serializer.deserialize(value));
+            } else {
+                l2Misses.increment();
+            }
+        }
+        return found;
+    }
+
+    /**
+     * L1-only lookup.
+     */
+    public ValueWrapper getLocal(Object key) {
+        byte[] value = local.getIfPresent(localKey(key));
+        if (value != null) {
+            l1Hits.increment();
+            return new SimpleValueWrapper(serializer.deserialize(value));
+        }
+        l1Misses.increment();
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper == null) {
+            return null;
+        }
+        Object value = wrapper.get();
+        if (type != null && value != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, value);
+        return value;
+    }
+
+    /**
+     * Read-through population; does not notify other nodes since their copies are not stale.
+     * Writers must evict instead of putting.
+     */
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            evict(key);
+            return;
+        }
+        putLocal(key, value);
+        remoteGuard.call(() -> {
+            remote.put(key, value);
+            return Boolean.TRUE;
+        });
+    }
+
+    /**
+     * Evictions and clears wait for Redis (up to its command timeout) instead of going through the guard:
+     * skipping one would leave a stale L2 entry behind once Redis is reachable again.
+     */
+    @Override
+    public void evict(Object key) {
+        evictLocal(localKey(key));
+        try {
+            remote.evict(key);
+        } catch (RuntimeException e) {
+            log.warn("L2 evict failed for {}:{}: {}", name, key, e.getMessage());
+        }
+        invalidationPublisher.accept(name, localKey(key));
+    }
+
+    @Override
+    public void clear() {
+        clearLocal();
+        try {
+            remote.clear();
+        } catch (RuntimeException e) {
+            log.warn("L2 clear failed for {}: {}", name, e.getMessage());
+        }
+        invalidationPublisher.accept(name, null);
+    }
+
+    void evictLocal(String key) {
+        local.invalidate(key);
+    }
+
+    void clearLocal() {
+        local.invalidateAll();
+    }
+
+    private void putLocal(Object key, Object value) {
+        local.put(localKey(key), serializer.serialize(value));
+    }
+
+    private static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+
+    private void registerCounter(MeterRegistry registry, String level, String result, LongAdder adder) {
+        FunctionCounter.builder("cache.two.level.requests", adder, LongAdder::sum)
+                .tag("cache", name).tag("level", level).tag("result", result)
+                .register(registry);
+    }
+
+    private void registerRatio(MeterRegistry registry, String level, LongAdder hits, LongAdder misses) {
+        Gauge.builder("cache.two.level.hit.ratio", () -> {
+                    long h = hits.sum();
+                    long total = h + misses.sum();
+                    return total == 0 ? 0.0 : (double) h / total;
+                })
+                .tag("cache", name).tag("level", level)
+                .register(registry);
+    }
+}
@@ -0,0 +1,165 @@
+package com.dropshipping.backend.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache manager producing {@link TwoLevelCache}s on top of a {@link RedisCacheManager}.
+ * <p>
+ * Cache writes are deferred until the surrounding transaction commits, so other nodes never reload a row
+ * before the change is visible. Evictions are broadcast on a Redis pub/sub channel as
+ * {@code nodeId|cacheName|key} (key {@code *} for a clear); each node drops the matching L1 entries
+ * and ignores its own messages.
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+
+    private static final String CLEAR_ALL = "*";
+
+    private final RedisCacheManager remoteCacheManager;
+    private final RemoteCacheGuard remoteGuard;
+    private final RedisSerializer<Object> serializer;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final String channel;
+    private final long localMaxSize;
+    private final Duration localTtl;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Cache> decorated = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(RedisCacheManager remoteCacheManager,
+                                RemoteCacheGuard remoteGuard,
+                                RedisSerializer<Object> serializer,
+                                StringRedisTemplate redisTemplate,
+                                MeterRegistry meterRegistry,
+                                String channel,
+                                long localMaxSize,
+                                Duration localTtl) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.remoteGuard = remoteGuard;
+        this.serializer = serializer;
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.channel = channel;
+        this.localMaxSize = localMaxSize;
+        this.localTtl = localTtl;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return decorated.computeIfAbsent(name, n -> new TransactionAwareCacheDecorator(getTwoLevelCache(n)));
+    }
+
+    /**
+     * The undecorated cache, for callers that need L1-only lookups.
+     */
+    public TwoLevelCache getTwoLevelCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 3);
+        if (parts.length != 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(parts[1]);
+        if (cache == null) {
+            return;
+        }
+        if (CLEAR_ALL.equals(parts[2])) {
+            cache.clearLocal();
+        } else {
+            cache.evictLocal(parts[2]);
+        }
+    }
+
+    private TwoLevelCache createCache(String name) {
+        Cache remote = remoteCacheManager.getCache(name);
+        if (remote == null) {
+            throw new IllegalStateException("No Redis cache available for " + name);
+        }
+        com.github.benmanes.caffeine.cache.Cache<String, byte[]> local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl)
+                .build();
+        return new TwoLevelCache(name, local, remote, multiGet(remote), remoteGuard, serializer,
+                this::publishInvalidation, meterRegistry);
+    }
+
+    // MGET on the keys RedisCache writes (prefixed, converted and serialized as configured for the cache)
+    private TwoLevelCache.RemoteMultiGet multiGet(Cache remote) {
+        if (!(remote instanceof RedisCache redisCache)) {
+            return keys -> keys.stream().map(key -> {
+                Cache.ValueWrapper wrapper = remote.get(key);
+                return wrapper != null && wrapper.get() != null ? serializer.serialize(wrapper.get()) : null;
+            }).toList();
+        }
+        RedisCacheConfiguration config = redisCache.getCacheConfiguration();
+        return keys -> {
+            byte[][] rawKeys = new byte[keys.size()][];
+            for (int i = 0; i < rawKeys.length; i++) {
+                String key = config.getConversionService().convert(keys.get(i), String.class);
+                if (config.usePrefix()) {
+                    key = config.getKeyPrefixFor(redisCache.getName()) + key;
+                }
+                rawKeys[i] = toBytes(config.getKeySerializationPair().write(key));
+            }
+            List<byte[]> values = redisTemplate.execute((RedisCallback<List<byte[]>>) (RedisConnection connection) ->
+                    connection.stringCommands().mGet(rawKeys));
+            return values != null ? values : List.of();
+        };
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        remoteGuard.shutdown();
+    }
+
+    private void publishInvalidation(String cacheName, String key) {
+        String payload = nodeId + "|" + cacheName + "|" + (key != null ? key : CLEAR_ALL);
+        try {
+            redisTemplate.convertAndSend(channel, payload);
+        } catch (RuntimeException e) {
+            // Other nodes fall back to the L1 TTL for this entry
+            log.warn("Could not publish cache invalidation {}: {}", payload, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.dropshipping.backend.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "audit")
+@Getter
+@Setter
+public class AuditProperties {
+
+    private Async async = new Async();
+
+    @Getter
+    @Setter
+    public static class Async {
+        /**
+         * Write audit entries through the background writer; when false every entry is saved synchronously
+         * inside the caller's transaction (useful for tests).
+         */
+        private boolean enabled = true;
+        /**
+         * Maximum number of entries waiting to be written.
+         */
+        private int queueCapacity = 10_000;
+        /**
+         * Maximum number of entries inserted per batch.
+         */
+        private int flushSize = 200;
+        /**
+         * Longest time an entry waits for its batch to fill before it is written anyway.
+         */
+        private Duration flushInterval = Duration.ofMillis(500);
+        /**
+         * How long a caller blocks when the queue is full before writing the entry itself.
+         */
+        private Duration offerTimeout = Duration.ofMillis(50);
+        /**
+         * Time allowed on shutdown to drain pending entries.
+         */
+        private Duration shutdownTimeout = Duration.ofSeconds(30);
+    }
+}
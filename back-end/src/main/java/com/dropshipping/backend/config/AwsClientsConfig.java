@@ -1,9 +1,13 @@
 package com.dropshipping.backend.config;
 
+import com.dropshipping.backend.resilience.DependencyGuards;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryPolicy;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.ses.SesClient;
@@ -11,8 +15,11 @@ import software.amazon.awssdk.services.sqs.SqsClient;
 import software.amazon.awssdk.services.textract.TextractClient;
 
 @Configuration
+@RequiredArgsConstructor
 public class AwsClientsConfig {
 
+    private final ResilienceProperties resilienceProperties;
+
     @Value("${aws.region:us-east-1}")
     private String region;
 
@@ -20,11 +27,23 @@ public class AwsClientsConfig {
         return Region.of(region);
     }
 
+    /**
+     * For clients whose calls go through a {@link com.dropshipping.backend.resilience.DependencyGuard}: the
+     * guard owns retries, and the SDK gives up on a call once the guard stops waiting for it.
+     */
+    private ClientOverrideConfiguration guardedOverrides(String dependency) {
+        return ClientOverrideConfiguration.builder()
+                .apiCallTimeout(resilienceProperties.dependency(dependency).getAttemptTimeout())
+                .retryPolicy(RetryPolicy.none())
+                .build();
+    }
+
     @Bean
     public S3Client s3Client() {
         return S3Client.builder()
                 .region(getRegion())
                 .credentialsProvider(DefaultCredentialsProvider.create())
+                .overrideConfiguration(guardedOverrides(DependencyGuards.S3))
                 .build();
     }
 
@@ -49,6 +68,7 @@ public class AwsClientsConfig {
         return TextractClient.builder()
                 .region(getRegion())
                 .credentialsProvider(DefaultCredentialsProvider.create())
+                .overrideConfiguration(guardedOverrides(DependencyGuards.TEXTRACT))
                 .build();
     }
 }
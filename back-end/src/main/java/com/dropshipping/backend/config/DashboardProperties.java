@@ -0,0 +1,54 @@
+package com.dropshipping.backend.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "dashboard")
+@Getter
+@Setter
+public class DashboardProperties {
+
+    private Counters counters = new Counters();
+    private Stream stream = new Stream();
+
+    @Getter
+    @Setter
+    public static class Counters {
+        /**
+         * Serve the fulfillment dashboard from in-memory counters that are updated on every committed
+         * status/shipment transition and periodically re-synced (dashboard.counters.resync-interval-ms).
+         * When disabled, every request runs the aggregate query.
+         */
+        private boolean enabled = true;
+    }
+
+    @Getter
+    @Setter
+    public static class Stream {
+        /**
+         * Upper bound on update events sent to each SSE client; bursts of changes in between are coalesced.
+         */
+        private int maxUpdatesPerSecond = 2;
+        /**
+         * Interval of keep-alive comments on idle streams.
+         */
+        private Duration heartbeatInterval = Duration.ofSeconds(15);
+        /**
+         * Lifetime of one SSE connection; EventSource clients reconnect automatically afterwards.
+         */
+        private Duration emitterTimeout = Duration.ofMinutes(30);
+        /**
+         * Maximum number of concurrently connected dashboards.
+         */
+        private int maxClients = 500;
+        /**
+         * Threads writing events to clients; a slow client only delays its own updates.
+         */
+        private int senderThreads = 4;
+    }
+}
@@ -0,0 +1,71 @@
+package com.dropshipping.backend.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "duplicate-check")
+@Getter
+@Setter
+public class DuplicateCheckProperties {
+
+    private Fallback fallback = new Fallback();
+    private Bloom bloom = new Bloom();
+
+    @Getter
+    @Setter
+    public static class Fallback {
+        /**
+         * When enabled, Redis calls are time-boxed and guarded by a circuit breaker, and an in-process
+         * store answers duplicate checks while Redis is slow or down.
+         */
+        private boolean enabled = true;
+        /**
+         * Upper bound for a single duplicate-check Redis call before the local store is used instead.
+         */
+        private Duration redisTimeout = Duration.ofMillis(200);
+        /**
+         * Threads used to run time-boxed Redis calls.
+         */
+        private int redisThreads = 8;
+        /**
+         * Consecutive Redis failures/timeouts that open the circuit breaker.
+         */
+        private int failureThreshold = 5;
+        /**
+         * How long the breaker stays open before a trial call is let through.
+         */
+        private Duration openDuration = Duration.ofSeconds(30);
+        /**
+         * Maximum number of keys kept in the local expiring store (oldest are evicted first).
+         */
+        private int maxLocalEntries = 100_000;
+        /**
+         * Maximum number of locally held keys pushed back to Redis per reconciliation call.
+         */
+        private int reconcileBatchSize = 500;
+    }
+
+    @Getter
+    @Setter
+    public static class Bloom {
+        /**
+         * Remember every locked key in a Bloom filter as well, so that keys evicted from the bounded
+         * local store are still checked while Redis is unavailable; a hit is confirmed against the stored
+         * orders before the order is rejected, since the filter cannot forget rolled-back orders.
+         */
+        private boolean enabled = false;
+        /**
+         * Expected number of keys per 24h window.
+         */
+        private int expectedInsertions = 1_000_000;
+        /**
+         * Target false-positive probability.
+         */
+        private double falsePositiveRate = 0.01;
+    }
+}
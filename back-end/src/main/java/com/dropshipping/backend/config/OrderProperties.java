@@ -6,6 +6,7 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 
 @Component
 @ConfigurationProperties(prefix = "order")
@@ -15,6 +16,9 @@ public class OrderProperties {
 
     private Review review = new Review();
     private Cutoff cutoff = new Cutoff();
+    private Batch batch = new Batch();
+    private Numbering number = new Numbering();
+    private BuyList buyList = new BuyList();
 
     @Getter
     @Setter
@@ -37,4 +41,54 @@ public class OrderProperties {
          */
         private String timezone = "America/New_York";
     }
+
+    @Getter
+    @Setter
+    public static class Batch {
+        /**
+         * Maximum number of orders accepted by a single POST /orders/batch call.
+         */
+        private int maxOrders = 5000;
+        /**
+         * Number of orders persisted per transaction; keep it a multiple of hibernate.jdbc.batch_size.
+         */
+        private int chunkSize = 100;
+    }
+
+    @Getter
+    @Setter
+    public static class Numbering {
+        /**
+         * Prefix of generated order numbers.
+         */
+        private String prefix = "ORD-";
+        /**
+         * Node id (0-1023) of this instance for order number generation; leased from order_number_nodes if
+         * unset. Startup fails when the configured id is leased by another running instance.
+         */
+        private Integer nodeId;
+        /**
+         * How long a node id lease lasts without renewal before another instance may take the id over.
+         */
+        private Duration lease = Duration.ofMinutes(1);
+        /**
+         * How far ahead of the clock timestamps are reserved in the database; ids are only handed out
+         * up to the reserved timestamp, so a restarted instance continues after it. The reservation is
+         * moved ahead every order.number.renew-interval-ms, which must be well below this window.
+         */
+        private Duration reservation = Duration.ofSeconds(10);
+    }
+
+    @Getter
+    @Setter
+    public static class BuyList {
+        /**
+         * Rows read per short transaction while exporting the buy list; no connection is held between pages.
+         */
+        private int exportPageSize = 1000;
+        /**
+         * Upper bound for one buy list export download (async request timeout of the export endpoint only).
+         */
+        private Duration exportTimeout = Duration.ofMinutes(10);
+    }
 }
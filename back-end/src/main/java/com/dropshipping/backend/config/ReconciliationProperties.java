@@ -0,0 +1,106 @@
+package com.dropshipping.backend.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "reconciliation")
+@Getter
+@Setter
+public class ReconciliationProperties {
+
+    /**
+     * Payments matched and audited per transaction; each chunk is one query plus one batched insert.
+     */
+    private int chunkSize = 1000;
+
+    private Backfill backfill = new Backfill();
+
+    private Incremental incremental = new Incremental();
+
+    private Matching matching = new Matching();
+
+    @Getter
+    @Setter
+    public static class Backfill {
+        /**
+         * Days reconciled in parallel; each worker holds one connection while a chunk runs.
+         */
+        private int threads = 4;
+        /**
+         * Largest date range accepted by a single backfill.
+         */
+        private int maxDays = 366;
+        /**
+         * Resume backfills left RUNNING by a crashed or restarted instance, on startup and every
+         * {@code resume-interval-ms}.
+         */
+        private boolean resumeOnStartup = true;
+        /**
+         * How long a day claimed by an instance stays reserved for it without progress; renewed with every
+         * chunk. Days whose owner stopped renewing are taken over by the next resume sweep.
+         */
+        private Duration lease = Duration.ofMinutes(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Incremental {
+        /**
+         * Re-reconcile an order shortly after a charge or receipt for it is stored; the nightly run then
+         * only sweeps up charges without a result.
+         */
+        private boolean enabled = true;
+        /**
+         * Quiet period after the last event for an order before it is recomputed.
+         */
+        private Duration debounce = Duration.ofSeconds(5);
+        /**
+         * Upper bound on how long a continuously changing order waits for its recompute.
+         */
+        private Duration maxDelay = Duration.ofSeconds(60);
+        /**
+         * Orders and charges recomputed together in one transaction.
+         */
+        private int batchSize = 200;
+        /**
+         * Failed recomputes of one order or charge before it is dropped (and logged) instead of retried.
+         */
+        private int maxAttempts = 5;
+        /**
+         * Delay before the first retry of a failed recompute; doubled per attempt with jitter, up to max-backoff.
+         */
+        private Duration initialBackoff = Duration.ofSeconds(10);
+        private Duration maxBackoff = Duration.ofMinutes(10);
+    }
+
+    @Getter
+    @Setter
+    public static class Matching {
+        /**
+         * Propose orders and receipts for unattached charges after a day has been reconciled.
+         */
+        private boolean enabled = true;
+        /**
+         * Largest difference between a charge and an order total that still counts as the same amount.
+         */
+        private BigDecimal amountTolerance = new BigDecimal("0.01");
+        /**
+         * Relative difference allowed between a receipt and the matched order's expected supplier cost.
+         */
+        private double receiptTolerance = 0.05;
+        /**
+         * How far apart a charge and an order (or receipt) may be in time.
+         */
+        private Duration timeWindow = Duration.ofHours(48);
+        /**
+         * Proposals scoring below this (0..1) are dropped.
+         */
+        private double minConfidence = 0.5;
+    }
+}
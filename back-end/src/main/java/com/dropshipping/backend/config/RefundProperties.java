@@ -0,0 +1,57 @@
+package com.dropshipping.backend.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "refunds")
+@Getter
+@Setter
+public class RefundProperties {
+
+    private Bulk bulk = new Bulk();
+
+    @Getter
+    @Setter
+    public static class Bulk {
+        /**
+         * Refunds sent to Stripe at the same time by this instance.
+         */
+        private int concurrency = 4;
+        /**
+         * Upper bound for refund requests per second from this instance; keep the sum over all instances
+         * below the Stripe account's rate limit (also leaving room for other Stripe traffic).
+         */
+        private double maxRequestsPerSecond = 20;
+        /**
+         * Items claimed per batch; intents and outcomes of a batch are written in one transaction each.
+         */
+        private int batchSize = 100;
+        /**
+         * Largest number of returns accepted in one job.
+         */
+        private int maxItems = 20000;
+        /**
+         * How often the queue is polled for due items and retries (new jobs also wake the poller).
+         */
+        private Duration pollInterval = Duration.ofSeconds(1);
+        /**
+         * Attempts for refunds with an unknown outcome before the item is given up as FAILED (the return
+         * stays PENDING, so a later refund resends the same request).
+         */
+        private int maxAttempts = 5;
+        /**
+         * Delay before the first retry; doubled per attempt with jitter, up to max-backoff.
+         */
+        private Duration initialBackoff = Duration.ofSeconds(30);
+        private Duration maxBackoff = Duration.ofMinutes(30);
+        /**
+         * How long a claimed item stays with its worker before another may take it over.
+         */
+        private Duration lease = Duration.ofMinutes(10);
+    }
+}
@@ -0,0 +1,77 @@
+package com.dropshipping.backend.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Component
+@ConfigurationProperties(prefix = "resilience")
+@Getter
+@Setter
+public class ResilienceProperties {
+
+    /**
+     * Settings per outbound dependency (stripe, s3, textract); dependencies not listed use the defaults.
+     */
+    private Map<String, Dependency> dependencies = new LinkedHashMap<>();
+
+    /**
+     * What to do when a guarded outbound call is made while the calling thread holds a database connection
+     * (open transaction or open-in-view EntityManager): off, log (with the call site, once per operation) or
+     * fail (throw, for test runs).
+     */
+    private ConnectionHoldDetection connectionHoldDetection = ConnectionHoldDetection.LOG;
+
+    public enum ConnectionHoldDetection {
+        OFF,
+        LOG,
+        FAIL
+    }
+
+    /**
+     * Settings of the named dependency, falling back to the defaults when it is not configured.
+     */
+    public Dependency dependency(String name) {
+        return dependencies.computeIfAbsent(name, n -> new Dependency());
+    }
+
+    @Getter
+    @Setter
+    public static class Dependency {
+        /**
+         * Calls allowed in flight at once; further callers wait up to max-wait and are then rejected.
+         */
+        private int maxConcurrent = 10;
+        private Duration maxWait = Duration.ofMillis(100);
+        /**
+         * Upper bound for one attempt; the caller stops waiting after this even if the call still runs.
+         */
+        private Duration attemptTimeout = Duration.ofSeconds(5);
+        /**
+         * Upper bound for all attempts of one call including backoff.
+         */
+        private Duration totalTimeout = Duration.ofSeconds(12);
+        /**
+         * Attempts for retryable failures (1 = no retry).
+         */
+        private int maxAttempts = 3;
+        /**
+         * Delay before the first retry; doubled per attempt with jitter, up to max-backoff.
+         */
+        private Duration initialBackoff = Duration.ofMillis(200);
+        private Duration maxBackoff = Duration.ofSeconds(2);
+        /**
+         * Consecutive failed calls that open the circuit breaker.
+         */
+        private int failureThreshold = 5;
+        /**
+         * How long the breaker stays open before a trial call is let through.
+         */
+        private Duration openDuration = Duration.ofSeconds(30);
+    }
+}
@@ -0,0 +1,35 @@
+package com.dropshipping.backend.config;
+
+import com.dropshipping.backend.resilience.DependencyGuards;
+import com.dropshipping.backend.stripe.StripeBalanceApi;
+import com.dropshipping.backend.stripe.StripeBalanceApiClient;
+import com.stripe.Stripe;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@RequiredArgsConstructor
+public class StripeClientsConfig {
+
+    private final StripeProperties stripeProperties;
+    private final ResilienceProperties resilienceProperties;
+
+    /**
+     * Stripe calls go through the "stripe" dependency guard, which retries; the client itself only gets the
+     * per-attempt timeout.
+     */
+    @PostConstruct
+    public void configureStripeClient() {
+        int timeoutMillis = (int) resilienceProperties.dependency(DependencyGuards.STRIPE).getAttemptTimeout().toMillis();
+        Stripe.setConnectTimeout(timeoutMillis);
+        Stripe.setReadTimeout(timeoutMillis);
+        Stripe.setMaxNetworkRetries(0);
+    }
+
+    @Bean
+    public StripeBalanceApi stripeBalanceApi(DependencyGuards dependencyGuards) {
+        return new StripeBalanceApiClient(stripeProperties, dependencyGuards.get(DependencyGuards.STRIPE));
+    }
+}
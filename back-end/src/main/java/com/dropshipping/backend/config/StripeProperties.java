@@ -5,6 +5,8 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+
 @Component
 @ConfigurationProperties(prefix = "stripe")
 @Getter
@@ -19,4 +21,83 @@ public class StripeProperties {
      * Webhook signing secret (provide via env STRIPE_WEBHOOK_SECRET).
      */
     private String webhookSecret;
+
+    private WebhookInbox webhookInbox = new WebhookInbox();
+
+    private FeeEnrichment feeEnrichment = new FeeEnrichment();
+
+    private PaymentLinking paymentLinking = new PaymentLinking();
+
+    @Getter
+    @Setter
+    public static class WebhookInbox {
+        /**
+         * Single-threaded lanes processing stored webhook events; events of one charge or PaymentIntent
+         * always share a lane.
+         */
+        private int workers = 4;
+        /**
+         * Events claimed per poll.
+         */
+        private int batchSize = 50;
+        /**
+         * How often the inbox is polled for due events and retries (new events also wake the poller).
+         */
+        private Duration pollInterval = Duration.ofMillis(500);
+        /**
+         * Attempts before an event is moved to DEAD.
+         */
+        private int maxAttempts = 8;
+        /**
+         * Delay before the first retry; doubled per attempt with jitter, up to max-backoff.
+         */
+        private Duration initialBackoff = Duration.ofSeconds(5);
+        private Duration maxBackoff = Duration.ofMinutes(30);
+        /**
+         * How long a claimed event stays with its worker before another may take it over.
+         */
+        private Duration lease = Duration.ofMinutes(5);
+        /**
+         * Processed events are deleted after this long; DEAD events are kept.
+         */
+        private Duration retention = Duration.ofDays(30);
+    }
+
+    @Getter
+    @Setter
+    public static class FeeEnrichment {
+        /**
+         * Replace estimated fees with the actual fees from Stripe balance transactions in the background.
+         */
+        private boolean enabled = true;
+        /**
+         * Balance transactions requested per list call (Stripe allows up to 100).
+         */
+        private int pageSize = 100;
+        /**
+         * Provisional fees older than this are no longer looked up and keep their estimate.
+         */
+        private Duration maxAge = Duration.ofDays(30);
+        /**
+         * Margin before the oldest provisional charge when listing balance transactions (clock skew).
+         */
+        private Duration slack = Duration.ofHours(1);
+    }
+
+    @Getter
+    @Setter
+    public static class PaymentLinking {
+        /**
+         * Link charges stored without an order to the order named in their metadata once it exists.
+         */
+        private boolean enabled = true;
+        /**
+         * Unlinked charges resolved and updated per statement.
+         */
+        private int batchSize = 500;
+        /**
+         * Charges older than this are no longer retried and are left to charge matching.
+         */
+        private Duration maxAge = Duration.ofDays(7);
+    }
 }
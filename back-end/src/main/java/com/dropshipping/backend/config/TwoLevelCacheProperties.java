@@ -0,0 +1,49 @@
+package com.dropshipping.backend.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "cache.two-level")
+@Getter
+@Setter
+public class TwoLevelCacheProperties {
+    /**
+     * Maximum number of entries per cache in the in-process L1.
+     */
+    private long localMaxSize = 10_000;
+
+    /**
+     * Time-to-live of L1 entries; bounds staleness if an invalidation message is missed.
+     */
+    private Duration localTtl = Duration.ofMinutes(5);
+
+    /**
+     * Redis pub/sub channel used to broadcast L1 invalidations to the other nodes.
+     */
+    private String invalidationChannel = "cache:invalidation";
+
+    /**
+     * Upper bound for an L2 read or put; a slower Redis is treated as a miss and the database is used.
+     */
+    private Duration remoteTimeout = Duration.ofMillis(100);
+
+    /**
+     * Threads used to run time-boxed L2 calls.
+     */
+    private int remoteThreads = 8;
+
+    /**
+     * Consecutive L2 failures/timeouts that open the circuit breaker; L2 is skipped while it is open.
+     */
+    private int failureThreshold = 5;
+
+    /**
+     * How long the breaker stays open before a trial call is let through.
+     */
+    private Duration openDuration = Duration.ofSeconds(30);
+}
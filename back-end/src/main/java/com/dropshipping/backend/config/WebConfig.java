@@ -0,0 +1,32 @@
+package com.dropshipping.backend.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Open EntityManager in view, registered here instead of through {@code spring.jpa.open-in-view} (disabled)
+ * so that endpoints calling Stripe or AWS can be left out: once used, the view EntityManager keeps its
+ * connection until the response is written, which would hold it across the outbound call. Those endpoints
+ * must return fully loaded data.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    private static final String[] OUTBOUND_CALL_PATHS = {
+            "/returns/*/refund"
+    };
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        OpenEntityManagerInViewInterceptor interceptor = new OpenEntityManagerInViewInterceptor();
+        interceptor.setEntityManagerFactory(entityManagerFactory);
+        registry.addWebRequestInterceptor(interceptor).excludePathPatterns(OUTBOUND_CALL_PATHS);
+    }
+}
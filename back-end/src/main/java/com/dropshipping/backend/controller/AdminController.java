@@ -1,9 +1,25 @@
 package com.dropshipping.backend.controller;
 
+import com.dropshipping.backend.config.OrderProperties;
+import com.dropshipping.backend.dto.ReconciliationBackfillRequest;
+import com.dropshipping.backend.service.ChargeMatchingService;
+import com.dropshipping.backend.service.FulfillmentDashboardStream;
 import com.dropshipping.backend.service.OrderService;
+import com.dropshipping.backend.service.ReconciliationBackfillService;
+import com.dropshipping.backend.service.StripeWebhookWorker;
+import com.dropshipping.backend.service.SupplierBuyListExportService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
@@ -14,6 +30,12 @@ import java.util.Map;
 public class AdminController {
 
     private final OrderService orderService;
+    private final FulfillmentDashboardStream fulfillmentDashboardStream;
+    private final ReconciliationBackfillService reconciliationBackfillService;
+    private final ChargeMatchingService chargeMatchingService;
+    private final StripeWebhookWorker stripeWebhookWorker;
+    private final SupplierBuyListExportService supplierBuyListExportService;
+    private final OrderProperties orderProperties;
 
     // Spec alias: GET /api/admin/supplier-buy-list?date=YYYY-MM-DD
     @GetMapping("/supplier-buy-list")
@@ -22,9 +44,73 @@ public class AdminController {
         return orderService.buildSupplierBuyList(d);
     }
 
+    // GET /api/admin/supplier-buy-list/export?date=YYYY-MM-DD&format=csv|pdf
+    // Written asynchronously with its own timeout (order.buy-list.export-timeout) instead of raising the
+    // async request timeout of every endpoint; the response is handled once the body has been written.
+    @GetMapping("/supplier-buy-list/export")
+    public WebAsyncTask<Void> exportSupplierBuyList(@RequestParam String date,
+                                                    @RequestParam(defaultValue = "csv") String format,
+                                                    HttpServletResponse response) {
+        LocalDate d = LocalDate.parse(date);
+        boolean pdf = "pdf".equalsIgnoreCase(format);
+        if (!pdf && !"csv".equalsIgnoreCase(format)) {
+            throw new IllegalArgumentException("Unsupported export format: " + format);
+        }
+        response.setContentType(pdf ? MediaType.APPLICATION_PDF_VALUE : new MediaType("text", "csv", StandardCharsets.UTF_8).toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("supplier-buy-list-" + d + (pdf ? ".pdf" : ".csv")).build().toString());
+        return new WebAsyncTask<>(orderProperties.getBuyList().getExportTimeout().toMillis(), () -> {
+            OutputStream out = response.getOutputStream();
+            if (pdf) {
+                supplierBuyListExportService.writePdf(d, out);
+            } else {
+                supplierBuyListExportService.writeCsv(d, out);
+            }
+            out.flush();
+            return null;
+        });
+    }
+
     // Spec alias: GET /api/admin/fulfillment-dashboard
     @GetMapping("/fulfillment-dashboard")
     public Map<String, Object> fulfillmentDashboard() {
         return orderService.buildFulfillmentDashboardSnapshot();
     }
+
+    // GET /api/admin/fulfillment-dashboard/stream (text/event-stream: snapshot, then delta events)
+    @GetMapping(path = "/fulfillment-dashboard/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter fulfillmentDashboardStream() {
+        return fulfillmentDashboardStream.subscribe();
+    }
+
+    // POST /api/admin/reconciliation/backfills { from: YYYY-MM-DD, to: YYYY-MM-DD }
+    @PostMapping("/reconciliation/backfills")
+    public ReconciliationBackfillService.BackfillProgress startBackfill(@RequestBody ReconciliationBackfillRequest req) {
+        return reconciliationBackfillService.start(req.getFrom(), req.getTo());
+    }
+
+    // GET /api/admin/reconciliation/backfills/{id}
+    @GetMapping("/reconciliation/backfills/{id}")
+    public ReconciliationBackfillService.BackfillProgress backfillProgress(@PathVariable Long id) {
+        return reconciliationBackfillService.progress(id);
+    }
+
+    // POST /api/admin/reconciliation/backfills/{id}/resume
+    @PostMapping("/reconciliation/backfills/{id}/resume")
+    public ReconciliationBackfillService.BackfillProgress resumeBackfill(@PathVariable Long id) {
+        return reconciliationBackfillService.resume(id);
+    }
+
+    // POST /api/admin/reconciliation/matches?date=YYYY-MM-DD
+    @PostMapping("/reconciliation/matches")
+    public List<ChargeMatchingService.MatchProposal> proposeChargeMatches(@RequestParam String date) {
+        return chargeMatchingService.proposeMatches(LocalDate.parse(date));
+    }
+
+    // POST /api/admin/stripe/webhook-events/{id}/retry - requeue a dead-lettered Stripe event
+    @PostMapping("/stripe/webhook-events/{id}/retry")
+    public ResponseEntity<Void> retryWebhookEvent(@PathVariable Long id) {
+        stripeWebhookWorker.retryDead(id);
+        return ResponseEntity.accepted().build();
+    }
 }
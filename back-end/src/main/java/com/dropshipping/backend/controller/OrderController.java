@@ -1,19 +1,24 @@
 package com.dropshipping.backend.controller;
 
 import com.dropshipping.backend.dto.CreateOrderRequest;
+import com.dropshipping.backend.dto.CursorPage;
+import com.dropshipping.backend.dto.OrderSummary;
 import com.dropshipping.backend.dto.UpdateOrderStatusRequest;
 import com.dropshipping.backend.dto.UpdateTrackingRequest;
 import com.dropshipping.backend.dto.ReviewDecisionRequest;
 import com.dropshipping.backend.entity.Order;
 import com.dropshipping.backend.entity.OrderItem;
 import com.dropshipping.backend.enums.OrderStatus;
+import com.dropshipping.backend.service.FulfillmentDashboardStream;
 import com.dropshipping.backend.service.OrderService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.net.URI;
 import java.time.LocalDate;
@@ -27,16 +32,25 @@ import java.util.Optional;
 public class OrderController {
 
     private final OrderService orderService;
+    private final FulfillmentDashboardStream fulfillmentDashboardStream;
 
     // GET /api/orders?page=0&size=10&status=PAYMENT_RECEIVED
     @GetMapping
-    public Page<Order> list(@RequestParam(defaultValue = "0") int page,
-                             @RequestParam(defaultValue = "10") int size,
-                             @RequestParam(required = false) OrderStatus status) {
+    public Page<OrderSummary> list(@RequestParam(defaultValue = "0") int page,
+                                    @RequestParam(defaultValue = "10") int size,
+                                    @RequestParam(required = false) OrderStatus status) {
         Pageable pageable = PageRequest.of(page, size);
         return orderService.listOrders(Optional.ofNullable(status), pageable);
     }
 
+    // GET /api/orders/cursor?size=50&status=PAYMENT_RECEIVED&cursor=<nextCursor of previous page>
+    @GetMapping("/cursor")
+    public CursorPage<OrderSummary> listByCursor(@RequestParam(defaultValue = "50") int size,
+                                                 @RequestParam(required = false) OrderStatus status,
+                                                 @RequestParam(required = false) String cursor) {
+        return orderService.listOrdersByCursor(Optional.ofNullable(status), cursor, size);
+    }
+
     // GET /api/orders/{id}
     @GetMapping("/{id}")
     public Order get(@PathVariable Long id) {
@@ -50,6 +64,12 @@ public class OrderController {
         return ResponseEntity.created(URI.create("/api/orders/" + created.getId())).body(created);
     }
 
+    // POST /api/orders/batch [ { ...CreateOrderRequest }, ... ]
+    @PostMapping("/batch")
+    public List<OrderService.BatchOrderResult> createBatch(@RequestBody List<CreateOrderRequest> requests) {
+        return orderService.createOrders(requests);
+    }
+
     // PATCH /api/orders/{id}/status
     @PatchMapping("/{id}/status")
     public Order updateStatus(@PathVariable Long id, @RequestBody UpdateOrderStatusRequest req) {
@@ -71,7 +91,7 @@ public class OrderController {
 
     // GET /api/orders/admin/requires-review
     @GetMapping("/admin/requires-review")
-    public List<Order> requiresReview() {
+    public List<OrderSummary> requiresReview() {
         return orderService.getOrdersRequiringReview();
     }
 
@@ -86,4 +106,10 @@ public class OrderController {
     public Map<String, Object> fulfillmentDashboard() {
         return orderService.buildFulfillmentDashboardSnapshot();
     }
+
+    // GET /api/orders/admin/fulfillment-dashboard/stream (text/event-stream: snapshot, then delta events)
+    @GetMapping(path = "/admin/fulfillment-dashboard/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter fulfillmentDashboardStream() {
+        return fulfillmentDashboardStream.subscribe();
+    }
 }
@@ -1,9 +1,11 @@
 package com.dropshipping.backend.controller;
 
+import com.dropshipping.backend.dto.BulkRefundRequest;
 import com.dropshipping.backend.dto.ReturnInitiateRequest;
 import com.dropshipping.backend.dto.ReturnRefundRequest;
 import com.dropshipping.backend.dto.UpdateTrackingRequest;
 import com.dropshipping.backend.entity.ReturnRequest;
+import com.dropshipping.backend.service.BulkRefundService;
 import com.dropshipping.backend.service.ReturnService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -18,6 +20,7 @@ import java.util.Map;
 public class ReturnController {
 
     private final ReturnService returnService;
+    private final BulkRefundService bulkRefundService;
 
     // POST /api/returns/initiate
     @PostMapping("/initiate")
@@ -44,6 +47,19 @@ public class ReturnController {
         return returnService.processRefund(id, req.getAmount(), req.getReason());
     }
 
+    // POST /api/returns/bulk-refunds
+    @PostMapping("/bulk-refunds")
+    public ResponseEntity<BulkRefundService.BulkRefundProgress> bulkRefund(@RequestBody BulkRefundRequest req) {
+        BulkRefundService.BulkRefundProgress job = bulkRefundService.start(req.getReturnIds(), req.getReason());
+        return ResponseEntity.accepted().location(URI.create("/api/returns/bulk-refunds/" + job.id())).body(job);
+    }
+
+    // GET /api/returns/bulk-refunds/{jobId}
+    @GetMapping("/bulk-refunds/{jobId}")
+    public BulkRefundService.BulkRefundProgress bulkRefundProgress(@PathVariable Long jobId) {
+        return bulkRefundService.progress(jobId);
+    }
+
     // GET /api/returns/analytics
     @GetMapping("/analytics")
     public Map<String, Object> analytics() {
@@ -1,12 +1,9 @@
 package com.dropshipping.backend.controller;
 
 import com.dropshipping.backend.config.StripeProperties;
-import com.dropshipping.backend.service.PaymentProcessingService;
+import com.dropshipping.backend.service.StripeWebhookInbox;
 import com.stripe.exception.SignatureVerificationException;
-import com.stripe.exception.StripeException;
-import com.stripe.model.Charge;
 import com.stripe.model.Event;
-import com.stripe.model.EventDataObjectDeserializer;
 import com.stripe.net.Webhook;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -20,7 +17,7 @@ import org.springframework.web.bind.annotation.*;
 public class StripeWebhookController {
 
     private final StripeProperties stripeProperties;
-    private final PaymentProcessingService paymentProcessingService;
+    private final StripeWebhookInbox stripeWebhookInbox;
 
     @PostMapping(value = "/stripe", consumes = "application/json")
     public ResponseEntity<String> handleStripeWebhook(@RequestBody String payload,
@@ -42,35 +39,18 @@ public class StripeWebhookController {
             return ResponseEntity.status(400).body("Invalid payload");
         }
 
-        String type = event.getType();
-        EventDataObjectDeserializer dataObjectDeserializer = event.getDataObjectDeserializer();
-
+        // Only store the event here; StripeWebhookWorker applies it asynchronously with retries
+        boolean stored;
         try {
-            switch (type) {
-                case "charge.succeeded" -> {
-                    if (dataObjectDeserializer.getObject().isPresent() && dataObjectDeserializer.getObject().get() instanceof Charge charge) {
-                        paymentProcessingService.recordChargeFromEvent(charge);
-                    }
-                }
-                case "charge.refunded" -> {
-                    // In a more complete implementation, update internal refund status or create a refund record
-                    log.info("Stripe event charge.refunded received");
-                }
-                case "charge.dispute.created" -> {
-                    if (dataObjectDeserializer.getObject().isPresent() && dataObjectDeserializer.getObject().get() instanceof Charge charge) {
-                        paymentProcessingService.handleDispute(charge.getId());
-                    } else {
-                        // If object is dispute itself, we could still log/handle by extracting charge id from event data
-                        log.warn("Dispute created event received but could not deserialize charge object.");
-                    }
-                }
-                default -> log.debug("Unhandled Stripe event type: {}", type);
-            }
+            stored = stripeWebhookInbox.accept(event, payload);
         } catch (Exception ex) {
-            log.error("Error handling Stripe webhook event {}: {}", type, ex.getMessage(), ex);
-            return ResponseEntity.internalServerError().body("Error handling event");
+            log.error("Could not store Stripe webhook event {}: {}", event.getId(), ex.getMessage(), ex);
+            return ResponseEntity.internalServerError().body("Error storing event");
         }
 
+        if (!stored) {
+            return ResponseEntity.ok("duplicate");
+        }
         return ResponseEntity.ok("received");
     }
 }
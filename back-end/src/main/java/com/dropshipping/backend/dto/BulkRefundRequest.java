@@ -0,0 +1,11 @@
+package com.dropshipping.backend.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkRefundRequest {
+    private List<Long> returnIds;
+    private String reason;
+}
@@ -0,0 +1,10 @@
+package com.dropshipping.backend.dto;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. {@code nextCursor} is an opaque continuation token to pass back
+ * as {@code cursor}; it is null on the last page. No total count is computed.
+ */
+public record CursorPage<T>(List<T> items, String nextCursor, boolean hasMore) {
+}
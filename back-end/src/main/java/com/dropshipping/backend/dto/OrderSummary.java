@@ -0,0 +1,34 @@
+package com.dropshipping.backend.dto;
+
+import com.dropshipping.backend.enums.OrderStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Read model for order listings: only the columns the dashboard shows plus the item count,
+ * so no items, addresses or full customer rows are loaded per order.
+ */
+public record OrderSummary(Long id,
+                           String orderNumber,
+                           OrderStatus status,
+                           BigDecimal totalAmount,
+                           BigDecimal netAmount,
+                           Boolean requiresReview,
+                           String reviewReason,
+                           LocalDateTime createdAt,
+                           CustomerSummary customer,
+                           long itemCount) {
+
+    public record CustomerSummary(Long id, String firstName, String lastName, String email) {}
+
+    /**
+     * Flat form used by the JPQL constructor expressions in OrderRepository.
+     */
+    public OrderSummary(Long id, String orderNumber, OrderStatus status, BigDecimal totalAmount, BigDecimal netAmount,
+                        Boolean requiresReview, String reviewReason, LocalDateTime createdAt,
+                        Long customerId, String firstName, String lastName, String email, Long itemCount) {
+        this(id, orderNumber, status, totalAmount, netAmount, requiresReview, reviewReason, createdAt,
+                new CustomerSummary(customerId, firstName, lastName, email), itemCount == null ? 0 : itemCount);
+    }
+}
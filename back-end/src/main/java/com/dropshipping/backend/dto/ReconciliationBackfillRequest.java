@@ -0,0 +1,11 @@
+package com.dropshipping.backend.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+public class ReconciliationBackfillRequest {
+    private LocalDate from;
+    private LocalDate to;
+}
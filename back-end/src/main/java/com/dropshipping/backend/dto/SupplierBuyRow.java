@@ -0,0 +1,21 @@
+package com.dropshipping.backend.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.math.BigDecimal;
+
+/**
+ * One order item of the supplier buy list with its supplier, order and product columns, read in a single
+ * query (see OrderItemRepository#findSupplierBuyRows).
+ */
+public record SupplierBuyRow(Long itemId,
+                             Long supplierId,
+                             String supplierName,
+                             String orderNumber,
+                             String sku,
+                             String productName,
+                             Integer quantity,
+                             BigDecimal unitPrice,
+                             JsonNode shippingAddress,
+                             String supplierConfirmationId) {
+}
@@ -3,7 +3,6 @@ package com.dropshipping.backend.entity;
 import com.fasterxml.jackson.databind.JsonNode;
 import jakarta.persistence.*;
 import lombok.Data;
-import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 
@@ -16,7 +15,8 @@ import java.time.LocalDateTime;
 public class AuditTrail {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "audit_trails_id_seq")
+    @SequenceGenerator(name = "audit_trails_id_seq", sequenceName = "audit_trails_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "entity_type", nullable = false, length = 50)
@@ -52,7 +52,7 @@ public class AuditTrail {
     @Column(name = "after_state", columnDefinition = "jsonb")
     private JsonNode afterState;
 
-    @CreationTimestamp
+    // Set by AuditTrailService when the entry is recorded; inserts may be deferred by the async writer
     @Column(name = "audit_timestamp")
     private LocalDateTime auditTimestamp;
 
@@ -15,7 +15,8 @@ import java.time.LocalDateTime;
 public class OrderCommunication {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_communications_id_seq")
+    @SequenceGenerator(name = "order_communications_id_seq", sequenceName = "order_communications_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false, fetch = FetchType.LAZY)
@@ -27,8 +28,7 @@ public class OrderCommunication {
 
     private String subject;
 
-    @Lob
-    @Column(nullable = false)
+    @Column(nullable = false, columnDefinition = "TEXT")
     private String content;
 
     @Column(name = "sender_email")
@@ -37,7 +37,7 @@ public class OrderCommunication {
     @Column(name = "recipient_email")
     private String recipientEmail;
 
-    @Column(name = "sentiment_score", precision = 5, scale = 2)
+    @Column(name = "sentiment_score", columnDefinition = "numeric(5,2)")
     private Double sentimentScore;
 
     @JdbcTypeCode(SqlTypes.JSON)
@@ -0,0 +1,26 @@
+package com.dropshipping.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "order_number_nodes")
+@Data
+public class OrderNumberNode {
+    // Rows 0-1023 are created by the migration; instances only lease them
+    @Id
+    @Column(name = "node_id")
+    private Integer nodeId;
+
+    @Column(length = 64)
+    private String owner;
+
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    // Milliseconds since the generator epoch up to which ids may have been handed out
+    @Column(name = "reserved_until", nullable = false)
+    private Long reservedUntil = 0L;
+}
@@ -14,13 +14,19 @@ import java.time.LocalDateTime;
 @Data
 public class Payment {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payments_id_seq")
+    @SequenceGenerator(name = "payments_id_seq", sequenceName = "payments_id_seq", allocationSize = 50)
     private Long id;
 
+    // Null for a charge not linked to an order yet (see PaymentOrderLinker and ChargeMatchingService)
     @ManyToOne
-    @JoinColumn(name = "order_id", nullable = false)
+    @JoinColumn(name = "order_id")
     private Order order;
 
+    // Order id from the charge metadata while that order could not be found
+    @Column(name = "stripe_order_ref")
+    private Long stripeOrderRef;
+
     @Column(name = "stripe_payment_intent_id", unique = true)
     private String stripePaymentIntentId;
 
@@ -40,6 +46,13 @@ public class Payment {
     @Column(name = "fee_amount", precision = 10, scale = 2)
     private BigDecimal feeAmount = BigDecimal.ZERO;
 
+    // Estimated fee, replaced by the balance transaction's actual fee by StripeFeeEnrichmentService
+    @Column(name = "fee_provisional", nullable = false)
+    private Boolean feeProvisional = false;
+
+    @Column(name = "stripe_balance_transaction_id")
+    private String stripeBalanceTransactionId;
+
     @Column(name = "net_amount", nullable = false, precision = 10, scale = 2)
     private BigDecimal netAmount;
 
@@ -13,7 +13,8 @@ import java.time.LocalDateTime;
 public class PriceHistory {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "price_history_id_seq")
+    @SequenceGenerator(name = "price_history_id_seq", sequenceName = "price_history_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false, fetch = FetchType.LAZY)
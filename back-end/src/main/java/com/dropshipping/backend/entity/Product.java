@@ -12,7 +12,8 @@ import java.time.LocalDateTime;
 @Data
 public class Product {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_id_seq")
+    @SequenceGenerator(name = "products_id_seq", sequenceName = "products_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -31,10 +32,10 @@ public class Product {
     @JoinColumn(name = "backup_supplier_id")
     private Supplier backupSupplier;
 
-    @Column(name = "supplier_price", nullable = false, precision = 10, scale = 2)
+    @Column(name = "supplier_price", nullable = false, columnDefinition = "numeric(10,2)")
     private Double supplierPrice;
 
-    @Column(name = "selling_price", nullable = false, precision = 10, scale = 2)
+    @Column(name = "selling_price", nullable = false, columnDefinition = "numeric(10,2)")
     private Double sellingPrice;
 
     @Column(name = "current_stock")
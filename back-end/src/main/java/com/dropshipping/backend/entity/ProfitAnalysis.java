@@ -13,7 +13,8 @@ import java.time.LocalDateTime;
 public class ProfitAnalysis {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "profit_analysis_id_seq")
+    @SequenceGenerator(name = "profit_analysis_id_seq", sequenceName = "profit_analysis_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false, fetch = FetchType.LAZY)
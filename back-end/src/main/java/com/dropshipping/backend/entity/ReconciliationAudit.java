@@ -5,6 +5,7 @@ import lombok.Data;
 import org.hibernate.annotations.CreationTimestamp;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
@@ -13,12 +14,19 @@ import java.time.LocalDateTime;
 public class ReconciliationAudit {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reconciliation_audit_id_seq")
+    @SequenceGenerator(name = "reconciliation_audit_id_seq", sequenceName = "reconciliation_audit_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "stripe_charge_id", nullable = false, length = 255)
     private String stripeChargeId;
 
+    @Column(name = "payment_id")
+    private Long paymentId;
+
+    @Column(name = "reconciliation_date")
+    private LocalDate reconciliationDate;
+
     @ManyToOne
     @JoinColumn(name = "supplier_receipt_id")
     private SupplierReceipt supplierReceipt;
@@ -32,10 +40,16 @@ public class ReconciliationAudit {
     @Column(name = "discrepancy_amount", precision = 10, scale = 2)
     private BigDecimal discrepancyAmount;
 
-    @Lob
-    @Column(name = "discrepancy_reason")
+    @Column(name = "discrepancy_reason", columnDefinition = "TEXT")
     private String discrepancyReason;
 
+    // Proposed match for an unattached charge; confidence is 0..1
+    @Column(name = "matched_order_id")
+    private Long matchedOrderId;
+
+    @Column(name = "match_confidence", precision = 4, scale = 3)
+    private BigDecimal matchConfidence;
+
     @Column(name = "reconciled_at")
     private LocalDateTime reconciledAt;
 
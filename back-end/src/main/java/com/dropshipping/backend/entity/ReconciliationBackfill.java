@@ -0,0 +1,34 @@
+package com.dropshipping.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "reconciliation_backfills")
+@Data
+public class ReconciliationBackfill {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reconciliation_backfills_id_seq")
+    @SequenceGenerator(name = "reconciliation_backfills_id_seq", sequenceName = "reconciliation_backfills_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "start_date", nullable = false)
+    private LocalDate startDate;
+
+    @Column(name = "end_date", nullable = false)
+    private LocalDate endDate;
+
+    @Column(nullable = false, length = 20)
+    private String status = "RUNNING"; // RUNNING, COMPLETED, FAILED
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+}
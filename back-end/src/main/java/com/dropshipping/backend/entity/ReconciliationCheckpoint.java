@@ -0,0 +1,51 @@
+package com.dropshipping.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "reconciliation_checkpoints")
+@Data
+public class ReconciliationCheckpoint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reconciliation_checkpoints_id_seq")
+    @SequenceGenerator(name = "reconciliation_checkpoints_id_seq", sequenceName = "reconciliation_checkpoints_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "backfill_id", nullable = false)
+    private Long backfillId;
+
+    @Column(name = "reconciliation_date", nullable = false)
+    private LocalDate reconciliationDate;
+
+    @Column(nullable = false, length = 20)
+    private String status = "PENDING"; // PENDING, RUNNING, DONE, FAILED
+
+    // Keyset position: payments up to and including (last_created_at, last_payment_id) are reconciled for the day
+    @Column(name = "last_created_at")
+    private LocalDateTime lastCreatedAt;
+
+    @Column(name = "last_payment_id", nullable = false)
+    private Long lastPaymentId = 0L;
+
+    @Column(name = "charges_processed", nullable = false)
+    private Long chargesProcessed = 0L;
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+
+    // Instance working on the day while its lease lasts
+    @Column(length = 64)
+    private String owner;
+
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,34 @@
+package com.dropshipping.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "refund_jobs")
+@Data
+public class RefundJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "refund_jobs_id_seq")
+    @SequenceGenerator(name = "refund_jobs_id_seq", sequenceName = "refund_jobs_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, length = 20)
+    private String status = "RUNNING"; // RUNNING, COMPLETED
+
+    // Refund reason sent with every refund of the job
+    @Column(length = 500)
+    private String reason;
+
+    @Column(name = "total_items", nullable = false)
+    private Integer totalItems;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+}
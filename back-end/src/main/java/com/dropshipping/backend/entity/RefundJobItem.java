@@ -0,0 +1,41 @@
+package com.dropshipping.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "refund_job_items")
+@Data
+public class RefundJobItem {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "refund_job_items_id_seq")
+    @SequenceGenerator(name = "refund_job_items_id_seq", sequenceName = "refund_job_items_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+
+    @Column(name = "return_id", nullable = false)
+    private Long returnId;
+
+    @Column(nullable = false, length = 20)
+    private String status = "PENDING"; // PENDING, PROCESSING, SUCCEEDED, FAILED
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    // Lease of the worker refunding the item; an expired lease makes the item claimable again
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+}
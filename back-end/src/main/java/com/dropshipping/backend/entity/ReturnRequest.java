@@ -12,15 +12,15 @@ import java.time.LocalDateTime;
 @Data
 public class ReturnRequest {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "returns_id_seq")
+    @SequenceGenerator(name = "returns_id_seq", sequenceName = "returns_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @JoinColumn(name = "order_item_id", nullable = false)
     private OrderItem orderItem;
 
-    @Lob
-    @Column(name = "return_reason", nullable = false)
+    @Column(name = "return_reason", nullable = false, columnDefinition = "TEXT")
     private String returnReason;
 
     @Column(name = "return_status", length = 50)
@@ -32,6 +32,25 @@ public class ReturnRequest {
     @Column(name = "refund_status", length = 50)
     private String refundStatus; // PENDING, COMPLETED, FAILED
 
+    // Refund intent, recorded before Stripe is called; reused as is while the refund is PENDING
+    @Column(name = "refund_payment_id")
+    private Long refundPaymentId;
+
+    @Column(name = "refund_reason", length = 500)
+    private String refundReason;
+
+    @Column(name = "refund_idempotency_key", length = 100)
+    private String refundIdempotencyKey;
+
+    @Column(name = "refund_requested_at")
+    private LocalDateTime refundRequestedAt;
+
+    @Column(name = "stripe_refund_id")
+    private String stripeRefundId;
+
+    @Column(name = "refund_error", length = 1000)
+    private String refundError;
+
     @Column(name = "tracking_number", length = 100)
     private String trackingNumber;
 
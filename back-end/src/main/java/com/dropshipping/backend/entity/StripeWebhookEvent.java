@@ -0,0 +1,51 @@
+package com.dropshipping.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "stripe_webhook_events")
+@Data
+public class StripeWebhookEvent {
+    // Inserted only by StripeWebhookEventRepository.insertIfAbsent, which takes the column default
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "event_id", nullable = false, unique = true)
+    private String eventId;
+
+    @Column(name = "event_type", nullable = false, length = 100)
+    private String eventType;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    // PaymentIntent or charge id; events with the same key are processed in id order
+    @Column(name = "ordering_key")
+    private String orderingKey;
+
+    @Column(nullable = false, length = 20)
+    private String status = "PENDING"; // PENDING, PROCESSING, DONE, DEAD
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    // Lease of the worker processing the event; an expired lease makes the event claimable again
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "received_at", nullable = false)
+    private LocalDateTime receivedAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+}
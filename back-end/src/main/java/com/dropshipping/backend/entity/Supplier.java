@@ -12,7 +12,8 @@ import java.time.LocalDateTime;
 @Data
 public class Supplier {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "suppliers_id_seq")
+    @SequenceGenerator(name = "suppliers_id_seq", sequenceName = "suppliers_id_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -30,7 +31,7 @@ public class Supplier {
     @Column(name = "api_key")
     private String apiKey;
 
-    @Column(name = "performance_score", precision = 5, scale = 2)
+    @Column(name = "performance_score", columnDefinition = "numeric(5,2)")
     private Double performanceScore = 100.00;
 
     @Column(name = "is_active")
@@ -13,7 +13,8 @@ import java.time.LocalDateTime;
 public class SupplierPerformance {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "supplier_performance_id_seq")
+    @SequenceGenerator(name = "supplier_performance_id_seq", sequenceName = "supplier_performance_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false, fetch = FetchType.LAZY)
@@ -29,19 +30,19 @@ public class SupplierPerformance {
     @Column(name = "total_orders")
     private Integer totalOrders = 0;
 
-    @Column(name = "on_time_delivery_rate", precision = 5, scale = 2)
+    @Column(name = "on_time_delivery_rate", columnDefinition = "numeric(5,2)")
     private Double onTimeDeliveryRate = 0.0;
 
-    @Column(name = "order_accuracy_rate", precision = 5, scale = 2)
+    @Column(name = "order_accuracy_rate", columnDefinition = "numeric(5,2)")
     private Double orderAccuracyRate = 0.0;
 
-    @Column(name = "communication_score", precision = 5, scale = 2)
+    @Column(name = "communication_score", columnDefinition = "numeric(5,2)")
     private Double communicationScore = 0.0;
 
-    @Column(name = "price_competitiveness", precision = 5, scale = 2)
+    @Column(name = "price_competitiveness", columnDefinition = "numeric(5,2)")
     private Double priceCompetitiveness = 0.0;
 
-    @Column(name = "overall_score", precision = 5, scale = 2)
+    @Column(name = "overall_score", columnDefinition = "numeric(5,2)")
     private Double overallScore = 0.0;
 
     @CreationTimestamp
@@ -16,7 +16,8 @@ import java.time.LocalDateTime;
 @Data
 public class SupplierReceipt {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "supplier_receipts_id_seq")
+    @SequenceGenerator(name = "supplier_receipts_id_seq", sequenceName = "supplier_receipts_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false)
@@ -1,10 +1,31 @@
 package com.dropshipping.backend.repository;
 
+import com.dropshipping.backend.cache.CacheNames;
 import com.dropshipping.backend.entity.Customer;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
     Optional<Customer> findByEmail(String email);
+
+    // Writes evict the two-level cache (read through CachedLookups) so every node drops its copy after commit.
+    // findById stays uncached: callers modify and save what it returns
+    @Override
+    @CacheEvict(cacheNames = CacheNames.CUSTOMERS, key = "#result.id")
+    <S extends Customer> S save(S entity);
+
+    @Override
+    @CacheEvict(cacheNames = CacheNames.CUSTOMERS, allEntries = true)
+    <S extends Customer> List<S> saveAll(Iterable<S> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CacheNames.CUSTOMERS, key = "#p0")
+    void deleteById(Long id);
+
+    @Override
+    @CacheEvict(cacheNames = CacheNames.CUSTOMERS, key = "#p0.id")
+    void delete(Customer entity);
 }
@@ -1,15 +1,57 @@
 package com.dropshipping.backend.repository;
 
+import com.dropshipping.backend.dto.SupplierBuyRow;
 import com.dropshipping.backend.entity.OrderItem;
 import com.dropshipping.backend.entity.Supplier;
 import com.dropshipping.backend.enums.ShipmentStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
     List<OrderItem> findAllByCreatedAtBetween(LocalDateTime start, LocalDateTime end);
     List<OrderItem> findAllBySupplier(Supplier supplier);
     List<OrderItem> findAllByShipmentStatus(ShipmentStatus status);
+
+    @Query("select oi.order.id from OrderItem oi where oi.id = :id")
+    Optional<Long> findOrderIdById(@Param("id") Long id);
+
+    // Duplicate check fallback: an order item of the customer for the product/supplier pair since the given
+    // time (supplier id -1 stands for items without a supplier)
+    @Query("select count(oi) > 0 from OrderItem oi join oi.order o left join oi.supplier s " +
+            "where o.customer.id = :customerId and oi.product.id = :productId " +
+            "and (s.id = :supplierId or (s.id is null and :supplierId = -1)) and o.createdAt >= :since")
+    boolean existsRecentItem(@Param("customerId") Long customerId,
+                             @Param("productId") Long productId,
+                             @Param("supplierId") Long supplierId,
+                             @Param("since") LocalDateTime since);
+
+    // Supplier buy list: every column the buy list needs in one round trip, rows of a supplier contiguous
+    String SUPPLIER_BUY_ROWS = "select new com.dropshipping.backend.dto.SupplierBuyRow(" +
+            "oi.id, s.id, s.name, o.orderNumber, p.sku, p.name, oi.quantity, oi.unitPrice, o.shippingAddress, oi.supplierConfirmationId) " +
+            "from OrderItem oi join oi.supplier s join oi.order o join oi.product p " +
+            "where oi.createdAt >= :start and oi.createdAt < :end ";
+    String SUPPLIER_BUY_ORDER = " order by s.name, s.id, oi.id";
+
+    @Query(SUPPLIER_BUY_ROWS + SUPPLIER_BUY_ORDER)
+    List<SupplierBuyRow> findSupplierBuyRows(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // Keyset pages of the same rows for exports, continuing after the (supplier name, supplier id, item id)
+    // of the previous page's last row; pass PageRequest.of(0, size) only to bound the number of rows
+    @Query(SUPPLIER_BUY_ROWS + SUPPLIER_BUY_ORDER)
+    List<SupplierBuyRow> findFirstSupplierBuyRows(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
+                                                  Pageable limit);
+
+    @Query(SUPPLIER_BUY_ROWS + "and (s.name > :supplierName or (s.name = :supplierName and " +
+            "(s.id > :supplierId or (s.id = :supplierId and oi.id > :itemId))))" + SUPPLIER_BUY_ORDER)
+    List<SupplierBuyRow> findSupplierBuyRowsAfter(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
+                                                  @Param("supplierName") String supplierName,
+                                                  @Param("supplierId") Long supplierId,
+                                                  @Param("itemId") Long itemId,
+                                                  Pageable limit);
 }
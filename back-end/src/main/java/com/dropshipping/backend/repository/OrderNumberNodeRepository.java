@@ -0,0 +1,43 @@
+package com.dropshipping.backend.repository;
+
+import com.dropshipping.backend.entity.OrderNumberNode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface OrderNumberNodeRepository extends JpaRepository<OrderNumberNode, Integer> {
+
+    // A node id nobody holds (or whose holder stopped renewing); ids being claimed by another instance
+    // are skipped instead of waited for
+    @Query(value = "select * from order_number_nodes " +
+            "where owner is null or lease_expires_at < :now " +
+            "order by node_id limit 1 for update skip locked",
+            nativeQuery = true)
+    Optional<OrderNumberNode> lockFree(@Param("now") LocalDateTime now);
+
+    @Query(value = "select * from order_number_nodes " +
+            "where node_id = :nodeId and (owner is null or owner = :owner or lease_expires_at < :now) " +
+            "for update",
+            nativeQuery = true)
+    Optional<OrderNumberNode> lockIfFree(@Param("nodeId") int nodeId,
+                                         @Param("owner") String owner,
+                                         @Param("now") LocalDateTime now);
+
+    // 0 when the lease was lost to another instance
+    @Modifying
+    @Query("update OrderNumberNode n set n.leaseExpiresAt = :leaseUntil, " +
+            "n.reservedUntil = case when n.reservedUntil < :reservedUntil then :reservedUntil else n.reservedUntil end " +
+            "where n.nodeId = :nodeId and n.owner = :owner")
+    int renew(@Param("nodeId") int nodeId,
+              @Param("owner") String owner,
+              @Param("leaseUntil") LocalDateTime leaseUntil,
+              @Param("reservedUntil") long reservedUntil);
+
+    @Modifying
+    @Query("update OrderNumberNode n set n.owner = null, n.leaseExpiresAt = null where n.nodeId = :nodeId and n.owner = :owner")
+    int release(@Param("nodeId") int nodeId, @Param("owner") String owner);
+}
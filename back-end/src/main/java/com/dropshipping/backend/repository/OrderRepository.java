@@ -1,23 +1,125 @@
 package com.dropshipping.backend.repository;
 
+import com.dropshipping.backend.dto.OrderSummary;
 import com.dropshipping.backend.entity.Order;
 import com.dropshipping.backend.enums.OrderStatus;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
+    @Query("select o.id from Order o where o.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
     List<Order> findAllByCreatedAtBetween(LocalDateTime start, LocalDateTime end);
     List<Order> findAllByStatusAndCreatedAtBetween(OrderStatus status, LocalDateTime start, LocalDateTime end);
 
     // Paging helpers
     Page<Order> findAllByStatus(OrderStatus status, Pageable pageable);
 
+    // Summary projections for listings: one query per page. Item counts come from a correlated subquery
+    // (evaluated for the page's rows only), so the plan can walk the (created_at, id) indexes in order and
+    // stop after the page instead of aggregating all matching orders first.
+    String SUMMARY_SELECT = "select new com.dropshipping.backend.dto.OrderSummary(" +
+            "o.id, o.orderNumber, o.status, o.totalAmount, o.netAmount, o.requiresReview, o.reviewReason, o.createdAt, " +
+            "c.id, c.firstName, c.lastName, c.email, (select count(oi) from OrderItem oi where oi.order = o)) " +
+            "from Order o join o.customer c ";
+    String SUMMARY_ORDER = " order by o.createdAt desc, o.id desc";
+    String KEYSET_AFTER = "(o.createdAt < :createdAt or (o.createdAt = :createdAt and o.id < :id))";
+
+    @Query(value = SUMMARY_SELECT + SUMMARY_ORDER,
+            countQuery = "select count(o) from Order o")
+    Page<OrderSummary> findSummaries(Pageable pageable);
+
+    @Query(value = SUMMARY_SELECT + "where o.status = :status" + SUMMARY_ORDER,
+            countQuery = "select count(o) from Order o where o.status = :status")
+    Page<OrderSummary> findSummariesByStatus(@Param("status") OrderStatus status, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "where o.requiresReview = true" + SUMMARY_ORDER)
+    List<OrderSummary> findSummariesRequiringReview();
+
+    // Keyset (cursor) paging on (created_at DESC, id DESC); List results skip the COUNT query,
+    // pass PageRequest.of(0, limit) only to bound the number of rows
+    @Query(SUMMARY_SELECT + SUMMARY_ORDER)
+    List<OrderSummary> findFirstSummaries(Pageable limit);
+
+    @Query(SUMMARY_SELECT + "where o.status = :status" + SUMMARY_ORDER)
+    List<OrderSummary> findFirstSummariesByStatus(@Param("status") OrderStatus status, Pageable limit);
+
+    @Query(SUMMARY_SELECT + "where " + KEYSET_AFTER + SUMMARY_ORDER)
+    List<OrderSummary> findSummariesAfter(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable limit);
+
+    @Query(SUMMARY_SELECT + "where o.status = :status and " + KEYSET_AFTER + SUMMARY_ORDER)
+    List<OrderSummary> findSummariesByStatusAfter(@Param("status") OrderStatus status, @Param("createdAt") LocalDateTime createdAt,
+                                                  @Param("id") Long id, Pageable limit);
+
+    // Fulfillment dashboard: every count in one round trip, one row per (metric, bucket)
+    interface DashboardCount {
+        String getMetric();
+        String getBucket();
+        Long getTotal();
+    }
+
+    @Query(value = "select 'ORDER_STATUS' as metric, cast(status as text) as bucket, count(*) as total " +
+            "from orders group by status " +
+            "union all " +
+            "select 'SHIPMENT_STATUS', cast(shipment_status as text), count(*) " +
+            "from order_items where shipment_status in ('PENDING', 'DELAYED') group by shipment_status " +
+            "union all " +
+            "select 'REQUIRES_REVIEW', cast(null as text), count(*) from orders where requires_review " +
+            "union all " +
+            "select 'RECONCILIATIONS', cast(null as text), count(*) " +
+            "from reconciliation_audit where created_at >= :start and created_at < :end",
+            nativeQuery = true)
+    List<DashboardCount> countForDashboard(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // Dashboard counter deltas are stamped with their transaction id and compared with the snapshot the
+    // aggregate above was read in
+    @Query(value = "select txid_current()", nativeQuery = true)
+    long currentTransactionId();
+
+    @Query(value = "select cast(txid_current_snapshot() as text)", nativeQuery = true)
+    String currentSnapshot();
+
+    // Serializes status and review transitions of an order, so the previous state a dashboard delta is
+    // computed from is the committed one
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<Order> findWithLockById(Long id);
+
     // Review/metrics helpers
     List<Order> findAllByRequiresReviewTrue();
     List<Order> findAllByStatus(OrderStatus status);
     long countByStatus(OrderStatus status);
+
+    // Charge matching: orders without a completed payment, their total and expected supplier cost.
+    // Orders already proposed for a charge of another day are left out.
+    interface MatchCandidate {
+        Long getOrderId();
+        BigDecimal getTotalAmount();
+        LocalDateTime getCreatedAt();
+        BigDecimal getExpectedCost();
+    }
+
+    @Query(value = "select o.id as \"orderId\", o.total_amount as \"totalAmount\", o.created_at as \"createdAt\", " +
+            "(select coalesce(sum(oi.quantity * pr.supplier_price), 0) from order_items oi " +
+            "  join products pr on pr.id = oi.product_id where oi.order_id = o.id) as \"expectedCost\" " +
+            "from orders o where o.created_at >= :start and o.created_at < :end " +
+            "and not exists (select 1 from payments p where p.order_id = o.id and p.status = 'COMPLETED') " +
+            "and not exists (select 1 from reconciliation_audit ra " +
+            "  where ra.matched_order_id = o.id and ra.reconciliation_date <> :date)",
+            nativeQuery = true)
+    List<MatchCandidate> findMatchCandidates(@Param("start") LocalDateTime start,
+                                             @Param("end") LocalDateTime end,
+                                             @Param("date") LocalDate date);
 }
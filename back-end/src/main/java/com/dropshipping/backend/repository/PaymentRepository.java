@@ -3,9 +3,15 @@ package com.dropshipping.backend.repository;
 import com.dropshipping.backend.entity.Payment;
 import com.dropshipping.backend.enums.PaymentStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
@@ -14,4 +20,112 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     List<Payment> findAllByStatus(PaymentStatus status);
     List<Payment> findAllByOrder_Id(Long orderId);
     List<Payment> findAllByStatusAndCreatedAtBetween(PaymentStatus status, LocalDateTime start, LocalDateTime end);
+    List<Payment> findAllByStripeChargeIdInAndFeeProvisionalTrue(Collection<String> chargeIds);
+
+    // Provisional fees older than the cutoff keep their estimate and no longer widen the lookup window
+    @Query("select min(p.createdAt) from Payment p where p.feeProvisional = true and p.createdAt >= :cutoff")
+    LocalDateTime findOldestProvisionalFeeCreatedAt(@Param("cutoff") LocalDateTime cutoff);
+
+    // Set-based reconciliation. Payment rows are locked first (FOR UPDATE) so nightly chunks, backfills and
+    // incremental recomputes of the same payment serialize while they replace its result rows.
+    // Chunks page on (created_at, id), the order of idx_payments_status_created_at, so each chunk is an
+    // index range scan that starts where the previous one stopped.
+    String COMPLETED_OF_DAY = "from payments p where p.status = 'COMPLETED' " +
+            "and p.created_at >= :start and p.created_at < :end " +
+            "and (p.created_at, p.id) > (:afterCreatedAt, :afterId) ";
+
+    String CHUNK_KEY = "select p.id as \"id\", p.created_at as \"createdAt\" ";
+
+    String CHUNK_ORDER = "order by p.created_at, p.id limit :limit for update of p";
+
+    // Keyset position of a reconciled payment
+    interface ChunkKey {
+        Long getId();
+        LocalDateTime getCreatedAt();
+    }
+
+    @Query(value = CHUNK_KEY + COMPLETED_OF_DAY + CHUNK_ORDER, nativeQuery = true)
+    List<ChunkKey> lockReconciliationChunk(@Param("start") LocalDateTime start,
+                                           @Param("end") LocalDateTime end,
+                                           @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                           @Param("afterId") long afterId,
+                                           @Param("limit") int limit);
+
+    // Verification sweep: only the day's charges that have no reconciliation result yet
+    @Query(value = CHUNK_KEY + COMPLETED_OF_DAY +
+            "and not exists (select 1 from reconciliation_audit ra " +
+            "  where ra.payment_id = p.id and ra.reconciliation_date = cast(p.created_at as date)) " +
+            CHUNK_ORDER, nativeQuery = true)
+    List<ChunkKey> lockUnreconciledChunk(@Param("start") LocalDateTime start,
+                                         @Param("end") LocalDateTime end,
+                                         @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                         @Param("afterId") long afterId,
+                                         @Param("limit") int limit);
+
+    @Query(value = "select p.id from payments p where p.status = 'COMPLETED' " +
+            "and (p.order_id in (:orderIds) or p.id in (:paymentIds)) order by p.id for update of p", nativeQuery = true)
+    List<Long> lockForReconciliation(@Param("orderIds") Collection<Long> orderIds,
+                                     @Param("paymentIds") Collection<Long> paymentIds);
+
+    // Each charge with its order's item count and the total of supplier receipts dated on the charge's day
+    interface ReconciliationRow {
+        Long getPaymentId();
+        String getStripeChargeId();
+        BigDecimal getAmount();
+        Long getOrderId();
+        LocalDate getReconciliationDate();
+        Long getItemCount();
+        BigDecimal getSupplierTotal();
+    }
+
+    @Query(value = "select p.id as \"paymentId\", p.stripe_charge_id as \"stripeChargeId\", p.amount as \"amount\", " +
+            "p.order_id as \"orderId\", cast(p.created_at as date) as \"reconciliationDate\", " +
+            "r.item_count as \"itemCount\", r.receipt_total as \"supplierTotal\" " +
+            "from payments p " +
+            "left join lateral (" +
+            "  select count(distinct oi.id) as item_count, coalesce(sum(sr.amount), 0) as receipt_total " +
+            "  from order_items oi " +
+            "  left join supplier_receipts sr on sr.order_item_id = oi.id and sr.receipt_date = cast(p.created_at as date) " +
+            "  where oi.order_id = p.order_id" +
+            ") r on true " +
+            "where p.id in (:paymentIds) " +
+            "order by p.id",
+            nativeQuery = true)
+    List<ReconciliationRow> findReconciliationRows(@Param("paymentIds") Collection<Long> paymentIds);
+
+    // Charge matching: the day's completed charges that are not linked to an order
+    interface UnattachedCharge {
+        Long getPaymentId();
+        BigDecimal getAmount();
+        LocalDateTime getCreatedAt();
+    }
+
+    @Query(value = "select p.id as \"paymentId\", p.amount as \"amount\", p.created_at as \"createdAt\" " +
+            "from payments p where p.order_id is null and p.status = 'COMPLETED' " +
+            "and p.created_at >= :start and p.created_at < :end",
+            nativeQuery = true)
+    List<UnattachedCharge> findUnattachedCharges(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // Late linking: charges stored without an order whose metadata named an order that was not visible yet
+    interface UnlinkedCharge {
+        Long getPaymentId();
+        Long getOrderRef();
+    }
+
+    @Query(value = "select p.id as \"paymentId\", p.stripe_order_ref as \"orderRef\" from payments p " +
+            "where p.order_id is null and p.stripe_order_ref is not null " +
+            "and p.created_at >= :since and p.id > :afterId " +
+            "order by p.id limit :limit",
+            nativeQuery = true)
+    List<UnlinkedCharge> findUnlinkedCharges(@Param("since") LocalDateTime since,
+                                             @Param("afterId") long afterId,
+                                             @Param("limit") int limit);
+
+    // One statement per batch; rows linked concurrently (order_id set meanwhile) are left alone
+    @Modifying
+    @Query(value = "update payments p set order_id = l.order_id, stripe_order_ref = null, updated_at = now() " +
+            "from unnest(cast(:paymentIds as bigint[]), cast(:orderIds as bigint[])) as l(payment_id, order_id) " +
+            "where p.id = l.payment_id and p.order_id is null",
+            nativeQuery = true)
+    int linkOrders(@Param("paymentIds") Long[] paymentIds, @Param("orderIds") Long[] orderIds);
 }
@@ -1,10 +1,38 @@
 package com.dropshipping.backend.repository;
 
+import com.dropshipping.backend.cache.CacheNames;
 import com.dropshipping.backend.entity.Product;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
     Optional<Product> findBySku(String sku);
+
+    // Bulk lookup that loads both supplier associations in the same round trip
+    @Query("select p from Product p left join fetch p.supplier left join fetch p.backupSupplier where p.id in :ids")
+    List<Product> findAllWithSuppliersByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Writes evict the two-level cache (read through CachedLookups) so every node drops its copy after commit.
+    // findById stays uncached: callers modify and save what it returns
+    @Override
+    @CacheEvict(cacheNames = CacheNames.PRODUCTS, key = "#result.id")
+    <S extends Product> S save(S entity);
+
+    @Override
+    @CacheEvict(cacheNames = CacheNames.PRODUCTS, allEntries = true)
+    <S extends Product> List<S> saveAll(Iterable<S> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CacheNames.PRODUCTS, key = "#p0")
+    void deleteById(Long id);
+
+    @Override
+    @CacheEvict(cacheNames = CacheNames.PRODUCTS, key = "#p0.id")
+    void delete(Product entity);
 }
@@ -2,10 +2,41 @@ package com.dropshipping.backend.repository;
 
 import com.dropshipping.backend.entity.ReconciliationAudit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface ReconciliationAuditRepository extends JpaRepository<ReconciliationAudit, Long> {
     List<ReconciliationAudit> findAllByCreatedAtBetween(LocalDateTime start, LocalDateTime end);
+    List<ReconciliationAudit> findAllByReconciliationDateAndPaymentIdIn(LocalDate date, Collection<Long> paymentIds);
+
+    // Match proposals are written by charge matching, not by reconciliation; replacing a payment's result
+    // rows carries them over
+    interface MatchProposal {
+        Long getPaymentId();
+        Long getMatchedOrderId();
+        BigDecimal getMatchConfidence();
+        Long getSupplierReceiptId();
+        BigDecimal getSupplierAmount();
+        BigDecimal getDiscrepancyAmount();
+        String getDiscrepancyReason();
+    }
+
+    @Query("select ra.paymentId as paymentId, ra.matchedOrderId as matchedOrderId, ra.matchConfidence as matchConfidence, " +
+            "sr.id as supplierReceiptId, ra.supplierAmount as supplierAmount, ra.discrepancyAmount as discrepancyAmount, " +
+            "ra.discrepancyReason as discrepancyReason " +
+            "from ReconciliationAudit ra left join ra.supplierReceipt sr " +
+            "where ra.reconciliationDate = :date and ra.paymentId in :paymentIds and ra.matchedOrderId is not null")
+    List<MatchProposal> findMatchProposals(@Param("date") LocalDate date, @Param("paymentIds") Collection<Long> paymentIds);
+
+    // Re-reconciling a day replaces the previous result rows of its payments
+    @Modifying
+    @Query("delete from ReconciliationAudit ra where ra.reconciliationDate = :date and ra.paymentId in :paymentIds")
+    int deleteForPayments(@Param("date") LocalDate date, @Param("paymentIds") Collection<Long> paymentIds);
 }
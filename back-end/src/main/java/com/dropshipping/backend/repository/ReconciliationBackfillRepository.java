@@ -0,0 +1,10 @@
+package com.dropshipping.backend.repository;
+
+import com.dropshipping.backend.entity.ReconciliationBackfill;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface ReconciliationBackfillRepository extends JpaRepository<ReconciliationBackfill, Long> {
+    List<ReconciliationBackfill> findAllByStatus(String status);
+}
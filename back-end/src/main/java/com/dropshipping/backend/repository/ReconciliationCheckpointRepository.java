@@ -0,0 +1,39 @@
+package com.dropshipping.backend.repository;
+
+import com.dropshipping.backend.entity.ReconciliationCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface ReconciliationCheckpointRepository extends JpaRepository<ReconciliationCheckpoint, Long> {
+    List<ReconciliationCheckpoint> findAllByBackfillIdOrderByReconciliationDate(Long backfillId);
+    List<ReconciliationCheckpoint> findAllByBackfillIdAndStatusIn(Long backfillId, Collection<String> statuses);
+    long countByBackfillIdAndStatusIn(Long backfillId, Collection<String> statuses);
+
+    // A day in one of the given statuses, or one left RUNNING by an instance whose lease expired; a day
+    // being claimed by another instance is skipped instead of waited for
+    @Query(value = "select * from reconciliation_checkpoints c " +
+            "where c.id = :id and (c.status in (:statuses) " +
+            "  or (c.status = 'RUNNING' and (c.locked_until is null or c.locked_until < :now))) " +
+            "for update skip locked",
+            nativeQuery = true)
+    Optional<ReconciliationCheckpoint> lockClaimable(@Param("id") Long id,
+                                                     @Param("statuses") Collection<String> statuses,
+                                                     @Param("now") LocalDateTime now);
+
+    // Empty once another instance has taken the day over
+    @Query(value = "select * from reconciliation_checkpoints c where c.id = :id and c.owner = :owner for update",
+            nativeQuery = true)
+    Optional<ReconciliationCheckpoint> lockOwned(@Param("id") Long id, @Param("owner") String owner);
+
+    // Lets other instances take over the days this instance was working on right away
+    @Modifying
+    @Query("update ReconciliationCheckpoint c set c.lockedUntil = null where c.owner = :owner and c.status = 'RUNNING'")
+    int releaseOwned(@Param("owner") String owner);
+}
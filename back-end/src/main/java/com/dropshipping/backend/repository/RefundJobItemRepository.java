@@ -0,0 +1,28 @@
+package com.dropshipping.backend.repository;
+
+import com.dropshipping.backend.entity.RefundJobItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface RefundJobItemRepository extends JpaRepository<RefundJobItem, Long> {
+
+    // Due items plus items whose worker lease expired; rows claimed by another instance are skipped
+    @Query(value = "select * from refund_job_items i " +
+            "where (i.status = 'PENDING' and i.next_attempt_at <= :now) or (i.status = 'PROCESSING' and i.locked_until < :now) " +
+            "order by i.id limit :limit for update skip locked",
+            nativeQuery = true)
+    List<RefundJobItem> lockClaimable(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Query(value = "select status as \"status\", count(*) as \"total\" from refund_job_items where job_id = :jobId group by status",
+            nativeQuery = true)
+    List<StatusCount> countItemsByStatus(@Param("jobId") Long jobId);
+
+    interface StatusCount {
+        String getStatus();
+        Long getTotal();
+    }
+}
@@ -0,0 +1,21 @@
+package com.dropshipping.backend.repository;
+
+import com.dropshipping.backend.entity.RefundJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface RefundJobRepository extends JpaRepository<RefundJob, Long> {
+
+    // Completes the given running jobs that have no item left to refund
+    @Modifying
+    @Query(value = "update refund_jobs j set status = 'COMPLETED', completed_at = :now " +
+            "where j.id in :ids and j.status = 'RUNNING' and not exists (select 1 from refund_job_items i " +
+            "  where i.job_id = j.id and i.status in ('PENDING', 'PROCESSING'))",
+            nativeQuery = true)
+    int completeFinished(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+}
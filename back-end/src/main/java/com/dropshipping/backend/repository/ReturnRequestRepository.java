@@ -1,11 +1,40 @@
 package com.dropshipping.backend.repository;
 
 import com.dropshipping.backend.entity.ReturnRequest;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface ReturnRequestRepository extends JpaRepository<ReturnRequest, Long> {
     List<ReturnRequest> findAllByReturnStatus(String status);
     long countByReturnStatus(String status);
+
+    // Serializes refund attempts on the same returns; id order keeps concurrent batches from deadlocking
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<ReturnRequest> findAllWithLockByIdInOrderById(Collection<Long> ids);
+
+    // Payment to refund per return: the first payment of the return's order
+    @Query(value = "select r.id as \"returnId\", " +
+            "(select min(p.id) from order_items oi join payments p on p.order_id = oi.order_id where oi.id = r.order_item_id) as \"paymentId\" " +
+            "from returns r where r.id in :ids",
+            nativeQuery = true)
+    List<RefundPayment> findRefundPayments(@Param("ids") Collection<Long> ids);
+
+    @Query("select r.id from ReturnRequest r where r.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    // Loads the order item in the same query so the return can be rendered outside a session
+    @Query("select r from ReturnRequest r join fetch r.orderItem where r.id = :id")
+    Optional<ReturnRequest> findWithOrderItemById(@Param("id") Long id);
+
+    interface RefundPayment {
+        Long getReturnId();
+        Long getPaymentId();
+    }
 }
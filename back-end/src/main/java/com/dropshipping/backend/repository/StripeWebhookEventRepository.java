@@ -0,0 +1,41 @@
+package com.dropshipping.backend.repository;
+
+import com.dropshipping.backend.entity.StripeWebhookEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface StripeWebhookEventRepository extends JpaRepository<StripeWebhookEvent, Long> {
+    long countByStatus(String status);
+
+    // The webhook's only statement: 1 if the event was stored, 0 if Stripe re-delivered a known event
+    @Modifying
+    @Query(value = "insert into stripe_webhook_events (event_id, event_type, payload, ordering_key, status, attempts, next_attempt_at, received_at) " +
+            "values (:eventId, :eventType, :payload, :orderingKey, 'PENDING', 0, :now, :now) on conflict (event_id) do nothing",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("eventId") String eventId,
+                       @Param("eventType") String eventType,
+                       @Param("payload") String payload,
+                       @Param("orderingKey") String orderingKey,
+                       @Param("now") LocalDateTime now);
+
+    // Due events plus events whose worker lease expired (crashed or stuck worker); rows locked by
+    // another instance's claim are skipped instead of waited for. Only the oldest open (PENDING or
+    // PROCESSING) event of an ordering key is claimable, so a later event of the key cannot be claimed
+    // by another instance while an earlier one is locked, processing or backing off after a failure.
+    @Query(value = "select * from stripe_webhook_events e " +
+            "where ((e.status = 'PENDING' and e.next_attempt_at <= :now) or (e.status = 'PROCESSING' and e.locked_until < :now)) " +
+            "and (e.ordering_key is null or not exists (select 1 from stripe_webhook_events p " +
+            "  where p.ordering_key = e.ordering_key and p.id < e.id and p.status in ('PENDING', 'PROCESSING'))) " +
+            "order by e.id limit :limit for update of e skip locked",
+            nativeQuery = true)
+    List<StripeWebhookEvent> lockClaimable(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("delete from StripeWebhookEvent e where e.status = 'DONE' and e.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") LocalDateTime before);
+}
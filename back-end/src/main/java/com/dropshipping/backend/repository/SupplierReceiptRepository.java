@@ -4,7 +4,10 @@ import com.dropshipping.backend.entity.OrderItem;
 import com.dropshipping.backend.entity.Supplier;
 import com.dropshipping.backend.entity.SupplierReceipt;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -13,4 +16,20 @@ public interface SupplierReceiptRepository extends JpaRepository<SupplierReceipt
     List<SupplierReceipt> findAllByReceiptDate(LocalDate date);
     List<SupplierReceipt> findAllByOrderItem(OrderItem orderItem);
     List<SupplierReceipt> findAllBySupplier_IdAndReceiptDateBetween(Long supplierId, LocalDate start, LocalDate end);
+
+    // Charge matching: receipts not linked to an order item and not yet proposed for another day's charge
+    interface UnlinkedReceipt {
+        Long getReceiptId();
+        BigDecimal getAmount();
+        LocalDate getReceiptDate();
+    }
+
+    @Query(value = "select sr.id as \"receiptId\", sr.amount as \"amount\", sr.receipt_date as \"receiptDate\" " +
+            "from supplier_receipts sr where sr.order_item_id is null and sr.receipt_date between :from and :to " +
+            "and not exists (select 1 from reconciliation_audit ra " +
+            "  where ra.supplier_receipt_id = sr.id and ra.reconciliation_date <> :date)",
+            nativeQuery = true)
+    List<UnlinkedReceipt> findUnlinkedReceipts(@Param("from") LocalDate from,
+                                               @Param("to") LocalDate to,
+                                               @Param("date") LocalDate date);
 }
@@ -1,10 +1,45 @@
 package com.dropshipping.backend.repository;
 
+import com.dropshipping.backend.cache.CacheNames;
 import com.dropshipping.backend.entity.Supplier;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface SupplierRepository extends JpaRepository<Supplier, Long> {
     Optional<Supplier> findByName(String name);
+
+    // Writes evict the two-level cache (read through CachedLookups) so every node drops its copy after commit.
+    // findById stays uncached: callers modify and save what it returns.
+    // Cached products embed their suppliers, so supplier writes drop the product cache as well.
+    @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheNames.SUPPLIERS, key = "#result.id"),
+            @CacheEvict(cacheNames = CacheNames.PRODUCTS, allEntries = true)
+    })
+    <S extends Supplier> S save(S entity);
+
+    @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheNames.SUPPLIERS, allEntries = true),
+            @CacheEvict(cacheNames = CacheNames.PRODUCTS, allEntries = true)
+    })
+    <S extends Supplier> List<S> saveAll(Iterable<S> entities);
+
+    @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheNames.SUPPLIERS, key = "#p0"),
+            @CacheEvict(cacheNames = CacheNames.PRODUCTS, allEntries = true)
+    })
+    void deleteById(Long id);
+
+    @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheNames.SUPPLIERS, key = "#p0.id"),
+            @CacheEvict(cacheNames = CacheNames.PRODUCTS, allEntries = true)
+    })
+    void delete(Supplier entity);
 }
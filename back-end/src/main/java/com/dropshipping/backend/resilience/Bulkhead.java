@@ -0,0 +1,41 @@
+package com.dropshipping.backend.resilience;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of concurrent calls to one dependency, so a slow dependency ties up at most that many
+ * threads. Callers wait a short, bounded time for a permit and are otherwise turned away.
+ */
+public class Bulkhead {
+
+    private final int maxConcurrent;
+    private final long maxWaitNanos;
+    private final Semaphore permits;
+
+    public Bulkhead(int maxConcurrent, Duration maxWait) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.permits = new Semaphore(this.maxConcurrent, true);
+    }
+
+    /**
+     * Returns true if a permit was obtained; it must be given back with {@link #release()}.
+     */
+    public boolean tryAcquire() throws InterruptedException {
+        return permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int inUse() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+}
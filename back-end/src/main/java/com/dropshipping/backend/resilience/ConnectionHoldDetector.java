@@ -0,0 +1,83 @@
+package com.dropshipping.backend.resilience;
+
+import com.dropshipping.backend.config.ResilienceProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Flags outbound calls made while the calling thread holds a pooled database connection, either through an
+ * open transaction or through an open-in-view EntityManager that already used its connection (Hibernate then
+ * keeps it until the request ends). A slow dependency would otherwise pin connections and starve the pool.
+ * <p>
+ * Counted in {@code resilience.connection.held} tagged with {@code dependency}; logged or rejected according
+ * to {@code resilience.connection-hold-detection}.
+ */
+@Component
+@Slf4j
+public class ConnectionHoldDetector implements DependencyGuard.CallListener {
+
+    private final ResilienceProperties properties;
+    private final EntityManagerFactory entityManagerFactory;
+    private final MeterRegistry meterRegistry;
+    private final Set<String> reported = ConcurrentHashMap.newKeySet();
+
+    public ConnectionHoldDetector(ResilienceProperties properties,
+                                  EntityManagerFactory entityManagerFactory,
+                                  MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.entityManagerFactory = entityManagerFactory;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void beforeCall(String dependency, String operation) {
+        ResilienceProperties.ConnectionHoldDetection mode = properties.getConnectionHoldDetection();
+        if (mode == ResilienceProperties.ConnectionHoldDetection.OFF) {
+            return;
+        }
+        String holder = connectionHolder();
+        if (holder == null) {
+            return;
+        }
+        Counter.builder("resilience.connection.held").tag("dependency", dependency)
+                .description("Outbound calls made while holding a database connection").register(meterRegistry)
+                .increment();
+        String message = dependency + " " + operation + " called while " + holder + " holds a database connection";
+        if (mode == ResilienceProperties.ConnectionHoldDetection.FAIL) {
+            throw new IllegalStateException(message);
+        }
+        if (reported.add(dependency + ":" + operation)) {
+            // the stack trace shows the call site; later occurrences are only counted
+            log.warn(message, new Throwable("call site"));
+        } else {
+            log.debug(message);
+        }
+    }
+
+    private String connectionHolder() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            String name = TransactionSynchronizationManager.getCurrentTransactionName();
+            return name != null ? "transaction " + name : "a transaction";
+        }
+        if (TransactionSynchronizationManager.getResource(entityManagerFactory) instanceof EntityManagerHolder holder
+                && isPhysicallyConnected(holder.getEntityManager())) {
+            return "the open-in-view EntityManager";
+        }
+        return null;
+    }
+
+    private static boolean isPhysicallyConnected(EntityManager entityManager) {
+        return entityManager.isOpen() && entityManager.unwrap(SharedSessionContractImplementor.class)
+                .getJdbcCoordinator().getLogicalConnection().isPhysicallyConnected();
+    }
+}
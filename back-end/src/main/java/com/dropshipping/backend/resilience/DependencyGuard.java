@@ -0,0 +1,285 @@
+package com.dropshipping.backend.resilience;
+
+import com.dropshipping.backend.config.ResilienceProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Guards the calls to one outbound dependency.
+ * <p>
+ * Every attempt needs a bulkhead permit and circuit breaker permission, runs on the dependency's own
+ * threads and is waited for at most {@code attempt-timeout}. Transient failures (as decided by the
+ * {@code transientFailure} predicate) and timeouts are retried with full-jitter exponential backoff while
+ * attempts and the {@code total-timeout} budget last; other errors are rethrown as they are and do not count
+ * against the breaker, since the dependency did answer. The bulkhead permit is returned when the attempt
+ * really ends, so a hanging dependency holds at most {@code max-concurrent} threads.
+ * <p>
+ * Metrics, tagged with {@code dependency}: {@code resilience.calls} (timer per call, tagged with
+ * {@code outcome}), {@code resilience.retries}, {@code resilience.bulkhead.in_use} and
+ * {@code resilience.breaker.open}.
+ */
+@Slf4j
+public class DependencyGuard {
+
+    @FunctionalInterface
+    public interface Call<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /**
+     * Invoked on the calling thread before every guarded call; may throw to refuse the call.
+     */
+    @FunctionalInterface
+    public interface CallListener {
+        void beforeCall(String dependency, String operation);
+    }
+
+    enum Outcome {
+        SUCCESS,
+        ERROR,
+        TIMEOUT,
+        BULKHEAD_FULL,
+        BREAKER_OPEN,
+        BUDGET_EXHAUSTED
+    }
+
+    private final String name;
+    private final ResilienceProperties.Dependency settings;
+    private final Predicate<Throwable> transientFailure;
+    private final CallListener callListener;
+    private final Bulkhead bulkhead;
+    private final CircuitBreaker circuitBreaker;
+    private final ThreadPoolExecutor executor;
+
+    private final Map<Outcome, Timer> callTimers = new EnumMap<>(Outcome.class);
+    private final Counter retries;
+
+    public DependencyGuard(String name,
+                           ResilienceProperties.Dependency settings,
+                           Predicate<Throwable> transientFailure,
+                           CallListener callListener,
+                           MeterRegistry meterRegistry) {
+        this.name = name;
+        this.settings = settings;
+        this.transientFailure = transientFailure;
+        this.callListener = callListener;
+        this.bulkhead = new Bulkhead(settings.getMaxConcurrent(), settings.getMaxWait());
+        this.circuitBreaker = new CircuitBreaker(name, settings.getFailureThreshold(), settings.getOpenDuration());
+
+        // the bulkhead bounds the work in flight, so the queue never grows beyond max-concurrent
+        AtomicInteger threadIds = new AtomicInteger();
+        int threads = bulkhead.getMaxConcurrent();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "resilience-" + name + "-" + threadIds.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+
+        for (Outcome outcome : Outcome.values()) {
+            callTimers.put(outcome, Timer.builder("resilience.calls")
+                    .tag("dependency", name)
+                    .tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                    .description("Guarded outbound calls including retries, by final outcome")
+                    .register(meterRegistry));
+        }
+        this.retries = Counter.builder("resilience.retries").tag("dependency", name)
+                .description("Attempts retried after a transient failure or timeout").register(meterRegistry);
+        Gauge.builder("resilience.bulkhead.in_use", bulkhead, Bulkhead::inUse).tag("dependency", name)
+                .description("Calls currently holding a bulkhead permit").register(meterRegistry);
+        Gauge.builder("resilience.breaker.open", circuitBreaker, cb -> cb.getState() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .tag("dependency", name).register(meterRegistry);
+
+        circuitBreaker.onStateChange(state -> log.warn("Circuit breaker for {} is now {}", name, state));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CircuitBreaker.State getBreakerState() {
+        return circuitBreaker.getState();
+    }
+
+    /**
+     * Runs the call with retries. Only use it for calls that are safe to repeat (reads, or writes carrying an
+     * idempotency key); the operation name is used for logging.
+     *
+     * @throws DependencyUnavailableException when the call was rejected or timed out on its last attempt
+     */
+    public <T, E extends Exception> T call(String operation, Call<T, E> call) throws E {
+        return execute(operation, call, Math.max(1, settings.getMaxAttempts()));
+    }
+
+    /**
+     * Runs the call at most once, for writes that must not be repeated.
+     */
+    public <T, E extends Exception> T callOnce(String operation, Call<T, E> call) throws E {
+        return execute(operation, call, 1);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T, E extends Exception> T execute(String operation, Call<T, E> call, int maxAttempts) throws E {
+        callListener.beforeCall(name, operation);
+        long startedAt = System.nanoTime();
+        long deadline = startedAt + settings.getTotalTimeout().toNanos();
+        Outcome outcome = Outcome.ERROR;
+        try {
+            for (int attempt = 1; ; attempt++) {
+                Throwable failure;
+                boolean timedOut = false;
+                try {
+                    T result = attempt(operation, call, deadline);
+                    outcome = Outcome.SUCCESS;
+                    return result;
+                } catch (AttemptRejected e) {
+                    outcome = e.outcome;
+                    throw new DependencyUnavailableException(name, e.getMessage() + " (" + operation + ")");
+                } catch (TimeoutException e) {
+                    failure = e;
+                    timedOut = true;
+                } catch (ExecutionException e) {
+                    failure = e.getCause();
+                    if (!transientFailure.test(failure)) {
+                        throw DependencyGuard.<E>rethrow(failure);
+                    }
+                }
+
+                long backoff = backoffNanos(attempt);
+                if (attempt >= maxAttempts || System.nanoTime() + backoff >= deadline) {
+                    if (timedOut) {
+                        outcome = Outcome.TIMEOUT;
+                        throw new DependencyUnavailableException(name, operation + " timed out after "
+                                + attempt + " attempt(s)", failure);
+                    }
+                    throw DependencyGuard.<E>rethrow(failure);
+                }
+                retries.increment();
+                log.debug("{} {} attempt {} failed ({}), retrying in {} ms", name, operation, attempt,
+                        timedOut ? "timeout" : failure.toString(), TimeUnit.NANOSECONDS.toMillis(backoff));
+                TimeUnit.NANOSECONDS.sleep(backoff);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DependencyUnavailableException(name, "interrupted during " + operation, e);
+        } finally {
+            callTimers.get(outcome).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * One attempt: the result, or the failure of the call wrapped in an ExecutionException.
+     */
+    private <T, E extends Exception> T attempt(String operation, Call<T, E> call, long deadline)
+            throws AttemptRejected, TimeoutException, ExecutionException, InterruptedException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            throw new AttemptRejected(Outcome.BUDGET_EXHAUSTED, "time budget exhausted");
+        }
+        if (!bulkhead.tryAcquire()) {
+            throw new AttemptRejected(Outcome.BULKHEAD_FULL, "bulkhead full");
+        }
+        // after the bulkhead, so a half-open trial permission is always followed by a reported result
+        if (!circuitBreaker.tryAcquirePermission()) {
+            bulkhead.release();
+            throw new AttemptRejected(Outcome.BREAKER_OPEN, "circuit breaker open");
+        }
+        // claimed by whichever comes first: the worker starting the call or the caller giving up on it
+        AtomicBoolean claimed = new AtomicBoolean();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    return null;
+                }
+                try {
+                    return call.call();
+                } finally {
+                    bulkhead.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            circuitBreaker.onFailure();
+            throw new AttemptRejected(Outcome.BULKHEAD_FULL, "executor shut down");
+        }
+        try {
+            T result = future.get(Math.min(settings.getAttemptTimeout().toNanos(), remaining), TimeUnit.NANOSECONDS);
+            circuitBreaker.onSuccess();
+            return result;
+        } catch (TimeoutException e) {
+            abandon(future, claimed);
+            circuitBreaker.onFailure();
+            throw e;
+        } catch (ExecutionException e) {
+            if (transientFailure.test(e.getCause())) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            abandon(future, claimed);
+            circuitBreaker.onFailure();
+            throw e;
+        }
+    }
+
+    private void abandon(Future<?> future, AtomicBoolean claimed) {
+        future.cancel(true);
+        if (claimed.compareAndSet(false, true)) {
+            // never started, so the worker will not release the permit
+            bulkhead.release();
+        }
+    }
+
+    private long backoffNanos(int attempt) {
+        long initial = settings.getInitialBackoff().toNanos();
+        long cap = settings.getMaxBackoff().toNanos();
+        long ceiling = Math.min(cap, initial << Math.min(attempt - 1, 20));
+        return ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+    }
+
+    // the call can only throw E or unchecked exceptions, so the cast is safe
+    @SuppressWarnings("unchecked")
+    private static <E extends Exception> E rethrow(Throwable failure) throws E {
+        if (failure instanceof Error error) {
+            throw error;
+        }
+        if (failure instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+        throw (E) failure;
+    }
+
+    private static final class AttemptRejected extends Exception {
+        private final Outcome outcome;
+
+        AttemptRejected(Outcome outcome, String message) {
+            super(message, null, false, false);
+            this.outcome = outcome;
+        }
+    }
+}
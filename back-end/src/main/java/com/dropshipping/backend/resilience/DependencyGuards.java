@@ -0,0 +1,70 @@
+package com.dropshipping.backend.resilience;
+
+import com.dropshipping.backend.config.ResilienceProperties;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.RateLimitException;
+import com.stripe.exception.StripeException;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One {@link DependencyGuard} per outbound dependency, configured under {@code resilience.dependencies.<name>}.
+ */
+@Component
+public class DependencyGuards {
+
+    public static final String STRIPE = "stripe";
+    public static final String S3 = "s3";
+    public static final String TEXTRACT = "textract";
+
+    private final ResilienceProperties properties;
+    private final ConnectionHoldDetector connectionHoldDetector;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, DependencyGuard> guards = new ConcurrentHashMap<>();
+
+    public DependencyGuards(ResilienceProperties properties,
+                            ConnectionHoldDetector connectionHoldDetector,
+                            MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.connectionHoldDetector = connectionHoldDetector;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public DependencyGuard get(String dependency) {
+        return guards.computeIfAbsent(dependency, name ->
+                new DependencyGuard(name, properties.dependency(name), DependencyGuards::isTransient,
+                        connectionHoldDetector, meterRegistry));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        guards.values().forEach(DependencyGuard::shutdown);
+    }
+
+    /**
+     * Failures worth retrying and counting against the breaker: network errors, throttling and server errors.
+     * Client errors (declined cards, invalid requests, missing objects) are answers and are passed through.
+     */
+    static boolean isTransient(Throwable failure) {
+        if (failure instanceof ApiConnectionException || failure instanceof RateLimitException) {
+            return true;
+        }
+        if (failure instanceof StripeException stripe) {
+            return stripe.getStatusCode() != null && stripe.getStatusCode() >= 500;
+        }
+        if (failure instanceof SdkServiceException service) {
+            return service.isThrottlingException() || service.statusCode() >= 500;
+        }
+        return failure instanceof SdkClientException
+                || failure instanceof IOException
+                || failure instanceof UncheckedIOException;
+    }
+}
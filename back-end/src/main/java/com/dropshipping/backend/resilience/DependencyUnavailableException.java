@@ -0,0 +1,24 @@
+package com.dropshipping.backend.resilience;
+
+/**
+ * A call to an outbound dependency was not made or not waited for: its bulkhead was full, its circuit
+ * breaker was open, or the time budget ran out.
+ */
+public class DependencyUnavailableException extends RuntimeException {
+
+    private final String dependency;
+
+    public DependencyUnavailableException(String dependency, String message) {
+        super(dependency + ": " + message);
+        this.dependency = dependency;
+    }
+
+    public DependencyUnavailableException(String dependency, String message, Throwable cause) {
+        super(dependency + ": " + message, cause);
+        this.dependency = dependency;
+    }
+
+    public String getDependency() {
+        return dependency;
+    }
+}
@@ -0,0 +1,73 @@
+package com.dropshipping.backend.service;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Read-only index of (id, amount in cents, time) entries sorted by amount.
+ * <p>
+ * A lookup binary-searches the start of an amount range and walks forward until the range ends, filtering
+ * on the time window as it goes, so a query costs O(log n + k) where k is the number of entries in the
+ * amount range. Building the index is one sort.
+ */
+final class AmountTimeIndex {
+
+    record Entry(long id, long cents, long time) {}
+
+    @FunctionalInterface
+    interface Visitor {
+        void visit(int position, long id, long cents, long time);
+    }
+
+    private final long[] ids;
+    private final long[] cents;
+    private final long[] times;
+
+    AmountTimeIndex(List<Entry> entries) {
+        Entry[] sorted = entries.toArray(new Entry[0]);
+        Arrays.sort(sorted, Comparator.comparingLong(Entry::cents).thenComparingLong(Entry::time));
+        ids = new long[sorted.length];
+        cents = new long[sorted.length];
+        times = new long[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            ids[i] = sorted[i].id();
+            cents[i] = sorted[i].cents();
+            times[i] = sorted[i].time();
+        }
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    long id(int position) {
+        return ids[position];
+    }
+
+    /**
+     * Visits every entry with {@code minCents <= cents <= maxCents} and {@code minTime <= time <= maxTime}.
+     * The position passed to the visitor is stable for the lifetime of the index.
+     */
+    void forEach(long minCents, long maxCents, long minTime, long maxTime, Visitor visitor) {
+        for (int i = lowerBound(minCents); i < cents.length && cents[i] <= maxCents; i++) {
+            if (times[i] >= minTime && times[i] <= maxTime) {
+                visitor.visit(i, ids[i], cents[i], times[i]);
+            }
+        }
+    }
+
+    private int lowerBound(long value) {
+        int lo = 0;
+        int hi = cents.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cents[mid] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
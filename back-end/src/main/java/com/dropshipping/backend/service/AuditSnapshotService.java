@@ -0,0 +1,228 @@
+package com.dropshipping.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.ManyToMany;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.OneToMany;
+import jakarta.persistence.OneToOne;
+import jakarta.persistence.Transient;
+import org.springframework.stereotype.Component;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Compact before/after states for audit entries.
+ * <p>
+ * For every entity type a field-accessor model is built once: basic columns are read through their
+ * getters, to-one associations contribute only the referenced id (e.g. {@code customerId}) and collections
+ * are skipped, so taking a snapshot never initializes lazy associations. Diffs contain only changed fields.
+ * JSON document columns (addresses, OCR data) are copied when captured, so changing them in place still
+ * shows up in the diff, and are left out of creation entries, whose row already holds them.
+ */
+@Component
+public class AuditSnapshotService {
+
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private final ClassValue<EntityModel> models = new ClassValue<>() {
+        @Override
+        protected EntityModel computeValue(Class<?> type) {
+            return buildModel(type);
+        }
+    };
+
+    /**
+     * Raw field values of one entity at a point in time; cheap to take before a mutation.
+     */
+    public static final class Snapshot {
+        private final EntityModel model;
+        private final Object[] values;
+
+        private Snapshot(EntityModel model, Object[] values) {
+            this.model = model;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Changed fields only: previous values in {@code before}, new values in {@code after}.
+     */
+    public record Diff(ObjectNode before, ObjectNode after) {
+        public boolean isEmpty() {
+            return after.isEmpty() && before.isEmpty();
+        }
+    }
+
+    public Snapshot capture(Object entity) {
+        EntityModel model = models.get(entityClass(entity));
+        Object[] values = new Object[model.fields().size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = model.fields().get(i).read(entity);
+        }
+        return new Snapshot(model, values);
+    }
+
+    /**
+     * The non-null identifying and scalar fields of an entity for creation entries; JSON documents are left out.
+     */
+    public ObjectNode snapshot(Object entity) {
+        Snapshot s = capture(entity);
+        ObjectNode node = NODES.objectNode();
+        for (int i = 0; i < s.values.length; i++) {
+            if (s.values[i] != null && !s.model.fields().get(i).document()) {
+                node.set(s.model.fields().get(i).name(), toNode(s.values[i]));
+            }
+        }
+        return node;
+    }
+
+    public Diff diff(Snapshot before, Object after) {
+        Snapshot current = capture(after);
+        if (current.model != before.model) {
+            throw new IllegalArgumentException("Cannot diff snapshots of different entity types");
+        }
+        ObjectNode beforeNode = NODES.objectNode();
+        ObjectNode afterNode = NODES.objectNode();
+        for (int i = 0; i < current.values.length; i++) {
+            Object was = before.values[i];
+            Object now = current.values[i];
+            if (!sameValue(was, now)) {
+                String name = current.model.fields().get(i).name();
+                beforeNode.set(name, toNode(was));
+                afterNode.set(name, toNode(now));
+            }
+        }
+        return new Diff(beforeNode, afterNode);
+    }
+
+    private static boolean sameValue(Object a, Object b) {
+        if (a instanceof BigDecimal x && b instanceof BigDecimal y) {
+            return x.compareTo(y) == 0;
+        }
+        return Objects.equals(a, b);
+    }
+
+    private static JsonNode toNode(Object value) {
+        if (value == null) return NODES.nullNode();
+        if (value instanceof JsonNode json) return json;
+        if (value instanceof String s) return NODES.textNode(s);
+        if (value instanceof Boolean b) return NODES.booleanNode(b);
+        if (value instanceof Integer n) return NODES.numberNode(n);
+        if (value instanceof Long n) return NODES.numberNode(n);
+        if (value instanceof Double n) return NODES.numberNode(n);
+        if (value instanceof BigDecimal n) return NODES.numberNode(n);
+        if (value instanceof BigInteger n) return NODES.numberNode(n);
+        if (value instanceof Enum<?> e) return NODES.textNode(e.name());
+        if (value instanceof TemporalAccessor t) return NODES.textNode(t.toString());
+        return NODES.textNode(String.valueOf(value));
+    }
+
+    private static Class<?> entityClass(Object entity) {
+        Class<?> type = entity.getClass();
+        // Hibernate proxies are subclasses of the mapped entity
+        while (type != null && !type.isAnnotationPresent(Entity.class)) {
+            type = type.getSuperclass();
+        }
+        if (type == null) {
+            throw new IllegalArgumentException("Not an entity: " + entity.getClass().getName());
+        }
+        return type;
+    }
+
+    private record FieldAccessor(String name, MethodHandle getter, MethodHandle idGetter, boolean document) {
+        Object read(Object entity) {
+            try {
+                Object value = getter.invoke(entity);
+                if (idGetter != null && value != null) {
+                    // reading the id of a Hibernate proxy does not initialize it
+                    return idGetter.invoke(value);
+                }
+                if (value instanceof JsonNode json) {
+                    // the entity may modify its node in place after the capture
+                    return json.deepCopy();
+                }
+                return value;
+            } catch (Throwable t) {
+                throw new IllegalStateException("Cannot read audit field " + name, t);
+            }
+        }
+    }
+
+    private record EntityModel(Class<?> type, List<FieldAccessor> fields) {}
+
+    private static EntityModel buildModel(Class<?> type) {
+        Map<String, PropertyDescriptor> properties = properties(type);
+        List<FieldAccessor> fields = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())
+                    || field.isAnnotationPresent(Transient.class)
+                    || field.isAnnotationPresent(OneToMany.class)
+                    || field.isAnnotationPresent(ManyToMany.class)
+                    || field.isAnnotationPresent(OneToOne.class)) {
+                continue;
+            }
+            PropertyDescriptor pd = properties.get(field.getName());
+            if (pd == null || pd.getReadMethod() == null) {
+                continue;
+            }
+            MethodHandle getter = unreflect(pd);
+            if (field.isAnnotationPresent(ManyToOne.class)) {
+                fields.add(new FieldAccessor(field.getName() + "Id", getter, idGetter(field.getType()), false));
+            } else {
+                fields.add(new FieldAccessor(field.getName(), getter, null, JsonNode.class.isAssignableFrom(field.getType())));
+            }
+        }
+        return new EntityModel(type, List.copyOf(fields));
+    }
+
+    private static MethodHandle idGetter(Class<?> target) {
+        Map<String, PropertyDescriptor> properties = properties(target);
+        for (Field field : target.getDeclaredFields()) {
+            if (field.isAnnotationPresent(Id.class)) {
+                PropertyDescriptor pd = properties.get(field.getName());
+                if (pd != null && pd.getReadMethod() != null) {
+                    return unreflect(pd);
+                }
+            }
+        }
+        throw new IllegalStateException("No id getter on " + target.getName());
+    }
+
+    private static Map<String, PropertyDescriptor> properties(Class<?> type) {
+        try {
+            Map<String, PropertyDescriptor> byName = new HashMap<>();
+            for (PropertyDescriptor pd : Introspector.getBeanInfo(type, Object.class).getPropertyDescriptors()) {
+                byName.put(pd.getName(), pd);
+            }
+            return byName;
+        } catch (IntrospectionException e) {
+            throw new IllegalStateException("Cannot introspect " + type.getName(), e);
+        }
+    }
+
+    private static MethodHandle unreflect(PropertyDescriptor pd) {
+        try {
+            return MethodHandles.publicLookup().unreflect(pd.getReadMethod());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access " + pd.getReadMethod(), e);
+        }
+    }
+}
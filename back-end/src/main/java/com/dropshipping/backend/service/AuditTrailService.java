@@ -5,15 +5,23 @@ import com.dropshipping.backend.repository.AuditTrailRepository;
 import com.fasterxml.jackson.databind.JsonNode;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 @Service
 @RequiredArgsConstructor
 public class AuditTrailService {
 
     private final AuditTrailRepository auditTrailRepository;
+    private final AuditTrailWriter auditTrailWriter;
 
+    /**
+     * Records an audit entry. With the asynchronous writer enabled the entry is handed to it once the
+     * caller's transaction commits (and discarded if it rolls back); otherwise it is saved right away.
+     */
     public void log(String entityType,
                     Long entityId,
                     Long userId,
@@ -35,6 +43,22 @@ public class AuditTrailService {
         audit.setSellingPrice(sellingPrice);
         audit.setProfitMargin(profitMargin);
         audit.setIpAddress(ipAddress);
-        auditTrailRepository.save(audit);
+        // Stamp now rather than at (possibly deferred) insert time
+        audit.setAuditTimestamp(LocalDateTime.now());
+
+        if (!auditTrailWriter.isEnabled()) {
+            auditTrailRepository.save(audit);
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    auditTrailWriter.submit(audit);
+                }
+            });
+        } else {
+            auditTrailWriter.submit(audit);
+        }
     }
 }
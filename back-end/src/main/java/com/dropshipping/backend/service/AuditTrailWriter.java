@@ -0,0 +1,176 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.AuditProperties;
+import com.dropshipping.backend.entity.AuditTrail;
+import com.dropshipping.backend.repository.AuditTrailRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind writer for audit entries: a bounded queue drained by a single background thread that
+ * inserts entries in batches. A full queue blocks the caller briefly and then falls back to a synchronous
+ * insert, so entries are never dropped; pending entries are flushed on shutdown.
+ */
+@Component
+@Slf4j
+public class AuditTrailWriter {
+
+    private final AuditTrailRepository auditTrailRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final AuditProperties.Async settings;
+
+    private final BlockingQueue<AuditTrail> queue;
+    private final Counter written;
+    private final Counter callerWrites;
+    private final Counter failed;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public AuditTrailWriter(AuditTrailRepository auditTrailRepository,
+                            PlatformTransactionManager transactionManager,
+                            AuditProperties auditProperties,
+                            MeterRegistry meterRegistry) {
+        this.auditTrailRepository = auditTrailRepository;
+        // Always a fresh transaction: caller-side writes may happen in afterCommit of a finished transaction
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.settings = auditProperties.getAsync();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, settings.getQueueCapacity()));
+
+        Gauge.builder("audit.queue.size", queue, BlockingQueue::size).register(meterRegistry);
+        this.written = Counter.builder("audit.written").tag("path", "writer").register(meterRegistry);
+        this.callerWrites = Counter.builder("audit.written").tag("path", "caller").register(meterRegistry);
+        this.failed = Counter.builder("audit.failed").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::drainLoop, "audit-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled() && running;
+    }
+
+    /**
+     * Queues an entry; applies back-pressure when the queue is full by blocking for the offer timeout and
+     * then writing the entry on the caller's thread.
+     */
+    public void submit(AuditTrail audit) {
+        try {
+            if (queue.offer(audit, settings.getOfferTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        callerWrites.increment(writeBatch(List.of(audit)));
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            try {
+                worker.join(settings.getShutdownTimeout().toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // Whatever the worker did not get to is written here before the persistence unit closes
+        List<AuditTrail> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            log.info("Flushing {} pending audit entries on shutdown", remaining.size());
+            written.increment(writeBatch(remaining));
+        }
+    }
+
+    private void drainLoop() {
+        int flushSize = Math.max(1, settings.getFlushSize());
+        long flushIntervalNanos = settings.getFlushInterval().toNanos();
+        List<AuditTrail> batch = new ArrayList<>(flushSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                AuditTrail first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < flushSize) {
+                    queue.drainTo(batch, flushSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= flushSize || remaining <= 0 || !running) {
+                        break;
+                    }
+                    AuditTrail next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                written.increment(writeBatch(batch));
+            } catch (InterruptedException e) {
+                // the interrupt status is clear again here, so the entries taken off the queue can still be
+                // written (a pending interrupt would make the connection pool refuse); stop() flushes the rest
+                if (!batch.isEmpty()) {
+                    written.increment(writeBatch(batch));
+                }
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Audit writer failed: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries inserted; entries that could not be inserted are counted as failed.
+     */
+    private int writeBatch(List<AuditTrail> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(tx -> auditTrailRepository.saveAll(batch));
+            return batch.size();
+        } catch (Exception batchFailure) {
+            // Salvage what we can: one transaction per entry so a single bad row does not lose the batch
+            int saved = 0;
+            for (AuditTrail audit : batch) {
+                audit.setId(null);
+                try {
+                    transactionTemplate.executeWithoutResult(tx -> auditTrailRepository.save(audit));
+                    saved++;
+                } catch (Exception ex) {
+                    failed.increment();
+                    log.error("Dropping audit entry {} {} {}: {}", audit.getEntityType(), audit.getEntityId(),
+                            audit.getUserAction(), ex.getMessage());
+                }
+            }
+            return saved;
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.RefundProperties;
+import com.dropshipping.backend.entity.RefundJob;
+import com.dropshipping.backend.entity.RefundJobItem;
+import com.dropshipping.backend.entity.ReturnRequest;
+import com.dropshipping.backend.repository.RefundJobItemRepository;
+import com.dropshipping.backend.repository.RefundJobRepository;
+import com.dropshipping.backend.repository.ReturnRequestRepository;
+import com.dropshipping.backend.resilience.RateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Refunds many returns through a persistent queue.
+ * <p>
+ * {@link #start} stores a job with one item per return. A poller claims due items in batches with
+ * {@code FOR UPDATE SKIP LOCKED}, so several instances can share the queue, and in the same short transaction
+ * records the refund intents on the returns ({@link ReturnService} phase one: payment, amount and an
+ * idempotency key per refund). The refunds are then sent from a pool of {@code concurrency} threads paced by
+ * a rate limiter, with no transaction open. One more transaction writes all outcomes of the batch to the
+ * returns and payments and settles the items: refunded returns SUCCEEDED, refunds rejected by Stripe FAILED,
+ * unknown outcomes (timeouts, rate limits, server errors) retried with an exponential, jittered backoff up to
+ * {@code max-attempts}. Retries resend the recorded request with the same key, as does the next worker when
+ * a lease expires, so no return is refunded twice.
+ */
+@Service
+@Slf4j
+public class BulkRefundService {
+
+    private static final String RUNNING = "RUNNING";
+    private static final String PENDING = "PENDING";
+    private static final String PROCESSING = "PROCESSING";
+    private static final String SUCCEEDED = "SUCCEEDED";
+    private static final String FAILED = "FAILED";
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final RefundJobRepository jobRepository;
+    private final RefundJobItemRepository itemRepository;
+    private final ReturnRequestRepository returnRequestRepository;
+    private final ReturnService returnService;
+    private final RefundProperties.Bulk properties;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ScheduledExecutorService poller;
+    private final ExecutorService refundExecutor;
+    private final RateLimiter rateLimiter;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean wakePending = new AtomicBoolean();
+    private final AtomicBoolean stopped = new AtomicBoolean();
+    // refunds handed to the pool and not answered yet, with their intent
+    private final Map<CompletableFuture<ReturnService.RefundAttempt>, ReturnService.RefundIntent> sending = new ConcurrentHashMap<>();
+
+    private final Counter succeeded;
+    private final Counter failed;
+    private final Counter retried;
+    private final Timer batchDuration;
+
+    public record BulkRefundProgress(Long id, String status, int totalItems,
+                                     long pending, long processing, long succeeded, long failed,
+                                     LocalDateTime createdAt, LocalDateTime completedAt, double refundsPerSecond) {}
+
+    private record Batch(List<RefundJobItem> items, Map<Long, ReturnService.RefundIntent> intents) {}
+
+    public BulkRefundService(RefundJobRepository jobRepository,
+                             RefundJobItemRepository itemRepository,
+                             ReturnRequestRepository returnRequestRepository,
+                             ReturnService returnService,
+                             RefundProperties refundProperties,
+                             TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry) {
+        this.jobRepository = jobRepository;
+        this.itemRepository = itemRepository;
+        this.returnRequestRepository = returnRequestRepository;
+        this.returnService = returnService;
+        this.properties = refundProperties.getBulk();
+        this.transactionTemplate = transactionTemplate;
+
+        AtomicInteger threadIds = new AtomicInteger();
+        this.refundExecutor = Executors.newFixedThreadPool(Math.max(1, properties.getConcurrency()),
+                r -> daemon(r, "bulk-refund-" + threadIds.incrementAndGet()));
+        this.rateLimiter = new RateLimiter(properties.getMaxRequestsPerSecond());
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "bulk-refund-poller"));
+        long pollMillis = Math.max(10, properties.getPollInterval().toMillis());
+        poller.scheduleWithFixedDelay(this::poll, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+
+        this.succeeded = Counter.builder("refunds.bulk.items").tag("result", "succeeded")
+                .description("Bulk refund items refunded").register(meterRegistry);
+        this.failed = Counter.builder("refunds.bulk.items").tag("result", "failed")
+                .description("Bulk refund items given up").register(meterRegistry);
+        this.retried = Counter.builder("refunds.bulk.items").tag("result", "retry")
+                .description("Bulk refund attempts with an unknown outcome, rescheduled").register(meterRegistry);
+        this.batchDuration = Timer.builder("refunds.bulk.batch.duration")
+                .description("Time to claim, refund and settle one batch").register(meterRegistry);
+        Gauge.builder("refunds.bulk.in_flight", inFlight, AtomicInteger::get)
+                .description("Bulk refunds sent to Stripe and not answered yet").register(meterRegistry);
+    }
+
+    /**
+     * Queues a refund for each return (its requested amount, or the full charge if none) and returns the
+     * job's progress. Returns that are already refunded complete without calling Stripe.
+     */
+    public BulkRefundProgress start(Collection<Long> returnIds, String reason) {
+        if (returnIds == null || returnIds.isEmpty()) {
+            throw new IllegalArgumentException("Bulk refund needs at least one return id");
+        }
+        Set<Long> ids = new LinkedHashSet<>(returnIds);
+        ids.remove(null);
+        if (ids.size() > properties.getMaxItems()) {
+            throw new IllegalArgumentException("Bulk refund exceeds maximum of " + properties.getMaxItems() + " returns");
+        }
+
+        RefundJob job = transactionTemplate.execute(tx -> {
+            Set<Long> existing = new HashSet<>(returnRequestRepository.findExistingIds(ids));
+            List<Long> missing = ids.stream().filter(id -> !existing.contains(id)).limit(20).toList();
+            if (!missing.isEmpty()) {
+                throw new NoSuchElementException("Returns not found: " + missing);
+            }
+            RefundJob j = new RefundJob();
+            j.setReason(reason);
+            j.setTotalItems(ids.size());
+            j = jobRepository.save(j);
+
+            LocalDateTime now = LocalDateTime.now();
+            List<RefundJobItem> items = new ArrayList<>(ids.size());
+            for (Long returnId : ids) {
+                RefundJobItem item = new RefundJobItem();
+                item.setJobId(j.getId());
+                item.setReturnId(returnId);
+                item.setNextAttemptAt(now);
+                items.add(item);
+            }
+            itemRepository.saveAll(items);
+            return j;
+        });
+        log.info("Bulk refund job {} queued for {} returns", job.getId(), ids.size());
+        wakeUp();
+        return progress(job.getId());
+    }
+
+    public BulkRefundProgress progress(Long jobId) {
+        RefundJob job = jobRepository.findById(jobId)
+                .orElseThrow(() -> new NoSuchElementException("Bulk refund job not found: " + jobId));
+        Map<String, Long> counts = new HashMap<>();
+        for (RefundJobItemRepository.StatusCount c : itemRepository.countItemsByStatus(jobId)) {
+            counts.put(c.getStatus(), c.getTotal());
+        }
+        long done = counts.getOrDefault(SUCCEEDED, 0L) + counts.getOrDefault(FAILED, 0L);
+        LocalDateTime until = job.getCompletedAt() != null ? job.getCompletedAt() : LocalDateTime.now();
+        double seconds = job.getCreatedAt() != null ? Math.max(0.001, Duration.between(job.getCreatedAt(), until).toMillis() / 1000.0) : 0;
+        return new BulkRefundProgress(job.getId(), job.getStatus(), job.getTotalItems(),
+                counts.getOrDefault(PENDING, 0L), counts.getOrDefault(PROCESSING, 0L),
+                counts.getOrDefault(SUCCEEDED, 0L), counts.getOrDefault(FAILED, 0L),
+                job.getCreatedAt(), job.getCompletedAt(), seconds > 0 ? done / seconds : 0);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped.set(true);
+        poller.shutdown();
+        refundExecutor.shutdownNow();
+        // refunds dropped from the pool's queue never run; completing them as unknown outcomes lets the poller
+        // settle its batch (retried later with the same keys) instead of waiting on them forever
+        sending.forEach((future, intent) -> future.complete(unsent(intent, "Shut down before the refund was answered")));
+        try {
+            if (!poller.awaitTermination(10, TimeUnit.SECONDS)) {
+                // items of an unsettled batch keep their lease and are claimed again once it expires
+                poller.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            poller.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void wakeUp() {
+        if (wakePending.compareAndSet(false, true)) {
+            try {
+                poller.execute(this::poll);
+            } catch (RuntimeException e) {
+                wakePending.set(false);
+            }
+        }
+    }
+
+    private void poll() {
+        wakePending.set(false);
+        int limit = Math.max(1, properties.getBatchSize());
+        try {
+            while (!stopped.get() && !Thread.currentThread().isInterrupted()) {
+                Batch batch = claim(limit);
+                if (batch.items().isEmpty()) {
+                    return;
+                }
+                run(batch);
+                if (batch.items().size() < limit) {
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Bulk refund poll failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Claims due items and records the refund intents of their returns, in one transaction.
+     */
+    private Batch claim(int limit) {
+        return transactionTemplate.execute(tx -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<RefundJobItem> items = itemRepository.lockClaimable(now, limit);
+            if (items.isEmpty()) {
+                return new Batch(items, Map.of());
+            }
+            for (RefundJobItem item : items) {
+                item.setStatus(PROCESSING);
+                item.setAttempts(item.getAttempts() + 1);
+                item.setLockedUntil(now.plus(properties.getLease()));
+            }
+            itemRepository.saveAll(items);
+
+            Map<Long, String> reasons = new HashMap<>();
+            jobRepository.findAllById(items.stream().map(RefundJobItem::getJobId).distinct().toList())
+                    .forEach(j -> reasons.put(j.getId(), j.getReason()));
+            List<ReturnService.RefundRequest> requests = new ArrayList<>(items.size());
+            for (RefundJobItem item : items) {
+                requests.add(new ReturnService.RefundRequest(item.getReturnId(), null, reasons.get(item.getJobId())));
+            }
+            return new Batch(items, returnService.recordRefundIntents(requests));
+        });
+    }
+
+    private void run(Batch batch) {
+        long startedAt = System.nanoTime();
+        List<CompletableFuture<ReturnService.RefundAttempt>> futures = new ArrayList<>(batch.intents().size());
+        for (ReturnService.RefundIntent intent : batch.intents().values()) {
+            futures.add(submit(intent));
+        }
+        List<ReturnService.RefundAttempt> attempts = futures.stream().map(CompletableFuture::join).toList();
+        try {
+            settle(batch, attempts);
+        } catch (RuntimeException e) {
+            // the outcomes stay unrecorded; the items are claimed again when their lease expires and resend
+            // the same requests, which Stripe answers from its idempotency cache
+            log.error("Could not record bulk refund outcomes of {} returns: {}", attempts.size(), e.getMessage());
+        }
+        batchDuration.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+
+    private CompletableFuture<ReturnService.RefundAttempt> submit(ReturnService.RefundIntent intent) {
+        CompletableFuture<ReturnService.RefundAttempt> future = new CompletableFuture<>();
+        sending.put(future, intent);
+        future.whenComplete((attempt, e) -> sending.remove(future));
+        try {
+            refundExecutor.execute(() -> future.complete(send(intent)));
+        } catch (RejectedExecutionException e) {
+            future.complete(unsent(intent, "Shut down before sending"));
+        }
+        return future;
+    }
+
+    private ReturnService.RefundAttempt send(ReturnService.RefundIntent intent) {
+        inFlight.incrementAndGet();
+        try {
+            rateLimiter.acquire();
+            return new ReturnService.RefundAttempt(intent, returnService.submitRefund(intent));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return unsent(intent, "Interrupted before sending");
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static ReturnService.RefundAttempt unsent(ReturnService.RefundIntent intent, String error) {
+        return new ReturnService.RefundAttempt(intent, new ReturnService.RefundOutcome(null, false, error));
+    }
+
+    /**
+     * Records the outcomes on the returns and payments and settles the items, in one transaction.
+     */
+    private void settle(Batch batch, List<ReturnService.RefundAttempt> attempts) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            if (!attempts.isEmpty()) {
+                returnService.recordRefundOutcomes(attempts);
+            }
+            Map<Long, ReturnRequest> returns = new HashMap<>();
+            returnRequestRepository.findAllById(batch.items().stream().map(RefundJobItem::getReturnId).distinct().toList())
+                    .forEach(rr -> returns.put(rr.getId(), rr));
+
+            Map<Long, Integer> claimedAttempts = new HashMap<>();
+            batch.items().forEach(i -> claimedAttempts.put(i.getId(), i.getAttempts()));
+            List<RefundJobItem> owned = itemRepository.findAllById(claimedAttempts.keySet()).stream()
+                    // items whose lease expired meanwhile belong to another worker now
+                    .filter(i -> PROCESSING.equals(i.getStatus()) && Objects.equals(i.getAttempts(), claimedAttempts.get(i.getId())))
+                    .toList();
+
+            LocalDateTime now = LocalDateTime.now();
+            for (RefundJobItem item : owned) {
+                ReturnRequest rr = returns.get(item.getReturnId());
+                item.setLockedUntil(null);
+                if (rr != null && ReturnService.REFUND_COMPLETED.equals(rr.getRefundStatus())) {
+                    item.setStatus(SUCCEEDED);
+                    item.setCompletedAt(now);
+                    item.setLastError(null);
+                    succeeded.increment();
+                } else if (rr == null || ReturnService.REFUND_FAILED.equals(rr.getRefundStatus())) {
+                    fail(item, rr != null ? rr.getRefundError() : "Return not found", now);
+                } else if (item.getAttempts() >= properties.getMaxAttempts()) {
+                    fail(item, "Refund outcome unknown after " + item.getAttempts() + " attempts: " + rr.getRefundError(), now);
+                } else {
+                    item.setStatus(PENDING);
+                    item.setNextAttemptAt(now.plus(backoff(item.getAttempts())));
+                    item.setLastError(StringUtils.abbreviate(rr.getRefundError(), MAX_ERROR_LENGTH));
+                    retried.increment();
+                }
+            }
+            itemRepository.saveAll(owned);
+            jobRepository.completeFinished(owned.stream().map(RefundJobItem::getJobId).distinct().toList(), now);
+        });
+    }
+
+    private void fail(RefundJobItem item, String error, LocalDateTime now) {
+        item.setStatus(FAILED);
+        item.setCompletedAt(now);
+        item.setLastError(StringUtils.abbreviate(error, MAX_ERROR_LENGTH));
+        failed.increment();
+    }
+
+    // initial-backoff * 2^(attempt-1), capped at max-backoff, then scaled by a random 50-100% so that
+    // refunds that failed together (e.g. on a rate limit) do not retry together
+    private Duration backoff(int attempt) {
+        long initial = properties.getInitialBackoff().toMillis();
+        long max = properties.getMaxBackoff().toMillis();
+        long delay = initial << Math.min(Math.max(0, attempt - 1), 30);
+        if (delay <= 0 || delay > max) {
+            delay = max;
+        }
+        return Duration.ofMillis((long) (delay * (0.5 + ThreadLocalRandom.current().nextDouble() * 0.5)));
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
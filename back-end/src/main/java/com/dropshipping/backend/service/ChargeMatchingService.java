@@ -0,0 +1,206 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.ReconciliationProperties;
+import com.dropshipping.backend.entity.ReconciliationAudit;
+import com.dropshipping.backend.repository.OrderRepository;
+import com.dropshipping.backend.repository.PaymentRepository;
+import com.dropshipping.backend.repository.ReconciliationAuditRepository;
+import com.dropshipping.backend.repository.SupplierReceiptRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Proposes orders and supplier receipts for charges that are not linked to an order.
+ * <p>
+ * The candidate orders (no completed payment yet) and unlinked receipts around the day are loaded once and
+ * indexed by amount; each charge looks up the orders whose total is within the amount tolerance and whose
+ * creation time is inside the time window, then the receipts matching the proposed order's expected supplier
+ * cost. Candidate pairs are scored by amount and time distance and assigned greedily from the best score
+ * down, so an order or receipt is proposed for at most one charge. Building the indexes is O(n log n) and
+ * each charge's lookup is O(log n + k), k being the candidates within the amount tolerance; the run is only
+ * O(n log n) overall while k stays small, i.e. while few orders share an amount within the tolerance.
+ * Proposals are written to the charge's {@link ReconciliationAudit} row for the day with their confidence.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChargeMatchingService {
+
+    private static final double AMOUNT_WEIGHT = 0.6;
+    private static final double TIME_WEIGHT = 0.4;
+
+    private final PaymentRepository paymentRepository;
+    private final OrderRepository orderRepository;
+    private final SupplierReceiptRepository supplierReceiptRepository;
+    private final ReconciliationAuditRepository reconciliationAuditRepository;
+    private final ReconciliationProperties properties;
+    private final TransactionTemplate transactionTemplate;
+
+    public record MatchProposal(Long paymentId, Long orderId, Long receiptId, BigDecimal receiptAmount,
+                                BigDecimal confidence) {}
+
+    record Scored(int charge, int candidate, double score) {}
+
+    /**
+     * Matches the day's unattached charges and stores the proposals on their audit rows. Charges whose audit
+     * row does not exist yet are matched again on the next run.
+     */
+    public List<MatchProposal> proposeMatches(LocalDate date) {
+        ReconciliationProperties.Matching cfg = properties.getMatching();
+        LocalDateTime start = date.atStartOfDay();
+        LocalDateTime end = date.plusDays(1).atStartOfDay();
+        List<PaymentRepository.UnattachedCharge> charges = paymentRepository.findUnattachedCharges(start, end);
+        if (charges.isEmpty()) {
+            return List.of();
+        }
+
+        long windowSeconds = cfg.getTimeWindow().toSeconds();
+        long windowDays = Math.max(1, cfg.getTimeWindow().toDays());
+        List<OrderRepository.MatchCandidate> orders = orderRepository.findMatchCandidates(
+                start.minusSeconds(windowSeconds), end.plusSeconds(windowSeconds), date);
+        List<SupplierReceiptRepository.UnlinkedReceipt> receipts = supplierReceiptRepository.findUnlinkedReceipts(
+                date.minusDays(windowDays), date.plusDays(windowDays), date);
+
+        Map<Long, OrderRepository.MatchCandidate> ordersById = new HashMap<>();
+        List<AmountTimeIndex.Entry> orderEntries = new ArrayList<>(orders.size());
+        for (OrderRepository.MatchCandidate o : orders) {
+            ordersById.put(o.getOrderId(), o);
+            orderEntries.add(new AmountTimeIndex.Entry(o.getOrderId(), cents(o.getTotalAmount()), epochSeconds(o.getCreatedAt())));
+        }
+        Map<Long, BigDecimal> receiptAmounts = new HashMap<>();
+        List<AmountTimeIndex.Entry> receiptEntries = new ArrayList<>(receipts.size());
+        for (SupplierReceiptRepository.UnlinkedReceipt r : receipts) {
+            receiptAmounts.put(r.getReceiptId(), r.getAmount());
+            receiptEntries.add(new AmountTimeIndex.Entry(r.getReceiptId(), cents(r.getAmount()), r.getReceiptDate().toEpochDay()));
+        }
+        AmountTimeIndex orderIndex = new AmountTimeIndex(orderEntries);
+        AmountTimeIndex receiptIndex = new AmountTimeIndex(receiptEntries);
+
+        // charge -> order
+        long toleranceCents = cents(cfg.getAmountTolerance());
+        List<Scored> orderCandidates = new ArrayList<>();
+        for (int c = 0; c < charges.size(); c++) {
+            int charge = c;
+            long amount = cents(charges.get(c).getAmount());
+            long time = epochSeconds(charges.get(c).getCreatedAt());
+            orderIndex.forEach(amount - toleranceCents, amount + toleranceCents, time - windowSeconds, time + windowSeconds,
+                    (position, id, candidateCents, candidateTime) -> {
+                        double score = score(Math.abs(candidateCents - amount), toleranceCents,
+                                Math.abs(candidateTime - time), windowSeconds);
+                        if (score >= cfg.getMinConfidence()) {
+                            orderCandidates.add(new Scored(charge, position, score));
+                        }
+                    });
+        }
+        Map<Integer, Scored> orderByCharge = assign(orderCandidates);
+
+        // matched charge -> receipt for the order's expected supplier cost
+        List<Scored> receiptCandidates = new ArrayList<>();
+        for (Scored match : orderByCharge.values()) {
+            OrderRepository.MatchCandidate order = ordersById.get(orderIndex.id(match.candidate()));
+            long expected = cents(order.getExpectedCost());
+            if (expected <= 0) {
+                continue;
+            }
+            long tolerance = Math.max(toleranceCents, Math.round(expected * cfg.getReceiptTolerance()));
+            long day = charges.get(match.charge()).getCreatedAt().toLocalDate().toEpochDay();
+            receiptIndex.forEach(expected - tolerance, expected + tolerance, day - windowDays, day + windowDays,
+                    (position, id, candidateCents, candidateDay) -> {
+                        double score = score(Math.abs(candidateCents - expected), tolerance,
+                                Math.abs(candidateDay - day), windowDays);
+                        if (score >= cfg.getMinConfidence()) {
+                            receiptCandidates.add(new Scored(match.charge(), position, score));
+                        }
+                    });
+        }
+        Map<Integer, Scored> receiptByCharge = assign(receiptCandidates);
+
+        List<MatchProposal> proposals = new ArrayList<>(orderByCharge.size());
+        for (Scored match : orderByCharge.values()) {
+            Scored receipt = receiptByCharge.get(match.charge());
+            Long receiptId = receipt != null ? receiptIndex.id(receipt.candidate()) : null;
+            proposals.add(new MatchProposal(charges.get(match.charge()).getPaymentId(), orderIndex.id(match.candidate()),
+                    receiptId, receiptId != null ? receiptAmounts.get(receiptId) : null, confidence(match.score())));
+        }
+        proposals.sort(Comparator.comparing(MatchProposal::paymentId));
+        store(date, proposals);
+        log.info("Charge matching for {}: {} unattached charges, {} orders and {} receipts considered, {} proposals",
+                date, charges.size(), orders.size(), receipts.size(), proposals.size());
+        return proposals;
+    }
+
+    private void store(LocalDate date, List<MatchProposal> proposals) {
+        if (proposals.isEmpty()) {
+            return;
+        }
+        Map<Long, MatchProposal> byPayment = new HashMap<>();
+        proposals.forEach(p -> byPayment.put(p.paymentId(), p));
+        transactionTemplate.executeWithoutResult(tx -> {
+            List<ReconciliationAudit> audits =
+                    reconciliationAuditRepository.findAllByReconciliationDateAndPaymentIdIn(date, byPayment.keySet());
+            for (ReconciliationAudit audit : audits) {
+                MatchProposal p = byPayment.get(audit.getPaymentId());
+                audit.setMatchedOrderId(p.orderId());
+                audit.setMatchConfidence(p.confidence());
+                if (p.receiptId() != null) {
+                    audit.setSupplierReceipt(supplierReceiptRepository.getReferenceById(p.receiptId()));
+                    audit.setSupplierAmount(p.receiptAmount());
+                    audit.setDiscrepancyAmount(audit.getCustomerAmount().subtract(p.receiptAmount()));
+                }
+                audit.setDiscrepancyReason("Unattached charge, proposed order " + p.orderId()
+                        + (p.receiptId() != null ? " and receipt " + p.receiptId() : "")
+                        + " (confidence " + p.confidence().toPlainString() + ")");
+            }
+            reconciliationAuditRepository.saveAll(audits);
+        });
+    }
+
+    /**
+     * Greedy one-to-one assignment, best score first; returns the chosen candidate per charge.
+     */
+    static Map<Integer, Scored> assign(List<Scored> candidates) {
+        candidates.sort(Comparator.comparingDouble(Scored::score).reversed());
+        Map<Integer, Scored> byCharge = new HashMap<>();
+        Set<Integer> taken = new HashSet<>();
+        for (Scored s : candidates) {
+            if (!byCharge.containsKey(s.charge()) && taken.add(s.candidate())) {
+                byCharge.put(s.charge(), s);
+            }
+        }
+        return byCharge;
+    }
+
+    // 1.0 for an exact amount at the same time, falling linearly to the edges of the tolerance and window
+    static double score(long amountDiff, long amountTolerance, long timeDiff, long timeWindow) {
+        double amountScore = 1.0 - (double) amountDiff / (amountTolerance + 1);
+        double timeScore = 1.0 - (double) timeDiff / (timeWindow + 1);
+        return AMOUNT_WEIGHT * amountScore + TIME_WEIGHT * timeScore;
+    }
+
+    private static BigDecimal confidence(double score) {
+        return BigDecimal.valueOf(score).setScale(3, RoundingMode.HALF_UP);
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount != null ? amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact() : 0;
+    }
+
+    private static long epochSeconds(LocalDateTime time) {
+        return time != null ? time.toEpochSecond(ZoneOffset.UTC) : 0;
+    }
+}
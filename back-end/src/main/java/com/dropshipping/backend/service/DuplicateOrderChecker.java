@@ -1,37 +1,384 @@
 package com.dropshipping.backend.service;
 
-import lombok.RequiredArgsConstructor;
+import com.dropshipping.backend.config.DuplicateCheckProperties;
+import com.dropshipping.backend.repository.OrderItemRepository;
+import com.dropshipping.backend.resilience.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * Duplicate order detection within a 24-hour window using Redis.
  * Key: customerId:productId:supplierId
+ * <p>
+ * In resilient mode (duplicate-check.fallback.enabled) every Redis call is time-boxed and guarded by a
+ * circuit breaker; while Redis is slow or down, checks are answered from a bounded in-process store and
+ * the keys locked locally are pushed back to Redis once it recovers. Each lock writes a random token, so
+ * a write that timed out but was applied anyway is recognised as this node's own when reconciling, and
+ * is deleted (only while it still carries the token) if the order does not keep the lock.
  */
 @Component
-@RequiredArgsConstructor
+@Slf4j
 public class DuplicateOrderChecker {
 
     private final StringRedisTemplate redisTemplate;
+    private final OrderItemRepository orderItemRepository;
+    private final DuplicateCheckProperties properties;
 
     private static final Duration WINDOW = Duration.ofHours(24);
 
+    /**
+     * All-or-nothing lock of every key of an order: returns the 1-based index of the first key that is
+     * already held (nothing is written in that case), or 0 after setting all keys to the token ARGV[1]
+     * with the window TTL.
+     */
+    private static final RedisScript<Long> LOCK_ALL_SCRIPT = new DefaultRedisScript<>("""
+            for i, key in ipairs(KEYS) do
+              if redis.call('EXISTS', key) == 1 then
+                return i
+              end
+            end
+            for _, key in ipairs(KEYS) do
+              redis.call('SET', key, ARGV[1], 'PX', ARGV[2])
+            end
+            return 0
+            """, Long.class);
+
+    /**
+     * Pushes locally held keys back with their token (ARGV[2i - 1]) and remaining TTL (ARGV[2i]) without
+     * overwriting keys that another node set meanwhile; returns how many keys another node holds. A key that
+     * already carries its token was written by a call of this node that timed out and is not a conflict.
+     */
+    private static final RedisScript<Long> RECONCILE_SCRIPT = new DefaultRedisScript<>("""
+            local conflicts = 0
+            for i, key in ipairs(KEYS) do
+              local token = ARGV[2 * i - 1]
+              if not redis.call('SET', key, token, 'PX', ARGV[2 * i], 'NX') and redis.call('GET', key) ~= token then
+                conflicts = conflicts + 1
+              end
+            end
+            return conflicts
+            """, Long.class);
+
+    /**
+     * Deletes each key only if it still carries the token ARGV[i]; returns how many were deleted.
+     */
+    private static final RedisScript<Long> DELETE_IF_TOKEN_SCRIPT = new DefaultRedisScript<>("""
+            local deleted = 0
+            for i, key in ipairs(KEYS) do
+              if redis.call('GET', key) == ARGV[i] then
+                deleted = deleted + redis.call('DEL', key)
+              end
+            end
+            return deleted
+            """, Long.class);
+
+    private final CircuitBreaker circuitBreaker;
+    private final LocalDuplicateStore localStore;
+    private final ThreadPoolExecutor redisExecutor;
+
+    private final Counter redisServed;
+    private final Counter fallbackServed;
+    private final Counter reconciledKeys;
+    private final Counter reconcileConflicts;
+    private final Counter orphansDeleted;
+    private final Counter bloomHitsCleared;
+
+    /**
+     * Product/supplier pair of one order item; combined with the customer id it forms a duplicate key.
+     */
+    public record ItemKey(Long productId, Long supplierId) {}
+
+    public DuplicateOrderChecker(StringRedisTemplate redisTemplate,
+                                 OrderItemRepository orderItemRepository,
+                                 DuplicateCheckProperties properties,
+                                 MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.orderItemRepository = orderItemRepository;
+        this.properties = properties;
+
+        DuplicateCheckProperties.Fallback fallback = properties.getFallback();
+        DuplicateCheckProperties.Bloom bloom = properties.getBloom();
+        this.circuitBreaker = new CircuitBreaker("duplicate-check-redis", fallback.getFailureThreshold(), fallback.getOpenDuration());
+        this.localStore = new LocalDuplicateStore(fallback.getMaxLocalEntries(),
+                bloom.isEnabled()
+                        ? new RotatingBloomFilter(bloom.getExpectedInsertions(), bloom.getFalsePositiveRate(), WINDOW.toMillis())
+                        : null);
+
+        AtomicInteger threadIds = new AtomicInteger();
+        int threads = Math.max(1, fallback.getRedisThreads());
+        this.redisExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * 16),
+                r -> {
+                    Thread t = new Thread(r, "dup-check-redis-" + threadIds.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.redisServed = Counter.builder("duplicate.check.requests").tag("path", "redis")
+                .description("Duplicate checks answered by Redis").register(meterRegistry);
+        this.fallbackServed = Counter.builder("duplicate.check.requests").tag("path", "fallback")
+                .description("Duplicate checks answered by the local fallback store").register(meterRegistry);
+        this.reconciledKeys = Counter.builder("duplicate.check.reconciled.keys")
+                .description("Locally held keys pushed back to Redis").register(meterRegistry);
+        this.reconcileConflicts = Counter.builder("duplicate.check.reconcile.conflicts")
+                .description("Locally held keys that another node had already locked in Redis").register(meterRegistry);
+        this.orphansDeleted = Counter.builder("duplicate.check.orphans.deleted")
+                .description("Keys written by timed-out Redis calls for locks this node did not keep, deleted afterwards").register(meterRegistry);
+        this.bloomHitsCleared = Counter.builder("duplicate.check.bloom.cleared")
+                .description("Bloom filter hits the database showed were not duplicates").register(meterRegistry);
+        Gauge.builder("duplicate.check.local.size", localStore, LocalDuplicateStore::size).register(meterRegistry);
+        Gauge.builder("duplicate.check.local.unsynced", localStore, LocalDuplicateStore::unsyncedCount).register(meterRegistry);
+        Gauge.builder("duplicate.check.local.orphaned", localStore, LocalDuplicateStore::orphanedCount).register(meterRegistry);
+        Gauge.builder("duplicate.check.breaker.open", circuitBreaker, cb -> cb.getState() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .register(meterRegistry);
+
+        circuitBreaker.onStateChange(state -> log.warn("Duplicate-check Redis circuit breaker is now {}", state));
+    }
+
     public boolean isDuplicateAndLock(Long customerId, Long productId, Long supplierId) {
         if (customerId == null || productId == null || supplierId == null) {
             return false;
         }
-        String key = buildKey(customerId, productId, supplierId);
-        Boolean success = redisTemplate.opsForValue().setIfAbsent(key, "1", WINDOW);
-        // setIfAbsent returns true if successfully set (i.e., not duplicate)
-        // return true if it's a duplicate (already present)
-        return Boolean.FALSE.equals(success);
+        return isDuplicateAndLockAll(customerId, List.of(new ItemKey(productId, supplierId)));
+    }
+
+    /**
+     * Checks and locks every item key of an order in a single atomic Redis round trip.
+     * If any key is already held, no key is written and true is returned. When called inside a
+     * transaction, the keys are released again if that transaction does not commit.
+     * Repeated product/supplier pairs within the same order count as one key.
+     */
+    public boolean isDuplicateAndLockAll(Long customerId, Collection<ItemKey> items) {
+        Map<String, ItemKey> itemsByKey = buildKeyMap(customerId, items);
+        List<String> keys = new ArrayList<>(itemsByKey.keySet());
+        if (keys.isEmpty()) {
+            return false;
+        }
+        long ttlMillis = WINDOW.toMillis();
+        String token = UUID.randomUUID().toString();
+        boolean duplicate;
+        if (!properties.getFallback().isEnabled()) {
+            Long firstHeld = redisTemplate.execute(LOCK_ALL_SCRIPT, keys, token, String.valueOf(ttlMillis));
+            duplicate = firstHeld != null && firstHeld > 0;
+        } else {
+            Optional<Long> firstHeld = callRedis(() -> redisTemplate.execute(LOCK_ALL_SCRIPT, keys, token, String.valueOf(ttlMillis)));
+            long now = System.currentTimeMillis();
+            if (firstHeld.isPresent()) {
+                redisServed.increment();
+                duplicate = firstHeld.get() > 0;
+                if (!duplicate) {
+                    localStore.remember(keys, ttlMillis, now, token);
+                }
+            } else {
+                fallbackServed.increment();
+                duplicate = isRecentDuplicate(customerId, itemsByKey, localStore.possiblyHeld(keys, now))
+                        || localStore.tryLockAll(keys, ttlMillis, now, token) > 0;
+                if (duplicate) {
+                    // the script may have been applied after the call timed out
+                    localStore.orphan(withToken(keys, token));
+                }
+            }
+        }
+        if (!duplicate) {
+            releaseOnRollback(keys);
+        }
+        return duplicate;
     }
 
     public void clearLock(Long customerId, Long productId, Long supplierId) {
         String key = buildKey(customerId, productId, supplierId);
-        redisTemplate.delete(key);
+        release(List.of(key));
+    }
+
+    /**
+     * Releases all item keys of an order with one DEL.
+     */
+    public void clearLocks(Long customerId, Collection<ItemKey> items) {
+        List<String> keys = buildKeys(customerId, items);
+        if (!keys.isEmpty()) {
+            release(keys);
+        }
+    }
+
+    /**
+     * Pushes keys that were locked locally during a Redis outage back to Redis once it is reachable again.
+     * Keys another node locked in the meantime are counted as conflicts (possible duplicates during the outage).
+     */
+    @Scheduled(fixedDelayString = "${duplicate-check.fallback.reconcile-interval-ms:15000}")
+    public void reconcileLocalLocks() {
+        if (!properties.getFallback().isEnabled()) {
+            return;
+        }
+        int batchSize = Math.max(1, properties.getFallback().getReconcileBatchSize());
+        // orphans first, so a timed-out write of a lock this node gave up is not taken for another node's lock
+        while (localStore.orphanedCount() > 0 && circuitBreaker.getState() != CircuitBreaker.State.OPEN) {
+            Map<String, String> batch = localStore.drainOrphaned(batchSize);
+            List<String> keys = new ArrayList<>(batch.keySet());
+            Object[] args = batch.values().toArray();
+            Optional<Long> deleted = callRedis(() -> redisTemplate.execute(DELETE_IF_TOKEN_SCRIPT, keys, args));
+            if (deleted.isEmpty()) {
+                localStore.orphan(batch);
+                return;
+            }
+            orphansDeleted.increment(deleted.get());
+        }
+        while (localStore.unsyncedCount() > 0 && circuitBreaker.getState() != CircuitBreaker.State.OPEN) {
+            Map<String, LocalDuplicateStore.Pending> batch = localStore.drainUnsynced(batchSize, System.currentTimeMillis());
+            if (batch.isEmpty()) {
+                continue;
+            }
+            List<String> keys = new ArrayList<>(batch.keySet());
+            Object[] args = new Object[keys.size() * 2];
+            for (int i = 0; i < keys.size(); i++) {
+                LocalDuplicateStore.Pending pending = batch.get(keys.get(i));
+                args[2 * i] = pending.token();
+                args[2 * i + 1] = String.valueOf(pending.ttlMillis());
+            }
+            Optional<Long> conflicts = callRedis(() -> redisTemplate.execute(RECONCILE_SCRIPT, keys, args));
+            if (conflicts.isEmpty()) {
+                localStore.markUnsynced(batch);
+                return;
+            }
+            reconciledKeys.increment(keys.size() - conflicts.get());
+            if (conflicts.get() > 0) {
+                reconcileConflicts.increment(conflicts.get());
+                log.warn("{} duplicate-check keys locked locally during the Redis outage were also locked by another node", conflicts.get());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        redisExecutor.shutdownNow();
+    }
+
+    private void release(List<String> keys) {
+        if (!properties.getFallback().isEnabled()) {
+            redisTemplate.delete(keys);
+            return;
+        }
+        Map<String, String> tokens = localStore.release(keys);
+        if (callRedis(() -> redisTemplate.delete(keys)).isEmpty()) {
+            // deleted on the next reconciliation if they still carry this node's token
+            localStore.orphan(tokens);
+            log.debug("Could not release {} duplicate-check keys in Redis; retrying once it is reachable", keys.size());
+        }
+    }
+
+    /**
+     * Confirms Bloom filter hits against the stored orders: the filter cannot forget keys of orders that
+     * were rolled back, so only a recent order item with the same customer/product/supplier counts.
+     * Errors count as duplicates.
+     */
+    private boolean isRecentDuplicate(Long customerId, Map<String, ItemKey> itemsByKey, List<String> possiblyHeld) {
+        if (possiblyHeld.isEmpty()) {
+            return false;
+        }
+        LocalDateTime since = LocalDateTime.now().minus(WINDOW);
+        for (String key : possiblyHeld) {
+            ItemKey item = itemsByKey.get(key);
+            try {
+                if (orderItemRepository.existsRecentItem(customerId, item.productId(), item.supplierId(), since)) {
+                    return true;
+                }
+                bloomHitsCleared.increment();
+            } catch (RuntimeException e) {
+                log.debug("Could not confirm a possible duplicate in the database: {}", e.toString());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, String> withToken(List<String> keys, String token) {
+        Map<String, String> tokens = new LinkedHashMap<>();
+        keys.forEach(k -> tokens.put(k, token));
+        return tokens;
+    }
+
+    /**
+     * Runs a Redis call through the circuit breaker with the configured time budget.
+     * Returns empty when the breaker is open or the call failed, timed out or was rejected.
+     */
+    private <T> Optional<T> callRedis(Supplier<T> call) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return Optional.empty();
+        }
+        try {
+            T result = CompletableFuture.supplyAsync(call, redisExecutor)
+                    .get(properties.getFallback().getRedisTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            circuitBreaker.onSuccess();
+            return Optional.ofNullable(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            circuitBreaker.onFailure();
+            return Optional.empty();
+        } catch (ExecutionException | TimeoutException | RejectedExecutionException e) {
+            circuitBreaker.onFailure();
+            log.debug("Duplicate-check Redis call failed: {}", e.toString());
+            return Optional.empty();
+        }
+    }
+
+    private void releaseOnRollback(List<String> keys) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    release(keys);
+                }
+            }
+        });
+    }
+
+    private List<String> buildKeys(Long customerId, Collection<ItemKey> items) {
+        return new ArrayList<>(buildKeyMap(customerId, items).keySet());
+    }
+
+    private Map<String, ItemKey> buildKeyMap(Long customerId, Collection<ItemKey> items) {
+        if (customerId == null || items == null) {
+            return Map.of();
+        }
+        Map<String, ItemKey> keys = new LinkedHashMap<>();
+        for (ItemKey item : items) {
+            if (item.productId() != null && item.supplierId() != null) {
+                keys.putIfAbsent(buildKey(customerId, item.productId(), item.supplierId()), item);
+            }
+        }
+        return keys;
     }
 
     private String buildKey(Long customerId, Long productId, Long supplierId) {
@@ -0,0 +1,379 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.DashboardProperties;
+import com.dropshipping.backend.entity.Order;
+import com.dropshipping.backend.entity.OrderItem;
+import com.dropshipping.backend.enums.OrderStatus;
+import com.dropshipping.backend.enums.ShipmentStatus;
+import com.dropshipping.backend.repository.OrderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Fulfillment dashboard counts.
+ * <p>
+ * The authoritative numbers come from one grouped aggregate query. On top of it an in-memory copy is
+ * kept current by applying the delta of every committed status, review and shipment transition, so the
+ * dashboard is answered from memory. The copy is periodically replaced by a fresh aggregate to correct any
+ * drift (bulk updates, changes made outside this service, other nodes).
+ * <p>
+ * The deltas of a transaction are summed and stamped with its PostgreSQL transaction id before commit. The
+ * aggregate is read in a repeatable-read transaction together with its snapshot, so a delta is applied on
+ * top of it only if the snapshot did not already see the delta's transaction; a re-sync never counts a
+ * transition twice, whenever its commit falls.
+ */
+@Component
+@Slf4j
+public class FulfillmentDashboardCounters {
+
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+    private final OrderRepository orderRepository;
+    private final DashboardProperties properties;
+    private final TransactionTemplate aggregateTransaction;
+    private final Supplier<LocalDate> today;
+
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+    private final Object resyncLock = new Object();
+    private Counts counts;
+    // snapshot of the aggregate the counts were loaded from; deltas of transactions it saw are already in
+    private TxSnapshot countedThrough;
+    private List<StampedDelta> deltasDuringResync;
+    private LocalDate day;
+
+    @Autowired
+    public FulfillmentDashboardCounters(OrderRepository orderRepository,
+                                        DashboardProperties properties,
+                                        PlatformTransactionManager transactionManager) {
+        this(orderRepository, properties, transactionManager, LocalDate::now);
+    }
+
+    FulfillmentDashboardCounters(OrderRepository orderRepository,
+                                 DashboardProperties properties,
+                                 PlatformTransactionManager transactionManager,
+                                 Supplier<LocalDate> today) {
+        this.orderRepository = orderRepository;
+        this.properties = properties;
+        this.today = today;
+        this.aggregateTransaction = new TransactionTemplate(transactionManager);
+        // the snapshot read first is the one the aggregate query sees
+        aggregateTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        aggregateTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Dashboard map: awaitingSupplierPurchase, requiresManualReview, delayedShipments, orderStatusCounts
+     * and reconciliationsToday.
+     */
+    public Map<String, Object> snapshot() {
+        if (!properties.getCounters().isEnabled()) {
+            return toMap(query().counts());
+        }
+        Counts copy;
+        synchronized (this) {
+            copy = counts != null ? counts.copy() : null;
+            if (copy != null && !today.get().equals(day)) {
+                copy.reconciliationsToday = 0;
+            }
+        }
+        if (copy == null) {
+            resync();
+            synchronized (this) {
+                copy = counts != null ? counts.copy() : null;
+            }
+        }
+        return toMap(copy != null ? copy : query().counts());
+    }
+
+    /**
+     * Registers a callback run (on the committing thread) whenever the counts may have changed.
+     * Callbacks must be cheap; they typically only mark a consumer dirty.
+     */
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    @Scheduled(fixedDelayString = "${dashboard.counters.resync-interval-ms:60000}")
+    public void resync() {
+        if (!properties.getCounters().isEnabled()) {
+            return;
+        }
+        synchronized (resyncLock) {
+            resyncCounts();
+        }
+    }
+
+    private void resyncCounts() {
+        synchronized (this) {
+            deltasDuringResync = new ArrayList<>();
+        }
+        Aggregate fresh;
+        try {
+            fresh = query();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                deltasDuringResync = null;
+            }
+            log.warn("Could not re-sync fulfillment dashboard counters: {}", e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            // transitions committed while the query ran are in its result only if its snapshot saw them
+            for (StampedDelta d : deltasDuringResync) {
+                if (!fresh.snapshot().includes(d.txid())) {
+                    fresh.counts().add(d.delta());
+                }
+            }
+            deltasDuringResync = null;
+            counts = fresh.counts();
+            countedThrough = fresh.snapshot();
+            day = fresh.day();
+        }
+        notifyChanged();
+    }
+
+    public void recordOrderCreated(Order order) {
+        Counts delta = new Counts();
+        delta.orderStatus[order.getStatus().ordinal()]++;
+        if (Boolean.TRUE.equals(order.getRequiresReview())) {
+            delta.requiresReview++;
+        }
+        for (OrderItem item : order.getOrderItems()) {
+            delta.addShipment(item.getShipmentStatus(), 1);
+        }
+        applyAfterCommit(delta);
+    }
+
+    public void recordOrderChanged(OrderStatus fromStatus, Boolean fromRequiresReview, Order order) {
+        Counts delta = new Counts();
+        if (fromStatus != order.getStatus()) {
+            if (fromStatus != null) {
+                delta.orderStatus[fromStatus.ordinal()]--;
+            }
+            delta.orderStatus[order.getStatus().ordinal()]++;
+        }
+        boolean was = Boolean.TRUE.equals(fromRequiresReview);
+        boolean now = Boolean.TRUE.equals(order.getRequiresReview());
+        if (was != now) {
+            delta.requiresReview += now ? 1 : -1;
+        }
+        applyAfterCommit(delta);
+    }
+
+    public void recordShipmentChanged(ShipmentStatus from, ShipmentStatus to) {
+        if (from == to) {
+            return;
+        }
+        Counts delta = new Counts();
+        delta.addShipment(from, -1);
+        delta.addShipment(to, 1);
+        applyAfterCommit(delta);
+    }
+
+    public void recordReconciliations(int count) {
+        if (count == 0) {
+            return;
+        }
+        Counts delta = new Counts();
+        delta.reconciliationsToday = count;
+        applyAfterCommit(delta);
+    }
+
+    private void applyAfterCommit(Counts delta) {
+        if (!properties.getCounters().isEnabled()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(null, delta);
+            return;
+        }
+        TransactionDelta pending = transactionDelta();
+        if (pending == null) {
+            pending = new TransactionDelta();
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.delta.add(delta);
+    }
+
+    // the current transaction's synchronizations only; those of a suspended outer transaction are not listed
+    private TransactionDelta transactionDelta() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof TransactionDelta pending && pending.belongsTo(this)) {
+                return pending;
+            }
+        }
+        return null;
+    }
+
+    private void apply(Long txid, Counts delta) {
+        synchronized (this) {
+            if (counts == null) {
+                // not loaded yet; the first re-sync reads the committed state
+                return;
+            }
+            if (countedThrough.includes(txid)) {
+                // committed before the aggregate the counts were loaded from was read
+                return;
+            }
+            LocalDate now = today.get();
+            if (!now.equals(day)) {
+                counts.reconciliationsToday = 0;
+                day = now;
+            }
+            counts.add(delta);
+            if (deltasDuringResync != null) {
+                deltasDuringResync.add(new StampedDelta(txid, delta));
+            }
+        }
+        notifyChanged();
+    }
+
+    private void notifyChanged() {
+        for (Runnable listener : changeListeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                log.warn("Dashboard change listener failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private Aggregate query() {
+        return aggregateTransaction.execute(tx -> {
+            TxSnapshot snapshot = TxSnapshot.parse(orderRepository.currentSnapshot());
+            LocalDate date = today.get();
+            return new Aggregate(countFor(date), snapshot, date);
+        });
+    }
+
+    private Counts countFor(LocalDate date) {
+        Counts c = new Counts();
+        for (OrderRepository.DashboardCount row : orderRepository.countForDashboard(date.atStartOfDay(), date.plusDays(1).atStartOfDay())) {
+            long total = row.getTotal() != null ? row.getTotal() : 0;
+            switch (row.getMetric()) {
+                case "ORDER_STATUS" -> c.orderStatus[OrderStatus.valueOf(row.getBucket()).ordinal()] = total;
+                case "SHIPMENT_STATUS" -> c.addShipment(ShipmentStatus.valueOf(row.getBucket()), total);
+                case "REQUIRES_REVIEW" -> c.requiresReview = total;
+                case "RECONCILIATIONS" -> c.reconciliationsToday = total;
+                default -> log.debug("Ignoring dashboard metric {}", row.getMetric());
+            }
+        }
+        return c;
+    }
+
+    private static Map<String, Object> toMap(Counts c) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("awaitingSupplierPurchase", c.awaitingPurchase);
+        m.put("requiresManualReview", c.requiresReview);
+        m.put("delayedShipments", c.delayed);
+
+        Map<String, Long> statusCounts = new LinkedHashMap<>();
+        for (OrderStatus s : STATUSES) {
+            statusCounts.put(s.name(), c.orderStatus[s.ordinal()]);
+        }
+        m.put("orderStatusCounts", statusCounts);
+        m.put("reconciliationsToday", c.reconciliationsToday);
+        return m;
+    }
+
+    /**
+     * Sum of the deltas recorded in one transaction, applied once it committed.
+     */
+    private final class TransactionDelta implements TransactionSynchronization {
+        private final Counts delta = new Counts();
+        private Long txid;
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (!readOnly) {
+                txid = orderRepository.currentTransactionId();
+            }
+        }
+
+        @Override
+        public void afterCommit() {
+            apply(txid, delta);
+        }
+
+        boolean belongsTo(FulfillmentDashboardCounters counters) {
+            return counters == FulfillmentDashboardCounters.this;
+        }
+    }
+
+    private record StampedDelta(Long txid, Counts delta) {}
+
+    private record Aggregate(Counts counts, TxSnapshot snapshot, LocalDate day) {}
+
+    /**
+     * A PostgreSQL snapshot in the text form of {@code txid_current_snapshot()}: {@code xmin:xmax:xip,...}.
+     */
+    record TxSnapshot(long xmin, long xmax, Set<Long> inProgress) {
+
+        static TxSnapshot parse(String text) {
+            String[] parts = text.split(":", -1);
+            Set<Long> inProgress = new HashSet<>();
+            if (parts.length > 2 && !parts[2].isEmpty()) {
+                for (String xip : parts[2].split(",")) {
+                    inProgress.add(Long.parseLong(xip));
+                }
+            }
+            return new TxSnapshot(Long.parseLong(parts[0]), Long.parseLong(parts[1]), inProgress);
+        }
+
+        /**
+         * Whether the transaction had committed when the snapshot was taken; false for a null id.
+         */
+        boolean includes(Long txid) {
+            return txid != null && (txid < xmin || (txid < xmax && !inProgress.contains(txid)));
+        }
+    }
+
+    private static final class Counts {
+        final long[] orderStatus = new long[STATUSES.length];
+        long requiresReview;
+        long awaitingPurchase;
+        long delayed;
+        long reconciliationsToday;
+
+        void addShipment(ShipmentStatus status, long n) {
+            if (status == ShipmentStatus.PENDING) {
+                awaitingPurchase += n;
+            } else if (status == ShipmentStatus.DELAYED) {
+                delayed += n;
+            }
+        }
+
+        void add(Counts other) {
+            for (int i = 0; i < orderStatus.length; i++) {
+                orderStatus[i] += other.orderStatus[i];
+            }
+            requiresReview += other.requiresReview;
+            awaitingPurchase += other.awaitingPurchase;
+            delayed += other.delayed;
+            reconciliationsToday += other.reconciliationsToday;
+        }
+
+        Counts copy() {
+            Counts c = new Counts();
+            c.add(this);
+            return c;
+        }
+    }
+}
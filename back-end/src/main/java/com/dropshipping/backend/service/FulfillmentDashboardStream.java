@@ -0,0 +1,263 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.DashboardProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+
+/**
+ * Server-sent events for the fulfillment dashboard.
+ * <p>
+ * A client first receives a {@code snapshot} event with the full dashboard, then {@code delta} events that
+ * only contain the values that changed (e.g. {@code {"orderStatusCounts":{"SHIPPED":42},"delayedShipments":3}}).
+ * Changes mark the stream dirty; a single ticker running at most {@code max-updates-per-second} times computes
+ * the snapshot and delta once and hands it to every client, so the cost does not grow with the number of open
+ * dashboards. Each client keeps one pending delta that later changes are merged into while a previous event
+ * is still being written, so a slow client gets fewer, coalesced events instead of a growing backlog.
+ */
+@Component
+@Slf4j
+public class FulfillmentDashboardStream {
+
+    private final FulfillmentDashboardCounters counters;
+    private final DashboardProperties.Stream properties;
+
+    private final LongFunction<SseEmitter> emitters;
+
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    // reserved before a client is added, so concurrent subscribes cannot exceed max-clients together
+    private final AtomicInteger connected = new AtomicInteger();
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+    private final ScheduledExecutorService ticker;
+    private final ExecutorService senders;
+    private volatile Map<String, Object> lastSnapshot;
+    private volatile long lastEventAt = System.nanoTime();
+
+    @Autowired
+    public FulfillmentDashboardStream(FulfillmentDashboardCounters counters,
+                                      DashboardProperties properties,
+                                      MeterRegistry meterRegistry) {
+        this(counters, properties, meterRegistry, SseEmitter::new);
+    }
+
+    FulfillmentDashboardStream(FulfillmentDashboardCounters counters,
+                               DashboardProperties properties,
+                               MeterRegistry meterRegistry,
+                               LongFunction<SseEmitter> emitters) {
+        this.counters = counters;
+        this.properties = properties.getStream();
+        this.emitters = emitters;
+
+        AtomicInteger threadIds = new AtomicInteger();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "dashboard-sse-ticker"));
+        this.senders = Executors.newFixedThreadPool(Math.max(1, this.properties.getSenderThreads()),
+                r -> daemon(r, "dashboard-sse-sender-" + threadIds.incrementAndGet()));
+
+        long periodMillis = Math.max(1, 1000 / Math.max(1, this.properties.getMaxUpdatesPerSecond()));
+        ticker.scheduleWithFixedDelay(this::tick, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        counters.addChangeListener(() -> dirty.set(true));
+
+        Gauge.builder("dashboard.sse.clients", clients, Set::size)
+                .description("Connected fulfillment dashboard SSE clients").register(meterRegistry);
+    }
+
+    public SseEmitter subscribe() {
+        if (connected.incrementAndGet() > properties.getMaxClients()) {
+            connected.decrementAndGet();
+            throw new IllegalStateException("Too many dashboard streams open");
+        }
+        SseEmitter emitter;
+        try {
+            emitter = emitters.apply(properties.getEmitterTimeout().toMillis());
+        } catch (RuntimeException e) {
+            connected.decrementAndGet();
+            throw e;
+        }
+        Client client = new Client(emitter);
+        emitter.onCompletion(() -> remove(client));
+        emitter.onTimeout(() -> remove(client));
+        emitter.onError(e -> remove(client));
+
+        // Register before reading the snapshot: deltas produced meanwhile queue up behind it, and since
+        // they carry absolute values, one that is already part of the snapshot is harmless
+        client.sending = true;
+        clients.add(client);
+        Map<String, Object> snapshot = lastSnapshot;
+        if (snapshot == null) {
+            snapshot = counters.snapshot();
+        }
+        try {
+            emitter.send(SseEmitter.event().name("snapshot").data(snapshot, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            client.drop(e);
+            return emitter;
+        }
+        senders.execute(client::drain);
+        return emitter;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        senders.shutdownNow();
+        clients.forEach(c -> c.emitter.complete());
+        clients.forEach(this::remove);
+    }
+
+    // the emitter's callbacks and a failed send may all report the same client
+    private void remove(Client client) {
+        if (clients.remove(client)) {
+            connected.decrementAndGet();
+        }
+    }
+
+    private void tick() {
+        try {
+            if (dirty.getAndSet(false)) {
+                Map<String, Object> current = counters.snapshot();
+                Map<String, Object> previous = lastSnapshot;
+                lastSnapshot = current;
+                Map<String, Object> delta = previous == null ? current : diff(previous, current);
+                if (!delta.isEmpty()) {
+                    lastEventAt = System.nanoTime();
+                    clients.forEach(c -> c.offer(delta));
+                    return;
+                }
+            }
+            if (System.nanoTime() - lastEventAt >= properties.getHeartbeatInterval().toNanos()) {
+                lastEventAt = System.nanoTime();
+                clients.forEach(Client::heartbeat);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Dashboard stream tick failed: {}", e.getMessage());
+            dirty.set(true);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> diff(Map<String, Object> previous, Map<String, Object> current) {
+        Map<String, Object> delta = new LinkedHashMap<>();
+        current.forEach((key, value) -> {
+            Object old = previous.get(key);
+            if (value instanceof Map<?, ?> nested && old instanceof Map<?, ?> oldNested) {
+                Map<String, Object> nestedDelta = diff((Map<String, Object>) oldNested, (Map<String, Object>) nested);
+                if (!nestedDelta.isEmpty()) {
+                    delta.put(key, nestedDelta);
+                }
+            } else if (!Objects.equals(old, value)) {
+                delta.put(key, value);
+            }
+        });
+        return delta;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void merge(Map<String, Object> target, Map<String, Object> delta) {
+        delta.forEach((key, value) -> {
+            if (value instanceof Map<?, ?> nested && target.get(key) instanceof Map<?, ?> existing) {
+                merge((Map<String, Object>) existing, (Map<String, Object>) nested);
+            } else if (value instanceof Map<?, ?> nested) {
+                Map<String, Object> copy = new LinkedHashMap<>();
+                merge(copy, (Map<String, Object>) nested);
+                target.put(key, copy);
+            } else {
+                target.put(key, value);
+            }
+        });
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    private final class Client {
+        private final SseEmitter emitter;
+        private Map<String, Object> pending;
+        private boolean sending;
+
+        Client(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Map<String, Object> delta) {
+            synchronized (this) {
+                if (pending == null) {
+                    pending = new LinkedHashMap<>();
+                }
+                merge(pending, delta);
+                if (sending) {
+                    return;
+                }
+                sending = true;
+            }
+            senders.execute(this::drain);
+        }
+
+        void heartbeat() {
+            synchronized (this) {
+                if (sending) {
+                    return;
+                }
+                sending = true;
+            }
+            senders.execute(() -> {
+                try {
+                    emitter.send(SseEmitter.event().comment("keep-alive"));
+                } catch (IOException | IllegalStateException e) {
+                    drop(e);
+                }
+                drain();
+            });
+        }
+
+        private void drain() {
+            while (true) {
+                Map<String, Object> next;
+                synchronized (this) {
+                    next = pending;
+                    pending = null;
+                    if (next == null) {
+                        sending = false;
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(SseEmitter.event().name("delta").data(next, MediaType.APPLICATION_JSON));
+                } catch (IOException | IllegalStateException e) {
+                    drop(e);
+                    return;
+                }
+            }
+        }
+
+        private void drop(Exception e) {
+            log.debug("Dropping dashboard stream client: {}", e.toString());
+            remove(this);
+            synchronized (this) {
+                pending = null;
+            }
+            emitter.completeWithError(e);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.ReconciliationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-reconciles orders as their charges and receipts arrive.
+ * <p>
+ * Events only record the order (or, for a charge without an order, the payment) together with a due time
+ * once the transaction that stored the charge or receipt has committed. Every further event for the same
+ * order pushes the due time back by the debounce period, capped at {@code max-delay} after the first one,
+ * so a burst of receipts for one order ends in a single recompute. A single worker picks up due entries
+ * and recomputes them in batches, upserting the results into {@code reconciliation_audit}.
+ * <p>
+ * When a batch fails its orders and charges are recomputed one at a time, so a single bad order does not
+ * hold back the rest. An order or charge that fails on its own is retried with an exponential, jittered
+ * backoff and dropped with an error log after {@code max-attempts}.
+ */
+@Component
+@Slf4j
+public class IncrementalReconciler {
+
+    private final TransactionReconciliationService reconciliationService;
+    private final ReconciliationProperties.Incremental properties;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<Long, Due> pendingOrders = new ConcurrentHashMap<>();
+    private final Map<Long, Due> pendingPayments = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService worker;
+
+    private final Counter chargeEvents;
+    private final Counter receiptEvents;
+    private final Counter chargesReconciled;
+    private final Counter failures;
+    private final Counter dropped;
+    private final Timer batchDuration;
+
+    // attempts counts failed recomputes; a new event does not bring a retry forward
+    private record Due(long firstAt, long dueAt, int attempts) {}
+
+    public IncrementalReconciler(TransactionReconciliationService reconciliationService,
+                                 ReconciliationProperties properties,
+                                 TransactionTemplate transactionTemplate,
+                                 MeterRegistry meterRegistry) {
+        this.reconciliationService = reconciliationService;
+        this.properties = properties.getIncremental();
+        this.transactionTemplate = transactionTemplate;
+
+        this.worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "reconciliation-incremental");
+            t.setDaemon(true);
+            return t;
+        });
+        long pollMillis = Math.max(50, this.properties.getDebounce().toMillis() / 4);
+        worker.scheduleWithFixedDelay(this::flushDue, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+
+        this.chargeEvents = Counter.builder("reconciliation.incremental.events").tag("source", "charge")
+                .description("Stored charges that scheduled a recompute").register(meterRegistry);
+        this.receiptEvents = Counter.builder("reconciliation.incremental.events").tag("source", "receipt")
+                .description("Stored receipts that scheduled a recompute").register(meterRegistry);
+        this.chargesReconciled = Counter.builder("reconciliation.incremental.charges")
+                .description("Charges re-reconciled incrementally").register(meterRegistry);
+        this.failures = Counter.builder("reconciliation.incremental.failures")
+                .description("Incremental recomputes that failed").register(meterRegistry);
+        this.dropped = Counter.builder("reconciliation.incremental.dropped")
+                .description("Orders and charges given up on after max-attempts failed recomputes").register(meterRegistry);
+        this.batchDuration = Timer.builder("reconciliation.incremental.batch.duration")
+                .description("Time to recompute one batch of orders").register(meterRegistry);
+        Gauge.builder("reconciliation.incremental.pending", this, r -> r.pendingOrders.size() + r.pendingPayments.size())
+                .description("Orders and charges waiting for a recompute").register(meterRegistry);
+    }
+
+    /**
+     * A charge was stored; {@code orderId} may be null for a charge not linked to an order yet.
+     */
+    public void chargeRecorded(Long orderId, Long paymentId) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        chargeEvents.increment();
+        if (orderId != null) {
+            afterCommit(() -> touch(pendingOrders, orderId));
+        } else if (paymentId != null) {
+            afterCommit(() -> touch(pendingPayments, paymentId));
+        }
+    }
+
+    public void receiptRecorded(Long orderId) {
+        if (!properties.isEnabled() || orderId == null) {
+            return;
+        }
+        receiptEvents.increment();
+        afterCommit(() -> touch(pendingOrders, orderId));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // pending recomputes are lost; the nightly sweep picks up charges that never got a result
+        worker.shutdownNow();
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void touch(Map<Long, Due> pending, Long id) {
+        long now = System.nanoTime();
+        long debounce = properties.getDebounce().toNanos();
+        long maxDelay = properties.getMaxDelay().toNanos();
+        pending.compute(id, (k, due) -> {
+            if (due == null) {
+                return new Due(now, now + debounce, 0);
+            }
+            if (due.attempts() > 0) {
+                return new Due(due.firstAt(), Math.max(due.dueAt(), now + debounce), due.attempts());
+            }
+            return new Due(due.firstAt(), Math.min(now + debounce, due.firstAt() + maxDelay), 0);
+        });
+    }
+
+    private void flushDue() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                int batchSize = Math.max(1, properties.getBatchSize());
+                long now = System.nanoTime();
+                Map<Long, Integer> orders = takeDue(pendingOrders, now, batchSize);
+                Map<Long, Integer> payments = takeDue(pendingPayments, now, batchSize - orders.size());
+                if (orders.isEmpty() && payments.isEmpty()) {
+                    return;
+                }
+                if (!reconcile(new ArrayList<>(orders.keySet()), new ArrayList<>(payments.keySet()))) {
+                    // a batch of one already ran on its own
+                    retryOneByOne(orders, payments, orders.size() + payments.size() > 1);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Incremental reconciliation worker failed: {}", e.getMessage());
+        }
+    }
+
+    // due ids with the number of failed recomputes behind them
+    private Map<Long, Integer> takeDue(Map<Long, Due> pending, long now, int limit) {
+        Map<Long, Integer> ids = new LinkedHashMap<>();
+        for (Map.Entry<Long, Due> e : pending.entrySet()) {
+            if (ids.size() >= limit) {
+                break;
+            }
+            // remove(key, value) fails if an event moved the due time meanwhile; the entry then waits
+            if (e.getValue().dueAt() - now <= 0 && pending.remove(e.getKey(), e.getValue())) {
+                ids.put(e.getKey(), e.getValue().attempts());
+            }
+        }
+        return ids;
+    }
+
+    private void retryOneByOne(Map<Long, Integer> orders, Map<Long, Integer> payments, boolean rerun) {
+        for (Map.Entry<Long, Integer> e : orders.entrySet()) {
+            if (!rerun || !reconcile(List.of(e.getKey()), List.of())) {
+                retryLater(pendingOrders, "order", e.getKey(), e.getValue() + 1);
+            }
+        }
+        for (Map.Entry<Long, Integer> e : payments.entrySet()) {
+            if (!rerun || !reconcile(List.of(), List.of(e.getKey()))) {
+                retryLater(pendingPayments, "charge", e.getKey(), e.getValue() + 1);
+            }
+        }
+    }
+
+    private void retryLater(Map<Long, Due> pending, String kind, Long id, int attempts) {
+        if (attempts >= Math.max(1, properties.getMaxAttempts())) {
+            dropped.increment();
+            log.error("Incremental reconciliation of {} {} failed {} times; dropped until the next event or a " +
+                    "backfill of its day", kind, id, attempts);
+            return;
+        }
+        long now = System.nanoTime();
+        long dueAt = now + backoff(attempts).toNanos();
+        // an event that arrived meanwhile keeps its entry; the retry only pushes its due time back
+        pending.merge(id, new Due(now, dueAt, attempts), (current, retry) ->
+                new Due(current.firstAt(), Math.max(current.dueAt(), dueAt), attempts));
+    }
+
+    // initial-backoff * 2^(attempt-1), capped at max-backoff, then scaled by a random 50-100% so that
+    // orders that failed together do not retry together
+    private Duration backoff(int attempt) {
+        long initial = properties.getInitialBackoff().toMillis();
+        long max = properties.getMaxBackoff().toMillis();
+        long delay = initial << Math.min(Math.max(0, attempt - 1), 30);
+        if (delay <= 0 || delay > max) {
+            delay = max;
+        }
+        return Duration.ofMillis((long) (delay * (0.5 + ThreadLocalRandom.current().nextDouble() * 0.5)));
+    }
+
+    private boolean reconcile(List<Long> orderIds, List<Long> paymentIds) {
+        long startedAt = System.nanoTime();
+        try {
+            Integer reconciled = transactionTemplate.execute(tx ->
+                    reconciliationService.reconcileOrdersAndPayments(orderIds, paymentIds));
+            chargesReconciled.increment(reconciled != null ? reconciled : 0);
+            return true;
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.warn("Incremental reconciliation of {} orders / {} charges failed: {}",
+                    orderIds.size(), paymentIds.size(), e.getMessage());
+            return false;
+        } finally {
+            batchDuration.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.dropshipping.backend.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded, expiring in-process copy of duplicate-check keys used while Redis is unavailable.
+ * Keys locked through Redis are remembered as well so that the fallback knows about recent orders;
+ * keys locked only locally are tracked as unsynced until they are pushed back to Redis.
+ * <p>
+ * Every lock carries the token its Redis write used. A Redis write that timed out may still have been
+ * applied; keys this node does not end up holding are kept as orphans with that token so they can be
+ * deleted in Redis (only if they still carry the token) once it is reachable again.
+ */
+class LocalDuplicateStore {
+
+    /**
+     * A key waiting to be pushed to Redis with the token it was locked with and its remaining TTL.
+     */
+    record Pending(String token, long ttlMillis) {}
+
+    private record Entry(long expiryMillis, String token) {}
+
+    private final int maxEntries;
+    private final RotatingBloomFilter bloomFilter;
+
+    // key -> expiry and token, insertion ordered so the oldest entries are evicted first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    // key -> token of keys locked only locally
+    private final LinkedHashMap<String, String> unsynced = new LinkedHashMap<>();
+    // key -> token of Redis writes that may have been applied for locks this node does not hold
+    private final LinkedHashMap<String, String> orphaned = new LinkedHashMap<>();
+
+    LocalDuplicateStore(int maxEntries, RotatingBloomFilter bloomFilter) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.bloomFilter = bloomFilter;
+    }
+
+    /**
+     * All-or-nothing local lock. Returns the 1-based index of the first key already held, or 0 once all
+     * keys are locked (and marked for reconciliation with Redis). Only exact entries count as held; Bloom
+     * filter hits are reported by {@link #possiblyHeld} so the caller can confirm them first.
+     */
+    synchronized int tryLockAll(List<String> keys, long ttlMillis, long nowMillis, String token) {
+        for (int i = 0; i < keys.size(); i++) {
+            if (isHeld(keys.get(i), nowMillis)) {
+                return i + 1;
+            }
+        }
+        for (String key : keys) {
+            put(key, nowMillis + ttlMillis, nowMillis, token);
+            unsynced.put(key, token);
+            orphaned.remove(key);
+        }
+        return 0;
+    }
+
+    /**
+     * Keys without an exact entry that the Bloom filter reports as seen: possibly locked by an order
+     * that was evicted from the bounded store, or by one that was rolled back since.
+     */
+    synchronized List<String> possiblyHeld(List<String> keys, long nowMillis) {
+        List<String> possible = new ArrayList<>();
+        if (bloomFilter != null) {
+            for (String key : keys) {
+                if (!isHeld(key, nowMillis) && bloomFilter.mightContain(key, nowMillis)) {
+                    possible.add(key);
+                }
+            }
+        }
+        return possible;
+    }
+
+    /**
+     * Records keys that were locked in Redis so they are known if Redis becomes unavailable.
+     */
+    synchronized void remember(List<String> keys, long ttlMillis, long nowMillis, String token) {
+        for (String key : keys) {
+            put(key, nowMillis + ttlMillis, nowMillis, token);
+        }
+    }
+
+    /**
+     * Forgets the keys and returns the tokens this node locked them with (keys it did not know are absent).
+     */
+    synchronized Map<String, String> release(List<String> keys) {
+        Map<String, String> tokens = new LinkedHashMap<>();
+        for (String key : keys) {
+            Entry entry = entries.remove(key);
+            unsynced.remove(key);
+            if (entry != null && entry.token() != null) {
+                tokens.put(key, entry.token());
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Remembers Redis writes that may have been applied (timed out) for keys this node does not hold.
+     */
+    synchronized void orphan(Map<String, String> tokens) {
+        for (Map.Entry<String, String> e : tokens.entrySet()) {
+            orphaned.remove(e.getKey());
+            orphaned.put(e.getKey(), e.getValue());
+        }
+        Iterator<String> it = orphaned.keySet().iterator();
+        while (orphaned.size() > maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    /**
+     * Removes up to {@code limit} orphaned keys and returns them with their token.
+     */
+    synchronized Map<String, String> drainOrphaned(int limit) {
+        Map<String, String> drained = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, String>> it = orphaned.entrySet().iterator();
+        while (it.hasNext() && drained.size() < limit) {
+            Map.Entry<String, String> e = it.next();
+            it.remove();
+            drained.put(e.getKey(), e.getValue());
+        }
+        return drained;
+    }
+
+    /**
+     * Removes up to {@code limit} unsynced keys and returns them with their token and remaining TTL.
+     * Expired keys are dropped.
+     */
+    synchronized Map<String, Pending> drainUnsynced(int limit, long nowMillis) {
+        Map<String, Pending> drained = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, String>> it = unsynced.entrySet().iterator();
+        while (it.hasNext() && drained.size() < limit) {
+            Map.Entry<String, String> e = it.next();
+            it.remove();
+            Entry entry = entries.get(e.getKey());
+            if (entry != null && entry.expiryMillis() > nowMillis) {
+                drained.put(e.getKey(), new Pending(e.getValue(), entry.expiryMillis() - nowMillis));
+            }
+        }
+        return drained;
+    }
+
+    synchronized void markUnsynced(Map<String, Pending> keys) {
+        for (Map.Entry<String, Pending> e : keys.entrySet()) {
+            if (entries.containsKey(e.getKey())) {
+                unsynced.put(e.getKey(), e.getValue().token());
+            }
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized int unsyncedCount() {
+        return unsynced.size();
+    }
+
+    synchronized int orphanedCount() {
+        return orphaned.size();
+    }
+
+    private boolean isHeld(String key, long nowMillis) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (entry.expiryMillis() > nowMillis) {
+                return true;
+            }
+            entries.remove(key);
+            unsynced.remove(key);
+        }
+        return false;
+    }
+
+    private void put(String key, long expiryMillis, long nowMillis, String token) {
+        // re-insert so the key moves to the young end of the eviction order
+        entries.remove(key);
+        entries.put(key, new Entry(expiryMillis, token));
+        if (bloomFilter != null) {
+            bloomFilter.put(key, nowMillis);
+        }
+        Iterator<String> it = entries.keySet().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            String evicted = it.next();
+            it.remove();
+            unsynced.remove(evicted);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.OrderProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free, time-ordered order numbers (Snowflake layout) that need no database or Redis round trip.
+ * <p>
+ * 64-bit id = 41 bits milliseconds since 2024-01-01T00:00Z | 10 bits node id | 12 bits sequence,
+ * i.e. up to 4096 ids per millisecond per node. When a millisecond's sequence is exhausted, or the clock
+ * steps backwards, ids continue on the next logical millisecond instead of blocking, so ids stay unique
+ * and increasing on a node.
+ * <p>
+ * The node id is leased from the database ({@link OrderNumberNodeLease}), so two running instances never
+ * share one. Ids are only handed out up to a timestamp reserved in the database ahead of time; a restarted
+ * instance continues after the reservation of the previous holder, so ids stay unique across restarts even
+ * when the clock is behind. The lease keeps the reservation ahead of the clock on its own schedule, so
+ * {@link #nextId} only writes to the database itself when that background reservation has lapsed.
+ */
+@Component
+@Slf4j
+public class OrderNumberGenerator {
+
+    private static final long EPOCH_MILLIS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+    private final String prefix;
+    private final long reservationMillis;
+    // reservation persisted by the lease's scheduled renewal
+    private final LongSupplier reservation;
+    // persists a new reservation; false when the node id lease was lost
+    private final LongPredicate reserver;
+
+    // (logical timestamp << SEQUENCE_BITS) | sequence of the last id handed out
+    private final AtomicLong state;
+    // logical timestamp up to which ids may be handed out
+    private volatile long reservedUntil;
+
+    @Autowired
+    public OrderNumberGenerator(OrderProperties orderProperties, OrderNumberNodeLease nodeLease) {
+        this(orderProperties.getNumber().getPrefix(), nodeLease.acquire(),
+                orderProperties.getNumber().getReservation().toMillis(), nodeLease::reservedUntil, nodeLease::reserve);
+    }
+
+    OrderNumberGenerator(String prefix, OrderNumberNodeLease.Lease lease, long reservationMillis,
+                         LongSupplier reservation, LongPredicate reserver) {
+        if (lease.nodeId() < 0 || lease.nodeId() > MAX_NODE_ID) {
+            throw new IllegalArgumentException("order.number.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.prefix = prefix;
+        this.nodeId = lease.nodeId();
+        this.reservationMillis = reservationMillis;
+        this.reservation = reservation;
+        this.reserver = reserver;
+        this.reservedUntil = lease.reservedUntil();
+        // ids of earlier holders of this node id have timestamps up to their reservation
+        this.state = new AtomicLong((lease.reservedUntil() << SEQUENCE_BITS) | SEQUENCE_MASK);
+        long behind = lease.reservedUntil() - currentTimestamp();
+        if (behind > reservationMillis) {
+            log.warn("Clock is {} ms behind the last order number reservation of node id {}; ids continue after the reservation",
+                    behind, nodeId);
+        }
+    }
+
+    /**
+     * Next human-readable order number, e.g. {@code ORD-1234567890123456789}.
+     */
+    public String next() {
+        return prefix + nextId();
+    }
+
+    public long nextId() {
+        while (true) {
+            long last = state.get();
+            long lastTimestamp = last >>> SEQUENCE_BITS;
+            long now = currentTimestamp();
+
+            long next;
+            if (now > lastTimestamp) {
+                next = now << SEQUENCE_BITS;
+            } else if ((last & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                next = last + 1;
+            } else {
+                next = (lastTimestamp + 1) << SEQUENCE_BITS;
+            }
+
+            if ((next >>> SEQUENCE_BITS) > reservedUntil) {
+                reserveThrough(next >>> SEQUENCE_BITS);
+                continue;
+            }
+            if (state.compareAndSet(last, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                long sequence = next & SEQUENCE_MASK;
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+            }
+        }
+    }
+
+    /**
+     * Milliseconds since the id epoch, the timestamp unit of ids and reservations.
+     */
+    static long currentTimestamp() {
+        return System.currentTimeMillis() - EPOCH_MILLIS;
+    }
+
+    private synchronized void reserveThrough(long timestamp) {
+        reservedUntil = Math.max(reservedUntil, reservation.getAsLong());
+        if (timestamp <= reservedUntil) {
+            return;
+        }
+        // the scheduled renewal fell behind the clock (database slow or unreachable): reserve in line
+        log.warn("Order number reservation of node id {} lapsed; reserving in line", nodeId);
+        long until = timestamp + reservationMillis;
+        if (!reserver.test(until)) {
+            throw new IllegalStateException("Order number node id " + nodeId + " is no longer leased by this instance");
+        }
+        reservedUntil = until;
+    }
+}
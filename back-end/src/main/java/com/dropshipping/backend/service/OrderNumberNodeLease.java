@@ -0,0 +1,135 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.OrderProperties;
+import com.dropshipping.backend.entity.OrderNumberNode;
+import com.dropshipping.backend.repository.OrderNumberNodeRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Leases this instance's order number node id from order_number_nodes and persists how far ahead
+ * timestamps are reserved. Every {@code order.number.renew-interval-ms} the lease is renewed and the
+ * reservation moved to {@code order.number.reservation} ahead of the clock, so order requests do not
+ * write it. Writes run in their own transaction: a reservation must stay committed even when an order
+ * that triggered one rolls back.
+ */
+@Component
+@Slf4j
+public class OrderNumberNodeLease {
+
+    // reservedUntil is what the previous holder reserved; ids of this holder continue after it
+    record Lease(int nodeId, long reservedUntil) {}
+
+    private final OrderNumberNodeRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderProperties.Numbering cfg;
+    private final String owner = UUID.randomUUID().toString();
+
+    private volatile Integer nodeId;
+    private volatile long reservedUntil;
+
+    public OrderNumberNodeLease(OrderNumberNodeRepository repository,
+                                PlatformTransactionManager transactionManager,
+                                OrderProperties orderProperties) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.cfg = orderProperties.getNumber();
+    }
+
+    /**
+     * Leases the configured node id, or any free one when none is configured. Fails when the configured
+     * id is held by another running instance or all ids are taken.
+     */
+    synchronized Lease acquire() {
+        Integer configured = cfg.getNodeId();
+        Lease lease = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            Optional<OrderNumberNode> free = configured != null
+                    ? repository.lockIfFree(configured, owner, now)
+                    : repository.lockFree(now);
+            if (free.isEmpty()) {
+                return null;
+            }
+            OrderNumberNode node = free.get();
+            Lease previous = new Lease(node.getNodeId(), node.getReservedUntil());
+            node.setOwner(owner);
+            node.setLeaseExpiresAt(now.plus(cfg.getLease()));
+            node.setReservedUntil(Math.max(previous.reservedUntil(), aheadOfClock()));
+            reservedUntil = node.getReservedUntil();
+            return previous;
+        });
+        if (lease == null) {
+            throw new IllegalStateException(configured != null
+                    ? "order.number.node-id " + configured + " is leased by another running instance"
+                    : "No free order number node id; all 1024 are leased");
+        }
+        nodeId = lease.nodeId();
+        log.info("Leased order number node id {} (previous reservation until {})", lease.nodeId(), lease.reservedUntil());
+        return lease;
+    }
+
+    /**
+     * Persists that ids up to {@code until} may be handed out and renews the lease. Returns false when
+     * the lease was lost, in which case no id beyond the previous reservation may be issued.
+     */
+    synchronized boolean reserve(long until) {
+        Integer id = nodeId;
+        if (id == null) {
+            return false;
+        }
+        Integer updated = transactionTemplate.execute(status ->
+                repository.renew(id, owner, LocalDateTime.now().plus(cfg.getLease()), until));
+        if (updated == null || updated == 0) {
+            log.error("Order number node id {} lease lost to another instance; order numbers cannot be issued until restart", id);
+            return false;
+        }
+        reservedUntil = Math.max(reservedUntil, until);
+        return true;
+    }
+
+    /**
+     * Timestamp up to which ids may currently be handed out.
+     */
+    long reservedUntil() {
+        return reservedUntil;
+    }
+
+    @Scheduled(fixedDelayString = "${order.number.renew-interval-ms:3000}")
+    public void renew() {
+        if (nodeId == null) {
+            return;
+        }
+        try {
+            reserve(Math.max(reservedUntil, aheadOfClock()));
+        } catch (Exception e) {
+            log.warn("Failed to renew order number node id {} lease: {}", nodeId, e.getMessage());
+        }
+    }
+
+    private long aheadOfClock() {
+        return OrderNumberGenerator.currentTimestamp() + cfg.getReservation().toMillis();
+    }
+
+    @PreDestroy
+    public void release() {
+        Integer id = nodeId;
+        if (id == null) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.release(id, owner));
+        } catch (Exception e) {
+            log.warn("Failed to release order number node id {}: {}", id, e.getMessage());
+        }
+    }
+}
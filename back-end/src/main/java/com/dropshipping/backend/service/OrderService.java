@@ -1,57 +1,227 @@
 package com.dropshipping.backend.service;
 
+import com.dropshipping.backend.cache.CacheNames;
+import com.dropshipping.backend.cache.CachedLookups;
 import com.dropshipping.backend.config.OrderProperties;
 import com.dropshipping.backend.dto.CreateOrderItemRequest;
 import com.dropshipping.backend.dto.CreateOrderRequest;
+import com.dropshipping.backend.dto.CursorPage;
+import com.dropshipping.backend.dto.OrderSummary;
+import com.dropshipping.backend.dto.SupplierBuyRow;
 import com.dropshipping.backend.entity.*;
 import com.dropshipping.backend.enums.OrderStatus;
 import com.dropshipping.backend.enums.ShipmentStatus;
 import com.dropshipping.backend.repository.*;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.data.domain.*;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.*;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class OrderService {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 200;
+
     private final OrderRepository orderRepository;
     private final CustomerRepository customerRepository;
     private final ProductRepository productRepository;
     private final OrderItemRepository orderItemRepository;
     private final PaymentRepository paymentRepository;
     private final SupplierRepository supplierRepository;
-    private final ReconciliationAuditRepository reconciliationAuditRepository;
 
     private final OrderProperties orderProperties;
     private final DuplicateOrderChecker duplicateOrderChecker;
+    private final OrderNumberGenerator orderNumberGenerator;
+    private final CachedLookups cachedLookups;
     private final AuditTrailService auditTrailService;
     private final ProfitCalculatorService profitCalculatorService;
-
-    private final ObjectMapper objectMapper = new ObjectMapper();
-
-    public Page<Order> listOrders(Optional<OrderStatus> status, Pageable pageable) {
+    private final AuditSnapshotService auditSnapshotService;
+    private final TransactionTemplate transactionTemplate;
+    private final FulfillmentDashboardCounters dashboardCounters;
+
+    /**
+     * Listing pages are served from the {@link OrderSummary} projection, newest first; full entities are
+     * only loaded by {@link #getOrder(Long)}.
+     */
+    public Page<OrderSummary> listOrders(Optional<OrderStatus> status, Pageable pageable) {
         if (status.isPresent()) {
-            return orderRepository.findAllByStatus(status.get(), pageable);
+            return orderRepository.findSummariesByStatus(status.get(), pageable);
+        }
+        return orderRepository.findSummaries(pageable);
+    }
+
+    /**
+     * Keyset pagination over (created_at, id), newest first. Cost is independent of how deep the caller
+     * pages since no OFFSET or COUNT is involved.
+     */
+    public CursorPage<OrderSummary> listOrdersByCursor(Optional<OrderStatus> status, String cursor, int size) {
+        int limit = Math.min(Math.max(size, 1), MAX_CURSOR_PAGE_SIZE);
+        // fetch one extra row to learn whether another page exists
+        Pageable window = PageRequest.of(0, limit + 1);
+        List<OrderSummary> rows;
+        if (StringUtils.isBlank(cursor)) {
+            rows = status.isPresent()
+                    ? orderRepository.findFirstSummariesByStatus(status.get(), window)
+                    : orderRepository.findFirstSummaries(window);
+        } else {
+            OrderCursor after = OrderCursor.decode(cursor);
+            rows = status.isPresent()
+                    ? orderRepository.findSummariesByStatusAfter(status.get(), after.createdAt(), after.id(), window)
+                    : orderRepository.findSummariesAfter(after.createdAt(), after.id(), window);
         }
-        return orderRepository.findAll(pageable);
+        boolean hasMore = rows.size() > limit;
+        List<OrderSummary> items = hasMore ? rows.subList(0, limit) : rows;
+        String next = hasMore ? new OrderCursor(items.get(limit - 1).createdAt(), items.get(limit - 1).id()).encode() : null;
+        return new CursorPage<>(items, next, hasMore);
     }
 
     public Order getOrder(Long id) {
         return orderRepository.findById(id).orElseThrow(() -> new NoSuchElementException("Order not found"));
     }
 
+    // Transitions read the previous state under the row lock; concurrent ones would otherwise both count
+    // the same previous status out of the dashboard counters
+    private Order lockOrder(Long id) {
+        return orderRepository.findWithLockById(id).orElseThrow(() -> new NoSuchElementException("Order not found"));
+    }
+
     @Transactional
     public Order createOrder(CreateOrderRequest req) {
-        Customer customer = customerRepository.findById(req.getCustomerId())
+        OrderReferences refs = resolveReferences(List.of(req));
+        Order order = buildOrder(req, refs);
+        Order saved = orderRepository.save(order);
+
+        // Profit calculation (baseline; more detailed computation after supplier price known)
+        try {
+            profitCalculatorService.computeAndSaveForOrder(saved.getId());
+        } catch (Exception ignored) {}
+
+        // Audit
+        auditOrderCreated(saved);
+        dashboardCounters.recordOrderCreated(saved);
+
+        return saved;
+    }
+
+    /**
+     * Creates many orders at once. Customers, products and suppliers for the whole batch are resolved
+     * with one query per type, and valid orders are persisted in chunks so Hibernate can batch the inserts.
+     * Every request gets its own result; an invalid order does not fail the rest of the batch.
+     */
+    public List<BatchOrderResult> createOrders(List<CreateOrderRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            return List.of();
+        }
+        int maxOrders = orderProperties.getBatch().getMaxOrders();
+        if (requests.size() > maxOrders) {
+            throw new IllegalArgumentException("Batch exceeds maximum of " + maxOrders + " orders");
+        }
+
+        OrderReferences refs = resolveReferences(requests);
+        BatchOrderResult[] results = new BatchOrderResult[requests.size()];
+        List<PendingOrder> pending = new ArrayList<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            CreateOrderRequest req = requests.get(i);
+            try {
+                pending.add(new PendingOrder(i, buildOrder(req, refs)));
+            } catch (RuntimeException ex) {
+                results[i] = BatchOrderResult.failed(i, req != null ? req.getOrderNumber() : null, ex.getMessage());
+            }
+        }
+
+        int chunkSize = Math.max(1, orderProperties.getBatch().getChunkSize());
+        for (int from = 0; from < pending.size(); from += chunkSize) {
+            List<PendingOrder> chunk = pending.subList(from, Math.min(from + chunkSize, pending.size()));
+            try {
+                transactionTemplate.executeWithoutResult(tx -> persistChunk(chunk));
+                chunk.forEach(p -> results[p.index()] = BatchOrderResult.created(p.index(), p.order()));
+            } catch (RuntimeException chunkFailure) {
+                // Isolate the offending order(s): retry the chunk one order per transaction
+                for (PendingOrder p : chunk) {
+                    p.order().setId(null);
+                    p.order().getOrderItems().forEach(oi -> oi.setId(null));
+                    try {
+                        transactionTemplate.executeWithoutResult(tx -> persistChunk(List.of(p)));
+                        results[p.index()] = BatchOrderResult.created(p.index(), p.order());
+                    } catch (RuntimeException ex) {
+                        releaseDuplicateLocks(p.order());
+                        results[p.index()] = BatchOrderResult.failed(p.index(), p.order().getOrderNumber(), rootMessage(ex));
+                    }
+                }
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    private void persistChunk(List<PendingOrder> chunk) {
+        List<Order> orders = chunk.stream().map(PendingOrder::order).toList();
+        orderRepository.saveAll(orders);
+        orderRepository.flush();
+
+        try {
+            profitCalculatorService.computeAndSaveForOrders(orders);
+        } catch (Exception ignored) {}
+
+        orders.forEach(this::auditOrderCreated);
+        orders.forEach(dashboardCounters::recordOrderCreated);
+    }
+
+    private void auditOrderCreated(Order saved) {
+        auditTrailService.log(
+                "ORDER",
+                saved.getId(),
+                null,
+                "ORDER_CREATED",
+                null,
+                auditSnapshotService.snapshot(saved),
+                null,
+                null,
+                null,
+                null
+        );
+    }
+
+    /**
+     * Loads every customer, product and supplier referenced by the given requests: L1 cache hits are served
+     * from memory and the misses of each type are loaded with one query.
+     */
+    private OrderReferences resolveReferences(List<CreateOrderRequest> requests) {
+        Set<Long> customerIds = new HashSet<>();
+        Set<Long> productIds = new HashSet<>();
+        Set<Long> supplierIds = new HashSet<>();
+        for (CreateOrderRequest req : requests) {
+            if (req == null) continue;
+            if (req.getCustomerId() != null) customerIds.add(req.getCustomerId());
+            if (req.getItems() == null) continue;
+            for (CreateOrderItemRequest itemReq : req.getItems()) {
+                if (itemReq.getProductId() != null) productIds.add(itemReq.getProductId());
+                if (itemReq.getSupplierId() != null) supplierIds.add(itemReq.getSupplierId());
+            }
+        }
+
+        Map<Long, Customer> customers = cachedLookups.getAll(CacheNames.CUSTOMERS, customerIds,
+                customerRepository::findAllById, Customer::getId);
+        Map<Long, Product> products = cachedLookups.getAll(CacheNames.PRODUCTS, productIds,
+                productRepository::findAllWithSuppliersByIdIn, Product::getId);
+        Map<Long, Supplier> suppliers = cachedLookups.getAll(CacheNames.SUPPLIERS, supplierIds,
+                supplierRepository::findAllById, Supplier::getId);
+        return new OrderReferences(customers, products, suppliers);
+    }
+
+    private Order buildOrder(CreateOrderRequest req, OrderReferences refs) {
+        if (req == null || req.getItems() == null || req.getItems().isEmpty()) {
+            throw new IllegalArgumentException("Order must contain at least one item");
+        }
+        Customer customer = Optional.ofNullable(req.getCustomerId()).map(refs.customers()::get)
                 .orElseThrow(() -> new NoSuchElementException("Customer not found"));
 
         Order order = new Order();
@@ -66,24 +236,17 @@ public class OrderService {
         BigDecimal itemsTotal = BigDecimal.ZERO;
 
         for (CreateOrderItemRequest itemReq : req.getItems()) {
-            Product product = productRepository.findById(itemReq.getProductId())
+            Product product = Optional.ofNullable(itemReq.getProductId()).map(refs.products()::get)
                     .orElseThrow(() -> new NoSuchElementException("Product not found: " + itemReq.getProductId()));
 
             Supplier supplier = null;
             if (itemReq.getSupplierId() != null) {
-                supplier = supplierRepository.findById(itemReq.getSupplierId())
+                supplier = Optional.ofNullable(refs.suppliers().get(itemReq.getSupplierId()))
                         .orElseThrow(() -> new NoSuchElementException("Supplier not found: " + itemReq.getSupplierId()));
             } else if (product.getSupplier() != null) {
                 supplier = product.getSupplier();
             }
 
-            // duplicate guard: customerId + productId + supplierId within 24 hours
-            Long supplierIdForDup = supplier != null ? supplier.getId() : -1L;
-            boolean duplicate = duplicateOrderChecker.isDuplicateAndLock(customer.getId(), product.getId(), supplierIdForDup);
-            if (duplicate) {
-                throw new IllegalStateException("Duplicate order detected for customer/product/supplier within 24 hours");
-            }
-
             OrderItem item = new OrderItem();
             item.setOrder(order);
             item.setProduct(product);
@@ -99,6 +262,12 @@ public class OrderService {
             itemsTotal = itemsTotal.add(totalPrice);
         }
 
+        // duplicate guard: customerId + productId + supplierId within 24 hours, all items in one round trip
+        boolean duplicate = duplicateOrderChecker.isDuplicateAndLockAll(customer.getId(), duplicateKeys(items));
+        if (duplicate) {
+            throw new IllegalStateException("Duplicate order detected for customer/product/supplier within 24 hours");
+        }
+
         order.setTotalAmount(itemsTotal);
         order.setNetAmount(itemsTotal.add(order.getShippingAmount()).add(order.getTaxAmount()));
 
@@ -125,44 +294,63 @@ public class OrderService {
         }
 
         order.setOrderItems(items);
-        Order saved = orderRepository.save(order);
+        return order;
+    }
 
-        // Profit calculation (baseline; more detailed computation after supplier price known)
+    private void releaseDuplicateLocks(Order order) {
+        Long customerId = order.getCustomer() != null ? order.getCustomer().getId() : null;
         try {
-            profitCalculatorService.computeAndSaveForOrder(saved.getId());
-        } catch (Exception ignored) {}
+            duplicateOrderChecker.clearLocks(customerId, duplicateKeys(order.getOrderItems()));
+        } catch (Exception ignored) {
+        }
+    }
 
-        // Audit
-        auditTrailService.log(
-                "ORDER",
-                saved.getId(),
-                null,
-                "ORDER_CREATED",
-                null,
-                toJsonNode(saved),
-                null,
-                null,
-                null,
-                null
-        );
+    private static List<DuplicateOrderChecker.ItemKey> duplicateKeys(List<OrderItem> items) {
+        return items.stream()
+                .map(oi -> new DuplicateOrderChecker.ItemKey(oi.getProduct().getId(),
+                        oi.getSupplier() != null ? oi.getSupplier().getId() : -1L))
+                .toList();
+    }
 
-        return saved;
+    private static String rootMessage(Throwable ex) {
+        Throwable root = ex;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage() != null ? root.getMessage() : ex.getClass().getSimpleName();
+    }
+
+    private record OrderReferences(Map<Long, Customer> customers, Map<Long, Product> products, Map<Long, Supplier> suppliers) {}
+
+    private record PendingOrder(int index, Order order) {}
+
+    public record BatchOrderResult(int index, String orderNumber, Long orderId, boolean created, String error) {
+        static BatchOrderResult created(int index, Order order) {
+            return new BatchOrderResult(index, order.getOrderNumber(), order.getId(), true, null);
+        }
+
+        static BatchOrderResult failed(int index, String orderNumber, String error) {
+            return new BatchOrderResult(index, orderNumber, null, false, error);
+        }
     }
 
     @Transactional
     public Order updateOrderStatus(Long orderId, OrderStatus status) {
-        Order order = getOrder(orderId);
-        OrderStatus before = order.getStatus();
+        Order order = lockOrder(orderId);
+        AuditSnapshotService.Snapshot before = auditSnapshotService.capture(order);
+        OrderStatus previousStatus = order.getStatus();
         order.setStatus(status);
         Order saved = orderRepository.save(order);
+        dashboardCounters.recordOrderChanged(previousStatus, saved.getRequiresReview(), saved);
 
+        AuditSnapshotService.Diff diff = auditSnapshotService.diff(before, saved);
         auditTrailService.log(
                 "ORDER",
                 saved.getId(),
                 null,
                 "ORDER_STATUS_UPDATED",
-                toJsonNode(Map.of("status", before.name())),
-                toJsonNode(Map.of("status", status.name())),
+                diff.before(),
+                diff.after(),
                 null, null, null, null
         );
 
@@ -171,46 +359,58 @@ public class OrderService {
 
     @Transactional
     public OrderItem updateOrderItemTracking(Long orderItemId, String trackingNumber) {
+        // the order's lock covers its items, so the previous shipment status and the all-shipped check
+        // see the other items' committed state
+        Long orderId = orderItemRepository.findOrderIdById(orderItemId)
+                .orElseThrow(() -> new NoSuchElementException("Order item not found"));
+        lockOrder(orderId);
         OrderItem item = orderItemRepository.findById(orderItemId)
                 .orElseThrow(() -> new NoSuchElementException("Order item not found"));
 
-        String before = item.getTrackingNumber();
+        AuditSnapshotService.Snapshot before = auditSnapshotService.capture(item);
+        ShipmentStatus previousShipment = item.getShipmentStatus();
         item.setTrackingNumber(trackingNumber);
         item.setShipmentStatus(ShipmentStatus.SHIPPED);
         OrderItem saved = orderItemRepository.save(item);
+        dashboardCounters.recordShipmentChanged(previousShipment, ShipmentStatus.SHIPPED);
 
         // If all items shipped, bump order status
         Order order = item.getOrder();
         boolean allShipped = order.getOrderItems().stream().allMatch(i -> i.getShipmentStatus() == ShipmentStatus.SHIPPED);
         if (allShipped && order.getStatus().ordinal() <= OrderStatus.SHIPPED.ordinal()) {
+            OrderStatus previousStatus = order.getStatus();
             order.setStatus(OrderStatus.SHIPPED);
             orderRepository.save(order);
+            dashboardCounters.recordOrderChanged(previousStatus, order.getRequiresReview(), order);
         }
 
+        AuditSnapshotService.Diff diff = auditSnapshotService.diff(before, saved);
         auditTrailService.log(
                 "ORDER_ITEM",
                 saved.getId(),
                 null,
                 "ORDER_ITEM_TRACKING_UPDATED",
-                toJsonNode(Map.of("trackingNumber", before)),
-                toJsonNode(Map.of("trackingNumber", trackingNumber)),
+                diff.before(),
+                diff.after(),
                 null, null, null, null
         );
 
         return saved;
     }
 
-    public List<Order> getOrdersRequiringReview() {
-        return orderRepository.findAllByRequiresReviewTrue();
+    public List<OrderSummary> getOrdersRequiringReview() {
+        return orderRepository.findSummariesRequiringReview();
     }
 
     @Transactional
     public Order reviewDecision(Long orderId, boolean approved, String reason) {
-        Order order = getOrder(orderId);
+        Order order = lockOrder(orderId);
         if (Boolean.FALSE.equals(order.getRequiresReview())) {
             return order;
         }
-        OrderStatus before = order.getStatus();
+        AuditSnapshotService.Snapshot before = auditSnapshotService.capture(order);
+        OrderStatus previousStatus = order.getStatus();
+        Boolean previousReview = order.getRequiresReview();
 
         if (approved) {
             order.setRequiresReview(false);
@@ -222,14 +422,16 @@ public class OrderService {
             order.setStatus(OrderStatus.CANCELLED);
         }
         Order saved = orderRepository.save(order);
+        dashboardCounters.recordOrderChanged(previousStatus, previousReview, saved);
 
+        AuditSnapshotService.Diff diff = auditSnapshotService.diff(before, saved);
         auditTrailService.log(
                 "ORDER",
                 saved.getId(),
                 null,
                 "ORDER_REVIEW_" + (approved ? "APPROVED" : "REJECTED"),
-                toJsonNode(Map.of("status", before.name())),
-                toJsonNode(Map.of("status", saved.getStatus().name(), "reviewReason", reason)),
+                diff.before(),
+                diff.after(),
                 null, null, null, null
         );
 
@@ -242,79 +444,62 @@ public class OrderService {
     public record SupplierBuyGroup(Long supplierId, String supplierName, BigDecimal totalCost, long purchasedCount,
                                    long pendingCount, List<SupplierBuyItem> items) {}
 
+    /**
+     * Reads the day's items with supplier, order and product columns in one query, sorted by supplier,
+     * and folds consecutive rows into groups.
+     */
     public List<SupplierBuyGroup> buildSupplierBuyList(LocalDate date) {
         LocalDateTime start = date.atStartOfDay();
         LocalDateTime end = date.plusDays(1).atStartOfDay();
 
-        List<OrderItem> items = orderItemRepository.findAllByCreatedAtBetween(start, end);
-        Map<Supplier, List<OrderItem>> bySupplier = items.stream()
-                .filter(oi -> oi.getSupplier() != null)
-                .collect(Collectors.groupingBy(OrderItem::getSupplier));
-
         List<SupplierBuyGroup> result = new ArrayList<>();
-        for (Map.Entry<Supplier, List<OrderItem>> e : bySupplier.entrySet()) {
-            Supplier supplier = e.getKey();
-            List<OrderItem> groupItems = e.getValue();
-
-            List<SupplierBuyItem> buyItems = new ArrayList<>();
-            BigDecimal totalCost = BigDecimal.ZERO;
-            long purchased = 0;
-            long pending = 0;
-
-            for (OrderItem oi : groupItems) {
-                boolean isPurchased = StringUtils.isNotBlank(oi.getSupplierConfirmationId());
-                if (isPurchased) purchased++; else pending++;
-                BigDecimal unitPrice = oi.getUnitPrice() != null ? oi.getUnitPrice() : BigDecimal.ZERO;
-                BigDecimal lineTotal = unitPrice.multiply(BigDecimal.valueOf(oi.getQuantity() != null ? oi.getQuantity() : 1));
-                totalCost = totalCost.add(lineTotal);
-
-                buyItems.add(new SupplierBuyItem(
-                        oi.getOrder().getOrderNumber(),
-                        oi.getProduct().getSku(),
-                        oi.getProduct().getName(),
-                        oi.getQuantity() != null ? oi.getQuantity() : 1,
-                        unitPrice,
-                        lineTotal,
-                        oi.getOrder().getShippingAddress(),
-                        isPurchased
-                ));
+        List<SupplierBuyItem> buyItems = new ArrayList<>();
+        SupplierBuyRow first = null;
+        BigDecimal totalCost = BigDecimal.ZERO;
+        long purchased = 0;
+        long pending = 0;
+
+        for (SupplierBuyRow row : orderItemRepository.findSupplierBuyRows(start, end)) {
+            if (first != null && !first.supplierId().equals(row.supplierId())) {
+                result.add(new SupplierBuyGroup(first.supplierId(), first.supplierName(), totalCost, purchased, pending, buyItems));
+                buyItems = new ArrayList<>();
+                totalCost = BigDecimal.ZERO;
+                purchased = 0;
+                pending = 0;
             }
-
-            result.add(new SupplierBuyGroup(
-                    supplier.getId(),
-                    supplier.getName(),
-                    totalCost,
-                    purchased,
-                    pending,
-                    buyItems
-            ));
+            if (buyItems.isEmpty()) {
+                first = row;
+            }
+            SupplierBuyItem item = toBuyItem(row);
+            if (item.purchased()) purchased++; else pending++;
+            totalCost = totalCost.add(item.totalPrice());
+            buyItems.add(item);
+        }
+        if (first != null) {
+            result.add(new SupplierBuyGroup(first.supplierId(), first.supplierName(), totalCost, purchased, pending, buyItems));
         }
-        // Sort by supplier name for deterministic output
-        result.sort(Comparator.comparing(SupplierBuyGroup::supplierName));
         return result;
     }
 
-    // Fulfillment dashboard snapshot
-    public Map<String, Object> buildFulfillmentDashboardSnapshot() {
-        Map<String, Object> m = new LinkedHashMap<>();
-        m.put("awaitingSupplierPurchase", orderItemRepository.findAllByShipmentStatus(ShipmentStatus.PENDING).size());
-        m.put("requiresManualReview", orderRepository.findAllByRequiresReviewTrue().size());
-        m.put("delayedShipments", orderItemRepository.findAllByShipmentStatus(ShipmentStatus.DELAYED).size());
-
-        Map<String, Long> statusCounts = new LinkedHashMap<>();
-        for (OrderStatus s : OrderStatus.values()) {
-            statusCounts.put(s.name(), orderRepository.countByStatus(s));
-        }
-        m.put("orderStatusCounts", statusCounts);
-
-        // Today's reconciliation audit entries
-        java.time.LocalDate today = java.time.LocalDate.now();
-        java.time.LocalDateTime start = today.atStartOfDay();
-        java.time.LocalDateTime end = today.plusDays(1).atStartOfDay();
-        int reconciliationsToday = reconciliationAuditRepository.findAllByCreatedAtBetween(start, end).size();
-        m.put("reconciliationsToday", reconciliationsToday);
+    private SupplierBuyItem toBuyItem(SupplierBuyRow row) {
+        boolean isPurchased = StringUtils.isNotBlank(row.supplierConfirmationId());
+        int quantity = row.quantity() != null ? row.quantity() : 1;
+        BigDecimal unitPrice = row.unitPrice() != null ? row.unitPrice() : BigDecimal.ZERO;
+        return new SupplierBuyItem(
+                row.orderNumber(),
+                row.sku(),
+                row.productName(),
+                quantity,
+                unitPrice,
+                unitPrice.multiply(BigDecimal.valueOf(quantity)),
+                row.shippingAddress(),
+                isPurchased
+        );
+    }
 
-        return m;
+    // Fulfillment dashboard snapshot, answered from the in-memory counters
+    public Map<String, Object> buildFulfillmentDashboardSnapshot() {
+        return dashboardCounters.snapshot();
     }
 
     private BigDecimal nvl(BigDecimal v) {
@@ -322,14 +507,6 @@ public class OrderService {
     }
 
     private String generateOrderNumber() {
-        return "ORD-" + System.currentTimeMillis();
-    }
-
-    private com.fasterxml.jackson.databind.JsonNode toJsonNode(Object o) {
-        try {
-            return objectMapper.valueToTree(o);
-        } catch (Exception e) {
-            return null;
-        }
+        return orderNumberGenerator.next();
     }
 }
@@ -0,0 +1,131 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.StripeProperties;
+import com.dropshipping.backend.repository.OrderRepository;
+import com.dropshipping.backend.repository.PaymentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Links charges that the webhook stored without an order because the order named in their metadata was not
+ * visible yet (created concurrently with the charge).
+ * <p>
+ * Each run walks the unlinked charges of the last {@code max-age} in id order, one batch at a time: the
+ * referenced order ids of the batch are checked in one query and kept in a set, and the charges whose order
+ * now exists are linked with a single UPDATE. Linked charges are handed to the incremental reconciler, the
+ * rest are tried again next run. Nothing here runs on the webhook path.
+ */
+@Service
+@Slf4j
+public class PaymentOrderLinker {
+
+    private final PaymentRepository paymentRepository;
+    private final OrderRepository orderRepository;
+    private final IncrementalReconciler incrementalReconciler;
+    private final StripeProperties.PaymentLinking properties;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter linked;
+    private final Counter failures;
+    private final Timer runDuration;
+
+    public PaymentOrderLinker(PaymentRepository paymentRepository,
+                              OrderRepository orderRepository,
+                              IncrementalReconciler incrementalReconciler,
+                              StripeProperties stripeProperties,
+                              TransactionTemplate transactionTemplate,
+                              MeterRegistry meterRegistry) {
+        this.paymentRepository = paymentRepository;
+        this.orderRepository = orderRepository;
+        this.incrementalReconciler = incrementalReconciler;
+        this.properties = stripeProperties.getPaymentLinking();
+        this.transactionTemplate = transactionTemplate;
+        this.linked = Counter.builder("stripe.payment.linked")
+                .description("Unattached charges linked to their order after the fact").register(meterRegistry);
+        this.failures = Counter.builder("stripe.payment.linking.failures")
+                .description("Payment linking runs that failed").register(meterRegistry);
+        this.runDuration = Timer.builder("stripe.payment.linking.duration")
+                .description("Time for one payment linking run").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${stripe.payment-linking.interval-ms:60000}")
+    public void linkScheduled() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            linkUnattachedPayments();
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.warn("Payment linking failed, retrying next run: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of payments linked to an order.
+     */
+    public int linkUnattachedPayments() {
+        long startedAt = System.nanoTime();
+        LocalDateTime since = LocalDateTime.now().minus(properties.getMaxAge());
+        int limit = Math.max(1, properties.getBatchSize());
+        int total = 0;
+        int scanned = 0;
+        long afterId = 0;
+        while (true) {
+            List<PaymentRepository.UnlinkedCharge> batch = paymentRepository.findUnlinkedCharges(since, afterId, limit);
+            if (batch.isEmpty()) {
+                break;
+            }
+            scanned += batch.size();
+            total += link(batch);
+            afterId = batch.get(batch.size() - 1).getPaymentId();
+            if (batch.size() < limit) {
+                break;
+            }
+        }
+        linked.increment(total);
+        runDuration.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        if (scanned > 0) {
+            log.info("Payment linking: {} of {} unattached charges linked to their order", total, scanned);
+        }
+        return total;
+    }
+
+    private int link(List<PaymentRepository.UnlinkedCharge> batch) {
+        Set<Long> refs = new HashSet<>();
+        batch.forEach(c -> refs.add(c.getOrderRef()));
+        Set<Long> existing = new HashSet<>(orderRepository.findExistingIds(refs));
+
+        List<Long> paymentIds = new ArrayList<>(batch.size());
+        List<Long> orderIds = new ArrayList<>(batch.size());
+        for (PaymentRepository.UnlinkedCharge c : batch) {
+            if (existing.contains(c.getOrderRef())) {
+                paymentIds.add(c.getPaymentId());
+                orderIds.add(c.getOrderRef());
+            }
+        }
+        if (paymentIds.isEmpty()) {
+            return 0;
+        }
+        Integer updated = transactionTemplate.execute(tx -> {
+            int rows = paymentRepository.linkOrders(paymentIds.toArray(new Long[0]), orderIds.toArray(new Long[0]));
+            for (int i = 0; i < paymentIds.size(); i++) {
+                incrementalReconciler.chargeRecorded(orderIds.get(i), paymentIds.get(i));
+            }
+            return rows;
+        });
+        return updated != null ? updated : 0;
+    }
+}
@@ -6,15 +6,17 @@ import com.dropshipping.backend.entity.Payment;
 import com.dropshipping.backend.enums.PaymentStatus;
 import com.dropshipping.backend.repository.OrderRepository;
 import com.dropshipping.backend.repository.PaymentRepository;
+import com.dropshipping.backend.resilience.DependencyGuard;
+import com.dropshipping.backend.resilience.DependencyGuards;
 import com.stripe.Stripe;
 import com.stripe.exception.StripeException;
-import com.stripe.model.BalanceTransaction;
 import com.stripe.model.Charge;
 import com.stripe.model.PaymentIntent;
 import com.stripe.model.Refund;
 import com.stripe.model.checkout.Session;
 import com.stripe.model.Customer;
 import com.stripe.model.PaymentMethod;
+import com.stripe.net.RequestOptions;
 import com.stripe.param.PaymentMethodAttachParams;
 import com.stripe.param.RefundCreateParams;
 import com.stripe.param.CustomerUpdateParams;
@@ -24,9 +26,12 @@ import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
@@ -36,10 +41,16 @@ public class PaymentProcessingService {
     private final StripeProperties stripeProperties;
     private final OrderRepository orderRepository;
     private final PaymentRepository paymentRepository;
+    private final IncrementalReconciler incrementalReconciler;
+    private final DependencyGuards dependencyGuards;
 
     private static final BigDecimal STRIPE_PERCENT = new BigDecimal("0.029"); // 2.9%
     private static final BigDecimal STRIPE_FIXED = new BigDecimal("0.30");    // $0.30
 
+    private DependencyGuard stripe() {
+        return dependencyGuards.get(DependencyGuards.STRIPE);
+    }
+
     private void ensureStripeApiKey() {
         if (Stripe.apiKey == null || Stripe.apiKey.isEmpty()) {
             Stripe.apiKey = stripeProperties.getApiKey();
@@ -57,7 +68,15 @@ public class PaymentProcessingService {
 
         Optional<Payment> existing = paymentRepository.findByStripePaymentIntentId(paymentIntentId);
         if (existing.isPresent()) {
-            return existing.get();
+            Payment p = existing.get();
+            if (p.getOrder() == null) {
+                // the charge webhook was applied before the intent was recorded
+                p.setOrder(order);
+                p.setStripeOrderRef(null);
+                p = paymentRepository.save(p);
+                incrementalReconciler.chargeRecorded(orderId, p.getId());
+            }
+            return p;
         }
 
         Payment p = new Payment();
@@ -75,12 +94,23 @@ public class PaymentProcessingService {
 
     /**
      * Creates a refund in Stripe for a charge/paymentIntent and updates internal Payment record.
+     * The Stripe call runs between two short repository calls; callers must not wrap this in a transaction
+     * (see {@link ReturnService#processRefund} for the two-phase flow with a persisted intent).
      */
     public Refund createRefund(Long paymentId, BigDecimal amount, String reason) throws StripeException {
-        ensureStripeApiKey();
         Payment payment = paymentRepository.findById(paymentId)
                 .orElseThrow(() -> new NoSuchElementException("Payment not found: " + paymentId));
 
+        Refund refund = submitRefund(buildRefundParams(payment, amount, reason), "refund-" + UUID.randomUUID());
+
+        markRefunded(List.of(paymentId));
+        return refund;
+    }
+
+    /**
+     * Builds the Stripe refund request for a payment; {@code amount} null or zero refunds the full charge.
+     */
+    public RefundCreateParams buildRefundParams(Payment payment, BigDecimal amount, String reason) {
         RefundCreateParams.Builder builder = RefundCreateParams.builder();
 
         if (payment.getStripeChargeId() != null) {
@@ -99,14 +129,29 @@ public class PaymentProcessingService {
         if (reason != null && !reason.isBlank()) {
             builder.setReason(RefundCreateParams.Reason.REQUESTED_BY_CUSTOMER);
         }
+        return builder.build();
+    }
 
-        Refund refund = Refund.create(builder.build());
-
-        // Update internal status
-        payment.setStatus(PaymentStatus.REFUNDED);
-        paymentRepository.save(payment);
+    /**
+     * Sends the refund to Stripe. Touches no database state; the same idempotency key must be used for every
+     * attempt of one refund, so a retry after a lost response cannot refund twice.
+     */
+    public Refund submitRefund(RefundCreateParams params, String idempotencyKey) throws StripeException {
+        ensureStripeApiKey();
+        RequestOptions options = RequestOptions.builder().setIdempotencyKey(idempotencyKey).build();
+        return stripe().call("refund.create", () -> Refund.create(params, options));
+    }
 
-        return refund;
+    /**
+     * Marks the payments REFUNDED with one batch of updates.
+     */
+    public void markRefunded(Collection<Long> paymentIds) {
+        if (paymentIds.isEmpty()) {
+            return;
+        }
+        List<Payment> payments = paymentRepository.findAllById(paymentIds);
+        payments.forEach(p -> p.setStatus(PaymentStatus.REFUNDED));
+        paymentRepository.saveAll(payments);
     }
 
     /**
@@ -115,20 +160,22 @@ public class PaymentProcessingService {
     public void updatePaymentMethod(String stripeCustomerId, String paymentMethodId) throws StripeException {
         ensureStripeApiKey();
 
-        // Attach PM to customer (if not attached)
-        PaymentMethod pm = PaymentMethod.retrieve(paymentMethodId);
+        // Attach PM to customer (if not attached). The writes carry no idempotency key, so they are not retried:
+        // a timed-out attempt may have been applied, and a replayed key would not re-apply a later change.
+        PaymentMethod pm = stripe().call("paymentMethod.retrieve", () -> PaymentMethod.retrieve(paymentMethodId));
         if (pm.getCustomer() == null) {
-            pm.attach(PaymentMethodAttachParams.builder().setCustomer(stripeCustomerId).build());
+            PaymentMethodAttachParams attachParams = PaymentMethodAttachParams.builder().setCustomer(stripeCustomerId).build();
+            stripe().callOnce("paymentMethod.attach", () -> pm.attach(attachParams));
         }
 
         // Set as default
-        Customer customer = Customer.retrieve(stripeCustomerId);
+        Customer customer = stripe().call("customer.retrieve", () -> Customer.retrieve(stripeCustomerId));
         CustomerUpdateParams params = CustomerUpdateParams.builder()
                 .setInvoiceSettings(CustomerUpdateParams.InvoiceSettings.builder()
                         .setDefaultPaymentMethod(paymentMethodId)
                         .build())
                 .build();
-        customer.update(params);
+        stripe().callOnce("customer.update", () -> customer.update(params));
     }
 
     /**
@@ -165,21 +212,24 @@ public class PaymentProcessingService {
             order = orderRepository.findById(orderId).orElse(null);
         }
 
-        // Fallback: find by payment_intent if we track it
+        // Fallback: the intent recorded by processPayment; the charge completes that payment record
+        // (payment intent ids are unique) and inherits its order
         String piId = charge.getPaymentIntent();
-        if (order == null && piId != null) {
-            paymentRepository.findByStripePaymentIntentId(piId).ifPresent(p -> {
-                // link order from existing payment
-            });
+        Payment intentPayment = piId != null ? paymentRepository.findByStripePaymentIntentId(piId).orElse(null) : null;
+        if (order == null && intentPayment != null) {
+            order = intentPayment.getOrder();
         }
 
         if (order == null) {
-            // As a last resort, do not fail; create unattached payment record (can be reconciled later)
+            // As a last resort, do not fail; create unattached payment record (linked by PaymentOrderLinker or
+            // matched to an order by ChargeMatchingService)
             log.warn("Charge {} not linked to an order. Storing for reconciliation.", chargeId);
         }
 
-        Payment p = new Payment();
+        Payment p = intentPayment != null ? intentPayment : new Payment();
         p.setOrder(order);
+        // an order created concurrently with its charge may not be visible yet; PaymentOrderLinker retries it
+        p.setStripeOrderRef(order == null ? orderId : null);
         p.setStripePaymentIntentId(piId);
         p.setStripeChargeId(chargeId);
 
@@ -187,14 +237,19 @@ public class PaymentProcessingService {
         p.setAmount(gross);
         p.setCurrency(charge.getCurrency() != null ? charge.getCurrency().toUpperCase() : "USD");
 
-        BigDecimal fee = estimateOrFetchStripeFee(charge);
+        // estimated for now; StripeFeeEnrichmentService fills in the actual fee in bulk later
+        BigDecimal fee = estimateStripeFee(gross);
         p.setFeeAmount(fee);
+        p.setFeeProvisional(true);
+        p.setStripeBalanceTransactionId(charge.getBalanceTransaction());
         p.setNetAmount(gross.subtract(fee).max(BigDecimal.ZERO));
         p.setPaymentMethod(charge.getPaymentMethodDetails() != null ? charge.getPaymentMethodDetails().getType() : "card");
         p.setPaymentGateway("STRIPE");
         p.setStatus(PaymentStatus.COMPLETED);
 
-        return paymentRepository.save(p);
+        Payment saved = paymentRepository.save(p);
+        incrementalReconciler.chargeRecorded(order != null ? order.getId() : null, saved.getId());
+        return saved;
     }
 
     private BigDecimal toDollars(Long amountCents) {
@@ -203,21 +258,9 @@ public class PaymentProcessingService {
     }
 
     /**
-     * Try to fetch fee from balance transaction; if not available, estimate using standard rates.
+     * Estimate of the Stripe fee using standard rates.
      */
-    private BigDecimal estimateOrFetchStripeFee(Charge charge) {
-        try {
-            String balanceTxId = charge.getBalanceTransaction();
-            if (balanceTxId != null) {
-                BalanceTransaction bt = BalanceTransaction.retrieve(balanceTxId);
-                if (bt != null && bt.getFee() != null) {
-                    return toDollars(bt.getFee().longValue());
-                }
-            }
-        } catch (Exception ex) {
-            log.debug("Could not retrieve Stripe balance transaction fee for charge {}: {}", charge.getId(), ex.getMessage());
-        }
-        BigDecimal amount = toDollars(charge.getAmount());
+    private BigDecimal estimateStripeFee(BigDecimal amount) {
         return amount.multiply(STRIPE_PERCENT).add(STRIPE_FIXED).setScale(2, RoundingMode.HALF_UP);
     }
 }
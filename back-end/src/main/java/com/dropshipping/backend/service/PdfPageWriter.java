@@ -0,0 +1,171 @@
+package com.dropshipping.backend.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal forward-only PDF writer for plain text reports (A4, Helvetica).
+ * <p>
+ * Only the page being filled is buffered; finished pages are written to the underlying stream right away,
+ * so memory does not grow with the length of the document. Only object offsets and page ids are kept
+ * for the cross-reference table written by {@link #finish()}.
+ */
+final class PdfPageWriter {
+
+    private static final int PAGE_WIDTH = 595;
+    private static final int PAGE_HEIGHT = 842;
+    private static final int MARGIN = 36;
+    private static final int FONT_SIZE = 9;
+    private static final int LEADING = 12;
+    private static final int LINES_PER_PAGE = (PAGE_HEIGHT - 2 * MARGIN) / LEADING - 2;
+    private static final int MAX_LINE_CHARS = 110;
+
+    // fixed object numbers; pages and their content streams are numbered from FIRST_PAGE_OBJECT on
+    private static final int CATALOG_OBJECT = 1;
+    private static final int PAGES_OBJECT = 2;
+    private static final int FONT_OBJECT = 3;
+    private static final int FIRST_PAGE_OBJECT = 4;
+
+    private final OutputStream out;
+    private final String title;
+    private final List<Long> offsets = new ArrayList<>();
+    private final List<Integer> pageObjects = new ArrayList<>();
+    private final StringBuilder page = new StringBuilder();
+    private int linesOnPage;
+    private long written;
+
+    PdfPageWriter(OutputStream out, String title) throws IOException {
+        this.out = out;
+        this.title = title;
+        write("%PDF-1.4\n");
+    }
+
+    void line(String text) throws IOException {
+        if (linesOnPage == LINES_PER_PAGE) {
+            flushPage();
+        }
+        if (linesOnPage == 0) {
+            startPage();
+        }
+        appendText(text);
+        linesOnPage++;
+    }
+
+    void blankLine() throws IOException {
+        line("");
+    }
+
+    /**
+     * Starts the next line on a new page unless the current page is still empty.
+     */
+    void pageBreak() throws IOException {
+        if (linesOnPage > 0) {
+            flushPage();
+        }
+    }
+
+    /**
+     * Writes the last page, the page tree, the catalog and the trailer. Does not close the stream.
+     */
+    void finish() throws IOException {
+        if (linesOnPage > 0 || pageObjects.isEmpty()) {
+            if (linesOnPage == 0) {
+                startPage();
+            }
+            flushPage();
+        }
+        StringBuilder kids = new StringBuilder();
+        for (int id : pageObjects) {
+            kids.append(id).append(" 0 R ");
+        }
+        writeObject(PAGES_OBJECT, "<< /Type /Pages /Kids [ " + kids + "] /Count " + pageObjects.size() + " >>");
+        writeObject(FONT_OBJECT, "<< /Type /Font /Subtype /Type1 /BaseFont /Helvetica /Encoding /WinAnsiEncoding >>");
+        writeObject(CATALOG_OBJECT, "<< /Type /Catalog /Pages " + PAGES_OBJECT + " 0 R >>");
+
+        long xref = written;
+        int size = offsets.size() + 1;
+        StringBuilder table = new StringBuilder("xref\n0 ").append(size).append("\n0000000000 65535 f \n");
+        for (int id = 1; id < size; id++) {
+            table.append(String.format("%010d 00000 n \n", offsets.get(id - 1)));
+        }
+        table.append("trailer\n<< /Size ").append(size).append(" /Root ").append(CATALOG_OBJECT).append(" 0 R >>\n")
+                .append("startxref\n").append(xref).append("\n%%EOF\n");
+        write(table.toString());
+        out.flush();
+    }
+
+    private void startPage() {
+        page.setLength(0);
+        page.append("BT\n/F1 ").append(FONT_SIZE).append(" Tf\n").append(LEADING).append(" TL\n")
+                .append(MARGIN).append(' ').append(PAGE_HEIGHT - MARGIN).append(" Td\n");
+        appendText(title + " - page " + (pageObjects.size() + 1));
+        appendText("");
+    }
+
+    private void appendText(String text) {
+        page.append('(').append(escape(text)).append(") Tj T*\n");
+    }
+
+    private void flushPage() throws IOException {
+        page.append("ET\n");
+        byte[] content = page.toString().getBytes(StandardCharsets.ISO_8859_1);
+        int contentObject = FIRST_PAGE_OBJECT + pageObjects.size() * 2;
+        int pageObject = contentObject + 1;
+
+        reserve(pageObject);
+        recordOffset(contentObject);
+        write(contentObject + " 0 obj\n<< /Length " + content.length + " >>\nstream\n");
+        write(content);
+        write("\nendstream\nendobj\n");
+        writeObject(pageObject, "<< /Type /Page /Parent " + PAGES_OBJECT + " 0 R /MediaBox [0 0 " + PAGE_WIDTH + " " + PAGE_HEIGHT
+                + "] /Resources << /Font << /F1 " + FONT_OBJECT + " 0 R >> >> /Contents " + contentObject + " 0 R >>");
+        pageObjects.add(pageObject);
+        page.setLength(0);
+        linesOnPage = 0;
+    }
+
+    private void writeObject(int id, String body) throws IOException {
+        reserve(id);
+        recordOffset(id);
+        write(id + " 0 obj\n" + body + "\nendobj\n");
+    }
+
+    private void reserve(int id) {
+        while (offsets.size() < id) {
+            offsets.add(0L);
+        }
+    }
+
+    private void recordOffset(int id) {
+        offsets.set(id - 1, written);
+    }
+
+    private void write(String s) throws IOException {
+        write(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        out.write(bytes);
+        written += bytes.length;
+    }
+
+    private static String escape(String text) {
+        String s = text.length() > MAX_LINE_CHARS ? text.substring(0, MAX_LINE_CHARS - 3) + "..." : text;
+        StringBuilder sb = new StringBuilder(s.length() + 8);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '(' || c == ')' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20 || c > 0xFF) {
+                // outside the Latin-1 range covered by WinAnsiEncoding
+                sb.append(c == '\t' ? ' ' : '?');
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
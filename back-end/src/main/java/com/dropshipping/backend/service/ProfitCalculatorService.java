@@ -1,9 +1,13 @@
 package com.dropshipping.backend.service;
 
+import com.dropshipping.backend.cache.CacheNames;
+import com.dropshipping.backend.cache.CachedLookups;
 import com.dropshipping.backend.entity.Order;
 import com.dropshipping.backend.entity.OrderItem;
+import com.dropshipping.backend.entity.Product;
 import com.dropshipping.backend.entity.ProfitAnalysis;
 import com.dropshipping.backend.repository.OrderRepository;
+import com.dropshipping.backend.repository.ProductRepository;
 import com.dropshipping.backend.repository.ProfitAnalysisRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -11,6 +15,11 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -25,12 +34,45 @@ public class ProfitCalculatorService {
 
     private final OrderRepository orderRepository;
     private final ProfitAnalysisRepository profitAnalysisRepository;
+    private final ProductRepository productRepository;
+    private final CachedLookups cachedLookups;
 
     @Transactional
     public ProfitAnalysis computeAndSaveForOrder(Long orderId) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new IllegalArgumentException("Order not found " + orderId));
+        return profitAnalysisRepository.save(computeForOrder(order, supplierPrices(List.of(order))));
+    }
+
+    /**
+     * Computes and saves profit analyses for orders already loaded in the current persistence context,
+     * without re-reading them; used by bulk order ingestion.
+     */
+    @Transactional
+    public List<ProfitAnalysis> computeAndSaveForOrders(List<Order> orders) {
+        Map<Long, Product> products = supplierPrices(orders);
+        List<ProfitAnalysis> analyses = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            analyses.add(computeForOrder(order, products));
+        }
+        return profitAnalysisRepository.saveAll(analyses);
+    }
 
+    // Supplier prices come from the product cache, read once for all orders
+    private Map<Long, Product> supplierPrices(List<Order> orders) {
+        Set<Long> productIds = new HashSet<>();
+        for (Order order : orders) {
+            for (OrderItem item : order.getOrderItems()) {
+                if (item.getProduct() != null && item.getProduct().getId() != null) {
+                    productIds.add(item.getProduct().getId());
+                }
+            }
+        }
+        return cachedLookups.getAll(CacheNames.PRODUCTS, productIds,
+                productRepository::findAllWithSuppliersByIdIn, Product::getId);
+    }
+
+    private ProfitAnalysis computeForOrder(Order order, Map<Long, Product> products) {
         // Selling price = sum of order item selling price (unit * qty)
         BigDecimal selling = BigDecimal.ZERO;
         BigDecimal supplier = BigDecimal.ZERO;
@@ -41,7 +83,8 @@ public class ProfitCalculatorService {
             selling = selling.add(unitSell.multiply(BigDecimal.valueOf(qty)));
 
             // Supplier price from Product
-            BigDecimal unitSupplier = BigDecimal.valueOf(item.getProduct().getSupplierPrice() != null ? item.getProduct().getSupplierPrice() : 0.0);
+            Product product = products.getOrDefault(item.getProduct().getId(), item.getProduct());
+            BigDecimal unitSupplier = BigDecimal.valueOf(product.getSupplierPrice() != null ? product.getSupplierPrice() : 0.0);
             supplier = supplier.add(unitSupplier.multiply(BigDecimal.valueOf(qty)));
         }
 
@@ -77,8 +120,7 @@ public class ProfitCalculatorService {
         pa.setShippingInsurance(shippingInsurance);
         pa.setNetProfit(netProfit);
         pa.setProfitMargin(profitMargin);
-
-        return profitAnalysisRepository.save(pa);
+        return pa;
     }
 
     private BigDecimal nz(BigDecimal v) {
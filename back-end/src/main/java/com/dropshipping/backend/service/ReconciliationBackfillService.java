@@ -0,0 +1,320 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.ReconciliationProperties;
+import com.dropshipping.backend.entity.ReconciliationBackfill;
+import com.dropshipping.backend.entity.ReconciliationCheckpoint;
+import com.dropshipping.backend.repository.ReconciliationBackfillRepository;
+import com.dropshipping.backend.repository.ReconciliationCheckpointRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reconciliation backfills over a date range.
+ * <p>
+ * Every day of the range gets a checkpoint row. Days run in parallel on a bounded pool; within a day the
+ * payments are processed in keyset chunks and each chunk's audit rows and the advanced checkpoint are
+ * committed together, so a crashed run resumes at the first unprocessed chunk. Chunks replace earlier
+ * results for the same payments and day, which makes re-running a day or a whole range idempotent.
+ * <p>
+ * Several instances can resume the same backfill: a day is claimed with {@code FOR UPDATE SKIP LOCKED} and
+ * held under a lease (owner + {@code locked_until}) renewed by every chunk, so only one instance works on a
+ * day, and a day whose owner stopped renewing is taken over by the next resume sweep.
+ */
+@Service
+@Slf4j
+public class ReconciliationBackfillService {
+
+    private static final String RUNNING = "RUNNING";
+    private static final String COMPLETED = "COMPLETED";
+    private static final String FAILED = "FAILED";
+    private static final String PENDING = "PENDING";
+    private static final String DONE = "DONE";
+
+    private final TransactionReconciliationService reconciliationService;
+    private final ReconciliationBackfillRepository backfillRepository;
+    private final ReconciliationCheckpointRepository checkpointRepository;
+    private final ReconciliationProperties properties;
+    private final TransactionTemplate transactionTemplate;
+
+    private final String owner = UUID.randomUUID().toString();
+    private final ThreadPoolExecutor executor;
+    private final Set<Long> scheduledCheckpoints = ConcurrentHashMap.newKeySet();
+
+    private final Counter chargesProcessed;
+    private final Counter daysCompleted;
+    private final Counter daysFailed;
+    private final Timer dayDuration;
+
+    /**
+     * Progress of one backfill; {@code chargesPerSecond} is measured from creation to completion (or now).
+     */
+    public record BackfillProgress(Long id, LocalDate startDate, LocalDate endDate, String status,
+                                   int totalDays, int completedDays, int failedDays,
+                                   long chargesProcessed, double chargesPerSecond) {}
+
+    public ReconciliationBackfillService(TransactionReconciliationService reconciliationService,
+                                         ReconciliationBackfillRepository backfillRepository,
+                                         ReconciliationCheckpointRepository checkpointRepository,
+                                         ReconciliationProperties properties,
+                                         TransactionTemplate transactionTemplate,
+                                         MeterRegistry meterRegistry) {
+        this.reconciliationService = reconciliationService;
+        this.backfillRepository = backfillRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.properties = properties;
+        this.transactionTemplate = transactionTemplate;
+
+        int threads = Math.max(1, properties.getBackfill().getThreads());
+        AtomicInteger threadIds = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "reconciliation-backfill-" + threadIds.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        this.chargesProcessed = Counter.builder("reconciliation.backfill.charges")
+                .description("Charges reconciled by backfills").register(meterRegistry);
+        this.daysCompleted = Counter.builder("reconciliation.backfill.days").tag("result", "completed")
+                .description("Backfill days finished").register(meterRegistry);
+        this.daysFailed = Counter.builder("reconciliation.backfill.days").tag("result", "failed")
+                .description("Backfill days that failed").register(meterRegistry);
+        this.dayDuration = Timer.builder("reconciliation.backfill.day.duration")
+                .description("Time to reconcile one backfill day").register(meterRegistry);
+        Gauge.builder("reconciliation.backfill.days.queued", executor, e -> e.getQueue().size())
+                .description("Backfill days waiting for a worker").register(meterRegistry);
+        Gauge.builder("reconciliation.backfill.days.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Backfill days being reconciled").register(meterRegistry);
+    }
+
+    public BackfillProgress start(LocalDate from, LocalDate to) {
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new IllegalArgumentException("Backfill needs a date range with from <= to");
+        }
+        long days = ChronoUnit.DAYS.between(from, to) + 1;
+        if (days > properties.getBackfill().getMaxDays()) {
+            throw new IllegalArgumentException("Backfill exceeds maximum of " + properties.getBackfill().getMaxDays() + " days");
+        }
+
+        ReconciliationBackfill backfill = transactionTemplate.execute(tx -> {
+            ReconciliationBackfill b = new ReconciliationBackfill();
+            b.setStartDate(from);
+            b.setEndDate(to);
+            b = backfillRepository.save(b);
+            List<ReconciliationCheckpoint> checkpoints = new ArrayList<>();
+            for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+                ReconciliationCheckpoint cp = new ReconciliationCheckpoint();
+                cp.setBackfillId(b.getId());
+                cp.setReconciliationDate(d);
+                checkpoints.add(cp);
+            }
+            checkpointRepository.saveAll(checkpoints);
+            return b;
+        });
+        schedule(backfill.getId(), List.of(PENDING));
+        log.info("Started reconciliation backfill {} for {} .. {}", backfill.getId(), from, to);
+        return progress(backfill.getId());
+    }
+
+    /**
+     * Re-queues every day of a backfill that has not finished, including failed days.
+     */
+    public BackfillProgress resume(Long backfillId) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            ReconciliationBackfill b = getBackfill(backfillId);
+            b.setStatus(RUNNING);
+            b.setCompletedAt(null);
+            backfillRepository.save(b);
+        });
+        schedule(backfillId, List.of(PENDING, FAILED));
+        return progress(backfillId);
+    }
+
+    public BackfillProgress progress(Long backfillId) {
+        ReconciliationBackfill b = getBackfill(backfillId);
+        List<ReconciliationCheckpoint> checkpoints = checkpointRepository.findAllByBackfillIdOrderByReconciliationDate(backfillId);
+        int completed = 0;
+        int failed = 0;
+        long charges = 0;
+        for (ReconciliationCheckpoint cp : checkpoints) {
+            if (DONE.equals(cp.getStatus())) completed++;
+            if (FAILED.equals(cp.getStatus())) failed++;
+            charges += cp.getChargesProcessed();
+        }
+        LocalDateTime until = b.getCompletedAt() != null ? b.getCompletedAt() : LocalDateTime.now();
+        double seconds = b.getCreatedAt() != null ? Math.max(0.001, Duration.between(b.getCreatedAt(), until).toMillis() / 1000.0) : 0;
+        return new BackfillProgress(b.getId(), b.getStartDate(), b.getEndDate(), b.getStatus(),
+                checkpoints.size(), completed, failed, charges, seconds > 0 ? charges / seconds : 0);
+    }
+
+    /**
+     * Picks up the pending days of running backfills and days whose owner stopped renewing its lease
+     * (a crashed or stopped instance), on startup and then periodically. Days that failed are only re-run
+     * by {@link #resume}.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${reconciliation.backfill.resume-interval-ms:60000}",
+            initialDelayString = "${reconciliation.backfill.resume-interval-ms:60000}")
+    public void resumeInterruptedBackfills() {
+        if (!properties.getBackfill().isResumeOnStartup()) {
+            return;
+        }
+        for (ReconciliationBackfill b : backfillRepository.findAllByStatus(RUNNING)) {
+            log.debug("Resuming reconciliation backfill {} ({} .. {})", b.getId(), b.getStartDate(), b.getEndDate());
+            schedule(b.getId(), List.of(PENDING));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // interrupted days keep their checkpoint; their leases are released so another instance resumes them
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+            transactionTemplate.executeWithoutResult(tx -> checkpointRepository.releaseOwned(owner));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.warn("Could not release reconciliation backfill leases: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Queues the days in one of {@code statuses} plus RUNNING days; whether a day is actually claimable
+     * (not held by a live lease) is decided when a worker claims it.
+     */
+    private void schedule(Long backfillId, List<String> statuses) {
+        List<String> open = new ArrayList<>(statuses);
+        open.add(RUNNING);
+        List<ReconciliationCheckpoint> checkpoints = checkpointRepository.findAllByBackfillIdAndStatusIn(backfillId, open);
+        if (checkpoints.isEmpty()) {
+            completeIfFinished(backfillId);
+            return;
+        }
+        for (ReconciliationCheckpoint cp : checkpoints) {
+            if (scheduledCheckpoints.add(cp.getId())) {
+                executor.execute(() -> runDay(backfillId, cp.getId(), statuses));
+            }
+        }
+    }
+
+    private void runDay(Long backfillId, Long checkpointId, List<String> claimableStatuses) {
+        long startedAt = System.nanoTime();
+        LocalDate day = null;
+        try {
+            Optional<ReconciliationCheckpoint> claimed = transactionTemplate.execute(tx -> {
+                LocalDateTime now = LocalDateTime.now();
+                Optional<ReconciliationCheckpoint> c = checkpointRepository.lockClaimable(checkpointId, claimableStatuses, now);
+                c.ifPresent(cp -> {
+                    cp.setStatus(RUNNING);
+                    cp.setError(null);
+                    cp.setOwner(owner);
+                    cp.setLockedUntil(now.plus(properties.getBackfill().getLease()));
+                    checkpointRepository.save(cp);
+                });
+                return c;
+            });
+            if (claimed.isEmpty()) {
+                // finished, or held by another instance's lease
+                return;
+            }
+            day = claimed.get().getReconciliationDate();
+            LocalDate date = day;
+            while (!Thread.currentThread().isInterrupted()) {
+                // the chunk's audit rows and the advanced checkpoint commit together
+                Integer processed = transactionTemplate.execute(tx -> {
+                    Optional<ReconciliationCheckpoint> owned = checkpointRepository.lockOwned(checkpointId, owner);
+                    if (owned.isEmpty()) {
+                        return null;
+                    }
+                    ReconciliationCheckpoint c = owned.get();
+                    TransactionReconciliationService.ChunkResult chunk =
+                            reconciliationService.reconcileChunk(date, c.getLastCreatedAt(), c.getLastPaymentId());
+                    if (chunk.processed() == 0) {
+                        c.setStatus(DONE);
+                        c.setLockedUntil(null);
+                    } else {
+                        c.setLockedUntil(LocalDateTime.now().plus(properties.getBackfill().getLease()));
+                        c.setLastCreatedAt(chunk.lastCreatedAt());
+                        c.setLastPaymentId(chunk.lastPaymentId());
+                        c.setChargesProcessed(c.getChargesProcessed() + chunk.processed());
+                    }
+                    checkpointRepository.save(c);
+                    return chunk.processed();
+                });
+                if (processed == null) {
+                    log.warn("Reconciliation backfill {} day {} was taken over by another instance", backfillId, date);
+                    return;
+                }
+                if (processed == 0) {
+                    reconciliationService.proposeMatches(date);
+                    daysCompleted.increment();
+                    break;
+                }
+                chargesProcessed.increment(processed);
+            }
+        } catch (RuntimeException e) {
+            daysFailed.increment();
+            log.error("Reconciliation backfill {} failed for {}: {}", backfillId, day, e.getMessage(), e);
+            try {
+                transactionTemplate.executeWithoutResult(tx ->
+                        checkpointRepository.lockOwned(checkpointId, owner).ifPresent(c -> {
+                            c.setStatus(FAILED);
+                            c.setError(e.getMessage());
+                            c.setLockedUntil(null);
+                            checkpointRepository.save(c);
+                        }));
+            } catch (RuntimeException ignored) {
+                // the checkpoint stays RUNNING and is taken over once its lease expires
+            }
+        } finally {
+            dayDuration.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            scheduledCheckpoints.remove(checkpointId);
+        }
+        completeIfFinished(backfillId);
+    }
+
+    private void completeIfFinished(Long backfillId) {
+        if (checkpointRepository.countByBackfillIdAndStatusIn(backfillId, List.of(PENDING, RUNNING)) > 0) {
+            return;
+        }
+        boolean anyFailed = checkpointRepository.countByBackfillIdAndStatusIn(backfillId, List.of(FAILED)) > 0;
+        transactionTemplate.executeWithoutResult(tx -> {
+            ReconciliationBackfill b = getBackfill(backfillId);
+            b.setStatus(anyFailed ? FAILED : COMPLETED);
+            b.setCompletedAt(LocalDateTime.now());
+            backfillRepository.save(b);
+        });
+        log.info("Reconciliation backfill {} finished: {}", backfillId, anyFailed ? FAILED : COMPLETED);
+    }
+
+    private ReconciliationBackfill getBackfill(Long id) {
+        return backfillRepository.findById(id)
+                .orElseThrow(() -> new NoSuchElementException("Backfill not found: " + id));
+    }
+}
@@ -6,23 +6,39 @@ import com.dropshipping.backend.entity.ReturnRequest;
 import com.dropshipping.backend.repository.OrderItemRepository;
 import com.dropshipping.backend.repository.PaymentRepository;
 import com.dropshipping.backend.repository.ReturnRequestRepository;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Refund;
+import com.stripe.param.RefundCreateParams;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class ReturnService {
 
+    static final String REFUND_PENDING = "PENDING";
+    static final String REFUND_COMPLETED = "COMPLETED";
+    static final String REFUND_FAILED = "FAILED";
+
     private final ReturnRequestRepository returnRequestRepository;
     private final OrderItemRepository orderItemRepository;
     private final PaymentRepository paymentRepository;
     private final PaymentProcessingService paymentProcessingService;
+    private final TransactionTemplate transactionTemplate;
 
     @Transactional
     public ReturnRequest initiateReturn(Long orderItemId, String reason, BigDecimal requestedAmount) {
@@ -60,25 +76,168 @@ public class ReturnService {
         return returnRequestRepository.save(rr);
     }
 
-    @Transactional
+    /**
+     * Refunds a return in two phases so no database connection is held while Stripe is called:
+     * <ol>
+     *   <li>a short transaction locks the return, picks the payment and records the refund intent with an
+     *   idempotency key (status PENDING);</li>
+     *   <li>the refund is sent to Stripe outside any transaction;</li>
+     *   <li>a second short transaction records the outcome.</li>
+     * </ol>
+     * When the outcome is unknown (timeout, network or Stripe server error) the return stays PENDING and
+     * calling this again resends the recorded request with the same key, so Stripe refunds at most once.
+     * A completed refund is returned unchanged. {@link BulkRefundService} runs the same phases for batches.
+     */
     public ReturnRequest processRefund(Long returnId, BigDecimal amount, String reason) {
-        ReturnRequest rr = returnRequestRepository.findById(returnId)
+        Map<Long, RefundIntent> intents = transactionTemplate.execute(tx ->
+                recordRefundIntents(List.of(new RefundRequest(returnId, amount, reason))));
+        RefundIntent intent = intents != null ? intents.get(returnId) : null;
+        if (intent != null) {
+            RefundOutcome outcome = submitRefund(intent);
+            transactionTemplate.executeWithoutResult(tx -> recordRefundOutcomes(List.of(new RefundAttempt(intent, outcome))));
+        }
+        return returnRequestRepository.findWithOrderItemById(returnId)
                 .orElseThrow(() -> new NoSuchElementException("Return not found: " + returnId));
+    }
+
+    /**
+     * A refund to run; a null amount refunds the return's requested amount (or the full charge if none).
+     */
+    record RefundRequest(Long returnId, BigDecimal amount, String reason) {}
+
+    record RefundIntent(Long returnId, Long paymentId, String idempotencyKey, RefundCreateParams params) {}
+
+    record RefundOutcome(String stripeRefundId, boolean failed, String error) {}
+
+    record RefundAttempt(RefundIntent intent, RefundOutcome outcome) {}
+
+    /**
+     * Phase one, inside the caller's transaction: locks the returns and records a refund intent on each one
+     * that is not PENDING already (PENDING ones keep theirs, so the same request and key are sent again).
+     * Returns the intents to send by return id; refunded returns and unknown ids are left out, as are returns
+     * whose refund cannot be built (no payment, or a payment without a Stripe charge), which are marked FAILED
+     * so the other returns of the batch still go ahead.
+     */
+    Map<Long, RefundIntent> recordRefundIntents(List<RefundRequest> requests) {
+        Map<Long, RefundRequest> byReturn = new HashMap<>();
+        requests.forEach(r -> byReturn.put(r.returnId(), r));
+        List<ReturnRequest> returns = returnRequestRepository.findAllWithLockByIdInOrderById(byReturn.keySet());
+
+        List<Long> needIntent = new ArrayList<>();
+        for (ReturnRequest rr : returns) {
+            if (!REFUND_COMPLETED.equals(rr.getRefundStatus()) && !REFUND_PENDING.equals(rr.getRefundStatus())) {
+                needIntent.add(rr.getId());
+            }
+        }
+        Map<Long, Long> paymentByReturn = new HashMap<>();
+        if (!needIntent.isEmpty()) {
+            for (ReturnRequestRepository.RefundPayment rp : returnRequestRepository.findRefundPayments(needIntent)) {
+                paymentByReturn.put(rp.getReturnId(), rp.getPaymentId());
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<ReturnRequest> pending = new ArrayList<>();
+        for (ReturnRequest rr : returns) {
+            if (REFUND_COMPLETED.equals(rr.getRefundStatus())) {
+                continue;
+            }
+            if (!REFUND_PENDING.equals(rr.getRefundStatus())) {
+                Long paymentId = paymentByReturn.get(rr.getId());
+                if (paymentId == null) {
+                    rr.setRefundStatus(REFUND_FAILED);
+                    rr.setRefundError("No payment found for the order of item " + rr.getOrderItem().getId());
+                    continue;
+                }
+                RefundRequest request = byReturn.get(rr.getId());
+                rr.setRefundPaymentId(paymentId);
+                rr.setRefundAmount(request.amount() != null ? request.amount() : rr.getRefundAmount());
+                rr.setRefundReason(request.reason());
+                rr.setRefundIdempotencyKey("return-" + rr.getId() + "-" + UUID.randomUUID());
+                rr.setRefundRequestedAt(now);
+                rr.setRefundStatus(REFUND_PENDING);
+                rr.setRefundError(null);
+            }
+            pending.add(rr);
+        }
 
-        // Find an associated payment via order
-        Long orderId = rr.getOrderItem().getOrder().getId();
-        Payment payment = paymentRepository.findAllByOrder_Id(orderId).stream().findFirst()
-                .orElseThrow(() -> new IllegalStateException("No payment found for order " + orderId));
+        Map<Long, Payment> payments = new HashMap<>();
+        paymentRepository.findAllById(pending.stream().map(ReturnRequest::getRefundPaymentId).toList())
+                .forEach(p -> payments.put(p.getId(), p));
+        Map<Long, RefundIntent> intents = new HashMap<>();
+        for (ReturnRequest rr : pending) {
+            try {
+                Payment payment = payments.get(rr.getRefundPaymentId());
+                if (payment == null) {
+                    throw new NoSuchElementException("Payment not found: " + rr.getRefundPaymentId());
+                }
+                intents.put(rr.getId(), new RefundIntent(rr.getId(), payment.getId(), rr.getRefundIdempotencyKey(),
+                        paymentProcessingService.buildRefundParams(payment, rr.getRefundAmount(), rr.getRefundReason())));
+            } catch (RuntimeException ex) {
+                // only this return fails; the rest of the batch is still sent
+                log.warn("Refund for return {} cannot be sent: {}", rr.getId(), ex.getMessage());
+                rr.setRefundStatus(REFUND_FAILED);
+                rr.setRefundError(StringUtils.abbreviate(ex.getMessage(), 1000));
+            }
+        }
+        returnRequestRepository.saveAll(returns);
+        return intents;
+    }
 
+    /**
+     * Phase two, without a transaction: sends the refund and classifies the result.
+     */
+    RefundOutcome submitRefund(RefundIntent intent) {
         try {
-            paymentProcessingService.createRefund(payment.getId(), amount != null ? amount : rr.getRefundAmount(), reason);
-            rr.setRefundStatus("COMPLETED");
-            rr.setReturnStatus("REFUNDED");
-            rr.setProcessedAt(LocalDateTime.now());
-        } catch (Exception ex) {
-            rr.setRefundStatus("FAILED");
+            Refund refund = paymentProcessingService.submitRefund(intent.params(), intent.idempotencyKey());
+            return new RefundOutcome(refund.getId(), false, null);
+        } catch (StripeException ex) {
+            // Stripe answered with a client error (card, invalid or already refunded charge): final.
+            // Conflicts (a concurrent attempt with the same key) and rate limits are retried later.
+            Integer status = ex.getStatusCode();
+            boolean definite = status != null && status >= 400 && status < 500 && status != 409 && status != 429;
+            return new RefundOutcome(null, definite, ex.getMessage());
+        } catch (RuntimeException ex) {
+            log.warn("Refund for return {} has an unknown outcome, left pending: {}", intent.returnId(), ex.getMessage());
+            return new RefundOutcome(null, false, ex.getMessage());
         }
-        return returnRequestRepository.save(rr);
+    }
+
+    /**
+     * Phase three, inside the caller's transaction: records the outcomes on the returns and marks the
+     * refunded payments, each as one batch of updates. Returns whose intent was meanwhile settled by a
+     * concurrent call are left alone.
+     */
+    void recordRefundOutcomes(List<RefundAttempt> attempts) {
+        Map<Long, RefundAttempt> byReturn = new HashMap<>();
+        attempts.forEach(a -> byReturn.put(a.intent().returnId(), a));
+        List<ReturnRequest> returns = returnRequestRepository.findAllWithLockByIdInOrderById(byReturn.keySet());
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> refundedPayments = new ArrayList<>();
+        for (ReturnRequest rr : returns) {
+            RefundAttempt attempt = byReturn.get(rr.getId());
+            if (!REFUND_PENDING.equals(rr.getRefundStatus())
+                    || !attempt.intent().idempotencyKey().equals(rr.getRefundIdempotencyKey())) {
+                continue;
+            }
+            RefundOutcome outcome = attempt.outcome();
+            if (outcome.stripeRefundId() != null) {
+                rr.setRefundStatus(REFUND_COMPLETED);
+                rr.setReturnStatus("REFUNDED");
+                rr.setProcessedAt(now);
+                rr.setStripeRefundId(outcome.stripeRefundId());
+                rr.setRefundError(null);
+                refundedPayments.add(attempt.intent().paymentId());
+            } else {
+                if (outcome.failed()) {
+                    rr.setRefundStatus(REFUND_FAILED);
+                }
+                rr.setRefundError(StringUtils.abbreviate(outcome.error(), 1000));
+            }
+        }
+        returnRequestRepository.saveAll(returns);
+        paymentProcessingService.markRefunded(refundedPayments);
     }
 
     public Map<String, Object> analytics() {
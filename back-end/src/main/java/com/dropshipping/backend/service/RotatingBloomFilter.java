@@ -0,0 +1,90 @@
+package com.dropshipping.backend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Two-generation Bloom filter: keys go into the current generation, lookups consult both, and the older
+ * generation is dropped every {@code generationMillis}. A key is therefore remembered for at least one
+ * full generation. Not thread-safe; callers synchronize.
+ */
+class RotatingBloomFilter {
+
+    private final int bitCount;
+    private final int hashCount;
+    private final long generationMillis;
+
+    private long[] current;
+    private long[] previous;
+    private long generationStart = -1;
+
+    RotatingBloomFilter(int expectedInsertions, double falsePositiveRate, long generationMillis) {
+        int n = Math.max(1, expectedInsertions);
+        double p = Math.min(Math.max(falsePositiveRate, 1e-9), 0.5);
+        long bits = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        this.bitCount = (int) Math.max(64, Math.min(bits, Integer.MAX_VALUE - 63));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        this.generationMillis = generationMillis;
+        this.current = new long[(bitCount + 63) >>> 6];
+        this.previous = new long[current.length];
+    }
+
+    void put(String key, long nowMillis) {
+        rotateIfNeeded(nowMillis);
+        long h1 = key.hashCode();
+        long h2 = fnv1a(key);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = index(h1, h2, i);
+            current[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(String key, long nowMillis) {
+        rotateIfNeeded(nowMillis);
+        long h1 = key.hashCode();
+        long h2 = fnv1a(key);
+        return contains(current, h1, h2) || contains(previous, h1, h2);
+    }
+
+    private boolean contains(long[] bits, long h1, long h2) {
+        for (int i = 0; i < hashCount; i++) {
+            int bit = index(h1, h2, i);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int index(long h1, long h2, int i) {
+        // Kirsch-Mitzenmacher double hashing
+        return (int) Math.floorMod(h1 + i * h2, (long) bitCount);
+    }
+
+    private void rotateIfNeeded(long nowMillis) {
+        if (generationStart < 0) {
+            generationStart = nowMillis;
+            return;
+        }
+        long elapsed = nowMillis - generationStart;
+        if (elapsed >= generationMillis) {
+            long[] recycled = previous;
+            Arrays.fill(recycled, 0L);
+            if (elapsed >= 2 * generationMillis) {
+                Arrays.fill(current, 0L);
+            }
+            previous = current;
+            current = recycled;
+            generationStart = nowMillis;
+        }
+    }
+
+    private static long fnv1a(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,46 @@
+package com.dropshipping.backend.service;
+
+import com.stripe.model.Charge;
+import com.stripe.model.Event;
+import com.stripe.model.EventDataObjectDeserializer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Applies a verified Stripe event. Called by the webhook inbox workers; an exception makes the inbox retry
+ * the event later, so handlers must tolerate being run more than once for the same event.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StripeEventHandler {
+
+    private final PaymentProcessingService paymentProcessingService;
+
+    public void handle(Event event) {
+        String type = event.getType();
+        EventDataObjectDeserializer dataObjectDeserializer = event.getDataObjectDeserializer();
+
+        switch (type) {
+            case "charge.succeeded" -> {
+                if (dataObjectDeserializer.getObject().isPresent() && dataObjectDeserializer.getObject().get() instanceof Charge charge) {
+                    paymentProcessingService.recordChargeFromEvent(charge);
+                }
+            }
+            case "charge.refunded" -> {
+                // In a more complete implementation, update internal refund status or create a refund record
+                log.info("Stripe event charge.refunded received");
+            }
+            case "charge.dispute.created" -> {
+                if (dataObjectDeserializer.getObject().isPresent() && dataObjectDeserializer.getObject().get() instanceof Charge charge) {
+                    paymentProcessingService.handleDispute(charge.getId());
+                } else {
+                    // If object is dispute itself, we could still log/handle by extracting charge id from event data
+                    log.warn("Dispute created event received but could not deserialize charge object.");
+                }
+            }
+            default -> log.debug("Unhandled Stripe event type: {}", type);
+        }
+    }
+}
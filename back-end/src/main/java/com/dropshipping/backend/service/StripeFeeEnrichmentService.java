@@ -0,0 +1,134 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.StripeProperties;
+import com.dropshipping.backend.entity.Payment;
+import com.dropshipping.backend.repository.PaymentRepository;
+import com.dropshipping.backend.stripe.StripeBalanceApi;
+import com.stripe.exception.StripeException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replaces the estimated fee of charges stored by the webhook with the actual fee.
+ * <p>
+ * Instead of one balance transaction lookup per charge, each run lists the balance transactions created
+ * since the oldest provisional charge page by page and updates the matching payments of every page in one
+ * transaction (a batched UPDATE). As fees get resolved the window shrinks; charges still unmatched after
+ * {@code max-age} keep their estimate and no longer hold the window open.
+ */
+@Service
+@Slf4j
+public class StripeFeeEnrichmentService {
+
+    private final PaymentRepository paymentRepository;
+    private final StripeBalanceApi stripeBalanceApi;
+    private final StripeProperties.FeeEnrichment properties;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter feesEnriched;
+    private final Counter failures;
+    private final Timer runDuration;
+
+    public StripeFeeEnrichmentService(PaymentRepository paymentRepository,
+                                      StripeBalanceApi stripeBalanceApi,
+                                      StripeProperties stripeProperties,
+                                      TransactionTemplate transactionTemplate,
+                                      MeterRegistry meterRegistry) {
+        this.paymentRepository = paymentRepository;
+        this.stripeBalanceApi = stripeBalanceApi;
+        this.properties = stripeProperties.getFeeEnrichment();
+        this.transactionTemplate = transactionTemplate;
+        this.feesEnriched = Counter.builder("stripe.fee.enriched")
+                .description("Provisional fees replaced by the actual Stripe fee").register(meterRegistry);
+        this.failures = Counter.builder("stripe.fee.enrichment.failures")
+                .description("Fee enrichment runs that failed").register(meterRegistry);
+        this.runDuration = Timer.builder("stripe.fee.enrichment.duration")
+                .description("Time for one fee enrichment run").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${stripe.fee-enrichment.interval-ms:300000}")
+    public void enrichScheduled() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            enrichProvisionalFees();
+        } catch (StripeException | RuntimeException e) {
+            failures.increment();
+            log.warn("Stripe fee enrichment failed, retrying next run: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of payments whose fee was updated.
+     */
+    public int enrichProvisionalFees() throws StripeException {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime oldest = paymentRepository.findOldestProvisionalFeeCreatedAt(now.minus(properties.getMaxAge()));
+        if (oldest == null) {
+            return 0;
+        }
+        long startedAt = System.nanoTime();
+        LocalDateTime from = oldest.minus(properties.getSlack());
+        Instant fromInstant = from.atZone(ZoneId.systemDefault()).toInstant();
+        Instant toInstant = now.atZone(ZoneId.systemDefault()).toInstant().plusSeconds(1);
+
+        int updated = 0;
+        int pages = 0;
+        String startingAfter = null;
+        while (true) {
+            StripeBalanceApi.Page page = stripeBalanceApi.listBalanceTransactions(
+                    fromInstant, toInstant, startingAfter, Math.max(1, Math.min(100, properties.getPageSize())));
+            pages++;
+            updated += apply(page.items());
+            if (!page.hasMore() || page.items().isEmpty()) {
+                break;
+            }
+            startingAfter = page.items().get(page.items().size() - 1).id();
+        }
+        feesEnriched.increment(updated);
+        runDuration.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        log.info("Stripe fee enrichment: {} payments updated from {} pages since {}", updated, pages, from);
+        return updated;
+    }
+
+    private int apply(List<StripeBalanceApi.BalanceFee> fees) {
+        Map<String, StripeBalanceApi.BalanceFee> bySource = new HashMap<>();
+        for (StripeBalanceApi.BalanceFee fee : fees) {
+            if (fee.sourceId() != null) {
+                bySource.put(fee.sourceId(), fee);
+            }
+        }
+        if (bySource.isEmpty()) {
+            return 0;
+        }
+        Integer updated = transactionTemplate.execute(tx -> {
+            List<Payment> payments = paymentRepository.findAllByStripeChargeIdInAndFeeProvisionalTrue(bySource.keySet());
+            for (Payment p : payments) {
+                StripeBalanceApi.BalanceFee fee = bySource.get(p.getStripeChargeId());
+                BigDecimal feeAmount = BigDecimal.valueOf(fee.feeCents(), 2);
+                p.setFeeAmount(feeAmount);
+                p.setNetAmount(p.getAmount().subtract(feeAmount).max(BigDecimal.ZERO));
+                p.setFeeProvisional(false);
+                p.setStripeBalanceTransactionId(fee.id());
+            }
+            paymentRepository.saveAll(payments);
+            return payments.size();
+        });
+        return updated != null ? updated : 0;
+    }
+}
@@ -0,0 +1,90 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.repository.StripeWebhookEventRepository;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.stripe.model.Event;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+
+/**
+ * Receiving side of the Stripe webhook: stores the verified raw event with one INSERT that ignores
+ * re-deliveries of an event id, and wakes the workers once it is committed.
+ */
+@Service
+public class StripeWebhookInbox {
+
+    private final StripeWebhookEventRepository eventRepository;
+    private final StripeWebhookWorker worker;
+    private final Counter accepted;
+    private final Counter duplicates;
+
+    public StripeWebhookInbox(StripeWebhookEventRepository eventRepository,
+                              StripeWebhookWorker worker,
+                              MeterRegistry meterRegistry) {
+        this.eventRepository = eventRepository;
+        this.worker = worker;
+        this.accepted = Counter.builder("stripe.webhook.received").tag("result", "accepted")
+                .description("Stripe events stored in the inbox").register(meterRegistry);
+        this.duplicates = Counter.builder("stripe.webhook.received").tag("result", "duplicate")
+                .description("Stripe re-deliveries of events already in the inbox").register(meterRegistry);
+    }
+
+    /**
+     * Returns false if the event id was already stored.
+     */
+    @Transactional
+    public boolean accept(Event event, String payload) {
+        boolean stored = eventRepository.insertIfAbsent(event.getId(), event.getType(), payload,
+                orderingKey(event), LocalDateTime.now()) == 1;
+        if (!stored) {
+            duplicates.increment();
+            return false;
+        }
+        accepted.increment();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                worker.wakeUp();
+            }
+        });
+        return true;
+    }
+
+    /**
+     * The PaymentIntent the event's object belongs to, else its charge; null for events about neither.
+     * Read from the raw object so it works whatever API version the event was rendered with.
+     */
+    static String orderingKey(Event event) {
+        try {
+            String rawJson = event.getDataObjectDeserializer().getRawJson();
+            if (rawJson == null) {
+                return null;
+            }
+            JsonObject object = JsonParser.parseString(rawJson).getAsJsonObject();
+            String type = string(object, "object");
+            if ("payment_intent".equals(type)) {
+                return string(object, "id");
+            }
+            String paymentIntent = string(object, "payment_intent");
+            if (paymentIntent != null) {
+                return paymentIntent;
+            }
+            return "charge".equals(type) ? string(object, "id") : string(object, "charge");
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String string(JsonObject object, String member) {
+        JsonElement value = object.get(member);
+        return value != null && value.isJsonPrimitive() ? value.getAsString() : null;
+    }
+}
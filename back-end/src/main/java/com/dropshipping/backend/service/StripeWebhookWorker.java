@@ -0,0 +1,267 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.StripeProperties;
+import com.dropshipping.backend.entity.StripeWebhookEvent;
+import com.dropshipping.backend.repository.StripeWebhookEventRepository;
+import com.stripe.model.Event;
+import com.stripe.net.ApiResource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Processes the Stripe webhook inbox.
+ * <p>
+ * A poller claims due events with {@code FOR UPDATE SKIP LOCKED}, so several instances can share the inbox,
+ * marks them PROCESSING under a lease and hands them to single-threaded lanes picked by the event's ordering
+ * key (PaymentIntent or charge id). Only the oldest open event of a key is ever claimable, on any instance,
+ * so events of one charge are applied one at a time in the order received while different charges run in
+ * parallel. It never claims more than the lanes can start soon, so unclaimed events stay available to other
+ * instances. A failed event goes back to PENDING with an exponential, jittered backoff (later events of its
+ * key wait for that retry) and is moved to DEAD after {@code max-attempts}; an event whose worker died is
+ * claimed again when its lease expires.
+ */
+@Component
+@Slf4j
+public class StripeWebhookWorker {
+
+    private static final String PENDING = "PENDING";
+    private static final String PROCESSING = "PROCESSING";
+    private static final String DONE = "DONE";
+    private static final String DEAD = "DEAD";
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final StripeWebhookEventRepository eventRepository;
+    private final StripeEventHandler eventHandler;
+    private final StripeProperties.WebhookInbox properties;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ScheduledExecutorService poller;
+    private final StripedExecutor lanes;
+    private final int capacity;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean wakePending = new AtomicBoolean();
+
+    private final Counter processed;
+    private final Counter retried;
+    private final Counter deadLettered;
+    private final Timer processingDuration;
+    private final Timer lag;
+
+    public StripeWebhookWorker(StripeWebhookEventRepository eventRepository,
+                               StripeEventHandler eventHandler,
+                               StripeProperties stripeProperties,
+                               TransactionTemplate transactionTemplate,
+                               MeterRegistry meterRegistry) {
+        this.eventRepository = eventRepository;
+        this.eventHandler = eventHandler;
+        this.properties = stripeProperties.getWebhookInbox();
+        this.transactionTemplate = transactionTemplate;
+
+        int threads = Math.max(1, properties.getWorkers());
+        this.capacity = threads * 2;
+        this.lanes = new StripedExecutor("stripe-webhook-lane", threads, "stripe.webhook.lane", meterRegistry);
+        this.poller = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "stripe-webhook-poller"));
+        long pollMillis = Math.max(10, properties.getPollInterval().toMillis());
+        poller.scheduleWithFixedDelay(this::poll, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+
+        this.processed = Counter.builder("stripe.webhook.processed").tag("result", "done")
+                .description("Stripe events processed").register(meterRegistry);
+        this.retried = Counter.builder("stripe.webhook.processed").tag("result", "retry")
+                .description("Stripe event attempts that failed and were rescheduled").register(meterRegistry);
+        this.deadLettered = Counter.builder("stripe.webhook.processed").tag("result", "dead")
+                .description("Stripe events moved to DEAD after the last attempt").register(meterRegistry);
+        this.processingDuration = Timer.builder("stripe.webhook.processing.duration")
+                .description("Time to apply one Stripe event").register(meterRegistry);
+        this.lag = Timer.builder("stripe.webhook.lag")
+                .description("Time from receiving a Stripe event to having processed it").register(meterRegistry);
+        Gauge.builder("stripe.webhook.in_flight", inFlight, AtomicInteger::get)
+                .description("Stripe events claimed by this instance and not finished").register(meterRegistry);
+    }
+
+    /**
+     * Polls right away instead of waiting for the next interval, e.g. after a new event was stored.
+     */
+    public void wakeUp() {
+        if (wakePending.compareAndSet(false, true)) {
+            try {
+                poller.execute(this::poll);
+            } catch (RuntimeException e) {
+                wakePending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Moves a dead-lettered event back to PENDING with a fresh set of attempts.
+     */
+    public void retryDead(Long id) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            StripeWebhookEvent e = eventRepository.findById(id)
+                    .orElseThrow(() -> new NoSuchElementException("Webhook event not found: " + id));
+            if (!DEAD.equals(e.getStatus())) {
+                throw new IllegalStateException("Webhook event " + id + " is " + e.getStatus() + ", not DEAD");
+            }
+            e.setStatus(PENDING);
+            e.setAttempts(0);
+            e.setNextAttemptAt(LocalDateTime.now());
+            e.setLastError(null);
+            eventRepository.save(e);
+        });
+        wakeUp();
+    }
+
+    @Scheduled(cron = "0 30 3 * * *")
+    public void purgeProcessed() {
+        LocalDateTime before = LocalDateTime.now().minus(properties.getRetention());
+        Integer deleted = transactionTemplate.execute(tx -> eventRepository.deleteProcessedBefore(before));
+        log.info("Purged {} processed Stripe webhook events older than {}", deleted, before);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // events still in flight keep their lease and are claimed again once it expires
+        poller.shutdownNow();
+        try {
+            lanes.shutdown(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void poll() {
+        wakePending.set(false);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                int limit = Math.min(Math.max(1, properties.getBatchSize()), capacity - inFlight.get());
+                if (limit <= 0) {
+                    return;
+                }
+                List<StripeWebhookEvent> claimed = claim(limit);
+                for (StripeWebhookEvent e : claimed) {
+                    inFlight.incrementAndGet();
+                    // same key, same lane: events of one charge / PaymentIntent apply in the order received
+                    lanes.execute(e.getOrderingKey() != null ? e.getOrderingKey() : e.getEventId(), () -> process(e));
+                }
+                if (claimed.size() < limit) {
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Stripe webhook inbox poll failed: {}", e.getMessage());
+        }
+    }
+
+    private List<StripeWebhookEvent> claim(int limit) {
+        return transactionTemplate.execute(tx -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<StripeWebhookEvent> events = eventRepository.lockClaimable(now, limit);
+            for (StripeWebhookEvent e : events) {
+                e.setStatus(PROCESSING);
+                e.setAttempts(e.getAttempts() + 1);
+                e.setLockedUntil(now.plus(properties.getLease()));
+            }
+            return eventRepository.saveAll(events);
+        });
+    }
+
+    private void process(StripeWebhookEvent claimed) {
+        long startedAt = System.nanoTime();
+        boolean done = false;
+        try {
+            Event event = ApiResource.GSON.fromJson(claimed.getPayload(), Event.class);
+            eventHandler.handle(event);
+            finish(claimed, null);
+            done = true;
+        } catch (RuntimeException e) {
+            log.warn("Stripe event {} ({}) failed on attempt {}: {}",
+                    claimed.getEventId(), claimed.getEventType(), claimed.getAttempts(), e.getMessage());
+            try {
+                finish(claimed, e);
+            } catch (RuntimeException ex) {
+                // the lease expires and the event is claimed again
+                log.error("Could not record failure of Stripe event {}: {}", claimed.getEventId(), ex.getMessage());
+            }
+        } finally {
+            processingDuration.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            // the next event of the key only became claimable now
+            if (inFlight.getAndDecrement() >= capacity || (done && claimed.getOrderingKey() != null)) {
+                wakeUp();
+            }
+        }
+    }
+
+    private void finish(StripeWebhookEvent claimed, RuntimeException failure) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            StripeWebhookEvent e = findOwned(claimed);
+            if (e == null) {
+                return;
+            }
+            LocalDateTime now = LocalDateTime.now();
+            e.setLockedUntil(null);
+            if (failure == null) {
+                e.setStatus(DONE);
+                e.setProcessedAt(now);
+                e.setLastError(null);
+                processed.increment();
+                lag.record(Duration.between(e.getReceivedAt(), now));
+            } else if (e.getAttempts() >= properties.getMaxAttempts()) {
+                e.setStatus(DEAD);
+                e.setLastError(StringUtils.abbreviate(failure.toString(), MAX_ERROR_LENGTH));
+                deadLettered.increment();
+                log.error("Stripe event {} ({}) moved to DEAD after {} attempts", e.getEventId(), e.getEventType(), e.getAttempts());
+            } else {
+                e.setStatus(PENDING);
+                e.setNextAttemptAt(now.plus(backoff(e.getAttempts())));
+                e.setLastError(StringUtils.abbreviate(failure.toString(), MAX_ERROR_LENGTH));
+                retried.increment();
+            }
+            eventRepository.save(e);
+        });
+    }
+
+    // null if the lease expired and another worker took the event over
+    private StripeWebhookEvent findOwned(StripeWebhookEvent claimed) {
+        StripeWebhookEvent e = eventRepository.findById(claimed.getId()).orElse(null);
+        if (e == null || !PROCESSING.equals(e.getStatus()) || !e.getAttempts().equals(claimed.getAttempts())) {
+            return null;
+        }
+        return e;
+    }
+
+    // initial-backoff * 2^(attempt-1), capped at max-backoff, then scaled by a random 50-100% so that
+    // events that failed together do not retry together
+    private Duration backoff(int attempt) {
+        long initial = properties.getInitialBackoff().toMillis();
+        long max = properties.getMaxBackoff().toMillis();
+        long delay = initial << Math.min(Math.max(0, attempt - 1), 30);
+        if (delay <= 0 || delay > max) {
+            delay = max;
+        }
+        return Duration.ofMillis((long) (delay * (0.5 + ThreadLocalRandom.current().nextDouble() * 0.5)));
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
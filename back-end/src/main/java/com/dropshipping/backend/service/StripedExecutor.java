@@ -0,0 +1,100 @@
+package com.dropshipping.backend.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs tasks on a fixed number of single-threaded lanes chosen by key: tasks with the same key run one at
+ * a time in submission order, tasks with different keys run in parallel (up to one per lane).
+ * <p>
+ * Exports per lane {@code <metricPrefix>.depth} (tasks queued or running) and {@code <metricPrefix>.lag}
+ * (seconds the oldest unfinished task has been waiting), tagged with {@code lane}.
+ */
+final class StripedExecutor {
+
+    private final Lane[] lanes;
+
+    StripedExecutor(String threadPrefix, int laneCount, String metricPrefix, MeterRegistry meterRegistry) {
+        lanes = new Lane[Math.max(1, laneCount)];
+        for (int i = 0; i < lanes.length; i++) {
+            String name = threadPrefix + "-" + i;
+            Lane lane = new Lane(Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            }));
+            lanes[i] = lane;
+            String tag = String.valueOf(i);
+            Gauge.builder(metricPrefix + ".depth", lane, l -> l.enqueuedAt.size())
+                    .tag("lane", tag).description("Tasks queued or running on the lane").register(meterRegistry);
+            Gauge.builder(metricPrefix + ".lag", lane, Lane::lagSeconds)
+                    .tag("lane", tag).baseUnit("seconds")
+                    .description("Age of the oldest unfinished task on the lane").register(meterRegistry);
+        }
+    }
+
+    /**
+     * Queues the task on the lane of {@code key}; a null key picks a lane at random.
+     */
+    void execute(Object key, Runnable task) {
+        int hash = key != null ? spread(key.hashCode()) : (int) System.nanoTime();
+        lanes[Math.floorMod(hash, lanes.length)].execute(task);
+    }
+
+    int laneCount() {
+        return lanes.length;
+    }
+
+    void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        for (Lane lane : lanes) {
+            lane.executor.shutdown();
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Lane lane : lanes) {
+            lane.executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // spreads the higher bits so keys with similar hash codes do not pile onto one lane
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Lane {
+        private final ExecutorService executor;
+        // enqueue times in FIFO order; the head belongs to the task running or next to run
+        private final Queue<Long> enqueuedAt = new ConcurrentLinkedQueue<>();
+
+        Lane(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        void execute(Runnable task) {
+            Long at = System.nanoTime();
+            enqueuedAt.add(at);
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        enqueuedAt.poll();
+                    }
+                });
+            } catch (RuntimeException e) {
+                enqueuedAt.remove(at);
+                throw e;
+            }
+        }
+
+        double lagSeconds() {
+            Long oldest = enqueuedAt.peek();
+            return oldest != null ? (System.nanoTime() - oldest) / 1e9 : 0;
+        }
+    }
+}
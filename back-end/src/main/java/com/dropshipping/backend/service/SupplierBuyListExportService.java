@@ -0,0 +1,248 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.OrderProperties;
+import com.dropshipping.backend.dto.SupplierBuyRow;
+import com.dropshipping.backend.repository.OrderItemRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.StreamSupport;
+
+/**
+ * CSV and PDF exports of the daily supplier buy list.
+ * <p>
+ * Rows are read in keyset pages of {@code order.buy-list.export-page-size}, each in its own short read-only
+ * transaction, and written to the output page by page: memory use is bounded by the page size and no
+ * database connection is held while the client downloads. Each page reads committed data as of its own
+ * query, so items added to the day during a long download may or may not be included.
+ * <p>
+ * CSV text cells starting with {@code = + - @} (or a tab / carriage return) are prefixed with a single quote,
+ * so spreadsheet programs show them as text instead of evaluating them as formulas.
+ */
+@Service
+public class SupplierBuyListExportService {
+
+    private static final String[] CSV_HEADER = {
+            "supplier_id", "supplier_name", "order_number", "sku", "product_name",
+            "quantity", "unit_price", "total_price", "purchased", "shipping_address"
+    };
+
+    private final OrderItemRepository orderItemRepository;
+    private final OrderProperties orderProperties;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public SupplierBuyListExportService(OrderItemRepository orderItemRepository,
+                                        OrderProperties orderProperties,
+                                        PlatformTransactionManager transactionManager) {
+        this.orderItemRepository = orderItemRepository;
+        this.orderProperties = orderProperties;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public void writeCsv(LocalDate date, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writeCsvRow(writer, CSV_HEADER);
+        for (Iterator<SupplierBuyRow> it = rows(date); it.hasNext(); ) {
+            SupplierBuyRow row = it.next();
+            int quantity = quantity(row);
+            BigDecimal unitPrice = unitPrice(row);
+            writeCsvRow(writer, new String[] {
+                    String.valueOf(row.supplierId()),
+                    csvText(row.supplierName()),
+                    csvText(row.orderNumber()),
+                    csvText(row.sku()),
+                    csvText(row.productName()),
+                    String.valueOf(quantity),
+                    unitPrice.toPlainString(),
+                    unitPrice.multiply(BigDecimal.valueOf(quantity)).toPlainString(),
+                    String.valueOf(isPurchased(row)),
+                    row.shippingAddress() != null ? csvText(row.shippingAddress().toString()) : ""
+            });
+        }
+        writer.flush();
+    }
+
+    /**
+     * Purchase instructions grouped by supplier: one section per supplier starting on a new page,
+     * a line per item with the ship-to address below it, and the supplier total at the end of the section.
+     */
+    public void writePdf(LocalDate date, OutputStream out) throws IOException {
+        PdfPageWriter pdf = new PdfPageWriter(out, "Supplier buy list " + date);
+        Long supplierId = null;
+        BigDecimal totalCost = BigDecimal.ZERO;
+        long purchased = 0;
+        long pending = 0;
+        for (Iterator<SupplierBuyRow> it = rows(date); it.hasNext(); ) {
+            SupplierBuyRow row = it.next();
+            if (!row.supplierId().equals(supplierId)) {
+                if (supplierId != null) {
+                    writeSupplierTotal(pdf, totalCost, purchased, pending);
+                    pdf.pageBreak();
+                }
+                supplierId = row.supplierId();
+                totalCost = BigDecimal.ZERO;
+                purchased = 0;
+                pending = 0;
+                pdf.line("Supplier: " + row.supplierName() + " (#" + row.supplierId() + ")");
+                pdf.blankLine();
+            }
+            int quantity = quantity(row);
+            BigDecimal unitPrice = unitPrice(row);
+            BigDecimal lineTotal = unitPrice.multiply(BigDecimal.valueOf(quantity));
+            boolean isPurchased = isPurchased(row);
+            if (isPurchased) purchased++; else pending++;
+            totalCost = totalCost.add(lineTotal);
+
+            pdf.line(String.format("[%s] %s  %s  %s  %d x %s = %s",
+                    isPurchased ? "x" : " ", row.orderNumber(), row.sku(), row.productName(),
+                    quantity, unitPrice.toPlainString(), lineTotal.toPlainString()));
+            pdf.line("      Ship to: " + formatAddress(row.shippingAddress()));
+        }
+        if (supplierId != null) {
+            writeSupplierTotal(pdf, totalCost, purchased, pending);
+        } else {
+            pdf.line("No items to purchase.");
+        }
+        pdf.finish();
+    }
+
+    private Iterator<SupplierBuyRow> rows(LocalDate date) {
+        return new PagedRows(date.atStartOfDay(), date.plusDays(1).atStartOfDay(),
+                Math.max(1, orderProperties.getBuyList().getExportPageSize()));
+    }
+
+    private void writeSupplierTotal(PdfPageWriter pdf, BigDecimal totalCost, long purchased, long pending) throws IOException {
+        pdf.blankLine();
+        pdf.line(String.format("Total cost: %s   purchased: %d   pending: %d", totalCost.toPlainString(), purchased, pending));
+    }
+
+    private static String formatAddress(JsonNode address) {
+        if (address == null || address.isNull()) {
+            return "-";
+        }
+        if (!address.isObject()) {
+            return address.asText();
+        }
+        StringBuilder sb = new StringBuilder();
+        StreamSupport.stream(address.spliterator(), false)
+                .filter(JsonNode::isValueNode)
+                .map(JsonNode::asText)
+                .filter(StringUtils::isNotBlank)
+                .forEach(v -> sb.append(sb.length() > 0 ? ", " : "").append(v));
+        return sb.toString();
+    }
+
+    private static int quantity(SupplierBuyRow row) {
+        return row.quantity() != null ? row.quantity() : 1;
+    }
+
+    private static BigDecimal unitPrice(SupplierBuyRow row) {
+        return row.unitPrice() != null ? row.unitPrice() : BigDecimal.ZERO;
+    }
+
+    private static boolean isPurchased(SupplierBuyRow row) {
+        return StringUtils.isNotBlank(row.supplierConfirmationId());
+    }
+
+    private static void writeCsvRow(Writer writer, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(csvEscape(values[i]));
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * Neutralizes text a spreadsheet would evaluate as a formula.
+     */
+    static String csvText(String value) {
+        if (value == null || value.isEmpty()) {
+            return value;
+        }
+        char first = value.charAt(0);
+        if (first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r') {
+            return "'" + value;
+        }
+        return value;
+    }
+
+    private static String csvEscape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * The day's rows in buy list order, read one keyset page per transaction as the iteration reaches it.
+     */
+    private class PagedRows implements Iterator<SupplierBuyRow> {
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final int pageSize;
+
+        private Iterator<SupplierBuyRow> page = Collections.emptyIterator();
+        private SupplierBuyRow last;
+        private boolean exhausted;
+
+        PagedRows(LocalDateTime start, LocalDateTime end, int pageSize) {
+            this.start = start;
+            this.end = end;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!page.hasNext() && !exhausted) {
+                List<SupplierBuyRow> rows = readOnlyTransaction.execute(status -> fetchPage());
+                exhausted = rows.size() < pageSize;
+                if (!rows.isEmpty()) {
+                    last = rows.get(rows.size() - 1);
+                }
+                page = rows.iterator();
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public SupplierBuyRow next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.next();
+        }
+
+        private List<SupplierBuyRow> fetchPage() {
+            Pageable limit = PageRequest.of(0, pageSize);
+            if (last == null) {
+                return orderItemRepository.findFirstSupplierBuyRows(start, end, limit);
+            }
+            return orderItemRepository.findSupplierBuyRowsAfter(start, end,
+                    last.supplierName(), last.supplierId(), last.itemId(), limit);
+        }
+    }
+}
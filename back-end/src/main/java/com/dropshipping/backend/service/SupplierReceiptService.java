@@ -1,11 +1,14 @@
 package com.dropshipping.backend.service;
 
+import com.dropshipping.backend.cache.CacheNames;
+import com.dropshipping.backend.cache.CachedLookups;
 import com.dropshipping.backend.entity.OrderItem;
 import com.dropshipping.backend.entity.Supplier;
 import com.dropshipping.backend.entity.SupplierReceipt;
 import com.dropshipping.backend.repository.OrderItemRepository;
 import com.dropshipping.backend.repository.SupplierReceiptRepository;
 import com.dropshipping.backend.repository.SupplierRepository;
+import com.dropshipping.backend.resilience.DependencyGuards;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -39,8 +42,11 @@ import java.util.*;
 public class SupplierReceiptService {
 
     private final SupplierRepository supplierRepository;
+    private final CachedLookups cachedLookups;
     private final OrderItemRepository orderItemRepository;
     private final SupplierReceiptRepository supplierReceiptRepository;
+    private final IncrementalReconciler incrementalReconciler;
+    private final DependencyGuards dependencyGuards;
 
     private final S3Client s3Client;
     private final TextractClient textractClient;
@@ -60,7 +66,7 @@ public class SupplierReceiptService {
                                          String currency,
                                          LocalDate receiptDate,
                                          MultipartFile file) throws Exception {
-        Supplier supplier = supplierRepository.findById(supplierId)
+        Supplier supplier = cachedLookups.get(CacheNames.SUPPLIERS, supplierId, supplierRepository::findAllById, Supplier::getId)
                 .orElseThrow(() -> new NoSuchElementException("Supplier not found: " + supplierId));
 
         OrderItem orderItem = null;
@@ -83,7 +89,10 @@ public class SupplierReceiptService {
                         "orderItemId", orderItem != null ? String.valueOf(orderItem.getId()) : ""))
                 .build();
 
-        s3Client.putObject(putReq, RequestBody.fromBytes(file.getBytes()));
+        // a PUT of the same key is idempotent, so the guard may retry it
+        byte[] content = file.getBytes();
+        dependencyGuards.get(DependencyGuards.S3)
+                .call("putObject", () -> s3Client.putObject(putReq, RequestBody.fromBytes(content)));
 
         // Build https URL (works for public buckets or presign-required; here only stored for reference)
         String s3Url = "s3://" + bucketName + "/" + key;
@@ -107,14 +116,18 @@ public class SupplierReceiptService {
             }
         }
 
-        return supplierReceiptRepository.save(receipt);
+        SupplierReceipt saved = supplierReceiptRepository.save(receipt);
+        if (orderItem != null) {
+            incrementalReconciler.receiptRecorded(orderItem.getOrder().getId());
+        }
+        return saved;
     }
 
     public List<SupplierReceipt> listReceiptsForSupplier(Long supplierId, LocalDate start, LocalDate end) {
         if (start != null && end != null) {
             return supplierReceiptRepository.findAllBySupplier_IdAndReceiptDateBetween(supplierId, start, end);
         }
-        return supplierRepository.findById(supplierId)
+        return cachedLookups.get(CacheNames.SUPPLIERS, supplierId, supplierRepository::findAllById, Supplier::getId)
                 .map(supplierReceiptRepository::findAllBySupplier)
                 .orElse(List.of());
     }
@@ -165,7 +178,8 @@ public class SupplierReceiptService {
                 .document(document)
                 .build();
 
-        DetectDocumentTextResponse resp = textractClient.detectDocumentText(req);
+        DetectDocumentTextResponse resp = dependencyGuards.get(DependencyGuards.TEXTRACT)
+                .call("detectDocumentText", () -> textractClient.detectDocumentText(req));
 
         ObjectNode root = objectMapper.createObjectNode();
         ArrayNode lines = objectMapper.createArrayNode();
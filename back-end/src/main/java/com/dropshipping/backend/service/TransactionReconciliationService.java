@@ -1,11 +1,7 @@
 package com.dropshipping.backend.service;
 
-import com.dropshipping.backend.entity.OrderItem;
-import com.dropshipping.backend.entity.Payment;
+import com.dropshipping.backend.config.ReconciliationProperties;
 import com.dropshipping.backend.entity.ReconciliationAudit;
-import com.dropshipping.backend.entity.SupplierReceipt;
-import com.dropshipping.backend.enums.PaymentStatus;
-import com.dropshipping.backend.repository.OrderItemRepository;
 import com.dropshipping.backend.repository.PaymentRepository;
 import com.dropshipping.backend.repository.ReconciliationAuditRepository;
 import com.dropshipping.backend.repository.SupplierReceiptRepository;
@@ -13,98 +9,235 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 /**
  * Daily reconciliation: match Stripe charges with supplier receipts and flag discrepancies.
  * Runs at 11 PM EST (America/New_York).
+ * <p>
+ * Matching is set-based: one SQL query per chunk of payments joins each charge to its order's items and the
+ * receipts dated on the reconciled day and returns the sums, and the chunk's audit rows are inserted as one
+ * JDBC batch. Each chunk commits on its own, so no transaction or connection is held for the whole day.
+ * Payment rows are locked before their results are replaced, so the nightly run, backfills and incremental
+ * recomputes never write the same payment's results concurrently.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class TransactionReconciliationService {
 
+    private static final BigDecimal TOLERANCE = new BigDecimal("0.01");
+
     private final PaymentRepository paymentRepository;
-    private final SupplierReceiptRepository supplierReceiptRepository;
-    private final OrderItemRepository orderItemRepository;
     private final ReconciliationAuditRepository reconciliationAuditRepository;
+    private final FulfillmentDashboardCounters dashboardCounters;
+    private final ReconciliationProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final ChargeMatchingService chargeMatchingService;
+    private final SupplierReceiptRepository supplierReceiptRepository;
 
     /**
      * Cron at 23:00 America/New_York timezone, every day.
+     * With incremental reconciliation enabled the results are already current, so this only sweeps up
+     * charges of the day that have no result yet (e.g. an event lost in a restart).
      */
     @Scheduled(cron = "0 0 23 * * *", zone = "America/New_York")
-    @Transactional
     public void nightlyReconciliation() {
         ZoneId tz = ZoneId.of("America/New_York");
         LocalDate targetDay = LocalDate.now(tz);
-        reconcileForDate(targetDay);
+        if (properties.getIncremental().isEnabled()) {
+            verifyForDate(targetDay);
+        } else {
+            reconcileForDate(targetDay);
+        }
     }
 
     /**
      * Public method for manual/backfill use if needed.
      */
-    @Transactional
     public void reconcileForDate(LocalDate date) {
+        long total = runChunks(date, false);
+        log.info("Reconciliation complete for date {} ({} charges)", date, total);
+        proposeMatches(date);
+    }
+
+    /**
+     * Reconciles only the day's charges without a result row for the day.
+     */
+    public void verifyForDate(LocalDate date) {
+        long total = runChunks(date, true);
+        log.info("Reconciliation sweep complete for date {} ({} charges without a result)", date, total);
+        proposeMatches(date);
+    }
+
+    /**
+     * Proposes orders and receipts for the day's unattached charges once their audit rows exist.
+     */
+    void proposeMatches(LocalDate date) {
+        if (properties.getMatching().isEnabled()) {
+            chargeMatchingService.proposeMatches(date);
+        }
+    }
+
+    private long runChunks(LocalDate date, boolean unreconciledOnly) {
+        ChunkResult position = new ChunkResult(0, null, 0);
+        long total = 0;
+        while (true) {
+            ChunkResult from = position;
+            ChunkResult chunk = transactionTemplate.execute(tx ->
+                    reconcileChunk(date, from.lastCreatedAt(), from.lastPaymentId(), unreconciledOnly));
+            if (chunk == null || chunk.processed() == 0) {
+                return total;
+            }
+            total += chunk.processed();
+            position = chunk;
+        }
+    }
+
+    /**
+     * Reconciles the next chunk of the day's completed payments after the keyset position
+     * ({@code afterCreatedAt}, {@code afterPaymentId}) and batch-inserts their audit rows in the caller's
+     * transaction, replacing earlier results for the same payments and day. A null {@code afterCreatedAt}
+     * starts at the beginning of the day.
+     */
+    ChunkResult reconcileChunk(LocalDate date, LocalDateTime afterCreatedAt, long afterPaymentId) {
+        return reconcileChunk(date, afterCreatedAt, afterPaymentId, false);
+    }
+
+    private ChunkResult reconcileChunk(LocalDate date, LocalDateTime afterCreatedAt, long afterPaymentId,
+                                       boolean unreconciledOnly) {
         LocalDateTime start = date.atStartOfDay();
         LocalDateTime end = date.plusDays(1).atStartOfDay();
+        LocalDateTime after = afterCreatedAt != null ? afterCreatedAt : start;
+        int chunkSize = Math.max(1, properties.getChunkSize());
 
-        // Get successful Stripe payments for the day
-        List<Payment> payments = paymentRepository.findAllByStatusAndCreatedAtBetween(PaymentStatus.COMPLETED, start, end);
+        List<PaymentRepository.ChunkKey> keys = unreconciledOnly
+                ? paymentRepository.lockUnreconciledChunk(start, end, after, afterPaymentId, chunkSize)
+                : paymentRepository.lockReconciliationChunk(start, end, after, afterPaymentId, chunkSize);
+        if (keys.isEmpty()) {
+            return new ChunkResult(0, afterCreatedAt, afterPaymentId);
+        }
+        List<Long> paymentIds = new ArrayList<>(keys.size());
+        for (PaymentRepository.ChunkKey key : keys) {
+            paymentIds.add(key.getId());
+        }
+        reconcilePayments(paymentIds);
+        PaymentRepository.ChunkKey last = keys.get(keys.size() - 1);
+        return new ChunkResult(keys.size(), last.getCreatedAt(), last.getId());
+    }
 
-        for (Payment p : payments) {
-            if (p.getOrder() == null) {
-                // Unattached charge - store audit record with missing supplier amount
-                saveAudit(p.getStripeChargeId(), p.getAmount(), null, "Unattached charge (no linked order)");
-                continue;
-            }
+    /**
+     * Re-reconciles the completed charges of the given orders plus the given (possibly unattached) charges
+     * in the caller's transaction and returns the number of charges reconciled. Used by
+     * {@link IncrementalReconciler} when charges and receipts arrive.
+     */
+    int reconcileOrdersAndPayments(Collection<Long> orderIds, Collection<Long> paymentIds) {
+        // an empty IN list is not valid SQL; -1 never matches an id
+        List<Long> paymentIdsToLock = paymentRepository.lockForReconciliation(
+                orderIds.isEmpty() ? List.of(-1L) : orderIds,
+                paymentIds.isEmpty() ? List.of(-1L) : paymentIds);
+        if (paymentIdsToLock.isEmpty()) {
+            return 0;
+        }
+        reconcilePayments(paymentIdsToLock);
+        return paymentIdsToLock.size();
+    }
 
-            // Sum supplier receipts for order items belonging to this order on the same date
-            List<OrderItem> items = p.getOrder().getOrderItems();
-            if (items == null || items.isEmpty()) {
-                saveAudit(p.getStripeChargeId(), p.getAmount(), BigDecimal.ZERO, "No order items found");
-                continue;
+    /**
+     * Computes and stores the results of already locked payments, each for the day it was charged.
+     */
+    private void reconcilePayments(List<Long> paymentIds) {
+        List<PaymentRepository.ReconciliationRow> rows = paymentRepository.findReconciliationRows(paymentIds);
+        List<ReconciliationAudit> audits = new ArrayList<>(rows.size());
+        Map<Long, ReconciliationAudit> auditsByPayment = new HashMap<>();
+        Set<Long> unattached = new HashSet<>();
+        Map<LocalDate, List<Long>> paymentIdsByDate = new HashMap<>();
+        for (PaymentRepository.ReconciliationRow row : rows) {
+            ReconciliationAudit audit = toAudit(row);
+            audit.setPaymentId(row.getPaymentId());
+            audit.setReconciliationDate(row.getReconciliationDate());
+            audits.add(audit);
+            auditsByPayment.put(row.getPaymentId(), audit);
+            if (row.getOrderId() == null) {
+                unattached.add(row.getPaymentId());
             }
+            paymentIdsByDate.computeIfAbsent(row.getReconciliationDate(), d -> new ArrayList<>()).add(row.getPaymentId());
+        }
+        // idempotent: re-reconciling replaces the rows of a payment and day instead of adding duplicates,
+        // keeping the match proposals stored on the rows it replaces
+        int replaced = 0;
+        for (Map.Entry<LocalDate, List<Long>> e : paymentIdsByDate.entrySet()) {
+            for (ReconciliationAuditRepository.MatchProposal proposal :
+                    reconciliationAuditRepository.findMatchProposals(e.getKey(), e.getValue())) {
+                keepProposal(auditsByPayment.get(proposal.getPaymentId()), proposal,
+                        unattached.contains(proposal.getPaymentId()));
+            }
+            replaced += reconciliationAuditRepository.deleteForPayments(e.getKey(), e.getValue());
+        }
+        reconciliationAuditRepository.saveAll(audits);
+        dashboardCounters.recordReconciliations(audits.size() - replaced);
+    }
 
-            BigDecimal supplierTotalForDay = BigDecimal.ZERO;
-            for (OrderItem item : items) {
-                List<SupplierReceipt> receipts = supplierReceiptRepository.findAllByOrderItem(item);
-                // If receipt date matches target date, include in sum
-                BigDecimal lineReceipts = receipts.stream()
-                        .filter(r -> r.getReceiptDate() != null && r.getReceiptDate().equals(date))
-                        .map(r -> r.getAmount() != null ? r.getAmount() : BigDecimal.ZERO)
-                        .reduce(BigDecimal.ZERO, BigDecimal::add);
-                supplierTotalForDay = supplierTotalForDay.add(lineReceipts);
+    /**
+     * Carries a match proposal over to the recomputed row. While the charge is still unattached the proposed
+     * receipt and the discrepancy against it stay as well; once the charge is linked to an order the row's
+     * amounts come from that order and only the proposal itself is kept.
+     */
+    private void keepProposal(ReconciliationAudit audit, ReconciliationAuditRepository.MatchProposal proposal,
+                              boolean unattached) {
+        audit.setMatchedOrderId(proposal.getMatchedOrderId());
+        audit.setMatchConfidence(proposal.getMatchConfidence());
+        if (unattached) {
+            if (proposal.getSupplierReceiptId() != null) {
+                audit.setSupplierReceipt(supplierReceiptRepository.getReferenceById(proposal.getSupplierReceiptId()));
             }
+            audit.setSupplierAmount(proposal.getSupplierAmount());
+            audit.setDiscrepancyAmount(proposal.getDiscrepancyAmount());
+            audit.setDiscrepancyReason(proposal.getDiscrepancyReason());
+        }
+    }
 
-            BigDecimal customerAmount = p.getAmount() != null ? p.getAmount() : BigDecimal.ZERO;
-            BigDecimal discrepancy = customerAmount.subtract(supplierTotalForDay);
-            String reason = discrepancy.abs().compareTo(new BigDecimal("0.01")) > 0
-                    ? "Amount mismatch"
-                    : "Matched";
+    record ChunkResult(int processed, LocalDateTime lastCreatedAt, long lastPaymentId) {}
 
-            saveAudit(p.getStripeChargeId(), customerAmount, supplierTotalForDay, reason);
+    private ReconciliationAudit toAudit(PaymentRepository.ReconciliationRow row) {
+        if (row.getOrderId() == null) {
+            // Unattached charge - store audit record with missing supplier amount
+            return buildAudit(row.getStripeChargeId(), row.getAmount(), null, "Unattached charge (no linked order)");
         }
+        if (row.getItemCount() == null || row.getItemCount() == 0) {
+            return buildAudit(row.getStripeChargeId(), row.getAmount(), BigDecimal.ZERO, "No order items found");
+        }
+
+        BigDecimal customerAmount = row.getAmount() != null ? row.getAmount() : BigDecimal.ZERO;
+        BigDecimal supplierTotalForDay = row.getSupplierTotal() != null ? row.getSupplierTotal() : BigDecimal.ZERO;
+        BigDecimal discrepancy = customerAmount.subtract(supplierTotalForDay);
+        String reason = discrepancy.abs().compareTo(TOLERANCE) > 0
+                ? "Amount mismatch"
+                : "Matched";
 
-        log.info("Reconciliation complete for date {}", date);
+        return buildAudit(row.getStripeChargeId(), customerAmount, supplierTotalForDay, reason);
     }
 
-    private void saveAudit(String stripeChargeId, BigDecimal customerAmount, BigDecimal supplierAmount, String reason) {
+    private ReconciliationAudit buildAudit(String stripeChargeId, BigDecimal customerAmount, BigDecimal supplierAmount, String reason) {
         ReconciliationAudit ra = new ReconciliationAudit();
         ra.setStripeChargeId(stripeChargeId != null ? stripeChargeId : "UNKNOWN");
         ra.setCustomerAmount(customerAmount != null ? customerAmount : BigDecimal.ZERO);
         ra.setSupplierAmount(supplierAmount);
         if (supplierAmount != null) {
-            ra.setDiscrepancyAmount(customerAmount.subtract(supplierAmount));
+            ra.setDiscrepancyAmount(ra.getCustomerAmount().subtract(supplierAmount));
         }
         ra.setDiscrepancyReason(reason);
         ra.setReconciledAt(LocalDateTime.now());
-        reconciliationAuditRepository.save(ra);
+        return ra;
     }
 }
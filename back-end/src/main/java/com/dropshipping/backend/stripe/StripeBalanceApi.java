@@ -0,0 +1,26 @@
+package com.dropshipping.backend.stripe;
+
+import com.stripe.exception.StripeException;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The part of the Stripe API used to look up actual fees: balance transactions listed by creation time.
+ * Implemented by {@link StripeBalanceApiClient} against Stripe; tests use an in-memory stub.
+ */
+public interface StripeBalanceApi {
+
+    /**
+     * One balance transaction: {@code sourceId} is the charge (or other object) it belongs to.
+     */
+    record BalanceFee(String id, String sourceId, long feeCents) {}
+
+    record Page(List<BalanceFee> items, boolean hasMore) {}
+
+    /**
+     * Lists balance transactions created in {@code [from, to)}, newest first as Stripe does, continuing
+     * after the transaction id {@code startingAfter} (null for the first page).
+     */
+    Page listBalanceTransactions(Instant from, Instant to, String startingAfter, int limit) throws StripeException;
+}
@@ -0,0 +1,44 @@
+package com.dropshipping.backend.stripe;
+
+import com.dropshipping.backend.config.StripeProperties;
+import com.dropshipping.backend.resilience.DependencyGuard;
+import com.stripe.exception.StripeException;
+import com.stripe.model.BalanceTransaction;
+import com.stripe.model.BalanceTransactionCollection;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.BalanceTransactionListParams;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class StripeBalanceApiClient implements StripeBalanceApi {
+
+    private final StripeProperties stripeProperties;
+    private final DependencyGuard guard;
+
+    @Override
+    public Page listBalanceTransactions(Instant from, Instant to, String startingAfter, int limit) throws StripeException {
+        BalanceTransactionListParams.Builder params = BalanceTransactionListParams.builder()
+                .setCreated(BalanceTransactionListParams.Created.builder()
+                        .setGte(from.getEpochSecond())
+                        .setLt(to.getEpochSecond())
+                        .build())
+                .setLimit((long) limit);
+        if (startingAfter != null) {
+            params.setStartingAfter(startingAfter);
+        }
+        RequestOptions options = RequestOptions.builder().setApiKey(stripeProperties.getApiKey()).build();
+        BalanceTransactionListParams listParams = params.build();
+        BalanceTransactionCollection page = guard.call("balanceTransactions.list",
+                () -> BalanceTransaction.list(listParams, options));
+
+        List<BalanceFee> items = new ArrayList<>(page.getData().size());
+        for (BalanceTransaction bt : page.getData()) {
+            items.add(new BalanceFee(bt.getId(), bt.getSource(), bt.getFee() != null ? bt.getFee() : 0));
+        }
+        return new Page(items, Boolean.TRUE.equals(page.getHasMore()));
+    }
+}
@@ -0,0 +1,14 @@
+-- Proposed matches for charges that are not linked to an order: the order and receipt the matcher picked
+-- and how confident it is (0..1). Proposals are advisory; nothing is linked automatically.
+ALTER TABLE reconciliation_audit ADD COLUMN matched_order_id BIGINT REFERENCES orders(id);
+ALTER TABLE reconciliation_audit ADD COLUMN match_confidence DECIMAL(4,3);
+CREATE INDEX idx_reconciliation_audit_matched_order ON reconciliation_audit(matched_order_id) WHERE matched_order_id IS NOT NULL;
+CREATE INDEX idx_reconciliation_audit_receipt ON reconciliation_audit(supplier_receipt_id) WHERE supplier_receipt_id IS NOT NULL;
+
+-- Charges the webhook cannot link to an order are stored without one (V1 still required it, so every such
+-- insert failed)
+ALTER TABLE payments ALTER COLUMN order_id DROP NOT NULL;
+
+-- Matching inputs: a day's unattached charges and the unlinked receipts around it
+CREATE INDEX idx_payments_unattached_created_at ON payments(created_at) WHERE order_id IS NULL;
+CREATE INDEX idx_supplier_receipts_unlinked_date ON supplier_receipts(receipt_date) WHERE order_item_id IS NULL;
@@ -0,0 +1,20 @@
+-- Inbox of verified Stripe webhook events. The webhook only inserts here (deduplicated by Stripe event id)
+-- and returns; workers process the rows with retries and move events that keep failing to DEAD.
+-- Rows are only ever inserted by that single INSERT, so the id keeps the plain BIGSERIAL default.
+CREATE TABLE stripe_webhook_events (
+    id BIGSERIAL PRIMARY KEY,
+    event_id VARCHAR(255) NOT NULL UNIQUE,
+    event_type VARCHAR(100) NOT NULL,
+    payload TEXT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL,
+    locked_until TIMESTAMP,
+    last_error TEXT,
+    received_at TIMESTAMP NOT NULL,
+    processed_at TIMESTAMP
+);
+
+CREATE INDEX idx_stripe_webhook_events_due ON stripe_webhook_events(next_attempt_at) WHERE status = 'PENDING';
+CREATE INDEX idx_stripe_webhook_events_leased ON stripe_webhook_events(locked_until) WHERE status = 'PROCESSING';
+CREATE INDEX idx_stripe_webhook_events_done ON stripe_webhook_events(processed_at) WHERE status = 'DONE';
@@ -0,0 +1,5 @@
+-- Charges are stored with an estimated Stripe fee; the fee enrichment job replaces it with the fee of the
+-- charge's balance transaction and clears the flag. Existing rows keep their fee as final.
+ALTER TABLE payments ADD COLUMN fee_provisional BOOLEAN NOT NULL DEFAULT FALSE;
+ALTER TABLE payments ADD COLUMN stripe_balance_transaction_id VARCHAR(255);
+CREATE INDEX idx_payments_fee_provisional ON payments(created_at) WHERE fee_provisional;
@@ -0,0 +1,5 @@
+-- Events for the same PaymentIntent / charge are applied in the order they were received; the key is
+-- taken from the event's object when the event is stored.
+ALTER TABLE stripe_webhook_events ADD COLUMN ordering_key VARCHAR(255);
+CREATE INDEX idx_stripe_webhook_events_key_open ON stripe_webhook_events(ordering_key, id)
+    WHERE status IN ('PENDING', 'PROCESSING');
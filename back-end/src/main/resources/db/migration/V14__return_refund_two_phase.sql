@@ -0,0 +1,9 @@
+-- Refunds run in two phases: the intent (payment, amount, idempotency key) is committed before Stripe is
+-- called and the outcome in a second transaction, so no connection is held during the call. A return left
+-- PENDING had an unknown outcome and is resent with the same idempotency key.
+ALTER TABLE returns ADD COLUMN refund_payment_id BIGINT REFERENCES payments(id);
+ALTER TABLE returns ADD COLUMN refund_reason VARCHAR(500);
+ALTER TABLE returns ADD COLUMN refund_idempotency_key VARCHAR(100);
+ALTER TABLE returns ADD COLUMN refund_requested_at TIMESTAMP;
+ALTER TABLE returns ADD COLUMN stripe_refund_id VARCHAR(255);
+ALTER TABLE returns ADD COLUMN refund_error VARCHAR(1000);
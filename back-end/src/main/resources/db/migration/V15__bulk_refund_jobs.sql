@@ -0,0 +1,29 @@
+-- Bulk refunds: a job per request and one queue item per return. Workers claim due items with
+-- FOR UPDATE SKIP LOCKED under a lease and retry items whose refund outcome was unknown with backoff;
+-- the refund itself is recorded on the return (two-phase, idempotency key per refund).
+CREATE TABLE refund_jobs (
+    id BIGSERIAL PRIMARY KEY,
+    status VARCHAR(20) NOT NULL DEFAULT 'RUNNING',
+    reason VARCHAR(500),
+    total_items INTEGER NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    completed_at TIMESTAMP
+);
+ALTER SEQUENCE refund_jobs_id_seq INCREMENT BY 50;
+
+CREATE TABLE refund_job_items (
+    id BIGSERIAL PRIMARY KEY,
+    job_id BIGINT REFERENCES refund_jobs(id) NOT NULL,
+    return_id BIGINT REFERENCES returns(id) NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    attempts INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP NOT NULL,
+    locked_until TIMESTAMP,
+    last_error VARCHAR(1000),
+    completed_at TIMESTAMP,
+    UNIQUE (job_id, return_id)
+);
+ALTER SEQUENCE refund_job_items_id_seq INCREMENT BY 50;
+
+CREATE INDEX idx_refund_job_items_due ON refund_job_items(next_attempt_at) WHERE status = 'PENDING';
+CREATE INDEX idx_refund_job_items_leased ON refund_job_items(locked_until) WHERE status = 'PROCESSING';
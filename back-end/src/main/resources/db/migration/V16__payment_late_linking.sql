@@ -0,0 +1,4 @@
+-- Order id from the charge metadata when that order was not visible yet; linked later by PaymentOrderLinker
+ALTER TABLE payments ADD COLUMN stripe_order_ref BIGINT;
+
+CREATE INDEX idx_payments_unlinked_order_ref ON payments(id) WHERE order_id IS NULL AND stripe_order_ref IS NOT NULL;
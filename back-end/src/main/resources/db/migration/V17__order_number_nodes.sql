@@ -0,0 +1,12 @@
+-- Node ids of the order number generator. An instance leases a node id (owner + lease_expires_at) so no
+-- two running instances share one, and reserves timestamps ahead of the ids it hands out
+-- (reserved_until, milliseconds since the generator epoch) so that a restart never reuses an id, even
+-- when the clock has moved backwards.
+CREATE TABLE order_number_nodes (
+    node_id INTEGER PRIMARY KEY,
+    owner VARCHAR(64),
+    lease_expires_at TIMESTAMP,
+    reserved_until BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT INTO order_number_nodes (node_id) SELECT generate_series(0, 1023);
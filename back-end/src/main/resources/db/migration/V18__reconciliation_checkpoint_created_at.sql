@@ -0,0 +1,3 @@
+-- Reconciliation chunks page on (created_at, id) to follow idx_payments_status_created_at, so a backfill
+-- checkpoint keeps the created_at of its last payment as well. NULL means the day has not started.
+ALTER TABLE reconciliation_checkpoints ADD COLUMN last_created_at TIMESTAMP;
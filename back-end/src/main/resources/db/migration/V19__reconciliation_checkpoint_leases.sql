@@ -0,0 +1,5 @@
+-- Backfill days are claimed by one instance at a time: the claiming instance (owner) holds the day until
+-- locked_until and renews it with every chunk, so instances resuming the same backfill skip days another
+-- live instance is working on and take over days whose owner stopped renewing.
+ALTER TABLE reconciliation_checkpoints ADD COLUMN owner VARCHAR(64);
+ALTER TABLE reconciliation_checkpoints ADD COLUMN locked_until TIMESTAMP;
@@ -0,0 +1,2 @@
+-- Order numbers come from OrderNumberGenerator (leased node ids, order_number_nodes); the sequence is unused
+DROP SEQUENCE IF EXISTS order_number_seq;
@@ -0,0 +1,2 @@
+-- Generated order numbers (ORD-<n>); a sequence keeps them unique across threads and instances
+CREATE SEQUENCE order_number_seq;
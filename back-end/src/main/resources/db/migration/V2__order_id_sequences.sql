@@ -0,0 +1,4 @@
+-- Orders and order items get their ids from pooled sequences (allocationSize = 50) so that
+-- Hibernate can batch inserts; IDENTITY generation forces one INSERT round trip per row.
+ALTER SEQUENCE orders_id_seq INCREMENT BY 50;
+ALTER SEQUENCE order_items_id_seq INCREMENT BY 50;
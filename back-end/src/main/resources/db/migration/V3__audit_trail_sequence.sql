@@ -0,0 +1,3 @@
+-- Audit entries are inserted in batches by the asynchronous writer; a pooled sequence
+-- (allocationSize = 50) lets Hibernate assign ids without a round trip per row.
+ALTER SEQUENCE audit_trails_id_seq INCREMENT BY 50;
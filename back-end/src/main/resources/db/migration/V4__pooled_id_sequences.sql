@@ -0,0 +1,13 @@
+-- Move every remaining table to pooled sequence ids (allocationSize = 50). With IDENTITY, Hibernate
+-- must run each INSERT immediately to learn the id, which silently disables JDBC insert batching.
+ALTER SEQUENCE customers_id_seq INCREMENT BY 50;
+ALTER SEQUENCE order_communications_id_seq INCREMENT BY 50;
+ALTER SEQUENCE payments_id_seq INCREMENT BY 50;
+ALTER SEQUENCE price_history_id_seq INCREMENT BY 50;
+ALTER SEQUENCE products_id_seq INCREMENT BY 50;
+ALTER SEQUENCE profit_analysis_id_seq INCREMENT BY 50;
+ALTER SEQUENCE reconciliation_audit_id_seq INCREMENT BY 50;
+ALTER SEQUENCE returns_id_seq INCREMENT BY 50;
+ALTER SEQUENCE supplier_performance_id_seq INCREMENT BY 50;
+ALTER SEQUENCE supplier_receipts_id_seq INCREMENT BY 50;
+ALTER SEQUENCE suppliers_id_seq INCREMENT BY 50;
@@ -0,0 +1,4 @@
+-- Composite indexes backing keyset pagination of the order list on (created_at DESC, id DESC),
+-- with and without a status filter.
+CREATE INDEX idx_orders_created_at_id ON orders (created_at DESC, id DESC);
+CREATE INDEX idx_orders_status_created_at_id ON orders (status, created_at DESC, id DESC);
@@ -0,0 +1,2 @@
+-- Range index for the daily supplier buy list, which selects order items by creation day.
+CREATE INDEX idx_order_items_created_at ON order_items(created_at);
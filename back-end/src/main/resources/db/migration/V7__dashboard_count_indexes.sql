@@ -0,0 +1,5 @@
+-- Partial indexes for the fulfillment dashboard aggregate query.
+CREATE INDEX idx_order_items_open_shipments ON order_items(shipment_status)
+    WHERE shipment_status IN ('PENDING', 'DELAYED');
+CREATE INDEX idx_orders_requires_review ON orders(id) WHERE requires_review;
+CREATE INDEX idx_reconciliation_audit_created_at ON reconciliation_audit(created_at);
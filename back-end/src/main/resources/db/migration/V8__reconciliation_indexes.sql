@@ -0,0 +1,3 @@
+-- Indexes for the set-based reconciliation query: completed payments of a day, and receipts per order item and date.
+CREATE INDEX idx_payments_status_created_at ON payments(status, created_at, id);
+CREATE INDEX idx_supplier_receipts_order_item_date ON supplier_receipts(order_item_id, receipt_date);
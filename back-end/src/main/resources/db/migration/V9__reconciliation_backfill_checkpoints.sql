@@ -0,0 +1,29 @@
+-- Reconciliation results are keyed by payment and reconciled day, so re-running a day replaces its rows
+-- instead of adding duplicates. Older rows without a payment id are left as they are.
+ALTER TABLE reconciliation_audit ADD COLUMN payment_id BIGINT REFERENCES payments(id);
+ALTER TABLE reconciliation_audit ADD COLUMN reconciliation_date DATE;
+CREATE UNIQUE INDEX uq_reconciliation_audit_payment_date ON reconciliation_audit(payment_id, reconciliation_date);
+
+-- Backfill runs over a date range and their per-day progress, so an interrupted run resumes where it stopped.
+CREATE TABLE reconciliation_backfills (
+    id BIGSERIAL PRIMARY KEY,
+    start_date DATE NOT NULL,
+    end_date DATE NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'RUNNING',
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    completed_at TIMESTAMP
+);
+ALTER SEQUENCE reconciliation_backfills_id_seq INCREMENT BY 50;
+
+CREATE TABLE reconciliation_checkpoints (
+    id BIGSERIAL PRIMARY KEY,
+    backfill_id BIGINT REFERENCES reconciliation_backfills(id) NOT NULL,
+    reconciliation_date DATE NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    last_payment_id BIGINT NOT NULL DEFAULT 0,
+    charges_processed BIGINT NOT NULL DEFAULT 0,
+    error TEXT,
+    updated_at TIMESTAMP,
+    UNIQUE (backfill_id, reconciliation_date)
+);
+ALTER SEQUENCE reconciliation_checkpoints_id_seq INCREMENT BY 50;
@@ -0,0 +1,167 @@
+package com.dropshipping.backend.cache;
+
+import com.dropshipping.backend.entity.Customer;
+import com.dropshipping.backend.resilience.CircuitBreaker;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TwoLevelCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RemoteCacheGuard guard = new RemoteCacheGuard(Duration.ofMillis(50), 2, 2, Duration.ofMinutes(1), meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        guard.shutdown();
+    }
+
+    @Test
+    void readsReturnCopiesThatCallersMayModify() {
+        TwoLevelCache cache = cache(new ConcurrentMapCache("remote"));
+        Customer customer = customer(1L, "Ada");
+        cache.put(1L, customer);
+        customer.setFirstName("changed after put");
+
+        Customer first = (Customer) cache.getLocal(1L).get();
+        first.setFirstName("changed by a reader");
+        Customer second = (Customer) cache.getLocal(1L).get();
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getFirstName()).isEqualTo("Ada");
+    }
+
+    @Test
+    void slowRemoteIsTreatedAsMissWithinTimeout() {
+        TwoLevelCache cache = cache(new SlowCache(Duration.ofSeconds(2)));
+
+        long start = System.nanoTime();
+        Cache.ValueWrapper result = cache.get(1L);
+
+        assertThat(result).isNull();
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void openBreakerSkipsRemote() {
+        SlowCache remote = new SlowCache(Duration.ofSeconds(2));
+        TwoLevelCache cache = cache(remote);
+
+        cache.get(1L);
+        cache.get(2L);
+        assertThat(guard.getBreakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        int callsBefore = remote.gets.get();
+        cache.get(3L);
+        cache.put(3L, customer(3L, "Grace"));
+
+        assertThat(remote.gets.get()).isEqualTo(callsBefore);
+        assertThat(remote.puts.get()).isZero();
+        // L1 still serves what this node cached
+        assertThat(((Customer) cache.get(3L).get()).getFirstName()).isEqualTo("Grace");
+    }
+
+    private TwoLevelCache cache(Cache remote) {
+        return cache(remote, new AtomicInteger());
+    }
+
+    // multiGets counts the L2 multi-get round trips
+    private TwoLevelCache cache(Cache remote, AtomicInteger multiGets) {
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        mapper.activateDefaultTyping(mapper.getPolymorphicTypeValidator(), ObjectMapper.DefaultTyping.NON_FINAL);
+        GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer(mapper);
+        TwoLevelCache.RemoteMultiGet multiGet = keys -> {
+            multiGets.incrementAndGet();
+            return keys.stream().map(key -> {
+                Cache.ValueWrapper wrapper = remote.get(key);
+                return wrapper != null ? serializer.serialize(wrapper.get()) : null;
+            }).toList();
+        };
+        return new TwoLevelCache("customers",
+                Caffeine.newBuilder().maximumSize(100).<String, byte[]>build(),
+                remote, multiGet, guard, serializer,
+                (name, key) -> {},
+                meterRegistry);
+    }
+
+    @Test
+    void getAllReadsL1MissesFromL2InOneRoundTripAndPromotesThem() {
+        ConcurrentMapCache remote = new ConcurrentMapCache("remote");
+        AtomicInteger multiGets = new AtomicInteger();
+        TwoLevelCache cache = cache(remote, multiGets);
+        cache.put(1L, customer(1L, "Ada"));
+        // written by another node: in L2 only
+        remote.put(2L, customer(2L, "Grace"));
+        remote.put(3L, customer(3L, "Edsger"));
+
+        Map<Object, Object> found = cache.getAll(List.of(1L, 2L, 3L, 4L));
+
+        assertThat(found).containsOnlyKeys(1L, 2L, 3L);
+        assertThat(((Customer) found.get(2L)).getFirstName()).isEqualTo("Grace");
+        assertThat(multiGets).hasValue(1);
+        assertThat(cache.getLocal(2L)).isNotNull();
+        assertThat(cache.getLocal(3L)).isNotNull();
+        assertThat(meterRegistry.get("cache.two.level.requests").tag("level", "l2").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(2);
+
+        cache.getAll(List.of(1L, 2L, 3L));
+        assertThat(multiGets).hasValue(1);
+    }
+
+    private static Customer customer(Long id, String firstName) {
+        Customer customer = new Customer();
+        customer.setId(id);
+        customer.setEmail(firstName.toLowerCase() + "@example.com");
+        customer.setFirstName(firstName);
+        return customer;
+    }
+
+    /**
+     * Remote tier that answers after a delay, like Redis waiting for its command timeout.
+     */
+    private static class SlowCache extends ConcurrentMapCache {
+        private final Duration delay;
+        private final AtomicInteger gets = new AtomicInteger();
+        private final AtomicInteger puts = new AtomicInteger();
+
+        SlowCache(Duration delay) {
+            super("remote");
+            this.delay = delay;
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            gets.incrementAndGet();
+            sleep();
+            return super.get(key);
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            puts.incrementAndGet();
+            sleep();
+            super.put(key, value);
+        }
+
+        private void sleep() {
+            try {
+                Thread.sleep(delay.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.dropshipping.backend.controller;
+
+import com.dropshipping.backend.config.OrderProperties;
+import com.dropshipping.backend.service.ChargeMatchingService;
+import com.dropshipping.backend.service.FulfillmentDashboardStream;
+import com.dropshipping.backend.service.OrderService;
+import com.dropshipping.backend.service.ReconciliationBackfillService;
+import com.dropshipping.backend.service.StripeWebhookWorker;
+import com.dropshipping.backend.service.SupplierBuyListExportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class AdminControllerExportTest {
+
+    private final SupplierBuyListExportService exportService = mock(SupplierBuyListExportService.class);
+    private final OrderProperties orderProperties = new OrderProperties();
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        orderProperties.getBuyList().setExportTimeout(Duration.ofSeconds(42));
+        AdminController controller = new AdminController(mock(OrderService.class), mock(FulfillmentDashboardStream.class),
+                mock(ReconciliationBackfillService.class), mock(ChargeMatchingService.class), mock(StripeWebhookWorker.class),
+                exportService, orderProperties);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+        doAnswer(inv -> {
+            inv.<OutputStream>getArgument(1).write("supplier_id\r\n1\r\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(exportService).writeCsv(eq(LocalDate.of(2024, 3, 1)), any());
+    }
+
+    @Test
+    void exportIsWrittenAsynchronouslyWithItsOwnTimeout() throws Exception {
+        MvcResult started = mockMvc.perform(get("/admin/supplier-buy-list/export").param("date", "2024-03-01"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // the export's timeout, not the container default
+        assertThat(started.getRequest().getAsyncContext().getTimeout()).isEqualTo(42_000L);
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"supplier-buy-list-2024-03-01.csv\""))
+                .andExpect(content().contentType("text/csv;charset=UTF-8"))
+                .andExpect(content().string("supplier_id\r\n1\r\n"));
+    }
+}
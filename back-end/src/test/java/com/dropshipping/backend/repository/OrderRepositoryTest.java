@@ -0,0 +1,90 @@
+package com.dropshipping.backend.repository;
+
+import com.dropshipping.backend.dto.OrderSummary;
+import com.dropshipping.backend.entity.Customer;
+import com.dropshipping.backend.entity.Order;
+import com.dropshipping.backend.entity.Product;
+import com.dropshipping.backend.entity.Supplier;
+import com.dropshipping.backend.support.PostgresTestSupport;
+import com.dropshipping.backend.support.TestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderRepositoryTest extends PostgresTestSupport {
+
+    // later than any real order, so these are the newest rows
+    private static final LocalDateTime FUTURE = LocalDateTime.of(2999, 1, 1, 12, 0);
+
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Order newest;
+    private Order tied;
+    private Order oldest;
+
+    @BeforeEach
+    void setUp() {
+        Supplier supplier = entityManager.persist(TestData.supplier("Summary supplier"));
+        Customer customer = entityManager.persist(TestData.customer());
+        Product product = entityManager.persist(TestData.product(supplier));
+
+        newest = TestData.order(customer, BigDecimal.TEN);
+        TestData.item(newest, product, supplier, 1);
+        TestData.item(newest, product, supplier, 2);
+        TestData.item(newest, product, supplier, 3);
+        tied = TestData.order(customer, BigDecimal.TEN);
+        oldest = TestData.order(customer, BigDecimal.TEN);
+        TestData.item(oldest, product, supplier, 1);
+        orderRepository.saveAll(List.of(newest, tied, oldest));
+        entityManager.flush();
+
+        setCreatedAt(newest, FUTURE);
+        // same created_at as newest: the id breaks the tie
+        setCreatedAt(tied, FUTURE);
+        setCreatedAt(oldest, FUTURE.minusDays(1));
+        entityManager.clear();
+    }
+
+    @Test
+    void summariesCountItemsPerOrder() {
+        List<OrderSummary> page = orderRepository.findFirstSummaries(PageRequest.of(0, 3));
+
+        assertThat(page).extracting(OrderSummary::id)
+                .containsExactly(Math.max(newest.getId(), tied.getId()), Math.min(newest.getId(), tied.getId()), oldest.getId());
+        assertThat(page).filteredOn(s -> s.id().equals(newest.getId())).singleElement()
+                .extracting(OrderSummary::itemCount).isEqualTo(3L);
+        assertThat(page).filteredOn(s -> s.id().equals(tied.getId())).singleElement()
+                .extracting(OrderSummary::itemCount).isEqualTo(0L);
+        assertThat(page).filteredOn(s -> s.id().equals(oldest.getId())).singleElement()
+                .extracting(OrderSummary::itemCount).isEqualTo(1L);
+    }
+
+    @Test
+    void keysetPagesContinueAfterTheCursorRow() {
+        List<OrderSummary> first = orderRepository.findFirstSummaries(PageRequest.of(0, 1));
+        OrderSummary last = first.get(0);
+
+        List<OrderSummary> next = orderRepository.findSummariesAfter(last.createdAt(), last.id(), PageRequest.of(0, 2));
+
+        assertThat(next).extracting(OrderSummary::id)
+                .containsExactly(Math.min(newest.getId(), tied.getId()), oldest.getId());
+    }
+
+    private void setCreatedAt(Order order, LocalDateTime createdAt) {
+        jdbcTemplate.update("update orders set created_at = ? where id = ?", createdAt, order.getId());
+    }
+}
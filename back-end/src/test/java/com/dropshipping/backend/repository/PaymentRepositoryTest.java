@@ -0,0 +1,66 @@
+package com.dropshipping.backend.repository;
+
+import com.dropshipping.backend.support.PostgresTestSupport;
+import com.dropshipping.backend.support.TestData;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentRepositoryTest extends PostgresTestSupport {
+
+    // a day no real data uses
+    private static final LocalDate DAY = LocalDate.of(2996, 5, 1);
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void reconciliationChunksPageOnCreatedAtThenId() {
+        // ids run against created_at, and two charges share a timestamp
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(entityManager.persist(TestData.charge(null, BigDecimal.TEN)).getId());
+        }
+        entityManager.flush();
+        setCreatedAt(ids.get(0), DAY.atTime(12, 0));
+        setCreatedAt(ids.get(1), DAY.atTime(10, 0));
+        setCreatedAt(ids.get(2), DAY.atTime(10, 0));
+        setCreatedAt(ids.get(3), DAY.atTime(8, 0));
+        setCreatedAt(ids.get(4), DAY.plusDays(1).atStartOfDay());
+        entityManager.clear();
+
+        List<Long> seen = new ArrayList<>();
+        LocalDateTime afterCreatedAt = DAY.atStartOfDay();
+        long afterId = 0;
+        while (true) {
+            List<PaymentRepository.ChunkKey> chunk = paymentRepository.lockReconciliationChunk(
+                    DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay(), afterCreatedAt, afterId, 2);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            chunk.forEach(key -> seen.add(key.getId()));
+            PaymentRepository.ChunkKey last = chunk.get(chunk.size() - 1);
+            afterCreatedAt = last.getCreatedAt();
+            afterId = last.getId();
+        }
+
+        assertThat(seen).containsExactly(ids.get(3), ids.get(1), ids.get(2), ids.get(0));
+    }
+
+    private void setCreatedAt(Long paymentId, LocalDateTime createdAt) {
+        jdbcTemplate.update("update payments set created_at = ? where id = ?", createdAt, paymentId);
+    }
+}
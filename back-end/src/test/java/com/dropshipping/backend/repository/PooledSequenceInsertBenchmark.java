@@ -0,0 +1,157 @@
+package com.dropshipping.backend.repository;
+
+import com.dropshipping.backend.entity.Customer;
+import com.dropshipping.backend.entity.Order;
+import com.dropshipping.backend.entity.Product;
+import com.dropshipping.backend.entity.ReconciliationAudit;
+import com.dropshipping.backend.entity.Supplier;
+import com.dropshipping.backend.support.PostgresTestSupport;
+import com.dropshipping.backend.support.TestData;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Insert throughput with pooled sequence ids (JDBC batches) against one INSERT ... RETURNING id round trip
+ * per row, which is what IDENTITY generation forced before V2/V4. Run with {@code mvn test -Pbenchmarks}.
+ */
+@Tag("benchmark")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class PooledSequenceInsertBenchmark extends PostgresTestSupport {
+
+    private static final int ORDER_ITEMS = 2_000;
+    private static final int AUDIT_ROWS = 5_000;
+
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private SupplierRepository supplierRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private ReconciliationAuditRepository reconciliationAuditRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate tx;
+    private Customer customer;
+    private Supplier supplier;
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+        supplier = supplierRepository.save(TestData.supplier("Bench supplier"));
+        customer = customerRepository.save(TestData.customer());
+        product = productRepository.save(TestData.product(supplier));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("delete from reconciliation_audit where stripe_charge_id like 'bench_%'");
+        jdbcTemplate.update("delete from order_items where order_id in (select id from orders where customer_id = ?)", customer.getId());
+        jdbcTemplate.update("delete from orders where customer_id = ?", customer.getId());
+        productRepository.deleteById(product.getId());
+        customerRepository.deleteById(customer.getId());
+        supplierRepository.deleteById(supplier.getId());
+    }
+
+    @Test
+    void orderWithManyItems() {
+        Order parent = orderRepository.save(TestData.order(customer, BigDecimal.TEN));
+        Runnable perRow = () -> tx.executeWithoutResult(s -> {
+            // before: one round trip per item, as with IDENTITY ids
+            for (int i = 0; i < ORDER_ITEMS; i++) {
+                jdbcTemplate.queryForObject("insert into order_items (order_id, product_id, quantity, unit_price, total_price, supplier_id) " +
+                        "values (?, ?, 1, 10, 10, ?) returning id", Long.class, parent.getId(), product.getId(), supplier.getId());
+            }
+        });
+        Runnable pooled = () -> {
+            // after: Hibernate assigns pooled ids and sends the inserts in JDBC batches
+            Order order = TestData.order(customer, BigDecimal.TEN);
+            for (int i = 0; i < ORDER_ITEMS; i++) {
+                TestData.item(order, product, supplier, 1);
+            }
+            tx.executeWithoutResult(s -> orderRepository.save(order));
+        };
+
+        Statistics stats = measure("order items", ORDER_ITEMS, perRow, pooled);
+        assertThat(stats.getEntityInsertCount()).isEqualTo(ORDER_ITEMS + 1);
+        assertThat(stats.getPrepareStatementCount()).isLessThan(ORDER_ITEMS / 10);
+    }
+
+    @Test
+    void reconciliationAuditRows() {
+        Runnable perRow = () -> tx.executeWithoutResult(s -> {
+            for (int i = 0; i < AUDIT_ROWS; i++) {
+                jdbcTemplate.queryForObject("insert into reconciliation_audit (stripe_charge_id, customer_amount, reconciliation_date) " +
+                        "values (?, 10, current_date) returning id", Long.class, "bench_" + i);
+            }
+        });
+        Runnable pooled = () -> {
+            List<ReconciliationAudit> rows = new ArrayList<>(AUDIT_ROWS);
+            for (int i = 0; i < AUDIT_ROWS; i++) {
+                ReconciliationAudit audit = new ReconciliationAudit();
+                audit.setStripeChargeId("bench_" + i);
+                audit.setCustomerAmount(BigDecimal.TEN);
+                audit.setReconciliationDate(LocalDate.now());
+                rows.add(audit);
+            }
+            tx.executeWithoutResult(s -> reconciliationAuditRepository.saveAll(rows));
+        };
+
+        Statistics stats = measure("reconciliation audit rows", AUDIT_ROWS, perRow, pooled);
+        assertThat(stats.getEntityInsertCount()).isEqualTo(AUDIT_ROWS);
+        assertThat(stats.getPrepareStatementCount()).isLessThan(AUDIT_ROWS / 10);
+    }
+
+    /**
+     * Runs each variant once to warm up, then once measured. Returns the Hibernate statistics of the
+     * measured pooled run.
+     */
+    private Statistics measure(String name, int rows, Runnable perRow, Runnable pooled) {
+        perRow.run();
+        pooled.run();
+
+        long start = System.nanoTime();
+        perRow.run();
+        long perRowNanos = System.nanoTime() - start;
+
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+        start = System.nanoTime();
+        pooled.run();
+        long pooledNanos = System.nanoTime() - start;
+
+        System.out.printf("[benchmark] %d %s: per-row INSERT ... RETURNING id %.0f rows/s, pooled ids + batches %.0f rows/s " +
+                        "(%d statements prepared for %d inserts)%n",
+                rows, name, rows / (perRowNanos / 1e9), rows / (pooledNanos / 1e9),
+                stats.getPrepareStatementCount(), stats.getEntityInsertCount());
+        return stats;
+    }
+}
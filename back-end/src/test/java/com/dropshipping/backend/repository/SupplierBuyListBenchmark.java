@@ -0,0 +1,145 @@
+package com.dropshipping.backend.repository;
+
+import com.dropshipping.backend.dto.SupplierBuyRow;
+import com.dropshipping.backend.entity.OrderItem;
+import com.dropshipping.backend.support.PostgresTestSupport;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Supplier buy list over 50,000 seeded order items: the projection query behind
+ * {@code OrderService.buildSupplierBuyList} against loading the OrderItem entities with their eager
+ * associations, as the buy list did before. Run with {@code mvn test -Pbenchmarks}.
+ */
+@Tag("benchmark")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class SupplierBuyListBenchmark extends PostgresTestSupport {
+
+    private static final int SUPPLIERS = 50;
+    private static final int CUSTOMERS = 200;
+    private static final int ORDERS = 1_000;
+    private static final int ITEMS_PER_ORDER = 50;
+    // a day no real data uses; seeded rows are found and removed by it
+    private static final LocalDate DAY = LocalDate.of(2998, 6, 1);
+    private static final String SEED = "buylist-bench";
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("insert into suppliers (name, email) " +
+                "select '" + SEED + " supplier ' || g, '" + SEED + "-s' || g || '@example.com' from generate_series(1, ?) g", SUPPLIERS);
+        jdbcTemplate.update("insert into products (name, sku, supplier_id, supplier_price, selling_price) " +
+                "select '" + SEED + " product ' || s.id, '" + SEED + "-' || s.id, s.id, 5, 10 " +
+                "from suppliers s where s.name like '" + SEED + "%'");
+        jdbcTemplate.update("insert into customers (email, first_name, last_name) " +
+                "select '" + SEED + "-c' || g || '@example.com', 'Bench', 'Customer' from generate_series(1, ?) g", CUSTOMERS);
+        jdbcTemplate.update("insert into orders (order_number, customer_id, total_amount, net_amount, shipping_address, billing_address, created_at) " +
+                "select '" + SEED + "-' || g, c.id, 500, 500, '{\"city\": \"Testville\"}', '{\"city\": \"Testville\"}', ? " +
+                "from generate_series(1, ?) g " +
+                "join (select id, row_number() over (order by id) - 1 as n from customers where email like '" + SEED + "%') c " +
+                "on c.n = g % ?", DAY.atTime(10, 0), ORDERS, CUSTOMERS);
+        jdbcTemplate.update("insert into order_items (order_id, product_id, supplier_id, quantity, unit_price, total_price, created_at) " +
+                "select o.id, p.id, p.supplier_id, 1, 10, 10, o.created_at + make_interval(secs => i) " +
+                "from orders o cross join generate_series(1, ?) i " +
+                "join (select id, supplier_id, row_number() over (order by id) - 1 as n from products where sku like '" + SEED + "%') p " +
+                "on p.n = (i % ?) " +
+                "where o.order_number like '" + SEED + "%'", ITEMS_PER_ORDER, SUPPLIERS);
+        jdbcTemplate.execute("analyze order_items");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("delete from order_items where order_id in (select id from orders where order_number like '" + SEED + "%')");
+        jdbcTemplate.update("delete from orders where order_number like '" + SEED + "%'");
+        jdbcTemplate.update("delete from customers where email like '" + SEED + "%'");
+        jdbcTemplate.update("delete from products where sku like '" + SEED + "%'");
+        jdbcTemplate.update("delete from suppliers where name like '" + SEED + "%'");
+    }
+
+    @Test
+    void projectionQueryAgainstEntityLoad() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        LocalDateTime start = DAY.atStartOfDay();
+        LocalDateTime end = DAY.plusDays(1).atStartOfDay();
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // warm-up
+        tx.execute(s -> orderItemRepository.findSupplierBuyRows(start, end));
+        tx.execute(s -> loadEntities(start, end));
+
+        stats.clear();
+        long t0 = System.nanoTime();
+        int entityRows = tx.execute(s -> loadEntities(start, end));
+        long entityNanos = System.nanoTime() - t0;
+        long entityStatements = stats.getPrepareStatementCount();
+
+        stats.clear();
+        t0 = System.nanoTime();
+        List<SupplierBuyRow> rows = tx.execute(s -> orderItemRepository.findSupplierBuyRows(start, end));
+        long projectionNanos = System.nanoTime() - t0;
+        long projectionStatements = stats.getPrepareStatementCount();
+
+        System.out.printf("[benchmark] buy list over %d items: entities %d ms (%d statements), projection %d ms (%d statement)%n",
+                rows.size(), entityNanos / 1_000_000, entityStatements, projectionNanos / 1_000_000, projectionStatements);
+
+        assertThat(rows).hasSize(ORDERS * ITEMS_PER_ORDER);
+        assertThat(entityRows).isEqualTo(rows.size());
+        assertThat(projectionStatements).isEqualTo(1);
+        // rows of a supplier are contiguous, which the single-pass grouping relies on
+        assertThat(rows.stream().map(SupplierBuyRow::supplierId).distinct().count()).isEqualTo(SUPPLIERS);
+        for (int i = 1; i < rows.size(); i++) {
+            SupplierBuyRow previous = rows.get(i - 1);
+            SupplierBuyRow row = rows.get(i);
+            assertThat(previous.supplierName().compareTo(row.supplierName())).isLessThanOrEqualTo(0);
+        }
+    }
+
+    /**
+     * The previous buy list: item entities, each touching its supplier, order (with customer) and product.
+     */
+    private int loadEntities(LocalDateTime start, LocalDateTime end) {
+        List<OrderItem> items = entityManager.createQuery(
+                        "select oi from OrderItem oi where oi.createdAt >= :start and oi.createdAt < :end order by oi.id", OrderItem.class)
+                .setParameter("start", start)
+                .setParameter("end", end)
+                .getResultList();
+        int touched = 0;
+        for (OrderItem item : items) {
+            touched += item.getSupplier().getName().length() + item.getOrder().getOrderNumber().length()
+                    + item.getProduct().getSku().length();
+        }
+        entityManager.clear();
+        return touched > 0 ? items.size() : 0;
+    }
+}
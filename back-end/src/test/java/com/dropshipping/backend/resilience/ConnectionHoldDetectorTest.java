@@ -0,0 +1,94 @@
+package com.dropshipping.backend.resilience;
+
+import com.dropshipping.backend.config.ResilienceProperties;
+import com.dropshipping.backend.support.PostgresTestSupport;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConnectionHoldDetectorTest extends PostgresTestSupport {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final ResilienceProperties properties = new ResilienceProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ConnectionHoldDetector detector;
+
+    @BeforeEach
+    void setUp() {
+        detector = new ConnectionHoldDetector(properties, entityManagerFactory, meterRegistry);
+    }
+
+    @Test
+    void callInsideTransactionIsCounted() {
+        detector.beforeCall("stripe", "refund.create");
+        detector.beforeCall("stripe", "refund.create");
+
+        assertThat(held("stripe")).isEqualTo(2);
+    }
+
+    @Test
+    void callInsideTransactionIsRejectedInFailMode() {
+        properties.setConnectionHoldDetection(ResilienceProperties.ConnectionHoldDetection.FAIL);
+
+        assertThatThrownBy(() -> detector.beforeCall("s3", "putObject"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("s3 putObject called while")
+                .hasMessageContaining("transaction");
+        assertThat(held("s3")).isEqualTo(1);
+    }
+
+    @Test
+    void detectionCanBeTurnedOff() {
+        properties.setConnectionHoldDetection(ResilienceProperties.ConnectionHoldDetection.OFF);
+
+        detector.beforeCall("stripe", "refund.create");
+
+        assertThat(held("stripe")).isZero();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void callOutsideTransactionIsNotCounted() {
+        properties.setConnectionHoldDetection(ResilienceProperties.ConnectionHoldDetection.FAIL);
+
+        assertThatNoException().isThrownBy(() -> detector.beforeCall("stripe", "refund.create"));
+        assertThat(held("stripe")).isZero();
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void openInViewEntityManagerIsCountedOnceItHasUsedItsConnection() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+        try {
+            detector.beforeCall("textract", "detectDocumentText");
+            assertThat(held("textract")).isZero();
+
+            entityManager.createNativeQuery("select 1").getSingleResult();
+            detector.beforeCall("textract", "detectDocumentText");
+            assertThat(held("textract")).isEqualTo(1);
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            entityManager.close();
+        }
+    }
+
+    private double held(String dependency) {
+        Counter counter = meterRegistry.find("resilience.connection.held").tag("dependency", dependency).counter();
+        return counter != null ? counter.count() : 0;
+    }
+}
@@ -0,0 +1,205 @@
+package com.dropshipping.backend.resilience;
+
+import com.dropshipping.backend.config.ResilienceProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DependencyGuardTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ResilienceProperties.Dependency settings = new ResilienceProperties.Dependency();
+    private DependencyGuard guard;
+
+    @AfterEach
+    void shutdown() {
+        guard.shutdown();
+    }
+
+    @Test
+    void transientFailuresAreRetriedUntilTheCallSucceeds() throws Exception {
+        guard = guard();
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = guard.call("read", () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new IOException("connection reset");
+            }
+            return "ok";
+        });
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(attempts).hasValue(3);
+        assertThat(meterRegistry.get("resilience.retries").counter().count()).isEqualTo(2);
+        assertThat(guard.getBreakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void callOnceDoesNotRetry() {
+        guard = guard();
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> guard.callOnce("write", () -> {
+            attempts.incrementAndGet();
+            throw new IOException("connection reset");
+        })).isInstanceOf(IOException.class);
+
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void errorsThatAreAnswersAreNeitherRetriedNorCountedAgainstTheBreaker() {
+        settings.setFailureThreshold(2);
+        guard = guard();
+        AtomicInteger attempts = new AtomicInteger();
+
+        for (int i = 0; i < 5; i++) {
+            assertThatThrownBy(() -> guard.call("read", () -> {
+                attempts.incrementAndGet();
+                throw new IllegalArgumentException("card declined");
+            })).isInstanceOf(IllegalArgumentException.class);
+        }
+
+        assertThat(attempts).hasValue(5);
+        assertThat(guard.getBreakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void hangingAttemptsTimeOutAndAreRetriedWithinTheBudget() {
+        settings.setAttemptTimeout(Duration.ofMillis(100));
+        settings.setTotalTimeout(Duration.ofSeconds(5));
+        guard = guard();
+        AtomicInteger attempts = new AtomicInteger();
+
+        long startedAt = System.nanoTime();
+        assertThatThrownBy(() -> guard.call("read", () -> {
+            attempts.incrementAndGet();
+            TimeUnit.SECONDS.sleep(10);
+            return "late";
+        })).isInstanceOf(DependencyUnavailableException.class).hasMessageContaining("timed out after 3 attempt(s)");
+
+        assertThat(attempts).hasValue(3);
+        assertThat(Duration.ofNanos(System.nanoTime() - startedAt)).isLessThan(Duration.ofSeconds(2));
+    }
+
+    @Test
+    void totalTimeoutBoundsRetries() {
+        settings.setAttemptTimeout(Duration.ofMillis(200));
+        settings.setTotalTimeout(Duration.ofMillis(300));
+        settings.setMaxAttempts(10);
+        guard = guard();
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> guard.call("read", () -> {
+            attempts.incrementAndGet();
+            TimeUnit.SECONDS.sleep(10);
+            return "late";
+        })).isInstanceOf(DependencyUnavailableException.class);
+
+        assertThat(attempts.get()).isBetween(1, 2);
+    }
+
+    @Test
+    void breakerOpensAfterConsecutiveFailuresAndClosesAfterASuccessfulTrial() throws Exception {
+        settings.setMaxAttempts(1);
+        settings.setFailureThreshold(3);
+        settings.setOpenDuration(Duration.ofMillis(200));
+        guard = guard();
+        AtomicInteger attempts = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> guard.call("read", () -> {
+                attempts.incrementAndGet();
+                throw new IOException("503");
+            })).isInstanceOf(IOException.class);
+        }
+        assertThat(guard.getBreakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        // rejected without reaching the dependency
+        assertThatThrownBy(() -> guard.call("read", attempts::incrementAndGet))
+                .isInstanceOf(DependencyUnavailableException.class).hasMessageContaining("circuit breaker open");
+        assertThat(attempts).hasValue(3);
+
+        Thread.sleep(250);
+        assertThat(guard.call("read", attempts::incrementAndGet)).isEqualTo(4);
+        assertThat(guard.getBreakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void fullBulkheadRejectsCallsUntilTheRunningCallEnds() throws Exception {
+        settings.setMaxConcurrent(1);
+        settings.setMaxWait(Duration.ofMillis(20));
+        settings.setAttemptTimeout(Duration.ofSeconds(5));
+        guard = guard();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> slow = CompletableFuture.supplyAsync(() -> guard.call("slow", () -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "slow";
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> guard.call("read", () -> "fast"))
+                .isInstanceOf(DependencyUnavailableException.class).hasMessageContaining("bulkhead full");
+        assertThat(meterRegistry.get("resilience.bulkhead.in_use").gauge().value()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(slow.get(5, TimeUnit.SECONDS)).isEqualTo("slow");
+        assertThat(guard.call("read", () -> "fast")).isEqualTo("fast");
+        // a rejected call is not a failure of the dependency
+        assertThat(guard.getBreakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void abandonedAttemptKeepsItsPermitUntilItReallyEnds() throws Exception {
+        settings.setMaxConcurrent(1);
+        settings.setMaxWait(Duration.ofMillis(20));
+        settings.setMaxAttempts(1);
+        settings.setAttemptTimeout(Duration.ofMillis(100));
+        guard = guard();
+        CountDownLatch finished = new CountDownLatch(1);
+
+        assertThatThrownBy(() -> guard.call("hang", () -> {
+            try {
+                // ignores the interrupt, like a blocking socket read
+                long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(400);
+                while (System.nanoTime() < until) {
+                    Thread.onSpinWait();
+                }
+                return "late";
+            } finally {
+                finished.countDown();
+            }
+        })).isInstanceOf(DependencyUnavailableException.class);
+
+        // the hanging call still occupies the only thread, so the next caller is turned away
+        assertThatThrownBy(() -> guard.call("read", () -> "fast"))
+                .isInstanceOf(DependencyUnavailableException.class).hasMessageContaining("bulkhead full");
+        assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(50);
+        assertThat(guard.call("read", () -> "fast")).isEqualTo("fast");
+    }
+
+    private DependencyGuard guard() {
+        settings.setInitialBackoff(Duration.ofMillis(1));
+        settings.setMaxBackoff(Duration.ofMillis(5));
+        return new DependencyGuard("test", settings, DependencyGuards::isTransient, (dependency, operation) -> {
+        }, meterRegistry);
+    }
+}
@@ -0,0 +1,198 @@
+package com.dropshipping.backend.resilience;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal HTTP server on a free localhost port that answers with canned responses and injects faults: every
+ * request is delayed by the configured latency plus jitter, a share of requests hangs for {@code hangDuration},
+ * and a share is answered with the given error response. Used to exercise the dependency guards and the SDK
+ * clients against slow or failing dependencies without network access.
+ */
+@Slf4j
+public class FaultInjectingStubServer {
+
+    /**
+     * Added to every request: fixed latency plus a uniformly random part up to latencyJitter. Shares (0..1)
+     * of requests are answered with the error response, or hang for hangDuration before answering.
+     */
+    public record Faults(Duration latency, Duration latencyJitter, double errorRate, double hangRate,
+                         Duration hangDuration) {
+
+        public static final Faults NONE = new Faults(Duration.ZERO, Duration.ZERO, 0, 0, Duration.ZERO);
+
+        public static Faults errors(double errorRate) {
+            return new Faults(Duration.ZERO, Duration.ZERO, errorRate, 0, Duration.ZERO);
+        }
+
+        public static Faults hangs(double hangRate, Duration hangDuration) {
+            return new Faults(Duration.ZERO, Duration.ZERO, 0, hangRate, hangDuration);
+        }
+    }
+
+    public record Response(int status, String contentType, byte[] body, Map<String, String> headers) {
+
+        public static Response of(int status, String contentType, String body) {
+            return new Response(status, contentType, body.getBytes(StandardCharsets.UTF_8), Map.of());
+        }
+    }
+
+    @FunctionalInterface
+    public interface Handler {
+        Response handle(HttpExchange exchange, byte[] body) throws IOException;
+    }
+
+    private record Route(String method, String pathPrefix, Handler handler) {}
+
+    private final String name;
+    private final Faults faults;
+    private final Response injectedError;
+    private final Response notFound;
+    private final List<Route> routes = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong injectedHangs = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public FaultInjectingStubServer(String name, Faults faults, Response injectedError, Response notFound) {
+        this.name = name;
+        this.faults = faults;
+        this.injectedError = injectedError;
+        this.notFound = notFound;
+    }
+
+    /**
+     * Adds a route; routes are tried in the order added and the first whose method ({@code *} for any) and
+     * path prefix match answers the request.
+     */
+    public FaultInjectingStubServer route(String method, String pathPrefix, Handler handler) {
+        routes.add(new Route(method, pathPrefix, handler));
+        return this;
+    }
+
+    /**
+     * Answers matching requests with the error response, ahead of all routes.
+     */
+    public FaultInjectingStubServer failing(String method, String pathPrefix) {
+        routes.add(0, new Route(method, pathPrefix, (exchange, body) -> injectedError));
+        return this;
+    }
+
+    public FaultInjectingStubServer start() throws IOException {
+        AtomicInteger threadIds = new AtomicInteger();
+        // unbounded, so hanging requests never stop the stub from answering others
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stub-" + name + "-" + threadIds.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::serve);
+        server.start();
+        log.debug("Stub server '{}' listening on {} ({})", name, uri(), faults);
+        return this;
+    }
+
+    public URI uri() {
+        return URI.create("http://localhost:" + server.getAddress().getPort());
+    }
+
+    /**
+     * Requests received so far, including those answered with an injected fault.
+     */
+    public long requests() {
+        return requests.get();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            log.debug("Stub server '{}' stopped after {} requests ({} errors and {} hangs injected)",
+                    name, requests.get(), injectedErrors.get(), injectedHangs.get());
+        }
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+            requests.incrementAndGet();
+            Response response = injectFaults();
+            if (response == null) {
+                response = dispatch(exchange, body);
+            }
+            response.headers().forEach((k, v) -> exchange.getResponseHeaders().add(k, v));
+            exchange.getResponseHeaders().set("Content-Type", response.contentType());
+            boolean empty = response.body().length == 0 || "HEAD".equals(exchange.getRequestMethod());
+            exchange.sendResponseHeaders(response.status(), empty ? -1 : response.body().length);
+            if (!empty) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response.body());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sleeps for the injected latency; returns the error response when a failure is injected.
+     */
+    private Response injectFaults() throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = faults.latency().toMillis();
+        long jitter = faults.latencyJitter().toMillis();
+        if (jitter > 0) {
+            delay += random.nextLong(jitter + 1);
+        }
+        if (random.nextDouble() < faults.hangRate()) {
+            injectedHangs.incrementAndGet();
+            delay += faults.hangDuration().toMillis();
+        }
+        if (delay > 0) {
+            TimeUnit.MILLISECONDS.sleep(delay);
+        }
+        if (random.nextDouble() < faults.errorRate()) {
+            injectedErrors.incrementAndGet();
+            return injectedError;
+        }
+        return null;
+    }
+
+    private Response dispatch(HttpExchange exchange, byte[] body) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        for (Route route : routes) {
+            if (("*".equals(route.method()) || route.method().equals(method)) && path.startsWith(route.pathPrefix())) {
+                return route.handler().handle(exchange, body);
+            }
+        }
+        return notFound;
+    }
+}
@@ -0,0 +1,179 @@
+package com.dropshipping.backend.resilience;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-ins for Stripe, S3 and Textract for tests that point the SDK clients at them. They implement
+ * only the calls this app makes and answer with just enough of the real response shape for the SDKs to parse.
+ * The servers are returned unstarted, so a test can add failing routes first.
+ */
+public class StubServers {
+
+    private static final String JSON = "application/json";
+    private static final String AMZ_JSON = "application/x-amz-json-1.1";
+    private static final String XML = "application/xml";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final AtomicLong ids = new AtomicLong();
+    // Stripe replays the first response for a repeated Idempotency-Key; so does the stub
+    private final Map<String, FaultInjectingStubServer.Response> idempotentResponses = new ConcurrentHashMap<>();
+
+    public FaultInjectingStubServer stripe(FaultInjectingStubServer.Faults faults) {
+        return new FaultInjectingStubServer("stripe", faults,
+                stripeError(503, "api_error", "Injected stub failure"),
+                stripeError(404, "invalid_request_error", "No stub for this request"))
+                .route("POST", "/v1/refunds", (exchange, body) -> idempotent(exchange, () -> {
+                    Map<String, String> form = form(body);
+                    Map<String, Object> refund = stripeObject("refund", "re_stub_");
+                    refund.put("amount", Long.parseLong(form.getOrDefault("amount", "0")));
+                    refund.put("currency", "usd");
+                    refund.put("charge", form.get("charge"));
+                    refund.put("payment_intent", form.get("payment_intent"));
+                    refund.put("status", "succeeded");
+                    return json(200, JSON, refund);
+                }))
+                .route("POST", "/v1/payment_methods/", (exchange, body) -> {
+                    // POST /v1/payment_methods/{id}/attach
+                    Map<String, Object> pm = paymentMethod(pathSegment(exchange, 3));
+                    pm.put("customer", form(body).get("customer"));
+                    return json(200, JSON, pm);
+                })
+                .route("GET", "/v1/payment_methods/", (exchange, body) ->
+                        json(200, JSON, paymentMethod(pathSegment(exchange, 3))))
+                .route("*", "/v1/customers/", (exchange, body) -> {
+                    Map<String, Object> customer = new LinkedHashMap<>();
+                    customer.put("id", pathSegment(exchange, 3));
+                    customer.put("object", "customer");
+                    customer.put("invoice_settings", Map.of());
+                    return json(200, JSON, customer);
+                })
+                .route("GET", "/v1/balance_transactions", (exchange, body) ->
+                        json(200, JSON, Map.of("object", "list", "data", List.of(), "has_more", false,
+                                "url", "/v1/balance_transactions")));
+    }
+
+    public FaultInjectingStubServer s3(FaultInjectingStubServer.Faults faults) {
+        return new FaultInjectingStubServer("s3", faults,
+                s3Error(503, "SlowDown", "Injected stub failure"),
+                s3Error(404, "NoSuchKey", "No stub for this request"))
+                // path-style PUT /{bucket}/{key}; the ETag is the MD5 of the body like for a plain S3 upload
+                .route("PUT", "/", (exchange, body) -> new FaultInjectingStubServer.Response(200, XML, new byte[0],
+                        Map.of("ETag", "\"" + HexFormat.of().formatHex(md5(body)) + "\"")));
+    }
+
+    public FaultInjectingStubServer textract(FaultInjectingStubServer.Faults faults) {
+        Map<String, Object> response = Map.of(
+                "DocumentMetadata", Map.of("Pages", 1),
+                "Blocks", List.of(
+                        Map.of("BlockType", "PAGE", "Id", "page-1"),
+                        Map.of("BlockType", "LINE", "Id", "line-1", "Text", "STUB RECEIPT"),
+                        Map.of("BlockType", "LINE", "Id", "line-2", "Text", "TOTAL 0.00")));
+        return new FaultInjectingStubServer("textract", faults,
+                awsJsonError(503, "InternalServerError", "Injected stub failure"),
+                awsJsonError(400, "UnsupportedOperationException", "No stub for this request"))
+                .route("POST", "/", (exchange, body) ->
+                        "Textract.DetectDocumentText".equals(exchange.getRequestHeaders().getFirst("X-Amz-Target"))
+                                ? json(200, AMZ_JSON, response)
+                                : awsJsonError(400, "UnsupportedOperationException", "No stub for this operation"));
+    }
+
+    private FaultInjectingStubServer.Response idempotent(HttpExchange exchange,
+                                                         StubCall call) throws IOException {
+        String key = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+        if (key == null) {
+            return call.respond();
+        }
+        FaultInjectingStubServer.Response cached = idempotentResponses.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        FaultInjectingStubServer.Response response = call.respond();
+        FaultInjectingStubServer.Response first = idempotentResponses.putIfAbsent(key, response);
+        return first != null ? first : response;
+    }
+
+    @FunctionalInterface
+    private interface StubCall {
+        FaultInjectingStubServer.Response respond() throws IOException;
+    }
+
+    private Map<String, Object> stripeObject(String object, String idPrefix) {
+        Map<String, Object> o = new LinkedHashMap<>();
+        o.put("id", idPrefix + ids.incrementAndGet());
+        o.put("object", object);
+        o.put("created", Instant.now().getEpochSecond());
+        o.put("livemode", false);
+        return o;
+    }
+
+    private static Map<String, Object> paymentMethod(String id) {
+        Map<String, Object> pm = new LinkedHashMap<>();
+        pm.put("id", id);
+        pm.put("object", "payment_method");
+        pm.put("type", "card");
+        pm.put("customer", null);
+        return pm;
+    }
+
+    private FaultInjectingStubServer.Response json(int status, String contentType, Object body) throws JsonProcessingException {
+        return new FaultInjectingStubServer.Response(status, contentType, objectMapper.writeValueAsBytes(body), Map.of());
+    }
+
+    private static FaultInjectingStubServer.Response stripeError(int status, String type, String message) {
+        return FaultInjectingStubServer.Response.of(status, JSON,
+                "{\"error\":{\"type\":\"" + type + "\",\"message\":\"" + message + "\"}}");
+    }
+
+    private static FaultInjectingStubServer.Response s3Error(int status, String code, String message) {
+        return FaultInjectingStubServer.Response.of(status, XML,
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?><Error><Code>" + code + "</Code><Message>" + message
+                        + "</Message></Error>");
+    }
+
+    private static FaultInjectingStubServer.Response awsJsonError(int status, String type, String message) {
+        return FaultInjectingStubServer.Response.of(status, AMZ_JSON,
+                "{\"__type\":\"" + type + "\",\"message\":\"" + message + "\"}");
+    }
+
+    private static String pathSegment(HttpExchange exchange, int index) {
+        String[] parts = exchange.getRequestURI().getPath().split("/");
+        return parts.length > index ? parts[index] : "";
+    }
+
+    private static Map<String, String> form(byte[] body) {
+        Map<String, String> params = new HashMap<>();
+        for (String pair : new String(body, StandardCharsets.UTF_8).split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static byte[] md5(byte[] body) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(body);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.dropshipping.backend.resilience;
+
+import com.dropshipping.backend.config.ResilienceProperties;
+import com.dropshipping.backend.config.StripeProperties;
+import com.dropshipping.backend.repository.OrderRepository;
+import com.dropshipping.backend.repository.PaymentRepository;
+import com.dropshipping.backend.service.IncrementalReconciler;
+import com.dropshipping.backend.service.PaymentProcessingService;
+import com.stripe.Stripe;
+import com.stripe.exception.ApiException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.textract.TextractClient;
+import software.amazon.awssdk.services.textract.model.DetectDocumentTextRequest;
+import software.amazon.awssdk.services.textract.model.Document;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * The guards in front of the real SDK clients, pointed at the local stub servers.
+ */
+class StubbedDependenciesTest {
+
+    private final StubServers stubs = new StubServers();
+    private final ResilienceProperties properties = new ResilienceProperties();
+    private final List<FaultInjectingStubServer> running = new ArrayList<>();
+    private DependencyGuards guards;
+
+    @BeforeEach
+    void setUp() {
+        for (String dependency : List.of(DependencyGuards.STRIPE, DependencyGuards.S3, DependencyGuards.TEXTRACT)) {
+            ResilienceProperties.Dependency settings = properties.dependency(dependency);
+            settings.setAttemptTimeout(Duration.ofMillis(500));
+            settings.setTotalTimeout(Duration.ofSeconds(5));
+            settings.setInitialBackoff(Duration.ofMillis(1));
+            settings.setMaxBackoff(Duration.ofMillis(5));
+        }
+        guards = new DependencyGuards(properties, mock(ConnectionHoldDetector.class), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        guards.shutdown();
+        running.forEach(FaultInjectingStubServer::stop);
+        Stripe.overrideApiBase(Stripe.LIVE_API_BASE);
+        Stripe.apiKey = null;
+    }
+
+    @Test
+    void s3ServerErrorsAreRetriedAndThenRethrown() throws IOException {
+        FaultInjectingStubServer failing = start(stubs.s3(FaultInjectingStubServer.Faults.errors(1.0)));
+        S3Client s3 = s3Client(failing);
+
+        assertThatThrownBy(() -> put(s3)).isInstanceOf(S3Exception.class)
+                .satisfies(e -> assertThat(((S3Exception) e).statusCode()).isEqualTo(503));
+        assertThat(failing.requests()).isEqualTo(3);
+
+        FaultInjectingStubServer healthy = start(stubs.s3(FaultInjectingStubServer.Faults.NONE));
+        assertThat(put(s3Client(healthy))).isNotBlank();
+    }
+
+    @Test
+    void hangingTextractIsAbandonedAfterTheAttemptTimeout() throws IOException {
+        properties.dependency(DependencyGuards.TEXTRACT).setMaxAttempts(2);
+        FaultInjectingStubServer hanging = start(stubs.textract(FaultInjectingStubServer.Faults.hangs(1.0, Duration.ofSeconds(10))));
+        TextractClient textract = TextractClient.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("stub", "stub")))
+                .endpointOverride(hanging.uri())
+                .overrideConfiguration(guardedOverrides(DependencyGuards.TEXTRACT))
+                .build();
+        DetectDocumentTextRequest request = DetectDocumentTextRequest.builder()
+                .document(Document.builder().s3Object(o -> o.bucket("receipts").name("r.pdf")).build())
+                .build();
+
+        long startedAt = System.nanoTime();
+        assertThatThrownBy(() -> guards.get(DependencyGuards.TEXTRACT)
+                .call("detectDocumentText", () -> textract.detectDocumentText(request)))
+                .isInstanceOf(DependencyUnavailableException.class)
+                .hasMessageContaining("timed out after 2 attempt(s)");
+        assertThat(Duration.ofNanos(System.nanoTime() - startedAt)).isLessThan(Duration.ofSeconds(3));
+    }
+
+    @Test
+    void failedPaymentMethodAttachIsNotRepeated() throws Exception {
+        FaultInjectingStubServer stripe = start(stubs.stripe(FaultInjectingStubServer.Faults.NONE)
+                .failing("POST", "/v1/payment_methods/"));
+
+        assertThatThrownBy(() -> paymentService(stripe).updatePaymentMethod("cus_1", "pm_1"))
+                .isInstanceOf(ApiException.class);
+        // retrieve, then a single attach
+        assertThat(stripe.requests()).isEqualTo(2);
+    }
+
+    @Test
+    void failedDefaultPaymentMethodUpdateIsNotRepeated() throws Exception {
+        FaultInjectingStubServer stripe = start(stubs.stripe(FaultInjectingStubServer.Faults.NONE)
+                .failing("POST", "/v1/customers/"));
+
+        assertThatThrownBy(() -> paymentService(stripe).updatePaymentMethod("cus_1", "pm_1"))
+                .isInstanceOf(ApiException.class);
+        // payment method retrieve and attach, customer retrieve, then a single update
+        assertThat(stripe.requests()).isEqualTo(4);
+    }
+
+    private FaultInjectingStubServer start(FaultInjectingStubServer server) throws IOException {
+        running.add(server.start());
+        return server;
+    }
+
+    private PaymentProcessingService paymentService(FaultInjectingStubServer stripe) {
+        Stripe.overrideApiBase(stripe.uri().toString());
+        Stripe.setMaxNetworkRetries(0);
+        StripeProperties stripeProperties = new StripeProperties();
+        stripeProperties.setApiKey("sk_test_stub");
+        return new PaymentProcessingService(stripeProperties, mock(OrderRepository.class),
+                mock(PaymentRepository.class), mock(IncrementalReconciler.class), guards);
+    }
+
+    private S3Client s3Client(FaultInjectingStubServer server) {
+        return S3Client.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("stub", "stub")))
+                .endpointOverride(server.uri())
+                .serviceConfiguration(S3Configuration.builder()
+                        .pathStyleAccessEnabled(true)
+                        .chunkedEncodingEnabled(false)
+                        .checksumValidationEnabled(false)
+                        .build())
+                .overrideConfiguration(guardedOverrides(DependencyGuards.S3))
+                .build();
+    }
+
+    private String put(S3Client s3) {
+        PutObjectRequest request = PutObjectRequest.builder().bucket("receipts").key("r.pdf").build();
+        return guards.get(DependencyGuards.S3).call("putObject", () ->
+                s3.putObject(request, RequestBody.fromString("receipt", StandardCharsets.UTF_8))).eTag();
+    }
+
+    // as AwsClientsConfig configures the guarded clients
+    private ClientOverrideConfiguration guardedOverrides(String dependency) {
+        return ClientOverrideConfiguration.builder()
+                .apiCallTimeout(properties.dependency(dependency).getAttemptTimeout())
+                .retryPolicy(RetryPolicy.none())
+                .build();
+    }
+}
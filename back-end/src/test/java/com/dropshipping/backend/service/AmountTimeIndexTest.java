@@ -0,0 +1,63 @@
+package com.dropshipping.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AmountTimeIndexTest {
+
+    private final AmountTimeIndex index = new AmountTimeIndex(List.of(
+            new AmountTimeIndex.Entry(1, 2500, 1_000),
+            new AmountTimeIndex.Entry(2, 2499, 1_000),
+            new AmountTimeIndex.Entry(3, 2501, 1_000),
+            new AmountTimeIndex.Entry(4, 2500, 2_000),
+            new AmountTimeIndex.Entry(5, 2502, 1_000),
+            new AmountTimeIndex.Entry(6, 2498, 1_000),
+            new AmountTimeIndex.Entry(7, 2500, 999)));
+
+    @Test
+    void amountAndTimeBoundsAreInclusive() {
+        assertThat(ids(2499, 2501, 1_000, 2_000)).containsExactlyInAnyOrder(1L, 2L, 3L, 4L);
+        assertThat(ids(2500, 2500, 999, 999)).containsExactly(7L);
+    }
+
+    @Test
+    void entriesJustOutsideTheBoundsAreSkipped() {
+        // 2498 / 2502 are one cent outside, 999 / 2000 one second outside
+        assertThat(ids(2499, 2501, 1_000, 1_999)).containsExactlyInAnyOrder(1L, 2L, 3L);
+    }
+
+    @Test
+    void rangeBelowAboveOrBetweenEntriesIsEmpty() {
+        assertThat(ids(0, 2497, 0, Long.MAX_VALUE)).isEmpty();
+        assertThat(ids(2503, 9_999, 0, Long.MAX_VALUE)).isEmpty();
+        assertThat(new AmountTimeIndex(List.of()).size()).isZero();
+        assertThat(ids(2500, 2500, 1_001, 1_999)).isEmpty();
+    }
+
+    @Test
+    void positionsIdentifyTheVisitedEntry() {
+        List<Integer> positions = new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+        index.forEach(0, Long.MAX_VALUE, 0, Long.MAX_VALUE, (position, id, cents, time) -> {
+            positions.add(position);
+            ids.add(id);
+        });
+
+        assertThat(positions).containsExactly(0, 1, 2, 3, 4, 5, 6);
+        for (int i = 0; i < positions.size(); i++) {
+            assertThat(index.id(positions.get(i))).isEqualTo(ids.get(i));
+        }
+        // sorted by amount, then time
+        assertThat(ids).containsExactly(6L, 2L, 7L, 1L, 4L, 3L, 5L);
+    }
+
+    private List<Long> ids(long minCents, long maxCents, long minTime, long maxTime) {
+        List<Long> ids = new ArrayList<>();
+        index.forEach(minCents, maxCents, minTime, maxTime, (position, id, cents, time) -> ids.add(id));
+        return ids;
+    }
+}
@@ -0,0 +1,120 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.entity.Customer;
+import com.dropshipping.backend.entity.Order;
+import com.dropshipping.backend.entity.OrderItem;
+import com.dropshipping.backend.entity.Product;
+import com.dropshipping.backend.entity.Supplier;
+import com.dropshipping.backend.enums.OrderStatus;
+import com.dropshipping.backend.enums.ShipmentStatus;
+import com.dropshipping.backend.support.TestData;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AuditSnapshotServiceTest {
+
+    private final AuditSnapshotService service = new AuditSnapshotService();
+    private Order order;
+    private OrderItem item;
+
+    @BeforeEach
+    void setUp() {
+        Customer customer = TestData.customer();
+        customer.setId(7L);
+        Supplier supplier = TestData.supplier("Acme");
+        supplier.setId(11L);
+        Product product = TestData.product(supplier);
+        product.setId(13L);
+        order = TestData.order(customer, new BigDecimal("25.00"));
+        order.setId(42L);
+        order.setCreatedAt(LocalDateTime.of(2024, 5, 1, 10, 0));
+        item = TestData.item(order, product, supplier, 2);
+        item.setId(43L);
+    }
+
+    @Test
+    void manyToOneAssociationsBecomeTheirIdAndCollectionsAreSkipped() {
+        ObjectNode snapshot = service.snapshot(item);
+
+        assertThat(snapshot.get("orderId").asLong()).isEqualTo(42L);
+        assertThat(snapshot.get("productId").asLong()).isEqualTo(13L);
+        assertThat(snapshot.get("supplierId").asLong()).isEqualTo(11L);
+        assertThat(snapshot.has("order")).isFalse();
+        assertThat(snapshot.has("product")).isFalse();
+
+        ObjectNode orderSnapshot = service.snapshot(order);
+        assertThat(orderSnapshot.get("customerId").asLong()).isEqualTo(7L);
+        assertThat(orderSnapshot.has("orderItems")).isFalse();
+    }
+
+    @Test
+    void creationSnapshotHoldsNonNullScalarsAndLeavesOutJsonDocuments() {
+        ObjectNode snapshot = service.snapshot(order);
+
+        assertThat(snapshot.get("id").asLong()).isEqualTo(42L);
+        assertThat(snapshot.get("orderNumber").asText()).isEqualTo(order.getOrderNumber());
+        assertThat(snapshot.get("status").asText()).isEqualTo("PAYMENT_RECEIVED");
+        assertThat(snapshot.get("totalAmount").decimalValue()).isEqualByComparingTo("25.00");
+        assertThat(snapshot.get("createdAt").asText()).isEqualTo("2024-05-01T10:00");
+        assertThat(snapshot.has("shippingAddress")).isFalse();
+        assertThat(snapshot.has("billingAddress")).isFalse();
+        // null fields are not written
+        assertThat(snapshot.has("reviewReason")).isFalse();
+    }
+
+    @Test
+    void diffHoldsOnlyChangedFields() {
+        AuditSnapshotService.Snapshot before = service.capture(order);
+        order.setStatus(OrderStatus.SHIPPED);
+        order.setReviewReason("checked");
+        // same value at another scale is not a change
+        order.setTotalAmount(new BigDecimal("25.0"));
+
+        AuditSnapshotService.Diff diff = service.diff(before, order);
+
+        assertThat(diff.before().fieldNames()).toIterable().containsExactlyInAnyOrder("status", "reviewReason");
+        assertThat(diff.before().get("status").asText()).isEqualTo("PAYMENT_RECEIVED");
+        assertThat(diff.before().get("reviewReason").isNull()).isTrue();
+        assertThat(diff.after().get("status").asText()).isEqualTo("SHIPPED");
+        assertThat(diff.after().get("reviewReason").asText()).isEqualTo("checked");
+    }
+
+    @Test
+    void unchangedEntityHasAnEmptyDiff() {
+        AuditSnapshotService.Snapshot before = service.capture(item);
+
+        assertThat(service.diff(before, item).isEmpty()).isTrue();
+
+        item.setShipmentStatus(ShipmentStatus.SHIPPED);
+        assertThat(service.diff(before, item).after().get("shipmentStatus").asText()).isEqualTo("SHIPPED");
+    }
+
+    @Test
+    void jsonDocumentChangedInPlaceShowsUpInTheDiff() {
+        AuditSnapshotService.Snapshot before = service.capture(order);
+        ((ObjectNode) order.getShippingAddress()).put("city", "Elsewhere");
+
+        AuditSnapshotService.Diff diff = service.diff(before, order);
+
+        assertThat(diff.before().get("shippingAddress").get("city").asText()).isEqualTo("Testville");
+        assertThat(diff.after().get("shippingAddress").get("city").asText()).isEqualTo("Elsewhere");
+        // the audit entry does not share the entity's node
+        ((ObjectNode) order.getShippingAddress()).put("city", "Later");
+        assertThat(diff.after().get("shippingAddress").get("city").asText()).isEqualTo("Elsewhere");
+    }
+
+    @Test
+    void snapshotsOfDifferentEntityTypesCannotBeDiffed() {
+        AuditSnapshotService.Snapshot before = service.capture(order);
+
+        assertThatThrownBy(() -> service.diff(before, item)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.capture("not an entity")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,86 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.AuditProperties;
+import com.dropshipping.backend.entity.AuditTrail;
+import com.dropshipping.backend.repository.AuditTrailRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AuditTrailWriterTest {
+
+    private final AuditTrailRepository repository = mock(AuditTrailRepository.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private AuditTrailWriter writer(boolean enabled, int flushSize, Duration flushInterval) {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        AuditProperties properties = new AuditProperties();
+        properties.getAsync().setEnabled(enabled);
+        properties.getAsync().setFlushSize(flushSize);
+        properties.getAsync().setFlushInterval(flushInterval);
+        return new AuditTrailWriter(repository, transactionManager, properties, meterRegistry);
+    }
+
+    @Test
+    void partialBatchIsWrittenWhenTheWorkerIsInterrupted() throws Exception {
+        AuditTrailWriter writer = writer(true, 10, Duration.ofSeconds(30));
+        List<AuditTrail> saved = new CopyOnWriteArrayList<>();
+        when(repository.saveAll(anyList())).thenAnswer(inv -> {
+            saved.addAll(inv.getArgument(0));
+            return List.of();
+        });
+        writer.start();
+        writer.submit(entry(1));
+        Thread worker = Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().equals("audit-writer")).findFirst().orElseThrow();
+        // the worker now waits for more entries with one entry in its batch
+        Thread.sleep(200);
+        worker.interrupt();
+        worker.join(5_000);
+
+        assertThat(worker.isAlive()).isFalse();
+        assertThat(saved).containsExactly(entry(1));
+        assertThat(writtenCount()).isEqualTo(1);
+        writer.stop();
+    }
+
+    @Test
+    void writtenCountsOnlyInsertedEntries() {
+        AuditTrailWriter writer = writer(false, 10, Duration.ofMillis(100));
+        AuditTrail good = entry(1);
+        AuditTrail bad = entry(2);
+        when(repository.saveAll(anyList())).thenThrow(new IllegalStateException("batch failed"));
+        when(repository.save(bad)).thenThrow(new IllegalStateException("bad row"));
+        writer.submit(good);
+        writer.submit(bad);
+
+        writer.stop();
+
+        assertThat(writtenCount()).isEqualTo(1);
+        assertThat(meterRegistry.get("audit.failed").counter().count()).isEqualTo(1);
+    }
+
+    private double writtenCount() {
+        return meterRegistry.get("audit.written").tag("path", "writer").counter().count();
+    }
+
+    private static AuditTrail entry(long entityId) {
+        AuditTrail audit = new AuditTrail();
+        audit.setEntityType("ORDER");
+        audit.setEntityId(entityId);
+        audit.setUserAction("CREATE");
+        return audit;
+    }
+}
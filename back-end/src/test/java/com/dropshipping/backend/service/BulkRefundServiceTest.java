@@ -0,0 +1,334 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.RefundProperties;
+import com.dropshipping.backend.config.StripeProperties;
+import com.dropshipping.backend.entity.Customer;
+import com.dropshipping.backend.entity.Order;
+import com.dropshipping.backend.entity.Payment;
+import com.dropshipping.backend.entity.Product;
+import com.dropshipping.backend.entity.RefundJob;
+import com.dropshipping.backend.entity.RefundJobItem;
+import com.dropshipping.backend.entity.ReturnRequest;
+import com.dropshipping.backend.entity.Supplier;
+import com.dropshipping.backend.repository.CustomerRepository;
+import com.dropshipping.backend.repository.OrderItemRepository;
+import com.dropshipping.backend.repository.OrderRepository;
+import com.dropshipping.backend.repository.PaymentRepository;
+import com.dropshipping.backend.repository.ProductRepository;
+import com.dropshipping.backend.repository.RefundJobItemRepository;
+import com.dropshipping.backend.repository.RefundJobRepository;
+import com.dropshipping.backend.repository.ReturnRequestRepository;
+import com.dropshipping.backend.repository.SupplierRepository;
+import com.dropshipping.backend.resilience.DependencyGuards;
+import com.dropshipping.backend.resilience.DependencyUnavailableException;
+import com.dropshipping.backend.support.PostgresTestSupport;
+import com.dropshipping.backend.support.TestData;
+import com.stripe.model.Refund;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BulkRefundServiceTest extends PostgresTestSupport {
+
+    @Autowired
+    private RefundJobRepository jobRepository;
+    @Autowired
+    private RefundJobItemRepository itemRepository;
+    @Autowired
+    private ReturnRequestRepository returnRequestRepository;
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+    @Autowired
+    private PaymentRepository paymentRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private SupplierRepository supplierRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final RefundProperties properties = new RefundProperties();
+    private final List<BulkRefundService> services = new ArrayList<>();
+    private final List<Order> orders = new ArrayList<>();
+    private final List<Long> jobIds = new ArrayList<>();
+    private final AtomicInteger refunds = new AtomicInteger();
+    private PaymentProcessingService paymentProcessingService;
+    private ReturnService returnService;
+    private TransactionTemplate transactionTemplate;
+
+    private Customer customer;
+    private Supplier supplier;
+    private Product product;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        RefundProperties.Bulk bulk = properties.getBulk();
+        bulk.setConcurrency(2);
+        bulk.setMaxRequestsPerSecond(1000);
+        bulk.setPollInterval(Duration.ofMillis(20));
+        bulk.setInitialBackoff(Duration.ofMillis(10));
+        bulk.setMaxBackoff(Duration.ofMillis(20));
+        bulk.setMaxAttempts(3);
+
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        paymentProcessingService = spy(new PaymentProcessingService(new StripeProperties(), orderRepository,
+                paymentRepository, mock(IncrementalReconciler.class), mock(DependencyGuards.class)));
+        returnService = new ReturnService(returnRequestRepository, orderItemRepository, paymentRepository,
+                paymentProcessingService, transactionTemplate);
+        doAnswer(invocation -> refund()).when(paymentProcessingService).submitRefund(any(), anyString());
+
+        customer = customerRepository.save(TestData.customer());
+        supplier = supplierRepository.save(TestData.supplier("Acme"));
+        product = productRepository.save(TestData.product(supplier));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        services.forEach(BulkRefundService::shutdown);
+        for (Long jobId : jobIds) {
+            jdbcTemplate.update("delete from refund_job_items where job_id = ?", jobId);
+            jdbcTemplate.update("delete from refund_jobs where id = ?", jobId);
+        }
+        for (Order order : orders) {
+            jdbcTemplate.update("delete from returns where order_item_id in (select id from order_items where order_id = ?)", order.getId());
+            jdbcTemplate.update("delete from payments where order_id = ?", order.getId());
+            jdbcTemplate.update("delete from order_items where order_id = ?", order.getId());
+            jdbcTemplate.update("delete from orders where id = ?", order.getId());
+        }
+        jdbcTemplate.update("delete from products where id = ?", product.getId());
+        jdbcTemplate.update("delete from suppliers where id = ?", supplier.getId());
+        jdbcTemplate.update("delete from customers where id = ?", customer.getId());
+    }
+
+    @Test
+    void unknownOutcomeIsRetriedWithTheSameKey() throws Exception {
+        ReturnRequest rr = returnOf(charge());
+        AtomicInteger calls = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new DependencyUnavailableException("stripe", "timed out after 3 attempt(s)");
+            }
+            return refund();
+        }).when(paymentProcessingService).submitRefund(any(), anyString());
+
+        Long jobId = start(rr.getId());
+        awaitJobCompleted(jobId);
+
+        RefundJobItem item = itemOf(jobId, rr.getId());
+        assertThat(item.getStatus()).isEqualTo("SUCCEEDED");
+        assertThat(item.getAttempts()).isEqualTo(2);
+        ArgumentCaptor<String> keys = ArgumentCaptor.forClass(String.class);
+        verify(paymentProcessingService, times(2)).submitRefund(any(), keys.capture());
+        assertThat(keys.getAllValues()).containsOnly(returnRequestRepository.findById(rr.getId()).orElseThrow().getRefundIdempotencyKey());
+    }
+
+    @Test
+    void outcomeUnknownAfterMaxAttemptsFailsTheItemAndLeavesTheReturnPending() throws Exception {
+        ReturnRequest rr = returnOf(charge());
+        doAnswer(invocation -> {
+            throw new DependencyUnavailableException("stripe", "circuit breaker is open");
+        }).when(paymentProcessingService).submitRefund(any(), anyString());
+
+        Long jobId = start(rr.getId());
+        awaitJobCompleted(jobId);
+
+        RefundJobItem item = itemOf(jobId, rr.getId());
+        assertThat(item.getStatus()).isEqualTo("FAILED");
+        assertThat(item.getAttempts()).isEqualTo(3);
+        assertThat(item.getLastError()).startsWith("Refund outcome unknown after 3 attempts");
+        assertThat(returnRequestRepository.findById(rr.getId()).orElseThrow().getRefundStatus()).isEqualTo(ReturnService.REFUND_PENDING);
+    }
+
+    @Test
+    void returnsThatCannotBeRefundedFailWithoutHoldingUpTheBatch() throws Exception {
+        ReturnRequest good = returnOf(charge());
+        Payment withoutStripeIds = TestData.charge(order(), BigDecimal.TEN);
+        withoutStripeIds.setStripeChargeId(null);
+        withoutStripeIds.setStripePaymentIntentId(null);
+        ReturnRequest noStripeIds = returnOf(paymentRepository.save(withoutStripeIds).getOrder());
+        ReturnRequest noPayment = returnOf(order());
+
+        Long jobId = start(good.getId(), noStripeIds.getId(), noPayment.getId());
+        awaitJobCompleted(jobId);
+
+        assertThat(itemOf(jobId, good.getId()).getStatus()).isEqualTo("SUCCEEDED");
+        assertThat(itemOf(jobId, noStripeIds.getId()).getStatus()).isEqualTo("FAILED");
+        assertThat(itemOf(jobId, noStripeIds.getId()).getLastError()).contains("neither chargeId nor paymentIntentId");
+        assertThat(itemOf(jobId, noPayment.getId()).getStatus()).isEqualTo("FAILED");
+        assertThat(itemOf(jobId, noPayment.getId()).getLastError()).startsWith("No payment found");
+        assertThat(refunds).hasValue(1);
+    }
+
+    @Test
+    void itemWithExpiredLeaseIsResentWithItsRecordedKeyAndLiveLeaseIsLeftAlone() throws Exception {
+        ReturnRequest abandoned = returnOf(charge());
+        ReturnRequest held = returnOf(charge());
+        // a worker recorded both intents and went away; one lease has expired, the other has not
+        transactionTemplate.execute(tx -> returnService.recordRefundIntents(List.of(
+                new ReturnService.RefundRequest(abandoned.getId(), null, null),
+                new ReturnService.RefundRequest(held.getId(), null, null))));
+        String abandonedKey = returnRequestRepository.findById(abandoned.getId()).orElseThrow().getRefundIdempotencyKey();
+        Long jobId = job(claimed(abandoned.getId(), LocalDateTime.now().minusSeconds(1)),
+                claimed(held.getId(), LocalDateTime.now().plusMinutes(10)));
+
+        newService();
+        await(() -> "SUCCEEDED".equals(itemOf(jobId, abandoned.getId()).getStatus()));
+
+        ArgumentCaptor<String> keys = ArgumentCaptor.forClass(String.class);
+        verify(paymentProcessingService, times(1)).submitRefund(any(), keys.capture());
+        assertThat(keys.getValue()).isEqualTo(abandonedKey);
+        assertThat(itemOf(jobId, abandoned.getId()).getAttempts()).isEqualTo(2);
+        assertThat(itemOf(jobId, held.getId()).getStatus()).isEqualTo("PROCESSING");
+        assertThat(returnRequestRepository.findById(held.getId()).orElseThrow().getRefundStatus()).isEqualTo(ReturnService.REFUND_PENDING);
+    }
+
+    @Test
+    void shutdownDoesNotWaitForRefundsThatWereNeverSent() throws Exception {
+        properties.getBulk().setConcurrency(1);
+        ReturnRequest first = returnOf(charge());
+        ReturnRequest second = returnOf(charge());
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            sending.countDown();
+            // a call that ignores interrupts, like a blocked socket read
+            while (true) {
+                try {
+                    release.await();
+                    return refund();
+                } catch (InterruptedException ignored) {
+                    // keep blocking
+                }
+            }
+        }).when(paymentProcessingService).submitRefund(any(), anyString());
+
+        BulkRefundService service = newService();
+        Long jobId = service.start(List.of(first.getId(), second.getId()), null).id();
+        jobIds.add(jobId);
+        assertThat(sending.await(20, TimeUnit.SECONDS)).isTrue();
+
+        try {
+            long startedAt = System.nanoTime();
+            service.shutdown();
+            assertThat(Duration.ofNanos(System.nanoTime() - startedAt)).isLessThan(Duration.ofSeconds(5));
+        } finally {
+            release.countDown();
+        }
+        // both outcomes are unknown; the items are due again and resend the recorded requests
+        for (Long returnId : List.of(first.getId(), second.getId())) {
+            RefundJobItem item = itemOf(jobId, returnId);
+            assertThat(item.getStatus()).isEqualTo("PENDING");
+            assertThat(item.getLastError()).startsWith("Shut down before");
+            assertThat(returnRequestRepository.findById(returnId).orElseThrow().getRefundStatus()).isEqualTo(ReturnService.REFUND_PENDING);
+        }
+    }
+
+    private BulkRefundService newService() {
+        BulkRefundService service = new BulkRefundService(jobRepository, itemRepository, returnRequestRepository,
+                returnService, properties, transactionTemplate, new SimpleMeterRegistry());
+        services.add(service);
+        return service;
+    }
+
+    private Long start(Long... returnIds) {
+        Long jobId = newService().start(List.of(returnIds), "damaged").id();
+        jobIds.add(jobId);
+        return jobId;
+    }
+
+    private Long job(RefundJobItem... items) {
+        RefundJob job = new RefundJob();
+        job.setTotalItems(items.length);
+        Long jobId = jobRepository.save(job).getId();
+        jobIds.add(jobId);
+        for (RefundJobItem item : items) {
+            item.setJobId(jobId);
+            itemRepository.save(item);
+        }
+        return jobId;
+    }
+
+    private static RefundJobItem claimed(Long returnId, LocalDateTime lockedUntil) {
+        RefundJobItem item = new RefundJobItem();
+        item.setReturnId(returnId);
+        item.setStatus("PROCESSING");
+        item.setAttempts(1);
+        item.setNextAttemptAt(LocalDateTime.now().minusMinutes(1));
+        item.setLockedUntil(lockedUntil);
+        return item;
+    }
+
+    private RefundJobItem itemOf(Long jobId, Long returnId) {
+        return itemRepository.findAll().stream()
+                .filter(i -> i.getJobId().equals(jobId) && i.getReturnId().equals(returnId))
+                .findFirst().orElseThrow();
+    }
+
+    private void awaitJobCompleted(Long jobId) throws InterruptedException {
+        await(() -> "COMPLETED".equals(jobRepository.findById(jobId).orElseThrow().getStatus()));
+    }
+
+    private Refund refund() {
+        Refund refund = new Refund();
+        refund.setId("re_" + refunds.incrementAndGet());
+        return refund;
+    }
+
+    private Order order() {
+        Order order = TestData.order(customer, new BigDecimal("15.00"));
+        TestData.item(order, product, supplier, 1);
+        order = orderRepository.save(order);
+        orders.add(order);
+        return order;
+    }
+
+    private Order charge() {
+        return paymentRepository.save(TestData.charge(order(), new BigDecimal("15.00"))).getOrder();
+    }
+
+    private ReturnRequest returnOf(Order order) {
+        return returnService.initiateReturn(order.getOrderItems().get(0).getId(), "damaged", new BigDecimal("15.00"));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("timed out").isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.ReconciliationProperties;
+import com.dropshipping.backend.entity.Customer;
+import com.dropshipping.backend.entity.Order;
+import com.dropshipping.backend.entity.Payment;
+import com.dropshipping.backend.entity.Product;
+import com.dropshipping.backend.entity.ReconciliationAudit;
+import com.dropshipping.backend.entity.Supplier;
+import com.dropshipping.backend.entity.SupplierReceipt;
+import com.dropshipping.backend.repository.OrderRepository;
+import com.dropshipping.backend.repository.PaymentRepository;
+import com.dropshipping.backend.repository.ReconciliationAuditRepository;
+import com.dropshipping.backend.repository.SupplierReceiptRepository;
+import com.dropshipping.backend.support.PostgresTestSupport;
+import com.dropshipping.backend.support.TestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ChargeMatchingServiceTest extends PostgresTestSupport {
+
+    // a day no real data uses
+    private static final LocalDate DAY = LocalDate.of(2995, 3, 1);
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private SupplierReceiptRepository supplierReceiptRepository;
+    @Autowired
+    private ReconciliationAuditRepository auditRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ChargeMatchingService service;
+    private Customer customer;
+    private Supplier supplier;
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        service = new ChargeMatchingService(paymentRepository, orderRepository, supplierReceiptRepository,
+                auditRepository, new ReconciliationProperties(), new TransactionTemplate(transactionManager));
+        customer = entityManager.persist(TestData.customer());
+        supplier = entityManager.persist(TestData.supplier("Matching Supplier"));
+        product = entityManager.persist(TestData.product(supplier));
+    }
+
+    @Test
+    void proposalsAreStoredOnTheChargesAuditRows() {
+        // expected supplier cost 2 x 5.00
+        Order order = order("25.00", DAY.atTime(10, 0), 2);
+        Order other = order("40.00", DAY.atTime(9, 0), 1);
+        order("25.00", DAY.minusDays(5).atTime(10, 0), 1);
+        SupplierReceipt receipt = receipt("10.20", DAY);
+        receipt("13.00", DAY);
+        Payment closest = charge("25.00", DAY.atTime(10, 5));
+        Payment later = charge("25.00", DAY.atTime(10, 30));
+        Payment withinTolerance = charge("40.01", DAY.atTime(12, 0));
+        entityManager.flush();
+        entityManager.clear();
+
+        List<ChargeMatchingService.MatchProposal> proposals = service.proposeMatches(DAY);
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(proposals).extracting(ChargeMatchingService.MatchProposal::paymentId)
+                .containsExactly(closest.getId(), withinTolerance.getId());
+
+        ReconciliationAudit matched = auditOf(closest);
+        assertThat(matched.getMatchedOrderId()).isEqualTo(order.getId());
+        // exact amount, 5 minutes apart in a 48 hour window
+        assertThat(matched.getMatchConfidence()).isEqualByComparingTo("0.999");
+        assertThat(matched.getSupplierReceipt().getId()).isEqualTo(receipt.getId());
+        assertThat(matched.getSupplierAmount()).isEqualByComparingTo("10.20");
+        assertThat(matched.getDiscrepancyAmount()).isEqualByComparingTo("14.80");
+
+        // the order went to the closer charge and the other candidate is outside the time window
+        ReconciliationAudit unmatched = auditOf(later);
+        assertThat(unmatched.getMatchedOrderId()).isNull();
+        assertThat(unmatched.getMatchConfidence()).isNull();
+
+        ReconciliationAudit cent = auditOf(withinTolerance);
+        assertThat(cent.getMatchedOrderId()).isEqualTo(other.getId());
+        assertThat(cent.getSupplierReceipt()).isNull();
+    }
+
+    @Test
+    void scoreIsOneForAnExactMatchAndLowestAtTheEdges() {
+        assertThat(ChargeMatchingService.score(0, 100, 0, 3_600)).isEqualTo(1.0);
+        // at the tolerance and window edges both parts are almost, but not quite, zero
+        assertThat(ChargeMatchingService.score(100, 100, 3_600, 3_600)).isCloseTo(0.6 / 101 + 0.4 / 3_601, within(1e-12));
+        assertThat(ChargeMatchingService.score(100, 100, 0, 3_600)).isCloseTo(0.6 / 101 + 0.4, within(1e-12));
+        assertThat(ChargeMatchingService.score(0, 100, 3_600, 3_600)).isCloseTo(0.6 + 0.4 / 3_601, within(1e-12));
+        // a zero tolerance still scores an exact amount fully
+        assertThat(ChargeMatchingService.score(0, 0, 0, 0)).isEqualTo(1.0);
+    }
+
+    @Test
+    void assignmentIsOneToOneBestScoreFirst() {
+        List<ChargeMatchingService.Scored> candidates = new ArrayList<>(List.of(
+                new ChargeMatchingService.Scored(0, 0, 0.9),
+                new ChargeMatchingService.Scored(1, 0, 0.95),
+                new ChargeMatchingService.Scored(0, 1, 0.7),
+                new ChargeMatchingService.Scored(2, 1, 0.6),
+                new ChargeMatchingService.Scored(2, 0, 0.99)));
+
+        Map<Integer, ChargeMatchingService.Scored> assigned = ChargeMatchingService.assign(candidates);
+
+        // charge 2 takes candidate 0, so charge 1 has nothing left and charge 0 falls back to candidate 1
+        assertThat(assigned).hasSize(2);
+        assertThat(assigned.get(2).candidate()).isZero();
+        assertThat(assigned.get(0).candidate()).isEqualTo(1);
+        assertThat(assigned).doesNotContainKey(1);
+    }
+
+    private Order order(String total, LocalDateTime createdAt, int quantity) {
+        Order order = TestData.order(customer, new BigDecimal(total));
+        TestData.item(order, product, supplier, quantity);
+        entityManager.persist(order);
+        entityManager.flush();
+        jdbcTemplate.update("update orders set created_at = ? where id = ?", createdAt, order.getId());
+        return order;
+    }
+
+    private SupplierReceipt receipt(String amount, LocalDate date) {
+        SupplierReceipt receipt = new SupplierReceipt();
+        receipt.setSupplier(supplier);
+        receipt.setReceiptNumber(TestData.unique("R"));
+        receipt.setAmount(new BigDecimal(amount));
+        receipt.setS3Url("s3://receipts/test.pdf");
+        receipt.setReceiptDate(date);
+        return entityManager.persist(receipt);
+    }
+
+    // an unattached charge and the audit row reconciliation wrote for it
+    private Payment charge(String amount, LocalDateTime createdAt) {
+        Payment charge = entityManager.persist(TestData.charge(null, new BigDecimal(amount)));
+        entityManager.flush();
+        jdbcTemplate.update("update payments set created_at = ? where id = ?", createdAt, charge.getId());
+        ReconciliationAudit audit = new ReconciliationAudit();
+        audit.setStripeChargeId(charge.getStripeChargeId());
+        audit.setPaymentId(charge.getId());
+        audit.setReconciliationDate(DAY);
+        audit.setCustomerAmount(charge.getAmount());
+        entityManager.persist(audit);
+        return charge;
+    }
+
+    private ReconciliationAudit auditOf(Payment charge) {
+        return auditRepository.findAllByReconciliationDateAndPaymentIdIn(DAY, List.of(charge.getId())).get(0);
+    }
+}
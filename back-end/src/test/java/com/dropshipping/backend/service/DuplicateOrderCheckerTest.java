@@ -0,0 +1,85 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.DuplicateCheckProperties;
+import com.dropshipping.backend.repository.OrderItemRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DuplicateOrderCheckerTest {
+
+    private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+    private final OrderItemRepository orderItems = mock(OrderItemRepository.class);
+    private DuplicateOrderChecker checker;
+
+    @BeforeEach
+    void setUp() {
+        DuplicateCheckProperties properties = new DuplicateCheckProperties();
+        properties.getFallback().setFailureThreshold(1_000);
+        properties.getFallback().setMaxLocalEntries(1);
+        properties.getBloom().setEnabled(true);
+        properties.getBloom().setExpectedInsertions(1_000);
+        checker = new DuplicateOrderChecker(redis, orderItems, properties, new SimpleMeterRegistry());
+        when(redis.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        checker.shutdown();
+    }
+
+    @Test
+    void fallbackRejectsKeysHeldLocally() {
+        assertThat(checker.isDuplicateAndLock(1L, 10L, 100L)).isFalse();
+        assertThat(checker.isDuplicateAndLock(1L, 10L, 100L)).isTrue();
+    }
+
+    @Test
+    void bloomHitIsConfirmedAgainstStoredOrders() {
+        checker.isDuplicateAndLock(1L, 10L, 100L);
+        checker.isDuplicateAndLock(1L, 11L, 100L); // evicts the first key from the one-entry store
+
+        when(orderItems.existsRecentItem(eq(1L), eq(10L), eq(100L), any(LocalDateTime.class))).thenReturn(true);
+        assertThat(checker.isDuplicateAndLock(1L, 10L, 100L)).isTrue();
+    }
+
+    @Test
+    void bloomHitOfARolledBackOrderIsNotADuplicate() {
+        checker.isDuplicateAndLock(1L, 10L, 100L);
+        checker.isDuplicateAndLock(1L, 11L, 100L);
+
+        when(orderItems.existsRecentItem(eq(1L), eq(10L), eq(100L), any(LocalDateTime.class))).thenReturn(false);
+        assertThat(checker.isDuplicateAndLock(1L, 10L, 100L)).isFalse();
+    }
+
+    @Test
+    void releaseDuringOutageIsRetriedWithTheLockToken() {
+        checker.isDuplicateAndLockAll(1L, List.of(new DuplicateOrderChecker.ItemKey(10L, 100L)));
+        when(redis.delete(anyList())).thenThrow(new RedisConnectionFailureException("down"));
+        checker.clearLocks(1L, List.of(new DuplicateOrderChecker.ItemKey(10L, 100L)));
+
+        // Redis is back: the orphaned key is deleted only if it still carries the token
+        reset(redis);
+        when(redis.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(1L);
+        checker.reconcileLocalLocks();
+
+        verify(redis).execute(any(RedisScript.class), eq(List.of("dup:1:10:100")), any(Object[].class));
+    }
+}
@@ -0,0 +1,228 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.DashboardProperties;
+import com.dropshipping.backend.entity.Customer;
+import com.dropshipping.backend.entity.Order;
+import com.dropshipping.backend.entity.OrderItem;
+import com.dropshipping.backend.entity.Product;
+import com.dropshipping.backend.entity.Supplier;
+import com.dropshipping.backend.enums.OrderStatus;
+import com.dropshipping.backend.enums.ShipmentStatus;
+import com.dropshipping.backend.repository.CustomerRepository;
+import com.dropshipping.backend.repository.OrderRepository;
+import com.dropshipping.backend.repository.ProductRepository;
+import com.dropshipping.backend.repository.SupplierRepository;
+import com.dropshipping.backend.support.PostgresTestSupport;
+import com.dropshipping.backend.support.TestData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FulfillmentDashboardCountersTest extends PostgresTestSupport {
+
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private SupplierRepository supplierRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final AtomicReference<LocalDate> today = new AtomicReference<>(LocalDate.now());
+    private final List<Long> orderIds = new ArrayList<>();
+    private TransactionTemplate transactionTemplate;
+    private FulfillmentDashboardCounters counters;
+    private Customer customer;
+    private Supplier supplier;
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        counters = newCounters(orderRepository, true);
+        customer = customerRepository.save(TestData.customer());
+        supplier = supplierRepository.save(TestData.supplier("Dashboard Supplier"));
+        product = productRepository.save(TestData.product(supplier));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        for (Long orderId : orderIds) {
+            jdbcTemplate.update("delete from order_items where order_id = ?", orderId);
+            jdbcTemplate.update("delete from orders where id = ?", orderId);
+        }
+        jdbcTemplate.update("delete from products where id = ?", product.getId());
+        jdbcTemplate.update("delete from suppliers where id = ?", supplier.getId());
+        jdbcTemplate.update("delete from customers where id = ?", customer.getId());
+    }
+
+    @Test
+    void committedTransitionsKeepTheCountsEqualToTheAggregate() {
+        counters.resync();
+        Map<String, Object> base = counters.snapshot();
+
+        Long orderId = transactionTemplate.execute(tx -> createOrder(true));
+
+        Map<String, Object> created = counters.snapshot();
+        assertThat(created).isEqualTo(aggregate());
+        assertThat(created.get("awaitingSupplierPurchase")).isEqualTo(count(base, "awaitingSupplierPurchase") + 1);
+        assertThat(created.get("requiresManualReview")).isEqualTo(count(base, "requiresManualReview") + 1);
+        assertThat(statusCount(created, OrderStatus.PAYMENT_RECEIVED)).isEqualTo(statusCount(base, OrderStatus.PAYMENT_RECEIVED) + 1);
+
+        transactionTemplate.executeWithoutResult(tx -> {
+            Order order = orderRepository.findById(orderId).orElseThrow();
+            OrderStatus previousStatus = order.getStatus();
+            Boolean previousReview = order.getRequiresReview();
+            order.setStatus(OrderStatus.SHIPPED);
+            order.setRequiresReview(false);
+            OrderItem item = order.getOrderItems().get(0);
+            item.setShipmentStatus(ShipmentStatus.DELAYED);
+            orderRepository.save(order);
+            counters.recordOrderChanged(previousStatus, previousReview, order);
+            counters.recordShipmentChanged(ShipmentStatus.PENDING, ShipmentStatus.DELAYED);
+        });
+
+        Map<String, Object> changed = counters.snapshot();
+        assertThat(changed).isEqualTo(aggregate());
+        assertThat(changed.get("awaitingSupplierPurchase")).isEqualTo(base.get("awaitingSupplierPurchase"));
+        assertThat(changed.get("delayedShipments")).isEqualTo(count(base, "delayedShipments") + 1);
+        assertThat(changed.get("requiresManualReview")).isEqualTo(base.get("requiresManualReview"));
+        assertThat(statusCount(changed, OrderStatus.PAYMENT_RECEIVED)).isEqualTo(statusCount(base, OrderStatus.PAYMENT_RECEIVED));
+        assertThat(statusCount(changed, OrderStatus.SHIPPED)).isEqualTo(statusCount(base, OrderStatus.SHIPPED) + 1);
+    }
+
+    @Test
+    void rolledBackTransactionLeavesTheCountsUnchanged() {
+        counters.resync();
+        Map<String, Object> base = counters.snapshot();
+
+        transactionTemplate.executeWithoutResult(tx -> {
+            createOrder(true);
+            counters.recordReconciliations(2);
+            tx.setRollbackOnly();
+        });
+
+        assertThat(counters.snapshot()).isEqualTo(base);
+    }
+
+    @Test
+    void reconciliationsTodayStartOverOnANewDay() {
+        counters.resync();
+        long base = count(counters.snapshot(), "reconciliationsToday");
+
+        counters.recordReconciliations(3);
+        assertThat(counters.snapshot().get("reconciliationsToday")).isEqualTo(base + 3);
+
+        today.set(today.get().plusDays(1));
+        assertThat(counters.snapshot().get("reconciliationsToday")).isEqualTo(0L);
+
+        counters.recordReconciliations(2);
+        assertThat(counters.snapshot().get("reconciliationsToday")).isEqualTo(2L);
+    }
+
+    @Test
+    void resyncCountsTransitionsCommittedWhileItRanOnce() {
+        AtomicBoolean interleave = new AtomicBoolean();
+        TransactionTemplate concurrent = new TransactionTemplate(transactionManager);
+        concurrent.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        OrderRepository repository = mock(OrderRepository.class, delegatesTo(orderRepository));
+        // one order commits just before the aggregate's snapshot is taken (the aggregate includes it), one
+        // right after (it does not); both deltas arrive while the re-sync is running
+        doAnswer(inv -> {
+            if (interleave.get()) {
+                concurrent.execute(tx -> createOrder(false));
+            }
+            return orderRepository.currentSnapshot();
+        }).when(repository).currentSnapshot();
+        doAnswer(inv -> {
+            if (interleave.get()) {
+                concurrent.execute(tx -> createOrder(false));
+            }
+            return orderRepository.countForDashboard(inv.getArgument(0), inv.getArgument(1));
+        }).when(repository).countForDashboard(any(LocalDateTime.class), any(LocalDateTime.class));
+        counters = newCounters(repository, true);
+        counters.resync();
+        long base = statusCount(counters.snapshot(), OrderStatus.PAYMENT_RECEIVED);
+
+        interleave.set(true);
+        counters.resync();
+        interleave.set(false);
+
+        Map<String, Object> resynced = counters.snapshot();
+        assertThat(statusCount(resynced, OrderStatus.PAYMENT_RECEIVED)).isEqualTo(base + 2);
+        assertThat(resynced).isEqualTo(aggregate());
+    }
+
+    @Test
+    void snapshotParsesTheTextFormOfAPostgresSnapshot() {
+        FulfillmentDashboardCounters.TxSnapshot snapshot = FulfillmentDashboardCounters.TxSnapshot.parse("100:105:101,103");
+
+        assertThat(snapshot.includes(99L)).isTrue();
+        assertThat(snapshot.includes(100L)).isTrue();
+        assertThat(snapshot.includes(101L)).isFalse();
+        assertThat(snapshot.includes(102L)).isTrue();
+        assertThat(snapshot.includes(105L)).isFalse();
+        assertThat(snapshot.includes(null)).isFalse();
+        assertThat(FulfillmentDashboardCounters.TxSnapshot.parse("7:7:").includes(6L)).isTrue();
+    }
+
+    private Long createOrder(boolean requiresReview) {
+        Order order = TestData.order(customer, new BigDecimal("20.00"));
+        order.setRequiresReview(requiresReview);
+        TestData.item(order, product, supplier, 1);
+        Order saved = orderRepository.save(order);
+        synchronized (orderIds) {
+            orderIds.add(saved.getId());
+        }
+        counters.recordOrderCreated(saved);
+        return saved.getId();
+    }
+
+    private FulfillmentDashboardCounters newCounters(OrderRepository repository, boolean enabled) {
+        DashboardProperties properties = new DashboardProperties();
+        properties.getCounters().setEnabled(enabled);
+        return new FulfillmentDashboardCounters(repository, properties, transactionManager, today::get);
+    }
+
+    // the aggregate query's answer, as served with the counters disabled
+    private Map<String, Object> aggregate() {
+        return newCounters(orderRepository, false).snapshot();
+    }
+
+    private static long count(Map<String, Object> snapshot, String name) {
+        return (Long) snapshot.get(name);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long statusCount(Map<String, Object> snapshot, OrderStatus status) {
+        return ((Map<String, Long>) snapshot.get("orderStatusCounts")).get(status.name());
+    }
+}
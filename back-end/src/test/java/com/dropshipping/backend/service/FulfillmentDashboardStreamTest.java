@@ -0,0 +1,294 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.DashboardProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FulfillmentDashboardStreamTest {
+
+    private static final Pattern EVENT_NAME = Pattern.compile("event:(\\w+)");
+
+    private final FulfillmentDashboardCounters counters = mock(FulfillmentDashboardCounters.class);
+    private final AtomicReference<Runnable> changeListener = new AtomicReference<>();
+    private final AtomicLong delayed = new AtomicLong();
+    private final DashboardProperties properties = new DashboardProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private FulfillmentDashboardStream stream;
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(inv -> {
+            changeListener.set(inv.getArgument(0));
+            return null;
+        }).when(counters).addChangeListener(any());
+        when(counters.snapshot()).thenAnswer(inv -> dashboard(delayed.get()));
+        properties.getStream().setMaxUpdatesPerSecond(10);
+    }
+
+    @AfterEach
+    void shutdown() {
+        if (stream != null) {
+            stream.shutdown();
+        }
+    }
+
+    @Test
+    void snapshotsAreComputedOncePerTickWhateverTheNumberOfClients() throws InterruptedException {
+        stream = newStream();
+        // the first tick computes the initial snapshot the clients start from
+        verify(counters, timeout(2_000)).snapshot();
+        List<RecordingEmitter> clients = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            clients.add(subscribe());
+        }
+        clearInvocations(counters);
+
+        change(7);
+
+        await(() -> clients.stream().allMatch(c -> c.deltas().size() == 1));
+        verify(counters, times(1)).snapshot();
+        for (RecordingEmitter client : clients) {
+            assertThat(client.deltas().get(0)).isEqualTo(Map.of("delayedShipments", 7L, "orderStatusCounts", Map.of("SHIPPED", 7L)));
+        }
+    }
+
+    @Test
+    void clientGetsTheSnapshotFirstAndThenOnlyChangedValues() throws InterruptedException {
+        stream = newStream();
+        verify(counters, timeout(2_000)).snapshot();
+        RecordingEmitter client = subscribe();
+
+        change(1);
+        await(() -> client.deltas().size() == 1);
+
+        assertThat(client.names().get(0)).isEqualTo("snapshot");
+        assertThat(client.events.get(0).data()).isEqualTo(dashboard(0));
+        assertThat(client.names().subList(1, client.names().size())).containsOnly("delta");
+        // unchanged values are left out of the delta
+        assertThat(client.deltas().get(0)).doesNotContainKey("awaitingSupplierPurchase");
+    }
+
+    @Test
+    void updatesAreLimitedToMaxUpdatesPerSecondPerClient() throws InterruptedException {
+        stream = newStream();
+        verify(counters, timeout(2_000)).snapshot();
+        RecordingEmitter client = subscribe();
+
+        long startedAt = System.nanoTime();
+        for (int i = 1; i <= 200; i++) {
+            change(i);
+            Thread.sleep(5);
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+        await(() -> !client.deltas().isEmpty()
+                && Long.valueOf(200).equals(client.deltas().get(client.deltas().size() - 1).get("delayedShipments")));
+        // 10 per second, plus one for a tick right at the end
+        assertThat(client.deltas().size()).isLessThanOrEqualTo((int) (elapsedMillis / 100) + 2);
+    }
+
+    @Test
+    void slowClientGetsOneMergedDeltaInsteadOfABacklog() throws InterruptedException {
+        stream = newStream();
+        verify(counters, timeout(2_000)).snapshot();
+        RecordingEmitter slow = subscribe();
+        CountDownLatch release = new CountDownLatch(1);
+        slow.blockDeltas = release;
+
+        change(1);
+        await(() -> slow.blocked.get() == 1);
+        // several ticks while the first delta is still being written
+        change(2);
+        Thread.sleep(300);
+        change(3);
+        Thread.sleep(300);
+        release.countDown();
+
+        await(() -> slow.deltas().size() == 2);
+        Thread.sleep(300);
+        assertThat(slow.deltas()).hasSize(2);
+        assertThat(slow.deltas().get(1).get("delayedShipments")).isEqualTo(3L);
+    }
+
+    @Test
+    void failedClientIsDroppedAndFreesItsSlot() throws InterruptedException {
+        properties.getStream().setMaxClients(2);
+        stream = newStream();
+        verify(counters, timeout(2_000)).snapshot();
+        RecordingEmitter failing = subscribe();
+        RecordingEmitter healthy = subscribe();
+        assertThatThrownBy(stream::subscribe).isInstanceOf(IllegalStateException.class);
+        failing.failDeltas = true;
+
+        change(1);
+
+        await(() -> clientGauge() == 1);
+        await(() -> healthy.deltas().size() == 1);
+        int failedSends = failing.sends.get();
+        change(2);
+        await(() -> healthy.deltas().size() == 2);
+        assertThat(failing.sends.get()).isEqualTo(failedSends);
+        // the dropped client's slot can be taken again
+        subscribe();
+        assertThat(clientGauge()).isEqualTo(2);
+    }
+
+    @Test
+    void concurrentSubscribesNeverExceedMaxClients() throws Exception {
+        properties.getStream().setMaxClients(5);
+        stream = newStream();
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> attempts = new ArrayList<>();
+        try {
+            for (int i = 0; i < 50; i++) {
+                attempts.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        stream.subscribe();
+                    } catch (IllegalStateException e) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> attempt : attempts) {
+                attempt.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(rejected.get()).isEqualTo(45);
+        assertThat(clientGauge()).isEqualTo(5);
+    }
+
+    private FulfillmentDashboardStream newStream() {
+        return new FulfillmentDashboardStream(counters, properties, meterRegistry, RecordingEmitter::new);
+    }
+
+    private RecordingEmitter subscribe() {
+        return (RecordingEmitter) stream.subscribe();
+    }
+
+    private void change(long value) {
+        delayed.set(value);
+        changeListener.get().run();
+    }
+
+    private double clientGauge() {
+        return meterRegistry.get("dashboard.sse.clients").gauge().value();
+    }
+
+    private static Map<String, Object> dashboard(long delayed) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("awaitingSupplierPurchase", 4L);
+        m.put("delayedShipments", delayed);
+        m.put("orderStatusCounts", new LinkedHashMap<>(Map.of("SHIPPED", delayed, "CANCELLED", 1L)));
+        return m;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("timed out").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+
+    private record Event(String name, Object data) {}
+
+    /**
+     * Records what the stream sends instead of writing to a response.
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+        final List<Event> events = new CopyOnWriteArrayList<>();
+        final AtomicInteger sends = new AtomicInteger();
+        final AtomicInteger blocked = new AtomicInteger();
+        volatile CountDownLatch blockDeltas;
+        volatile boolean failDeltas;
+
+        RecordingEmitter(long timeout) {
+            super(timeout);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sends.incrementAndGet();
+            String name = null;
+            Object data = null;
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+                if (part.getData() instanceof String text) {
+                    Matcher m = EVENT_NAME.matcher(text);
+                    if (m.find()) {
+                        name = m.group(1);
+                    }
+                } else {
+                    data = part.getData();
+                }
+            }
+            if ("delta".equals(name)) {
+                if (failDeltas) {
+                    throw new IOException("client went away");
+                }
+                CountDownLatch latch = blockDeltas;
+                if (latch != null) {
+                    blocked.incrementAndGet();
+                    blockDeltas = null;
+                    try {
+                        latch.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+            if (name != null) {
+                events.add(new Event(name, data));
+            }
+        }
+
+        List<String> names() {
+            return events.stream().map(Event::name).toList();
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> deltas() {
+            return events.stream().filter(e -> "delta".equals(e.name())).map(e -> (Map<String, Object>) e.data()).toList();
+        }
+    }
+}
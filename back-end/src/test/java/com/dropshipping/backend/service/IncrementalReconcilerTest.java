@@ -0,0 +1,108 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.ReconciliationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IncrementalReconcilerTest {
+
+    private static final long BAD_ORDER = 13L;
+
+    private final TransactionReconciliationService reconciliationService = mock(TransactionReconciliationService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // order ids of every recompute attempt, one list per transaction
+    private final List<List<Long>> attempts = new CopyOnWriteArrayList<>();
+
+    private IncrementalReconciler reconciler;
+
+    @AfterEach
+    void stop() {
+        reconciler.shutdown();
+    }
+
+    @Test
+    void failingOrderIsIsolatedRetriedWithBackoffAndDropped() throws Exception {
+        reconciler = reconciler(3, Duration.ofMillis(20));
+
+        reconciler.receiptRecorded(1L);
+        reconciler.receiptRecorded(BAD_ORDER);
+        reconciler.receiptRecorded(2L);
+        await(() -> counter("reconciliation.incremental.dropped") == 1);
+        Thread.sleep(300);
+
+        // a failed batch is split, so the other orders are reconciled once, without waiting for the bad one
+        assertThat(attempts).filteredOn(ids -> ids.contains(1L) && !ids.contains(BAD_ORDER)).hasSize(1);
+        assertThat(attempts).filteredOn(ids -> ids.contains(2L) && !ids.contains(BAD_ORDER)).hasSize(1);
+        // the bad order ran on its own until max-attempts, then was dropped instead of re-queued forever
+        assertThat(attempts).filteredOn(ids -> ids.equals(List.of(BAD_ORDER))).hasSize(3);
+        assertThat(gauge("reconciliation.incremental.pending")).isZero();
+    }
+
+    @Test
+    void eventsForARetryingOrderDoNotBringTheRetryForward() throws Exception {
+        reconciler = reconciler(2, Duration.ofSeconds(2));
+        reconciler.receiptRecorded(BAD_ORDER);
+        await(() -> attempts.size() == 1);
+
+        // the retry waits at least half of the 2s initial backoff, however many events arrive
+        for (int i = 0; i < 10; i++) {
+            reconciler.receiptRecorded(BAD_ORDER);
+            Thread.sleep(50);
+        }
+
+        assertThat(attempts).hasSize(1);
+        assertThat(gauge("reconciliation.incremental.pending")).isEqualTo(1);
+    }
+
+    private IncrementalReconciler reconciler(int maxAttempts, Duration initialBackoff) {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(reconciliationService.reconcileOrdersAndPayments(anyCollection(), anyCollection())).thenAnswer(inv -> {
+            Collection<Long> orderIds = inv.getArgument(0);
+            attempts.add(List.copyOf(orderIds));
+            if (orderIds.contains(BAD_ORDER)) {
+                throw new IllegalStateException("bad order");
+            }
+            return orderIds.size();
+        });
+        ReconciliationProperties properties = new ReconciliationProperties();
+        ReconciliationProperties.Incremental incremental = properties.getIncremental();
+        incremental.setDebounce(Duration.ofMillis(100));
+        incremental.setMaxAttempts(maxAttempts);
+        incremental.setInitialBackoff(initialBackoff);
+        return new IncrementalReconciler(reconciliationService, properties,
+                new TransactionTemplate(transactionManager), meterRegistry);
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("timed out").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.dropshipping.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalDuplicateStoreTest {
+
+    private static final long TTL = 60_000;
+
+    @Test
+    void lockIsAllOrNothing() {
+        LocalDuplicateStore store = new LocalDuplicateStore(100, null);
+
+        assertThat(store.tryLockAll(List.of("a", "b"), TTL, 0, "t1")).isZero();
+        assertThat(store.tryLockAll(List.of("c", "b"), TTL, 1, "t2")).isEqualTo(2);
+        assertThat(store.tryLockAll(List.of("c"), TTL, 2, "t3")).isZero();
+        assertThat(store.size()).isEqualTo(3);
+    }
+
+    @Test
+    void expiredKeysAreNotHeld() {
+        LocalDuplicateStore store = new LocalDuplicateStore(100, null);
+        store.tryLockAll(List.of("a"), TTL, 0, "t1");
+
+        assertThat(store.tryLockAll(List.of("a"), TTL, TTL + 1, "t2")).isZero();
+    }
+
+    @Test
+    void bloomHitsAreReportedInsteadOfHeld() {
+        LocalDuplicateStore store = new LocalDuplicateStore(1, new RotatingBloomFilter(1000, 0.001, TTL));
+        store.tryLockAll(List.of("a"), TTL, 0, "t1");
+        store.tryLockAll(List.of("b"), TTL, 1, "t2"); // evicts "a"
+
+        assertThat(store.possiblyHeld(List.of("a", "b", "c"), 2)).containsExactly("a");
+        assertThat(store.tryLockAll(List.of("a"), TTL, 3, "t3")).isZero();
+    }
+
+    @Test
+    void releaseReturnsTokensAndStopsSync() {
+        LocalDuplicateStore store = new LocalDuplicateStore(100, null);
+        store.tryLockAll(List.of("a", "b"), TTL, 0, "t1");
+        store.remember(List.of("c"), TTL, 0, "t2");
+
+        assertThat(store.release(List.of("a", "c", "x"))).containsExactly(Map.entry("a", "t1"), Map.entry("c", "t2"));
+        assertThat(store.drainUnsynced(10, 1)).containsOnlyKeys("b");
+    }
+
+    @Test
+    void drainUnsyncedCarriesTokenAndRemainingTtl() {
+        LocalDuplicateStore store = new LocalDuplicateStore(100, null);
+        store.tryLockAll(List.of("a"), TTL, 0, "t1");
+
+        Map<String, LocalDuplicateStore.Pending> drained = store.drainUnsynced(10, 1_000);
+
+        assertThat(drained).containsExactly(Map.entry("a", new LocalDuplicateStore.Pending("t1", TTL - 1_000)));
+        assertThat(store.unsyncedCount()).isZero();
+        store.markUnsynced(drained);
+        assertThat(store.unsyncedCount()).isOne();
+    }
+
+    @Test
+    void orphansAreDrainedOnceAndClearedByANewLock() {
+        LocalDuplicateStore store = new LocalDuplicateStore(100, null);
+        store.orphan(Map.of("a", "t1", "b", "t1"));
+        store.tryLockAll(List.of("b"), TTL, 0, "t2");
+
+        assertThat(store.drainOrphaned(10)).containsExactly(Map.entry("a", "t1"));
+        assertThat(store.orphanedCount()).isZero();
+    }
+}
@@ -0,0 +1,115 @@
+package com.dropshipping.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OrderNumberGeneratorTest {
+
+    private static final int THREADS = 16;
+    private static final int IDS_PER_THREAD = 100_000;
+
+    @Test
+    void concurrentIdsAreUniqueAndIncreasingPerThread() throws Exception {
+        AtomicLong reservations = new AtomicLong();
+        OrderNumberGenerator generator = new OrderNumberGenerator("ORD-", new OrderNumberNodeLease.Lease(7, 0), 1_000, () -> 0,
+                until -> reservations.incrementAndGet() > 0);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    long previous = Long.MIN_VALUE;
+                    boolean increasing = true;
+                    for (int i = 0; i < IDS_PER_THREAD; i++) {
+                        long id = generator.nextId();
+                        increasing &= id > previous;
+                        previous = id;
+                        ids.add(id);
+                    }
+                    return increasing;
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> result : results) {
+                assertThat(result.get()).isTrue();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(ids).hasSize(THREADS * IDS_PER_THREAD);
+        assertThat(ids).allMatch(id -> ((id >>> 12) & 1023) == 7);
+        // one database write per reservation window, not per id
+        assertThat(reservations.get()).isLessThan(100);
+    }
+
+    @Test
+    void continuesAfterPreviousReservationWhenClockIsBehind() {
+        long previousGeneration = new OrderNumberGenerator("ORD-", new OrderNumberNodeLease.Lease(1, 0), 10, () -> 0, until -> true).nextId();
+        long previousTimestamp = previousGeneration >>> 22;
+        // the previous holder reserved an hour ahead, i.e. the restarted instance's clock is an hour behind
+        long reservedUntil = previousTimestamp + 3_600_000;
+
+        OrderNumberGenerator restarted = new OrderNumberGenerator("ORD-", new OrderNumberNodeLease.Lease(1, reservedUntil), 10, () -> 0, until -> true);
+
+        assertThat(restarted.nextId() >>> 22).isGreaterThan(reservedUntil);
+    }
+
+    @Test
+    void refusesIdsBeyondReservationOnceLeaseIsLost() {
+        OrderNumberGenerator generator = new OrderNumberGenerator("ORD-", new OrderNumberNodeLease.Lease(3, 0), 10, () -> 0, until -> false);
+
+        assertThatThrownBy(generator::next).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void backgroundReservationAheadOfTheClockNeedsNoWrite() {
+        AtomicLong reservations = new AtomicLong();
+        long reservedAhead = OrderNumberGenerator.currentTimestamp() + 60_000;
+        OrderNumberGenerator generator = new OrderNumberGenerator("ORD-", new OrderNumberNodeLease.Lease(2, 0), 10,
+                () -> reservedAhead, until -> reservations.incrementAndGet() > 0);
+
+        for (int i = 0; i < 100_000; i++) {
+            generator.nextId();
+        }
+
+        assertThat(reservations.get()).isZero();
+    }
+
+    @Test
+    void lapsedBackgroundReservationIsExtendedInLine() {
+        AtomicLong reserved = new AtomicLong(OrderNumberGenerator.currentTimestamp() - 1_000);
+        OrderNumberGenerator generator = new OrderNumberGenerator("ORD-", new OrderNumberNodeLease.Lease(2, 0), 10_000,
+                reserved::get, until -> {
+                    reserved.set(until);
+                    return true;
+                });
+
+        long startedAt = OrderNumberGenerator.currentTimestamp();
+        long id = generator.nextId();
+
+        assertThat(reserved.get()).isGreaterThanOrEqualTo(startedAt + 10_000);
+        assertThat(id >>> 22).isLessThanOrEqualTo(reserved.get());
+    }
+
+    @Test
+    void rejectsNodeIdOutOfRange() {
+        assertThatThrownBy(() -> new OrderNumberGenerator("ORD-", new OrderNumberNodeLease.Lease(1024, 0), 10, () -> 0, until -> true))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
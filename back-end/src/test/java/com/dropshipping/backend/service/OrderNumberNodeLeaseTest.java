@@ -0,0 +1,91 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.OrderProperties;
+import com.dropshipping.backend.repository.OrderNumberNodeRepository;
+import com.dropshipping.backend.support.PostgresTestSupport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderNumberNodeLeaseTest extends PostgresTestSupport {
+
+    @Autowired
+    private OrderNumberNodeRepository repository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<OrderNumberNodeLease> leases = new ArrayList<>();
+
+    @AfterEach
+    void releaseAll() {
+        leases.forEach(OrderNumberNodeLease::release);
+        repository.findAll().forEach(node -> {
+            node.setReservedUntil(0L);
+            repository.save(node);
+        });
+    }
+
+    @Test
+    void instancesLeaseDistinctNodeIds() {
+        int first = newLease(null).acquire().nodeId();
+        int second = newLease(null).acquire().nodeId();
+
+        assertThat(first).isNotEqualTo(second);
+    }
+
+    @Test
+    void configuredNodeIdHeldByAnotherInstanceFailsStartup() {
+        newLease(42).acquire();
+
+        assertThatThrownBy(() -> newLease(42).acquire())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("42");
+    }
+
+    @Test
+    void nextHolderContinuesFromPersistedReservation() {
+        long farAhead = OrderNumberGenerator.currentTimestamp() + 3_600_000;
+        OrderNumberNodeLease first = newLease(5);
+        first.acquire();
+        assertThat(first.reserve(farAhead)).isTrue();
+        first.release();
+
+        OrderNumberNodeLease.Lease taken = newLease(5).acquire();
+
+        assertThat(taken.reservedUntil()).isEqualTo(farAhead);
+        // the previous holder can no longer reserve ids for the node id
+        assertThat(first.reserve(farAhead + 1)).isFalse();
+    }
+
+    @Test
+    void reservationIsKeptAheadOfTheClockWithoutOrderRequests() {
+        OrderNumberNodeLease lease = newLease(6);
+        long acquiredAt = OrderNumberGenerator.currentTimestamp();
+        lease.acquire();
+        assertThat(lease.reservedUntil()).isGreaterThanOrEqualTo(acquiredAt + 10_000);
+
+        long renewedAt = OrderNumberGenerator.currentTimestamp();
+        lease.renew();
+
+        assertThat(lease.reservedUntil()).isGreaterThanOrEqualTo(renewedAt + 10_000);
+        assertThat(repository.findById(6).orElseThrow().getReservedUntil()).isEqualTo(lease.reservedUntil());
+    }
+
+    private OrderNumberNodeLease newLease(Integer nodeId) {
+        OrderProperties properties = new OrderProperties();
+        properties.getNumber().setNodeId(nodeId);
+        OrderNumberNodeLease lease = new OrderNumberNodeLease(repository, transactionManager, properties);
+        leases.add(lease);
+        return lease;
+    }
+}
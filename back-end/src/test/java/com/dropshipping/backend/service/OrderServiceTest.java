@@ -0,0 +1,228 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.cache.CacheNames;
+import com.dropshipping.backend.cache.CachedLookups;
+import com.dropshipping.backend.config.OrderProperties;
+import com.dropshipping.backend.dto.CreateOrderItemRequest;
+import com.dropshipping.backend.dto.CreateOrderRequest;
+import com.dropshipping.backend.entity.Customer;
+import com.dropshipping.backend.entity.Order;
+import com.dropshipping.backend.entity.Product;
+import com.dropshipping.backend.entity.Supplier;
+import com.dropshipping.backend.repository.CustomerRepository;
+import com.dropshipping.backend.repository.OrderItemRepository;
+import com.dropshipping.backend.repository.OrderRepository;
+import com.dropshipping.backend.repository.PaymentRepository;
+import com.dropshipping.backend.repository.ProductRepository;
+import com.dropshipping.backend.repository.SupplierRepository;
+import com.dropshipping.backend.support.PostgresTestSupport;
+import com.dropshipping.backend.support.TestData;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderServiceTest extends PostgresTestSupport {
+
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+    @Autowired
+    private PaymentRepository paymentRepository;
+    @Autowired
+    private SupplierRepository supplierRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final DuplicateOrderChecker duplicateOrderChecker = mock(DuplicateOrderChecker.class);
+    private final CachedLookups cachedLookups = mock(CachedLookups.class);
+    private final ProfitCalculatorService profitCalculatorService = mock(ProfitCalculatorService.class);
+    private final FulfillmentDashboardCounters dashboardCounters = mock(FulfillmentDashboardCounters.class);
+    // ids each reference type was loaded with, one entry per load
+    private final Map<String, List<Collection<Long>>> loads = new HashMap<>();
+    private TransactionTemplate transactionTemplate;
+    private OrderService service;
+    private Customer customer;
+    private Supplier supplier;
+    private Product product;
+    private Product duplicateProduct;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        customer = customerRepository.save(TestData.customer());
+        supplier = supplierRepository.save(TestData.supplier("Batch Supplier"));
+        product = productRepository.save(TestData.product(supplier));
+        duplicateProduct = productRepository.save(TestData.product(supplier));
+
+        // no cache in front of the loaders, so every lookup reaches the database
+        when(cachedLookups.getAll(anyString(), anyCollection(), any(), any())).thenAnswer(inv -> {
+            Collection<Long> ids = inv.getArgument(1);
+            loads.computeIfAbsent(inv.getArgument(0), name -> new ArrayList<>()).add(List.copyOf(ids));
+            Function<Collection<Long>, Collection<Object>> loader = inv.getArgument(2);
+            Function<Object, Long> idOf = inv.getArgument(3);
+            Map<Long, Object> found = new HashMap<>();
+            loader.apply(ids).forEach(entity -> found.put(idOf.apply(entity), entity));
+            return found;
+        });
+        when(duplicateOrderChecker.isDuplicateAndLockAll(anyLong(), anyList())).thenReturn(false);
+        when(duplicateOrderChecker.isDuplicateAndLockAll(eq(customer.getId()),
+                eq(List.of(new DuplicateOrderChecker.ItemKey(duplicateProduct.getId(), supplier.getId())))))
+                .thenReturn(true);
+
+        OrderProperties properties = new OrderProperties();
+        properties.getBatch().setChunkSize(2);
+        transactionTemplate = spy(new TransactionTemplate(transactionManager));
+        service = new OrderService(orderRepository, customerRepository, productRepository, orderItemRepository,
+                paymentRepository, supplierRepository, properties, duplicateOrderChecker,
+                mock(OrderNumberGenerator.class), cachedLookups, mock(AuditTrailService.class),
+                profitCalculatorService, new AuditSnapshotService(), transactionTemplate, dashboardCounters);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("delete from order_items where order_id in (select id from orders where customer_id = ?)", customer.getId());
+        jdbcTemplate.update("delete from orders where customer_id = ?", customer.getId());
+        jdbcTemplate.update("delete from products where supplier_id = ?", supplier.getId());
+        jdbcTemplate.update("delete from suppliers where id = ?", supplier.getId());
+        jdbcTemplate.update("delete from customers where id = ?", customer.getId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void mixedBatchCommitsValidOrdersInChunksAndReportsEveryFailureByIndex() {
+        Order existing = TestData.order(customer, new BigDecimal("10.00"));
+        TestData.item(existing, product, supplier, 1);
+        orderRepository.save(existing);
+        long missingId = Long.MAX_VALUE;
+
+        List<CreateOrderRequest> requests = List.of(
+                request(customer.getId(), item(product.getId(), null, 1)),
+                request(customer.getId()),
+                request(customer.getId(), item(product.getId(), supplier.getId(), 2)),
+                request(missingId, item(product.getId(), null, 1)),
+                request(customer.getId(), item(duplicateProduct.getId(), null, 1)),
+                request(customer.getId(), item(missingId, null, 1)),
+                // passes validation but its order number is taken, so it fails its chunk at flush
+                request(customer.getId(), item(product.getId(), null, 1)),
+                request(customer.getId(), item(product.getId(), null, 3)),
+                request(customer.getId(), item(product.getId(), null, 1)),
+                request(customer.getId(), item(product.getId(), null, 1)));
+        requests.get(6).setOrderNumber(existing.getOrderNumber());
+
+        List<OrderService.BatchOrderResult> results = service.createOrders(requests);
+
+        assertThat(results).extracting(OrderService.BatchOrderResult::index).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        assertThat(results).extracting(OrderService.BatchOrderResult::created)
+                .containsExactly(true, false, true, false, false, false, false, true, true, true);
+        assertThat(results.get(1).error()).isEqualTo("Order must contain at least one item");
+        assertThat(results.get(3).error()).isEqualTo("Customer not found");
+        assertThat(results.get(4).error()).startsWith("Duplicate order detected");
+        assertThat(results.get(5).error()).isEqualTo("Product not found: " + missingId);
+        assertThat(results.get(6).error()).contains("duplicate key");
+        assertThat(results.get(6).orderNumber()).isEqualTo(existing.getOrderNumber());
+        // a failure that got past validation releases the duplicate locks it took
+        verify(duplicateOrderChecker).clearLocks(customer.getId(),
+                List.of(new DuplicateOrderChecker.ItemKey(product.getId(), supplier.getId())));
+
+        // the created results point at committed rows, the existing order is untouched
+        List<Long> createdIds = results.stream().filter(OrderService.BatchOrderResult::created)
+                .map(OrderService.BatchOrderResult::orderId).toList();
+        assertThat(createdIds).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(jdbcTemplate.queryForList("select id from orders where customer_id = ? and id <> ?",
+                Long.class, customer.getId(), existing.getId())).containsExactlyInAnyOrderElementsOf(createdIds);
+        assertThat(jdbcTemplate.queryForObject("select net_amount from orders where id = ?", BigDecimal.class,
+                results.get(7).orderId())).isEqualByComparingTo("30.00");
+        assertThat(jdbcTemplate.queryForObject("select count(*) from order_items where order_id in (" +
+                String.join(",", createdIds.stream().map(String::valueOf).toList()) + ")", Long.class)).isEqualTo(5L);
+
+        // chunks [0, 2] and [8, 9] commit whole; [6, 7] rolls back and is retried one order per transaction
+        verify(transactionTemplate, times(5)).executeWithoutResult(any());
+        ArgumentCaptor<List<Order>> persisted = ArgumentCaptor.forClass(List.class);
+        verify(profitCalculatorService, times(3)).computeAndSaveForOrders(persisted.capture());
+        assertThat(persisted.getAllValues()).extracting(List::size).containsExactly(2, 1, 2);
+        verify(dashboardCounters, times(5)).recordOrderCreated(any());
+
+        // one load per reference type for the whole batch
+        assertThat(loads.get(CacheNames.CUSTOMERS)).hasSize(1);
+        assertThat(loads.get(CacheNames.CUSTOMERS).get(0)).containsExactlyInAnyOrder(customer.getId(), missingId);
+        assertThat(loads.get(CacheNames.PRODUCTS)).hasSize(1);
+        assertThat(loads.get(CacheNames.PRODUCTS).get(0))
+                .containsExactlyInAnyOrder(product.getId(), duplicateProduct.getId(), missingId);
+        assertThat(loads.get(CacheNames.SUPPLIERS)).containsExactly(List.of(supplier.getId()));
+    }
+
+    @Test
+    void batchOverTheLimitIsRejectedBeforeAnythingIsLoaded() {
+        OrderProperties properties = new OrderProperties();
+        properties.getBatch().setMaxOrders(1);
+        OrderService limited = new OrderService(orderRepository, customerRepository, productRepository,
+                orderItemRepository, paymentRepository, supplierRepository, properties, duplicateOrderChecker,
+                mock(OrderNumberGenerator.class), cachedLookups, mock(AuditTrailService.class),
+                profitCalculatorService, new AuditSnapshotService(), transactionTemplate, dashboardCounters);
+        List<CreateOrderRequest> requests = List.of(
+                request(customer.getId(), item(product.getId(), null, 1)),
+                request(customer.getId(), item(product.getId(), null, 1)));
+
+        assertThatThrownBy(() -> limited.createOrders(requests))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Batch exceeds maximum of 1 orders");
+        assertThat(loads).isEmpty();
+        assertThat(limited.createOrders(List.of())).isEmpty();
+    }
+
+    private static CreateOrderRequest request(Long customerId, CreateOrderItemRequest... items) {
+        CreateOrderRequest request = new CreateOrderRequest();
+        request.setOrderNumber(TestData.unique("ORD"));
+        request.setCustomerId(customerId);
+        request.setShippingAddress(JsonNodeFactory.instance.objectNode().put("line1", "1 Test Street"));
+        request.setBillingAddress(JsonNodeFactory.instance.objectNode().put("line1", "1 Test Street"));
+        request.setItems(List.of(items));
+        return request;
+    }
+
+    private static CreateOrderItemRequest item(Long productId, Long supplierId, int quantity) {
+        CreateOrderItemRequest item = new CreateOrderItemRequest();
+        item.setProductId(productId);
+        item.setSupplierId(supplierId);
+        item.setQuantity(quantity);
+        return item;
+    }
+}
@@ -0,0 +1,126 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.StripeProperties;
+import com.dropshipping.backend.entity.Customer;
+import com.dropshipping.backend.entity.Order;
+import com.dropshipping.backend.entity.Payment;
+import com.dropshipping.backend.repository.OrderRepository;
+import com.dropshipping.backend.repository.PaymentRepository;
+import com.dropshipping.backend.support.PostgresTestSupport;
+import com.dropshipping.backend.support.TestData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class PaymentOrderLinkerTest extends PostgresTestSupport {
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final IncrementalReconciler incrementalReconciler = mock(IncrementalReconciler.class);
+    private PaymentOrderLinker linker;
+    private Customer customer;
+
+    @BeforeEach
+    void setUp() {
+        StripeProperties properties = new StripeProperties();
+        // several batches, so paging and one UPDATE per batch are both exercised
+        properties.getPaymentLinking().setBatchSize(2);
+        linker = new PaymentOrderLinker(paymentRepository, orderRepository, incrementalReconciler, properties,
+                new TransactionTemplate(transactionManager), new SimpleMeterRegistry());
+        customer = entityManager.persist(TestData.customer());
+    }
+
+    @Test
+    void chargesAreLinkedToTheOrdersTheirMetadataNamed() {
+        List<Order> orders = new ArrayList<>();
+        List<Payment> charges = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Order order = entityManager.persist(TestData.order(customer, BigDecimal.TEN));
+            orders.add(order);
+            charges.add(unlinkedCharge(order.getId()));
+        }
+        entityManager.flush();
+
+        assertThat(linker.linkUnattachedPayments()).isEqualTo(5);
+
+        for (int i = 0; i < charges.size(); i++) {
+            Map<String, Object> row = row(charges.get(i));
+            assertThat(row.get("order_id")).isEqualTo(orders.get(i).getId());
+            assertThat(row.get("stripe_order_ref")).isNull();
+            verify(incrementalReconciler).chargeRecorded(orders.get(i).getId(), charges.get(i).getId());
+        }
+    }
+
+    @Test
+    void chargesWhoseOrderIsStillMissingOrTooOldAreLeftUnlinked() {
+        Order order = entityManager.persist(TestData.order(customer, BigDecimal.TEN));
+        Payment linkable = unlinkedCharge(order.getId());
+        Payment missingOrder = unlinkedCharge(Long.MAX_VALUE);
+        Payment tooOld = unlinkedCharge(order.getId());
+        entityManager.flush();
+        jdbcTemplate.update("update payments set created_at = ? where id = ?", LocalDateTime.now().minusDays(30), tooOld.getId());
+
+        assertThat(linker.linkUnattachedPayments()).isEqualTo(1);
+
+        assertThat(row(linkable).get("order_id")).isEqualTo(order.getId());
+        assertThat(row(missingOrder).get("order_id")).isNull();
+        assertThat(row(missingOrder).get("stripe_order_ref")).isEqualTo(Long.MAX_VALUE);
+        assertThat(row(tooOld).get("order_id")).isNull();
+        verify(incrementalReconciler, never()).chargeRecorded(Long.MAX_VALUE, missingOrder.getId());
+    }
+
+    @Test
+    void linkOrdersBindsBothArraysAndSkipsChargesLinkedMeanwhile() {
+        Order first = entityManager.persist(TestData.order(customer, BigDecimal.TEN));
+        Order second = entityManager.persist(TestData.order(customer, BigDecimal.TEN));
+        Order other = entityManager.persist(TestData.order(customer, BigDecimal.TEN));
+        Payment a = unlinkedCharge(first.getId());
+        Payment b = unlinkedCharge(second.getId());
+        Payment linkedMeanwhile = entityManager.persist(TestData.charge(other, BigDecimal.TEN));
+        entityManager.flush();
+
+        int rows = paymentRepository.linkOrders(
+                new Long[]{a.getId(), b.getId(), linkedMeanwhile.getId()},
+                new Long[]{first.getId(), second.getId(), first.getId()});
+
+        assertThat(rows).isEqualTo(2);
+        assertThat(row(a).get("order_id")).isEqualTo(first.getId());
+        assertThat(row(b).get("order_id")).isEqualTo(second.getId());
+        assertThat(row(linkedMeanwhile).get("order_id")).isEqualTo(other.getId());
+    }
+
+    private Payment unlinkedCharge(Long orderRef) {
+        Payment charge = TestData.charge(null, BigDecimal.TEN);
+        charge.setStripeOrderRef(orderRef);
+        return entityManager.persist(charge);
+    }
+
+    private Map<String, Object> row(Payment payment) {
+        return jdbcTemplate.queryForMap("select order_id, stripe_order_ref from payments where id = ?", payment.getId());
+    }
+}
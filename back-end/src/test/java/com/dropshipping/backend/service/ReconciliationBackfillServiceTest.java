@@ -0,0 +1,178 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.ReconciliationProperties;
+import com.dropshipping.backend.entity.ReconciliationBackfill;
+import com.dropshipping.backend.entity.ReconciliationCheckpoint;
+import com.dropshipping.backend.repository.PaymentRepository;
+import com.dropshipping.backend.repository.ReconciliationAuditRepository;
+import com.dropshipping.backend.repository.ReconciliationBackfillRepository;
+import com.dropshipping.backend.repository.ReconciliationCheckpointRepository;
+import com.dropshipping.backend.repository.SupplierReceiptRepository;
+import com.dropshipping.backend.support.PostgresTestSupport;
+import com.dropshipping.backend.support.TestData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReconciliationBackfillServiceTest extends PostgresTestSupport {
+
+    // days no real data uses
+    private static final LocalDate FIRST_DAY = LocalDate.of(2995, 6, 1);
+    private static final int DAYS = 4;
+    private static final int CHARGES_PER_DAY = 5;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+    @Autowired
+    private ReconciliationAuditRepository auditRepository;
+    @Autowired
+    private ReconciliationBackfillRepository backfillRepository;
+    @Autowired
+    private ReconciliationCheckpointRepository checkpointRepository;
+    @Autowired
+    private SupplierReceiptRepository supplierReceiptRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> paymentIds = new ArrayList<>();
+    private final List<ReconciliationBackfillService> services = new ArrayList<>();
+    private Long backfillId;
+
+    @BeforeEach
+    void setUp() {
+        for (int day = 0; day < DAYS; day++) {
+            for (int i = 0; i < CHARGES_PER_DAY; i++) {
+                Long id = paymentRepository.save(TestData.charge(null, BigDecimal.TEN)).getId();
+                jdbcTemplate.update("update payments set created_at = ? where id = ?", FIRST_DAY.plusDays(day).atTime(9, i), id);
+                paymentIds.add(id);
+            }
+        }
+        // a backfill left RUNNING by an instance that went away before starting its days
+        ReconciliationBackfill backfill = new ReconciliationBackfill();
+        backfill.setStartDate(FIRST_DAY);
+        backfill.setEndDate(FIRST_DAY.plusDays(DAYS - 1));
+        backfillId = backfillRepository.save(backfill).getId();
+        for (int day = 0; day < DAYS; day++) {
+            ReconciliationCheckpoint cp = new ReconciliationCheckpoint();
+            cp.setBackfillId(backfillId);
+            cp.setReconciliationDate(FIRST_DAY.plusDays(day));
+            checkpointRepository.save(cp);
+        }
+    }
+
+    @AfterEach
+    void cleanUp() {
+        services.forEach(ReconciliationBackfillService::shutdown);
+        jdbcTemplate.update("delete from reconciliation_checkpoints where backfill_id = ?", backfillId);
+        jdbcTemplate.update("delete from reconciliation_backfills where id = ?", backfillId);
+        for (Long id : paymentIds) {
+            jdbcTemplate.update("delete from reconciliation_audit where payment_id = ?", id);
+            jdbcTemplate.update("delete from payments where id = ?", id);
+        }
+    }
+
+    @Test
+    void instancesResumingTheSameBackfillReconcileEachDayOnce() throws Exception {
+        ReconciliationBackfillService first = newService();
+        ReconciliationBackfillService second = newService();
+
+        CompletableFuture.allOf(
+                CompletableFuture.runAsync(first::resumeInterruptedBackfills),
+                CompletableFuture.runAsync(second::resumeInterruptedBackfills)).get();
+        awaitStatus("COMPLETED");
+
+        List<ReconciliationCheckpoint> checkpoints = checkpointRepository.findAllByBackfillIdOrderByReconciliationDate(backfillId);
+        assertThat(checkpoints).extracting(ReconciliationCheckpoint::getStatus).containsOnly("DONE");
+        // a day processed by both instances would count its charges twice
+        assertThat(checkpoints).extracting(ReconciliationCheckpoint::getChargesProcessed).containsOnly((long) CHARGES_PER_DAY);
+        assertThat(auditCount()).isEqualTo(DAYS * CHARGES_PER_DAY);
+    }
+
+    @Test
+    void dayHeldByLiveLeaseIsSkippedAndExpiredLeaseIsTakenOver() throws Exception {
+        ReconciliationCheckpoint held = checkpointRepository.findAllByBackfillIdOrderByReconciliationDate(backfillId).get(0);
+        held.setStatus("RUNNING");
+        held.setOwner("other-instance");
+        held.setLockedUntil(LocalDateTime.now().plusMinutes(5));
+        checkpointRepository.save(held);
+
+        ReconciliationBackfillService service = newService();
+        service.resumeInterruptedBackfills();
+        awaitCheckpoints(DAYS - 1);
+
+        ReconciliationCheckpoint stillHeld = checkpointRepository.findById(held.getId()).orElseThrow();
+        assertThat(stillHeld.getOwner()).isEqualTo("other-instance");
+        assertThat(stillHeld.getChargesProcessed()).isZero();
+        assertThat(backfillRepository.findById(backfillId).orElseThrow().getStatus()).isEqualTo("RUNNING");
+
+        // the other instance stopped renewing
+        stillHeld.setLockedUntil(LocalDateTime.now().minusSeconds(1));
+        checkpointRepository.save(stillHeld);
+        service.resumeInterruptedBackfills();
+        awaitStatus("COMPLETED");
+
+        ReconciliationCheckpoint takenOver = checkpointRepository.findById(held.getId()).orElseThrow();
+        assertThat(takenOver.getOwner()).isNotEqualTo("other-instance");
+        assertThat(takenOver.getStatus()).isEqualTo("DONE");
+        assertThat(takenOver.getChargesProcessed()).isEqualTo(CHARGES_PER_DAY);
+    }
+
+    private ReconciliationBackfillService newService() {
+        ReconciliationProperties properties = new ReconciliationProperties();
+        properties.setChunkSize(2);
+        properties.getBackfill().setThreads(2);
+        properties.getMatching().setEnabled(false);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        TransactionReconciliationService reconciliationService = new TransactionReconciliationService(
+                paymentRepository, auditRepository, mock(FulfillmentDashboardCounters.class), properties,
+                transactionTemplate, mock(ChargeMatchingService.class), supplierReceiptRepository);
+        ReconciliationBackfillService service = new ReconciliationBackfillService(reconciliationService,
+                backfillRepository, checkpointRepository, properties, transactionTemplate, new SimpleMeterRegistry());
+        services.add(service);
+        return service;
+    }
+
+    private long auditCount() {
+        Long count = jdbcTemplate.queryForObject(
+                "select count(*) from reconciliation_audit where reconciliation_date between ? and ?",
+                Long.class, FIRST_DAY, FIRST_DAY.plusDays(DAYS - 1));
+        return count != null ? count : 0;
+    }
+
+    private void awaitStatus(String status) throws InterruptedException {
+        await(() -> status.equals(backfillRepository.findById(backfillId).orElseThrow().getStatus()));
+    }
+
+    private void awaitCheckpoints(long done) throws InterruptedException {
+        await(() -> checkpointRepository.countByBackfillIdAndStatusIn(backfillId, List.of("DONE")) == done);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("timed out").isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.StripeProperties;
+import com.dropshipping.backend.entity.Customer;
+import com.dropshipping.backend.entity.Order;
+import com.dropshipping.backend.entity.OrderItem;
+import com.dropshipping.backend.entity.Payment;
+import com.dropshipping.backend.entity.Product;
+import com.dropshipping.backend.entity.ReturnRequest;
+import com.dropshipping.backend.entity.Supplier;
+import com.dropshipping.backend.enums.PaymentStatus;
+import com.dropshipping.backend.repository.CustomerRepository;
+import com.dropshipping.backend.repository.OrderItemRepository;
+import com.dropshipping.backend.repository.OrderRepository;
+import com.dropshipping.backend.repository.PaymentRepository;
+import com.dropshipping.backend.repository.ProductRepository;
+import com.dropshipping.backend.repository.ReturnRequestRepository;
+import com.dropshipping.backend.repository.SupplierRepository;
+import com.dropshipping.backend.resilience.DependencyGuards;
+import com.dropshipping.backend.resilience.DependencyUnavailableException;
+import com.dropshipping.backend.support.PostgresTestSupport;
+import com.dropshipping.backend.support.TestData;
+import com.stripe.exception.InvalidRequestException;
+import com.stripe.model.Refund;
+import com.stripe.param.RefundCreateParams;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * The two-phase refund against the database, with the Stripe call replaced.
+ */
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReturnServiceTest extends PostgresTestSupport {
+
+    @Autowired
+    private ReturnRequestRepository returnRequestRepository;
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+    @Autowired
+    private PaymentRepository paymentRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private SupplierRepository supplierRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private PaymentProcessingService paymentProcessingService;
+    private ReturnService service;
+    private final List<Boolean> transactionActiveDuringCall = new ArrayList<>();
+
+    private Customer customer;
+    private Supplier supplier;
+    private Product product;
+    private final List<Order> orders = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        paymentProcessingService = spy(new PaymentProcessingService(new StripeProperties(), orderRepository,
+                paymentRepository, mock(IncrementalReconciler.class), mock(DependencyGuards.class)));
+        service = new ReturnService(returnRequestRepository, orderItemRepository, paymentRepository,
+                paymentProcessingService, new TransactionTemplate(transactionManager));
+
+        customer = customerRepository.save(TestData.customer());
+        supplier = supplierRepository.save(TestData.supplier("Acme"));
+        product = productRepository.save(TestData.product(supplier));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        for (Order order : orders) {
+            jdbcTemplate.update("delete from returns where order_item_id in (select id from order_items where order_id = ?)", order.getId());
+            jdbcTemplate.update("delete from payments where order_id = ?", order.getId());
+            jdbcTemplate.update("delete from order_items where order_id = ?", order.getId());
+            jdbcTemplate.update("delete from orders where id = ?", order.getId());
+        }
+        jdbcTemplate.update("delete from products where id = ?", product.getId());
+        jdbcTemplate.update("delete from suppliers where id = ?", supplier.getId());
+        jdbcTemplate.update("delete from customers where id = ?", customer.getId());
+    }
+
+    @Test
+    void refundIsSentOutsideAnyTransactionAndRecorded() throws Exception {
+        Payment payment = charge();
+        ReturnRequest rr = returnOf(payment.getOrder());
+        stripeAnswers("re_1");
+
+        ReturnRequest refunded = service.processRefund(rr.getId(), new BigDecimal("7.50"), "damaged");
+
+        assertThat(transactionActiveDuringCall).containsExactly(false);
+        assertThat(refunded.getRefundStatus()).isEqualTo(ReturnService.REFUND_COMPLETED);
+        assertThat(refunded.getReturnStatus()).isEqualTo("REFUNDED");
+        assertThat(refunded.getStripeRefundId()).isEqualTo("re_1");
+        assertThat(refunded.getRefundPaymentId()).isEqualTo(payment.getId());
+        assertThat(refunded.getRefundIdempotencyKey()).startsWith("return-" + rr.getId() + "-");
+        assertThat(paymentRepository.findById(payment.getId()).orElseThrow().getStatus()).isEqualTo(PaymentStatus.REFUNDED);
+
+        RefundCreateParams sent = sentParams(1).get(0);
+        assertThat(sent.getCharge()).isEqualTo(payment.getStripeChargeId());
+        assertThat(sent.getAmount()).isEqualTo(750L);
+    }
+
+    @Test
+    void unknownOutcomeStaysPendingAndIsResentWithTheSameKey() throws Exception {
+        Payment payment = charge();
+        ReturnRequest rr = returnOf(payment.getOrder());
+        doThrow(new DependencyUnavailableException("stripe", "timed out after 3 attempt(s)"))
+                .when(paymentProcessingService).submitRefund(any(), anyString());
+
+        ReturnRequest pending = service.processRefund(rr.getId(), new BigDecimal("7.50"), "damaged");
+
+        assertThat(pending.getRefundStatus()).isEqualTo(ReturnService.REFUND_PENDING);
+        assertThat(pending.getRefundError()).contains("timed out");
+        assertThat(paymentRepository.findById(payment.getId()).orElseThrow().getStatus()).isEqualTo(PaymentStatus.COMPLETED);
+
+        // a second call with another amount resends the recorded request
+        stripeAnswers("re_2");
+        ReturnRequest refunded = service.processRefund(rr.getId(), new BigDecimal("1.00"), "other");
+
+        assertThat(refunded.getRefundStatus()).isEqualTo(ReturnService.REFUND_COMPLETED);
+        assertThat(refunded.getRefundIdempotencyKey()).isEqualTo(pending.getRefundIdempotencyKey());
+        ArgumentCaptor<String> keys = ArgumentCaptor.forClass(String.class);
+        verify(paymentProcessingService, times(2)).submitRefund(any(), keys.capture());
+        assertThat(keys.getAllValues()).containsOnly(pending.getRefundIdempotencyKey());
+        assertThat(sentParams(2)).extracting(RefundCreateParams::getAmount).containsOnly(750L);
+    }
+
+    @Test
+    void refundRejectedByStripeFailsAndTheNextAttemptUsesANewKey() throws Exception {
+        ReturnRequest rr = returnOf(charge().getOrder());
+        doThrow(new InvalidRequestException("Charge has already been refunded", "charge", "req_1", "charge_already_refunded", 400, null))
+                .when(paymentProcessingService).submitRefund(any(), anyString());
+
+        ReturnRequest failed = service.processRefund(rr.getId(), null, null);
+
+        assertThat(failed.getRefundStatus()).isEqualTo(ReturnService.REFUND_FAILED);
+        assertThat(failed.getRefundError()).contains("already been refunded");
+
+        stripeAnswers("re_3");
+        ReturnRequest refunded = service.processRefund(rr.getId(), null, null);
+
+        assertThat(refunded.getRefundStatus()).isEqualTo(ReturnService.REFUND_COMPLETED);
+        assertThat(refunded.getRefundIdempotencyKey()).isNotEqualTo(failed.getRefundIdempotencyKey());
+    }
+
+    @Test
+    void completedRefundIsNotSentAgain() throws Exception {
+        ReturnRequest rr = returnOf(charge().getOrder());
+        stripeAnswers("re_4");
+
+        service.processRefund(rr.getId(), null, null);
+        ReturnRequest again = service.processRefund(rr.getId(), null, null);
+
+        assertThat(again.getStripeRefundId()).isEqualTo("re_4");
+        verify(paymentProcessingService, times(1)).submitRefund(any(), anyString());
+    }
+
+    @Test
+    void returnWithoutPaymentFailsWithoutCallingStripe() throws Exception {
+        ReturnRequest rr = returnOf(order());
+
+        ReturnRequest failed = service.processRefund(rr.getId(), null, null);
+
+        assertThat(failed.getRefundStatus()).isEqualTo(ReturnService.REFUND_FAILED);
+        assertThat(failed.getRefundError()).startsWith("No payment found");
+        verify(paymentProcessingService, never()).submitRefund(any(), anyString());
+    }
+
+    private void stripeAnswers(String refundId) throws Exception {
+        doAnswer(invocation -> {
+            transactionActiveDuringCall.add(TransactionSynchronizationManager.isActualTransactionActive());
+            Refund refund = new Refund();
+            refund.setId(refundId);
+            return refund;
+        }).when(paymentProcessingService).submitRefund(any(), anyString());
+    }
+
+    private List<RefundCreateParams> sentParams(int calls) throws Exception {
+        ArgumentCaptor<RefundCreateParams> params = ArgumentCaptor.forClass(RefundCreateParams.class);
+        verify(paymentProcessingService, times(calls)).submitRefund(params.capture(), anyString());
+        return params.getAllValues();
+    }
+
+    private Order order() {
+        Order order = TestData.order(customer, new BigDecimal("15.00"));
+        TestData.item(order, product, supplier, 1);
+        order = orderRepository.save(order);
+        orders.add(order);
+        return order;
+    }
+
+    private Payment charge() {
+        return paymentRepository.save(TestData.charge(order(), new BigDecimal("15.00")));
+    }
+
+    private ReturnRequest returnOf(Order order) {
+        OrderItem item = order.getOrderItems().get(0);
+        return service.initiateReturn(item.getId(), "damaged", new BigDecimal("15.00"));
+    }
+}
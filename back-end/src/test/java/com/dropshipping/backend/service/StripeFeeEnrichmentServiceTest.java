@@ -0,0 +1,130 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.StripeProperties;
+import com.dropshipping.backend.entity.Payment;
+import com.dropshipping.backend.repository.PaymentRepository;
+import com.dropshipping.backend.stripe.StripeBalanceApi;
+import com.dropshipping.backend.stripe.StubStripeBalanceApi;
+import com.dropshipping.backend.support.PostgresTestSupport;
+import com.dropshipping.backend.support.TestData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripeFeeEnrichmentServiceTest extends PostgresTestSupport {
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final StubStripeBalanceApi stripe = new StubStripeBalanceApi();
+    // the created range of every list call
+    private final List<Instant> listedFrom = new ArrayList<>();
+    private StripeFeeEnrichmentService service;
+    private LocalDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        StripeProperties properties = new StripeProperties();
+        // one transaction per page, so a run has to follow the cursor
+        properties.getFeeEnrichment().setPageSize(1);
+        properties.getFeeEnrichment().setMaxAge(Duration.ofDays(30));
+        properties.getFeeEnrichment().setSlack(Duration.ofHours(1));
+        StripeBalanceApi recording = (from, to, startingAfter, limit) -> {
+            listedFrom.add(from);
+            return stripe.listBalanceTransactions(from, to, startingAfter, limit);
+        };
+        service = new StripeFeeEnrichmentService(paymentRepository, recording, properties,
+                new TransactionTemplate(transactionManager), new SimpleMeterRegistry());
+        now = LocalDateTime.now();
+    }
+
+    @Test
+    void provisionalFeesAreReplacedAcrossPages() throws Exception {
+        Payment first = provisionalCharge(now.minusHours(2));
+        Payment second = provisionalCharge(now.minusMinutes(30));
+        Payment settled = provisionalCharge(now.minusHours(1));
+        settled.setFeeProvisional(false);
+        paymentRepository.save(settled);
+        stripe.addCharge(first.getStripeChargeId(), 103, instant(now.minusHours(2)));
+        stripe.addCharge(second.getStripeChargeId(), 59, instant(now.minusMinutes(30)));
+        stripe.addCharge(settled.getStripeChargeId(), 999, instant(now.minusHours(1)));
+        stripe.addCharge("ch_other_account_activity", 10, instant(now.minusMinutes(10)));
+        entityManager.flush();
+        entityManager.clear();
+
+        int updated = service.enrichProvisionalFees();
+
+        assertThat(updated).isEqualTo(2);
+        assertThat(listedFrom).hasSize(4);
+        assertFee(first, "1.03", "48.97");
+        assertFee(second, "0.59", "49.41");
+        Payment untouched = paymentRepository.findById(settled.getId()).orElseThrow();
+        assertThat(untouched.getFeeAmount()).isEqualByComparingTo("1.45");
+        assertThat(untouched.getStripeBalanceTransactionId()).isNull();
+        assertThat(paymentRepository.findOldestProvisionalFeeCreatedAt(now.minusDays(30))).isNull();
+    }
+
+    @Test
+    void chargesOlderThanMaxAgeDoNotHoldTheWindowOpen() throws Exception {
+        Payment expired = provisionalCharge(now.minusDays(40));
+        Payment recent = provisionalCharge(now.minusHours(3));
+        stripe.addCharge(recent.getStripeChargeId(), 75, instant(now.minusHours(3)));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(service.enrichProvisionalFees()).isEqualTo(1);
+        // the window starts at the oldest charge still within max-age, less the slack
+        assertThat(listedFrom).allSatisfy(from ->
+                assertThat(from).isAfterOrEqualTo(instant(now.minusHours(4).minusSeconds(1))));
+
+        // with only the expired charge left there is nothing to look up
+        listedFrom.clear();
+        assertThat(service.enrichProvisionalFees()).isZero();
+        assertThat(listedFrom).isEmpty();
+        assertThat(paymentRepository.findById(expired.getId()).orElseThrow().getFeeProvisional()).isTrue();
+    }
+
+    private Payment provisionalCharge(LocalDateTime createdAt) {
+        Payment p = TestData.charge(null, new BigDecimal("50.00"));
+        p.setFeeAmount(new BigDecimal("1.45"));
+        p.setNetAmount(new BigDecimal("48.55"));
+        p.setFeeProvisional(true);
+        p = paymentRepository.save(p);
+        entityManager.flush();
+        jdbcTemplate.update("update payments set created_at = ? where id = ?", createdAt, p.getId());
+        return p;
+    }
+
+    private void assertFee(Payment charge, String fee, String net) {
+        Payment p = paymentRepository.findById(charge.getId()).orElseThrow();
+        assertThat(p.getFeeProvisional()).isFalse();
+        assertThat(p.getFeeAmount()).isEqualByComparingTo(fee);
+        assertThat(p.getNetAmount()).isEqualByComparingTo(net);
+        assertThat(p.getStripeBalanceTransactionId()).startsWith("txn_stub_");
+    }
+
+    private static Instant instant(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant();
+    }
+}
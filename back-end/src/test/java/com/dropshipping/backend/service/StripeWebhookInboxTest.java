@@ -0,0 +1,105 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.entity.StripeWebhookEvent;
+import com.dropshipping.backend.repository.StripeWebhookEventRepository;
+import com.dropshipping.backend.support.PostgresTestSupport;
+import com.stripe.model.Event;
+import com.stripe.net.ApiResource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StripeWebhookInboxTest extends PostgresTestSupport {
+
+    @Autowired
+    private StripeWebhookEventRepository eventRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final StripeWebhookWorker worker = mock(StripeWebhookWorker.class);
+    private StripeWebhookInbox inbox;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        inbox = new StripeWebhookInbox(eventRepository, worker, new SimpleMeterRegistry());
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("delete from stripe_webhook_events");
+    }
+
+    @Test
+    void redeliveredEventIsStoredOnce() {
+        String payload = payload("evt_dup", "payment_intent.succeeded", "{\"id\":\"pi_1\",\"object\":\"payment_intent\"}");
+
+        assertThat(accept(payload)).isTrue();
+        assertThat(accept(payload)).isFalse();
+
+        List<StripeWebhookEvent> stored = eventRepository.findAll();
+        assertThat(stored).hasSize(1);
+        assertThat(stored.get(0).getEventId()).isEqualTo("evt_dup");
+        assertThat(stored.get(0).getStatus()).isEqualTo("PENDING");
+        assertThat(stored.get(0).getOrderingKey()).isEqualTo("pi_1");
+        // the worker is woken for the stored event only, after its commit
+        verify(worker, times(1)).wakeUp();
+    }
+
+    @Test
+    void rolledBackEventDoesNotWakeTheWorker() {
+        String payload = payload("evt_rb", "charge.refunded", "{\"id\":\"ch_1\",\"object\":\"charge\"}");
+
+        transactionTemplate.executeWithoutResult(tx -> {
+            inbox.accept(event(payload), payload);
+            tx.setRollbackOnly();
+        });
+
+        assertThat(eventRepository.count()).isZero();
+        verify(worker, never()).wakeUp();
+    }
+
+    @Test
+    void orderingKeyIsThePaymentIntentElseTheCharge() {
+        assertThat(StripeWebhookInbox.orderingKey(event(payload("evt_1", "charge.succeeded",
+                "{\"id\":\"ch_1\",\"object\":\"charge\",\"payment_intent\":\"pi_1\"}")))).isEqualTo("pi_1");
+        assertThat(StripeWebhookInbox.orderingKey(event(payload("evt_2", "charge.refunded",
+                "{\"id\":\"ch_2\",\"object\":\"charge\"}")))).isEqualTo("ch_2");
+        assertThat(StripeWebhookInbox.orderingKey(event(payload("evt_3", "charge.dispute.created",
+                "{\"id\":\"dp_1\",\"object\":\"dispute\",\"charge\":\"ch_3\"}")))).isEqualTo("ch_3");
+        assertThat(StripeWebhookInbox.orderingKey(event(payload("evt_4", "customer.created",
+                "{\"id\":\"cus_1\",\"object\":\"customer\"}")))).isNull();
+    }
+
+    private boolean accept(String payload) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(tx -> inbox.accept(event(payload), payload)));
+    }
+
+    static Event event(String payload) {
+        return ApiResource.GSON.fromJson(payload, Event.class);
+    }
+
+    static String payload(String eventId, String type, String object) {
+        return "{\"id\":\"" + eventId + "\",\"object\":\"event\",\"type\":\"" + type + "\","
+                + "\"data\":{\"object\":" + object + "}}";
+    }
+}
@@ -0,0 +1,249 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.StripeProperties;
+import com.dropshipping.backend.entity.StripeWebhookEvent;
+import com.dropshipping.backend.repository.StripeWebhookEventRepository;
+import com.dropshipping.backend.support.PostgresTestSupport;
+import com.stripe.model.Event;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StripeWebhookWorkerTest extends PostgresTestSupport {
+
+    @Autowired
+    private StripeWebhookEventRepository eventRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final StripeEventHandler eventHandler = mock(StripeEventHandler.class);
+    private StripeProperties properties;
+    private TransactionTemplate transactionTemplate;
+    private StripeWebhookWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StripeProperties();
+        properties.getWebhookInbox().setPollInterval(Duration.ofMillis(20));
+        properties.getWebhookInbox().setMaxAttempts(3);
+        properties.getWebhookInbox().setInitialBackoff(Duration.ofMillis(20));
+        properties.getWebhookInbox().setMaxBackoff(Duration.ofMillis(100));
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        if (worker != null) {
+            worker.shutdown();
+        }
+        jdbcTemplate.update("delete from stripe_webhook_events");
+    }
+
+    @Test
+    void onlyTheOldestOpenEventOfAKeyIsClaimable() {
+        LocalDateTime now = LocalDateTime.now();
+        Long first = insert("evt_1", "pi_1", "PENDING", 0, now, null);
+        insert("evt_2", "pi_1", "PENDING", 0, now, null);
+        Long other = insert("evt_3", "pi_2", "PENDING", 0, now, null);
+        Long unkeyed = insert("evt_4", null, "PENDING", 0, now, null);
+
+        assertThat(claimableIds(10)).containsExactly(first, other, unkeyed);
+    }
+
+    @Test
+    void laterEventOfAKeyWaitsWhileTheFirstIsLockedByAnotherInstance() throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        Long first = insert("evt_1", "pi_1", "PENDING", 0, now, null);
+        insert("evt_2", "pi_1", "PENDING", 0, now, null);
+        Long other = insert("evt_3", "pi_2", "PENDING", 0, now, null);
+
+        // another instance's claim transaction holds the first event of pi_1
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<List<Long>> otherInstance = CompletableFuture.supplyAsync(() -> transactionTemplate.execute(tx -> {
+            List<Long> ids = eventRepository.lockClaimable(LocalDateTime.now(), 1).stream().map(StripeWebhookEvent::getId).toList();
+            locked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ids;
+        }));
+        assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+
+        try {
+            assertThat(claimableIds(10)).containsExactly(other);
+        } finally {
+            release.countDown();
+        }
+        assertThat(otherInstance.get(10, TimeUnit.SECONDS)).containsExactly(first);
+    }
+
+    @Test
+    void eventBackingOffOrProcessingHoldsBackLaterEventsOfItsKey() {
+        LocalDateTime now = LocalDateTime.now();
+        insert("evt_1", "pi_1", "PENDING", 1, now.plusMinutes(5), null);
+        insert("evt_2", "pi_1", "PENDING", 0, now, null);
+        insert("evt_3", "pi_2", "PROCESSING", 1, now, now.plusMinutes(5));
+        insert("evt_4", "pi_2", "PENDING", 0, now, null);
+        // a dead event does not block its key
+        insert("evt_5", "pi_3", "DEAD", 3, now, null);
+        Long afterDead = insert("evt_6", "pi_3", "PENDING", 0, now, null);
+
+        assertThat(claimableIds(10)).containsExactly(afterDead);
+    }
+
+    @Test
+    void eventsOfOneKeyAreAppliedInTheOrderReceived() throws InterruptedException {
+        List<String> applied = new CopyOnWriteArrayList<>();
+        doAnswer(inv -> applied.add(((Event) inv.getArgument(0)).getId())).when(eventHandler).handle(any());
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 1; i <= 5; i++) {
+            insert("evt_" + i, "pi_1", "PENDING", 0, now, null);
+        }
+
+        worker = newWorker();
+
+        await(() -> applied.size() == 5);
+        assertThat(applied).containsExactly("evt_1", "evt_2", "evt_3", "evt_4", "evt_5");
+        assertThat(eventRepository.countByStatus("DONE")).isEqualTo(5);
+    }
+
+    @Test
+    void failedAttemptIsRescheduledWithBackoff() throws InterruptedException {
+        properties.getWebhookInbox().setInitialBackoff(Duration.ofHours(1));
+        properties.getWebhookInbox().setMaxBackoff(Duration.ofHours(2));
+        doThrow(new IllegalStateException("handler failed")).when(eventHandler).handle(any());
+        Long id = insert("evt_1", "pi_1", "PENDING", 0, LocalDateTime.now(), null);
+        insert("evt_2", "pi_1", "PENDING", 0, LocalDateTime.now(), null);
+
+        LocalDateTime failedAfter = LocalDateTime.now();
+        worker = newWorker();
+
+        await(() -> event(id).getAttempts() == 1 && "PENDING".equals(event(id).getStatus()));
+        StripeWebhookEvent failed = event(id);
+        // first retry after initial-backoff scaled by 50-100% jitter
+        assertThat(failed.getNextAttemptAt()).isAfterOrEqualTo(failedAfter.plusMinutes(30))
+                .isBeforeOrEqualTo(LocalDateTime.now().plusHours(1));
+        assertThat(failed.getLockedUntil()).isNull();
+        assertThat(failed.getLastError()).contains("handler failed");
+        // the later event of the key waits for the retry
+        Thread.sleep(200);
+        verify(eventHandler, times(1)).handle(any());
+    }
+
+    @Test
+    void failedEventSucceedsOnRetry() throws InterruptedException {
+        doThrow(new IllegalStateException("handler failed")).doNothing().when(eventHandler).handle(any());
+        Long id = insert("evt_1", "pi_1", "PENDING", 0, LocalDateTime.now(), null);
+
+        worker = newWorker();
+
+        await(() -> "DONE".equals(event(id).getStatus()));
+        StripeWebhookEvent done = event(id);
+        assertThat(done.getAttempts()).isEqualTo(2);
+        assertThat(done.getLastError()).isNull();
+        assertThat(done.getProcessedAt()).isNotNull();
+        verify(eventHandler, times(2)).handle(any());
+    }
+
+    @Test
+    void eventIsDeadAfterMaxAttemptsAndCanBeRetried() throws InterruptedException {
+        doThrow(new IllegalStateException("handler failed")).when(eventHandler).handle(any());
+        Long id = insert("evt_1", "pi_1", "PENDING", 0, LocalDateTime.now(), null);
+
+        worker = newWorker();
+
+        await(() -> "DEAD".equals(event(id).getStatus()));
+        assertThat(event(id).getAttempts()).isEqualTo(3);
+        assertThat(event(id).getLastError()).contains("handler failed");
+        verify(eventHandler, times(3)).handle(any());
+        assertThatThrownBy(() -> worker.retryDead(insert("evt_2", null, "DONE", 1, LocalDateTime.now(), null)))
+                .isInstanceOf(IllegalStateException.class);
+
+        doNothing().when(eventHandler).handle(any());
+        worker.retryDead(id);
+
+        await(() -> "DONE".equals(event(id).getStatus()));
+        // a fresh set of attempts
+        assertThat(event(id).getAttempts()).isEqualTo(1);
+    }
+
+    @Test
+    void eventIsClaimedAgainWhenItsLeaseExpires() throws InterruptedException {
+        LocalDateTime now = LocalDateTime.now();
+        Long expired = insert("evt_1", "pi_1", "PROCESSING", 1, now, now.minusSeconds(1));
+        Long leased = insert("evt_2", "pi_2", "PROCESSING", 1, now, now.plusMinutes(5));
+
+        worker = newWorker();
+
+        await(() -> "DONE".equals(event(expired).getStatus()));
+        assertThat(event(expired).getAttempts()).isEqualTo(2);
+        // an event whose worker still holds the lease is left alone
+        assertThat(event(leased).getStatus()).isEqualTo("PROCESSING");
+        assertThat(event(leased).getAttempts()).isEqualTo(1);
+    }
+
+    private StripeWebhookWorker newWorker() {
+        return new StripeWebhookWorker(eventRepository, eventHandler, properties, transactionTemplate, new SimpleMeterRegistry());
+    }
+
+    private List<Long> claimableIds(int limit) {
+        return transactionTemplate.execute(tx -> eventRepository.lockClaimable(LocalDateTime.now(), limit).stream()
+                .map(StripeWebhookEvent::getId).toList());
+    }
+
+    private StripeWebhookEvent event(Long id) {
+        return eventRepository.findById(id).orElseThrow();
+    }
+
+    private Long insert(String eventId, String orderingKey, String status, int attempts,
+                        LocalDateTime nextAttemptAt, LocalDateTime lockedUntil) {
+        String payload = StripeWebhookInboxTest.payload(eventId, "payment_intent.succeeded",
+                "{\"id\":\"" + orderingKey + "\",\"object\":\"payment_intent\"}");
+        return jdbcTemplate.queryForObject("insert into stripe_webhook_events (event_id, event_type, payload, ordering_key, "
+                        + "status, attempts, next_attempt_at, locked_until, received_at) values (?, ?, ?, ?, ?, ?, ?, ?, ?) returning id",
+                Long.class, eventId, "payment_intent.succeeded", payload, orderingKey, status, attempts,
+                Timestamp.valueOf(nextAttemptAt), lockedUntil != null ? Timestamp.valueOf(lockedUntil) : null,
+                Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("timed out").isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.dropshipping.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // Integer keys 0 and 1 hash to lanes 0 and 1
+    private final StripedExecutor executor = new StripedExecutor("test-lane", 2, "test.lane", meterRegistry);
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        executor.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void tasksWithTheSameKeyRunInSubmissionOrder() throws InterruptedException {
+        List<Integer> ran = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            int task = i;
+            executor.execute("pi_1", () -> {
+                if (task % 10 == 0) {
+                    // a slow task must not be overtaken by the ones queued behind it
+                    sleep(5);
+                }
+                ran.add(task);
+            });
+        }
+
+        await(() -> ran.size() == 100);
+        for (int i = 0; i < 100; i++) {
+            assertThat(ran.get(i)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    void tasksWithDifferentKeysRunConcurrently() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherRan = new CountDownLatch(1);
+        executor.execute(0, () -> awaitQuietly(release));
+
+        executor.execute(1, otherRan::countDown);
+
+        try {
+            // runs while the first key's task is still blocked
+            assertThat(otherRan.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void depthAndLagRiseWhileTasksWaitAndFallWhenTheyFinish() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(0, () -> awaitQuietly(release));
+        executor.execute(0, () -> { });
+        executor.execute(0, () -> { });
+        sleep(100);
+
+        assertThat(gauge("test.lane.depth", "0")).isEqualTo(3);
+        assertThat(gauge("test.lane.lag", "0")).isGreaterThanOrEqualTo(0.1);
+        assertThat(gauge("test.lane.depth", "1")).isZero();
+        assertThat(gauge("test.lane.lag", "1")).isZero();
+
+        release.countDown();
+
+        await(() -> gauge("test.lane.depth", "0") == 0);
+        assertThat(gauge("test.lane.lag", "0")).isZero();
+    }
+
+    private double gauge(String name, String lane) {
+        return meterRegistry.get(name).tag("lane", lane).gauge().value();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("timed out").isLessThan(deadline);
+            Thread.sleep(20);
+        }
+    }
+}
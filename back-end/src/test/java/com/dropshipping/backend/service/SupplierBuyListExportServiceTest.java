@@ -0,0 +1,109 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.OrderProperties;
+import com.dropshipping.backend.entity.Customer;
+import com.dropshipping.backend.entity.Order;
+import com.dropshipping.backend.entity.Product;
+import com.dropshipping.backend.entity.Supplier;
+import com.dropshipping.backend.repository.OrderItemRepository;
+import com.dropshipping.backend.repository.OrderRepository;
+import com.dropshipping.backend.support.PostgresTestSupport;
+import com.dropshipping.backend.support.TestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SupplierBuyListExportServiceTest extends PostgresTestSupport {
+
+    // a day no real data uses
+    private static final LocalDate DAY = LocalDate.of(2997, 3, 1);
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private SupplierBuyListExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        OrderProperties properties = new OrderProperties();
+        // smaller than a supplier's rows, so pages end inside and between suppliers
+        properties.getBuyList().setExportPageSize(2);
+        exportService = new SupplierBuyListExportService(orderItemRepository, properties, transactionManager);
+
+        Supplier acme = entityManager.persist(TestData.supplier("Acme"));
+        Supplier zenith = entityManager.persist(TestData.supplier("Zenith"));
+        Customer customer = entityManager.persist(TestData.customer());
+        Product widget = TestData.product(acme);
+        widget.setName("=HYPERLINK(\"http://example.com\")");
+        entityManager.persist(widget);
+        Product gadget = entityManager.persist(TestData.product(zenith));
+
+        Order order = TestData.order(customer, BigDecimal.TEN);
+        TestData.item(order, widget, acme, 1);
+        TestData.item(order, widget, acme, 2);
+        TestData.item(order, widget, acme, 3);
+        TestData.item(order, gadget, zenith, 4);
+        TestData.item(order, gadget, zenith, 5);
+        orderRepository.save(order);
+        entityManager.flush();
+        jdbcTemplate.update("update order_items set created_at = ? where order_id = ?", DAY.atTime(9, 0), order.getId());
+        entityManager.clear();
+    }
+
+    @Test
+    void csvContainsEveryRowAcrossPagesInSupplierOrder() throws Exception {
+        List<String> lines = csv();
+
+        assertThat(lines.get(0)).startsWith("supplier_id,supplier_name,");
+        assertThat(lines.subList(1, lines.size())).extracting(line -> quantityOf(line))
+                .containsExactly("1", "2", "3", "4", "5");
+        assertThat(lines.subList(1, 4)).allMatch(line -> line.contains(",Acme,"));
+        assertThat(lines.subList(4, 6)).allMatch(line -> line.contains(",Zenith,"));
+    }
+
+    @Test
+    void formulaLikeCellsAreExportedAsText() throws Exception {
+        List<String> lines = csv();
+
+        assertThat(lines.get(1)).contains(",\"'=HYPERLINK(\"\"http://example.com\"\")\",");
+    }
+
+    @Test
+    void formulaPrefixes() {
+        assertThat(Arrays.asList("=1+1", "+1", "-1", "@SUM(A1)", "\tx", "plain", ""))
+                .extracting(SupplierBuyListExportService::csvText)
+                .containsExactly("'=1+1", "'+1", "'-1", "'@SUM(A1)", "'\tx", "plain", "");
+    }
+
+    private List<String> csv() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.writeCsv(DAY, out);
+        return Arrays.asList(out.toString(StandardCharsets.UTF_8).split("\r\n"));
+    }
+
+    private static String quantityOf(String line) {
+        // quantity follows the product name; the shipping address column is quoted JSON
+        String[] cells = line.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)");
+        return cells[5];
+    }
+}
@@ -0,0 +1,130 @@
+package com.dropshipping.backend.service;
+
+import com.dropshipping.backend.config.ReconciliationProperties;
+import com.dropshipping.backend.entity.Customer;
+import com.dropshipping.backend.entity.Order;
+import com.dropshipping.backend.entity.Payment;
+import com.dropshipping.backend.entity.ReconciliationAudit;
+import com.dropshipping.backend.entity.Supplier;
+import com.dropshipping.backend.entity.SupplierReceipt;
+import com.dropshipping.backend.repository.PaymentRepository;
+import com.dropshipping.backend.repository.ReconciliationAuditRepository;
+import com.dropshipping.backend.repository.SupplierReceiptRepository;
+import com.dropshipping.backend.support.PostgresTestSupport;
+import com.dropshipping.backend.support.TestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class TransactionReconciliationServiceTest extends PostgresTestSupport {
+
+    // a day no real data uses
+    private static final LocalDate DAY = LocalDate.of(2994, 7, 1);
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+    @Autowired
+    private ReconciliationAuditRepository auditRepository;
+    @Autowired
+    private SupplierReceiptRepository supplierReceiptRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionReconciliationService service;
+    private Order proposedOrder;
+    private SupplierReceipt proposedReceipt;
+
+    @BeforeEach
+    void setUp() {
+        service = new TransactionReconciliationService(paymentRepository, auditRepository,
+                mock(FulfillmentDashboardCounters.class), new ReconciliationProperties(),
+                new TransactionTemplate(transactionManager), mock(ChargeMatchingService.class), supplierReceiptRepository);
+
+        Customer customer = entityManager.persist(TestData.customer());
+        proposedOrder = entityManager.persist(TestData.order(customer, new BigDecimal("25.00")));
+        Supplier supplier = entityManager.persist(TestData.supplier("Acme"));
+        SupplierReceipt receipt = new SupplierReceipt();
+        receipt.setSupplier(supplier);
+        receipt.setReceiptNumber(TestData.unique("R"));
+        receipt.setAmount(new BigDecimal("12.00"));
+        receipt.setS3Url("s3://receipts/test.pdf");
+        receipt.setReceiptDate(DAY);
+        proposedReceipt = entityManager.persist(receipt);
+    }
+
+    @Test
+    void recomputingAnUnattachedChargeKeepsItsMatchProposal() {
+        Payment charge = unattachedChargeWithProposal();
+
+        service.reconcileOrdersAndPayments(List.of(), List.of(charge.getId()));
+        entityManager.flush();
+        entityManager.clear();
+
+        ReconciliationAudit audit = auditOf(charge);
+        assertThat(audit.getMatchedOrderId()).isEqualTo(proposedOrder.getId());
+        assertThat(audit.getMatchConfidence()).isEqualByComparingTo("0.875");
+        assertThat(audit.getSupplierReceipt().getId()).isEqualTo(proposedReceipt.getId());
+        assertThat(audit.getSupplierAmount()).isEqualByComparingTo("12.00");
+        assertThat(audit.getDiscrepancyReason()).startsWith("Unattached charge, proposed order");
+    }
+
+    @Test
+    void recomputingALinkedChargeKeepsTheProposalButUsesTheOrdersAmounts() {
+        Payment charge = unattachedChargeWithProposal();
+        jdbcTemplate.update("update payments set order_id = ? where id = ?", proposedOrder.getId(), charge.getId());
+
+        service.reconcileOrdersAndPayments(List.of(), List.of(charge.getId()));
+        entityManager.flush();
+        entityManager.clear();
+
+        ReconciliationAudit audit = auditOf(charge);
+        assertThat(audit.getMatchedOrderId()).isEqualTo(proposedOrder.getId());
+        assertThat(audit.getMatchConfidence()).isEqualByComparingTo("0.875");
+        assertThat(audit.getSupplierReceipt()).isNull();
+        assertThat(audit.getDiscrepancyReason()).isEqualTo("No order items found");
+    }
+
+    private Payment unattachedChargeWithProposal() {
+        Payment charge = entityManager.persist(TestData.charge(null, new BigDecimal("25.00")));
+        entityManager.flush();
+        jdbcTemplate.update("update payments set created_at = ? where id = ?", DAY.atTime(10, 0), charge.getId());
+        entityManager.clear();
+        service.reconcileOrdersAndPayments(List.of(), List.of(charge.getId()));
+        entityManager.flush();
+        entityManager.clear();
+
+        // what charge matching stores on the row
+        ReconciliationAudit audit = auditOf(charge);
+        audit.setMatchedOrderId(proposedOrder.getId());
+        audit.setMatchConfidence(new BigDecimal("0.875"));
+        audit.setSupplierReceipt(entityManager.find(SupplierReceipt.class, proposedReceipt.getId()));
+        audit.setSupplierAmount(new BigDecimal("12.00"));
+        audit.setDiscrepancyAmount(new BigDecimal("13.00"));
+        audit.setDiscrepancyReason("Unattached charge, proposed order " + proposedOrder.getId() + " (confidence 0.875)");
+        auditRepository.save(audit);
+        entityManager.flush();
+        entityManager.clear();
+        return charge;
+    }
+
+    private ReconciliationAudit auditOf(Payment charge) {
+        List<ReconciliationAudit> audits = auditRepository.findAllByReconciliationDateAndPaymentIdIn(DAY, List.of(charge.getId()));
+        assertThat(audits).hasSize(1);
+        return audits.get(0);
+    }
+}
@@ -0,0 +1,64 @@
+package com.dropshipping.backend.stripe;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory stand-in for the Stripe balance transaction API.
+ * Transactions are added with {@link #addCharge}; listing follows Stripe's semantics (created range,
+ * newest first, cursor on the last id returned, {@code hasMore}).
+ */
+public class StubStripeBalanceApi implements StripeBalanceApi {
+
+    private record Stored(BalanceFee fee, long created, long sequence) {}
+
+    private static final Comparator<Stored> NEWEST_FIRST =
+            Comparator.comparingLong(Stored::created).thenComparingLong(Stored::sequence).reversed();
+
+    private final ConcurrentSkipListMap<String, Stored> transactions = new ConcurrentSkipListMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Adds a balance transaction for a charge and returns its id.
+     */
+    public String addCharge(String chargeId, long feeCents, Instant created) {
+        long seq = sequence.incrementAndGet();
+        String id = "txn_stub_" + seq;
+        transactions.put(id, new Stored(new BalanceFee(id, chargeId, feeCents), created.getEpochSecond(), seq));
+        return id;
+    }
+
+    public void clear() {
+        transactions.clear();
+    }
+
+    @Override
+    public Page listBalanceTransactions(Instant from, Instant to, String startingAfter, int limit) {
+        List<Stored> matching = new ArrayList<>();
+        for (Stored s : transactions.values()) {
+            if (s.created() >= from.getEpochSecond() && s.created() < to.getEpochSecond()) {
+                matching.add(s);
+            }
+        }
+        matching.sort(NEWEST_FIRST);
+
+        int start = 0;
+        if (startingAfter != null) {
+            Stored after = transactions.get(startingAfter);
+            if (after == null) {
+                throw new IllegalArgumentException("No such balance transaction: " + startingAfter);
+            }
+            start = matching.indexOf(after) + 1;
+        }
+        int end = Math.min(matching.size(), start + Math.max(1, limit));
+        List<BalanceFee> items = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            items.add(matching.get(i).fee());
+        }
+        return new Page(items, end < matching.size());
+    }
+}
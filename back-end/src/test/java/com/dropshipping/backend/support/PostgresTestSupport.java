@@ -0,0 +1,59 @@
+package com.dropshipping.backend.support;
+
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Base class for repository and service tests that need PostgreSQL (native queries, SKIP LOCKED, Flyway
+ * migrations). Uses the database in TEST_DATABASE_URL (TEST_DATABASE_USERNAME / TEST_DATABASE_PASSWORD,
+ * default postgres/postgres) when set, otherwise a Testcontainers PostgreSQL shared by all test classes.
+ * Tests are skipped when neither is available.
+ * <p>
+ * The schema comes from the Flyway migrations. Tests run in a rolled-back transaction unless they opt out
+ * with {@code @Transactional(propagation = NOT_SUPPORTED)}, in which case they clean up after themselves.
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIf(value = "com.dropshipping.backend.support.PostgresTestSupport#databaseAvailable",
+        disabledReason = "needs TEST_DATABASE_URL or Docker")
+public abstract class PostgresTestSupport {
+
+    private static final String EXTERNAL_URL = System.getenv("TEST_DATABASE_URL");
+    private static PostgreSQLContainer<?> container;
+
+    static boolean databaseAvailable() {
+        return EXTERNAL_URL != null || DockerClientFactory.instance().isDockerAvailable();
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        if (EXTERNAL_URL != null) {
+            registry.add("spring.datasource.url", () -> EXTERNAL_URL);
+            registry.add("spring.datasource.username", () -> env("TEST_DATABASE_USERNAME", "postgres"));
+            registry.add("spring.datasource.password", () -> env("TEST_DATABASE_PASSWORD", "postgres"));
+            return;
+        }
+        PostgreSQLContainer<?> postgres = container();
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    private static synchronized PostgreSQLContainer<?> container() {
+        if (container == null) {
+            container = new PostgreSQLContainer<>("postgres:15-alpine");
+            container.start();
+        }
+        return container;
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+}
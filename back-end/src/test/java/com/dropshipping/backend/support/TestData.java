@@ -0,0 +1,93 @@
+package com.dropshipping.backend.support;
+
+import com.dropshipping.backend.entity.Customer;
+import com.dropshipping.backend.entity.Order;
+import com.dropshipping.backend.entity.OrderItem;
+import com.dropshipping.backend.entity.Payment;
+import com.dropshipping.backend.entity.Product;
+import com.dropshipping.backend.entity.Supplier;
+import com.dropshipping.backend.enums.PaymentStatus;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Unsaved entities with every required column filled in; unique columns get random values.
+ */
+public final class TestData {
+
+    private TestData() {
+    }
+
+    public static Customer customer() {
+        Customer c = new Customer();
+        c.setEmail(unique("customer") + "@example.com");
+        c.setFirstName("Test");
+        c.setLastName("Customer");
+        return c;
+    }
+
+    public static Supplier supplier(String name) {
+        Supplier s = new Supplier();
+        s.setName(name);
+        s.setEmail(unique("supplier") + "@example.com");
+        return s;
+    }
+
+    public static Product product(Supplier supplier) {
+        Product p = new Product();
+        p.setName("Product " + unique(""));
+        p.setSku(unique("SKU"));
+        p.setSupplier(supplier);
+        p.setSupplierPrice(5.0);
+        p.setSellingPrice(10.0);
+        return p;
+    }
+
+    /**
+     * An order without items; totals are set to {@code total}.
+     */
+    public static Order order(Customer customer, BigDecimal total) {
+        ObjectNode address = JsonNodeFactory.instance.objectNode().put("line1", "1 Test Street").put("city", "Testville");
+        Order o = new Order();
+        o.setOrderNumber(unique("ORD"));
+        o.setCustomer(customer);
+        o.setTotalAmount(total);
+        o.setNetAmount(total);
+        o.setShippingAddress(address);
+        o.setBillingAddress(address);
+        return o;
+    }
+
+    public static OrderItem item(Order order, Product product, Supplier supplier, int quantity) {
+        OrderItem oi = new OrderItem();
+        oi.setOrder(order);
+        oi.setProduct(product);
+        oi.setSupplier(supplier);
+        oi.setQuantity(quantity);
+        oi.setUnitPrice(BigDecimal.TEN);
+        oi.setTotalPrice(BigDecimal.TEN.multiply(BigDecimal.valueOf(quantity)));
+        order.getOrderItems().add(oi);
+        return oi;
+    }
+
+    /**
+     * A completed Stripe charge of {@code amount}, linked to {@code order} (may be null).
+     */
+    public static Payment charge(Order order, BigDecimal amount) {
+        Payment p = new Payment();
+        p.setOrder(order);
+        p.setStripePaymentIntentId(unique("pi"));
+        p.setStripeChargeId(unique("ch"));
+        p.setAmount(amount);
+        p.setNetAmount(amount);
+        p.setStatus(PaymentStatus.COMPLETED);
+        return p;
+    }
+
+    public static String unique(String prefix) {
+        return prefix + "_" + UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+    }
+}
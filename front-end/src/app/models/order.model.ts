@@ -21,6 +21,19 @@ export interface Order {
   orderItems?: OrderItem[];
 }
 
+export interface OrderSummary {
+  id: number;
+  orderNumber: string;
+  status: OrderStatus;
+  totalAmount: number;
+  netAmount: number;
+  requiresReview: boolean;
+  reviewReason?: string;
+  createdAt: string;
+  customer: Pick<Customer, 'id' | 'firstName' | 'lastName' | 'email'>;
+  itemCount: number;
+}
+
 export interface OrderItem {
   id: number;
   orderId: number;
@@ -1,6 +1,7 @@
-import { Component, OnInit } from '@angular/core';
+import { Component, OnDestroy, OnInit } from '@angular/core';
+import { Subscription } from 'rxjs';
 import { OrderService } from '../../services/order.service';
-import { Order, OrderStatus } from '../../models/order.model';
+import { OrderStatus, OrderSummary } from '../../models/order.model';
 
 @Component({
   selector: 'app-dashboard',
@@ -160,7 +161,7 @@ import { Order, OrderStatus } from '../../models/order.model';
     }
   `]
 })
-export class DashboardComponent implements OnInit {
+export class DashboardComponent implements OnInit, OnDestroy {
   stats = {
     totalOrders: 0,
     pendingFulfillment: 0,
@@ -168,14 +169,29 @@ export class DashboardComponent implements OnInit {
     todayRevenue: 0
   };
 
-  recentOrders: Order[] = [];
+  recentOrders: OrderSummary[] = [];
   supplierBuyList: any[] = [];
   displayedColumns = ['orderNumber', 'customer', 'status', 'totalAmount', 'createdAt'];
 
+  private dashboardStream?: Subscription;
+
   constructor(private orderService: OrderService) {}
 
   ngOnInit(): void {
     this.loadDashboardData();
+    this.dashboardStream = this.orderService.streamFulfillmentDashboard().subscribe(data => {
+      const statusCounts: Record<string, number> = data.orderStatusCounts || {};
+      this.stats = {
+        ...this.stats,
+        totalOrders: Object.values(statusCounts).reduce((sum, n) => sum + n, 0),
+        pendingFulfillment: data.awaitingSupplierPurchase ?? 0,
+        requiresReview: data.requiresManualReview ?? 0
+      };
+    });
+  }
+
+  ngOnDestroy(): void {
+    this.dashboardStream?.unsubscribe();
   }
 
   loadDashboardData(): void {
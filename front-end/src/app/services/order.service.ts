@@ -1,7 +1,7 @@
 import { Injectable } from '@angular/core';
 import { HttpClient, HttpParams } from '@angular/common/http';
 import { Observable } from 'rxjs';
-import { Order, OrderItem, OrderStatus } from '../models/order.model';
+import { Order, OrderItem, OrderStatus, OrderSummary } from '../models/order.model';
 
 @Injectable({
   providedIn: 'root'
@@ -44,8 +44,8 @@ export class OrderService {
     return this.http.get(`${this.apiUrl}/admin/supplier-buy-list`, { params });
   }
 
-  getOrdersRequiringReview(): Observable<Order[]> {
-    return this.http.get<Order[]>(`${this.apiUrl}/admin/requires-review`);
+  getOrdersRequiringReview(): Observable<OrderSummary[]> {
+    return this.http.get<OrderSummary[]>(`${this.apiUrl}/admin/requires-review`);
   }
 
   approveOrderReview(orderId: number, approved: boolean, reason?: string): Observable<Order> {
@@ -55,4 +55,26 @@ export class OrderService {
   getFulfillmentDashboard(): Observable<any> {
     return this.http.get(`${this.apiUrl}/admin/fulfillment-dashboard`);
   }
+
+  // Live dashboard: emits the full state on connect and again after every merged delta event
+  streamFulfillmentDashboard(): Observable<any> {
+    return new Observable(observer => {
+      let state: any = {};
+      const source = new EventSource(`${this.apiUrl}/admin/fulfillment-dashboard/stream`);
+      source.addEventListener('snapshot', (e: MessageEvent) => {
+        state = JSON.parse(e.data);
+        observer.next(state);
+      });
+      source.addEventListener('delta', (e: MessageEvent) => {
+        const delta = JSON.parse(e.data);
+        state = {
+          ...state,
+          ...delta,
+          orderStatusCounts: { ...state.orderStatusCounts, ...delta.orderStatusCounts }
+        };
+        observer.next(state);
+      });
+      return () => source.close();
+    });
+  }
 }